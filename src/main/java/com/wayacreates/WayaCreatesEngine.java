@@ -1,9 +1,11 @@
 package com.wayacreates;
 
 import net.fabricmc.api.ModInitializer;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerWorldEvents;
 import net.fabricmc.fabric.api.command.v2.CommandRegistrationCallback;
+import net.fabricmc.fabric.api.message.v1.ServerMessageEvents;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.world.ServerWorld;
 import org.slf4j.Logger;
@@ -25,6 +27,7 @@ import com.wayacreates.config.WayaCreatesConfig;
 import com.wayacreates.recording.RecordingManager;
 import com.wayacreates.livestream.LivestreamManager;
 import com.wayacreates.integrations.ModIntegrationManager;
+import com.wayacreates.utils.LeakDetector;
 
 /**
  * WayaCreates Engine - Professional Minecraft Animation & Video Editing System
@@ -161,7 +164,9 @@ public class WayaCreatesEngine implements ModInitializer {
         LOGGER.info("📋 Initializing managers...");
         
         recordingManager = new RecordingManager();
+        recordingManager.initialize();
         livestreamManager = new LivestreamManager();
+        livestreamManager.initialize();
         modIntegrationManager = new ModIntegrationManager();
         
         LOGGER.info("✅ Managers initialized");
@@ -173,6 +178,14 @@ public class WayaCreatesEngine implements ModInitializer {
         ServerTickEvents.END_SERVER_TICK.register(this::onServerTick);
         ServerWorldEvents.LOAD.register(this::onWorldLoad);
         ServerWorldEvents.UNLOAD.register(this::onWorldUnload);
+        ServerLifecycleEvents.SERVER_STOPPING.register(this::onServerStopping);
+        
+        // Game-state replay inputs; block changes and particles come from WorldMixin and ServerWorldMixin
+        ServerMessageEvents.CHAT_MESSAGE.register((message, sender, params) -> {
+            if (recordingManager != null) {
+                recordingManager.onChatMessage(sender.getUuid(), message.getContent().getString());
+            }
+        });
         
         LOGGER.info("✅ Event handlers registered");
     }
@@ -222,7 +235,7 @@ public class WayaCreatesEngine implements ModInitializer {
         // Update managers
         if (recordingManager != null) recordingManager.tick();
         if (livestreamManager != null) livestreamManager.tick();
-        if (modIntegrationManager != null) modIntegrationManager.tick();
+        if (modIntegrationManager != null) modIntegrationManager.tick(server);
         
         // Update UI
         // if (videoEditorUI != null) videoEditorUI.tick(); // Temporarily disabled
@@ -255,6 +268,19 @@ public class WayaCreatesEngine implements ModInitializer {
         if (livestreamManager != null) livestreamManager.onWorldUnload(world);
     }
     
+    private void onServerStopping(MinecraftServer server) {
+        LOGGER.info("⏹️ Server stopping - releasing recording and stream sessions");
+        
+        // Video and render sessions first: their recorders close on the recording manager's encoder pool
+        if (videoEngine != null) videoEngine.shutdown();
+        if (renderEngine != null) renderEngine.shutdown();
+        if (recordingManager != null) recordingManager.shutdown();
+        if (livestreamManager != null) livestreamManager.shutdown();
+        
+        // Every session resource should be released by now; anything left is a leak
+        LeakDetector.reportOpen("server stopping");
+    }
+    
     // Static getters for accessing engine components
     public static VideoEngine getVideoEngine() { return videoEngine; }
     public static RenderEngine getRenderEngine() { return renderEngine; }
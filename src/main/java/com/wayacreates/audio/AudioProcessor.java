@@ -3,13 +3,18 @@ package com.wayacreates.audio;
 import com.wayacreates.WayaCreatesEngine;
 
 import javax.sound.sampled.*;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Audio processing class for handling audio operations
@@ -17,8 +22,10 @@ import java.util.concurrent.Executors;
  */
 public class AudioProcessor {
     private static final ExecutorService processingPool = Executors.newFixedThreadPool(2);
-    private boolean isProcessing = false;
-    private ProcessingCallback callback;
+    private static final int BLOCK_FRAMES = 8192;
+    // Jobs share the pool, so each one has its own cancellation flag
+    private final Set<ProcessingJob> activeJobs = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger runningJobs = new AtomicInteger();
     
     public interface ProcessingCallback {
         void onProgress(int percentage);
@@ -26,180 +33,283 @@ public class AudioProcessor {
         void onError(String error);
     }
     
+    // Body of one job, polling its own flag for cancellation
+    private interface JobBody {
+        String run(AtomicBoolean cancelled);
+    }
+    
     /**
-     * Process audio with effects and filters
+     * Process audio with effects and filters. The file is streamed through in fixed-size blocks,
+     * so memory use does not depend on its length.
      */
-    public CompletableFuture<String> processAudio(String inputFile, String outputFile, ProcessingCallback callback) {
-        this.callback = callback;
-        return CompletableFuture.supplyAsync(() -> {
+    public ProcessingJob processAudio(String inputFile, String outputFile, ProcessingCallback callback) {
+        return submit(cancelled -> {
+            File output = new File(outputFile);
             try {
-                isProcessing = true;
                 callback.onProgress(0);
                 
-                // Load audio file
-                AudioInputStream audioStream = AudioSystem.getAudioInputStream(new File(inputFile));
-                AudioFormat format = audioStream.getFormat();
-                
-                // Process audio
-                byte[] audioData = readAudioData(audioStream);
-                callback.onProgress(25);
-                
-                // Apply effects
-                byte[] processedData = applyAudioEffects(audioData, format);
-                callback.onProgress(75);
+                boolean finished;
+                try (AudioInputStream audioStream = openPcm(new File(inputFile))) {
+                    AudioFormat format = audioStream.getFormat();
+                    PcmCodec input = PcmCodec.of(format);
+                    // WAV keeps the source's sample size but is always little-endian, and unsigned at 8 bits
+                    PcmCodec wav = PcmCodec.of(input.getBits(), input.isFloatingPoint(), input.getBits() == 8, false);
+                    try (WavWriter writer = new WavWriter(output, (int) format.getSampleRate(), format.getChannels(),
+                            wav.getBits(), wav.isFloatingPoint())) {
+                        finished = processBlocks(audioStream, input, wav, writer, createEffects(format), callback, cancelled);
+                    }
+                }
                 
-                // Save processed audio
-                saveAudioFile(processedData, format, outputFile);
-                
-                audioStream.close();
-                isProcessing = false;
+                if (!finished) {
+                    output.delete();
+                    callback.onError("Processing cancelled");
+                    return null;
+                }
                 callback.onProgress(100);
                 callback.onComplete(outputFile);
                 
                 return outputFile;
                 
             } catch (Exception e) {
-                isProcessing = false;
+                output.delete();
                 WayaCreatesEngine.LOGGER.error("Audio processing failed: " + e.getMessage(), e);
                 callback.onError("Processing failed: " + e.getMessage());
                 return null;
             }
-        }, processingPool);
+        });
     }
     
     /**
-     * Read audio data from stream
+     * Remove steady background noise with spectral noise reduction. The noise profile comes from
+     * the given noise-only stretch of the file, or is estimated from its quietest moments when the
+     * range is empty.
      */
-    private byte[] readAudioData(AudioInputStream audioStream) throws IOException {
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-        byte[] buffer = new byte[4096];
-        int bytesRead;
-        
-        while ((bytesRead = audioStream.read(buffer)) != -1) {
-            outputStream.write(buffer, 0, bytesRead);
-        }
-        
-        return outputStream.toByteArray();
+    public ProcessingJob reduceNoise(String inputFile, String outputFile, float noiseStartSeconds,
+                                     float noiseEndSeconds, ProcessingCallback callback) {
+        return submit(cancelled -> {
+            File output = new File(outputFile);
+            try {
+                callback.onProgress(0);
+                
+                SpectralNoiseReducer.Settings settings = new SpectralNoiseReducer.Settings();
+                File input = new File(inputFile);
+                SpectralNoiseReducer.NoiseProfile profile = noiseEndSeconds > noiseStartSeconds
+                    ? SpectralNoiseReducer.learnProfile(input, noiseStartSeconds, noiseEndSeconds, settings.fftSize)
+                    : SpectralNoiseReducer.estimateProfile(input, 30f, settings.fftSize);
+                boolean finished = new SpectralNoiseReducer(settings).process(input, output, profile,
+                    callback::onProgress, cancelled::get);
+                
+                if (!finished) {
+                    output.delete();
+                    callback.onError("Processing cancelled");
+                    return null;
+                }
+                callback.onProgress(100);
+                callback.onComplete(outputFile);
+                return outputFile;
+                
+            } catch (Exception e) {
+                output.delete();
+                WayaCreatesEngine.LOGGER.error("Noise reduction failed: " + e.getMessage(), e);
+                callback.onError("Noise reduction failed: " + e.getMessage());
+                return null;
+            }
+        });
     }
     
     /**
-     * Apply audio effects
+     * Run a job on the processing pool, counting it as busy until it ends however it ends
      */
-    private byte[] applyAudioEffects(byte[] audioData, AudioFormat format) {
-        // Convert to samples for processing
-        float[] samples = bytesToSamples(audioData, format);
-        
-        // Apply effects
-        samples = applyVolumeAdjustment(samples, 1.2f); // Boost volume by 20%
-        samples = applyNoiseReduction(samples);
-        samples = applyEqualizer(samples, format);
-        
-        // Convert back to bytes
-        return samplesToBytes(samples, format);
+    private ProcessingJob submit(JobBody body) {
+        ProcessingJob job = new ProcessingJob();
+        activeJobs.add(job);
+        runningJobs.incrementAndGet();
+        try {
+            job.result = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return body.run(job.cancelled);
+                } finally {
+                    finish(job);
+                }
+            }, processingPool);
+        } catch (RejectedExecutionException e) {
+            finish(job);
+            job.result = CompletableFuture.failedFuture(e);
+        }
+        return job;
+    }
+    
+    private void finish(ProcessingJob job) {
+        activeJobs.remove(job);
+        runningJobs.decrementAndGet();
     }
     
     /**
-     * Convert byte array to float samples
+     * Open a file as PCM the codec can read, converting on the fly only when it is stored otherwise
      */
-    private float[] bytesToSamples(byte[] audioData, AudioFormat format) {
-        int sampleSize = format.getSampleSizeInBits() / 8;
-        int numSamples = audioData.length / sampleSize;
-        float[] samples = new float[numSamples];
-        
-        for (int i = 0; i < numSamples; i++) {
-            int sample = 0;
-            for (int j = 0; j < sampleSize; j++) {
-                sample |= (audioData[i * sampleSize + j] & 0xFF) << (j * 8);
-            }
-            
-            // Convert to normalized float (-1.0 to 1.0)
-            samples[i] = sample / (float) (1 << (format.getSampleSizeInBits() - 1));
+    static AudioInputStream openPcm(File inputFile) throws IOException, UnsupportedAudioFileException {
+        AudioInputStream source = AudioSystem.getAudioInputStream(inputFile);
+        AudioFormat format = source.getFormat();
+        if (PcmCodec.isSupported(format)) {
+            return source;
         }
-        
-        return samples;
+        AudioFormat pcm = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, format.getSampleRate(), 16,
+            format.getChannels(), format.getChannels() * 2, format.getSampleRate(), false);
+        return AudioSystem.getAudioInputStream(pcm, source);
     }
     
     /**
-     * Convert float samples to byte array
+     * Read, convert, process and write one block at a time, reusing the same buffers throughout
+     * @return false if processing was cancelled
      */
-    private byte[] samplesToBytes(float[] samples, AudioFormat format) {
-        int sampleSize = format.getSampleSizeInBits() / 8;
-        byte[] audioData = new byte[samples.length * sampleSize];
+    private boolean processBlocks(AudioInputStream audioStream, PcmCodec input, PcmCodec wav, WavWriter writer,
+                                  BlockEffect[] effects, ProcessingCallback callback,
+                                  AtomicBoolean cancelled) throws IOException {
+        AudioFormat format = audioStream.getFormat();
+        int frameSize = format.getFrameSize();
+        int channels = format.getChannels();
+        long totalFrames = audioStream.getFrameLength();
+        byte[] block = new byte[BLOCK_FRAMES * frameSize];
+        float[] samples = new float[BLOCK_FRAMES * channels];
+        
+        // Effects with latency are fed silence at the end and their leading output is dropped,
+        // so the output lines up with the input and has the same length
+        long latency = 0;
+        for (BlockEffect effect : effects) {
+            latency += effect.getLatencyFrames();
+        }
+        long toSkip = latency;
+        long toFlush = latency;
         
-        for (int i = 0; i < samples.length; i++) {
-            int sample = (int) (samples[i] * (1 << (format.getSampleSizeInBits() - 1)));
+        int lastProgress = 0;
+        while (true) {
+            if (cancelled.get()) {
+                return false;
+            }
+            int frames = readBlock(audioStream, block) / frameSize;
+            if (frames > 0) {
+                input.decode(block, 0, samples, 0, frames * channels);
+            } else if (toFlush > 0) {
+                frames = (int) Math.min(BLOCK_FRAMES, toFlush);
+                toFlush -= frames;
+                Arrays.fill(samples, 0, frames * channels, 0f);
+            } else {
+                break;
+            }
+            for (BlockEffect effect : effects) {
+                effect.process(samples, frames, channels);
+            }
+            int skip = (int) Math.min(toSkip, frames);
+            toSkip -= skip;
+            wav.encode(samples, skip * channels, block, 0, (frames - skip) * channels);
+            writer.write(block, 0, (frames - skip) * frameSize);
             
-            for (int j = 0; j < sampleSize; j++) {
-                audioData[i * sampleSize + j] = (byte) ((sample >> (j * 8)) & 0xFF);
+            if (totalFrames > 0) {
+                int progress = (int) Math.min(99, writer.getFramesWritten() * 100 / totalFrames);
+                if (progress > lastProgress) {
+                    lastProgress = progress;
+                    callback.onProgress(progress);
+                }
             }
         }
-        
-        return audioData;
+        return true;
     }
     
     /**
-     * Apply volume adjustment
+     * Fill the block as far as the stream allows; short only at the end of the stream
      */
-    private float[] applyVolumeAdjustment(float[] samples, float multiplier) {
-        for (int i = 0; i < samples.length; i++) {
-            samples[i] = Math.max(-1.0f, Math.min(1.0f, samples[i] * multiplier));
+    private int readBlock(AudioInputStream audioStream, byte[] block) throws IOException {
+        int filled = 0;
+        while (filled < block.length) {
+            int bytesRead = audioStream.read(block, filled, block.length - filled);
+            if (bytesRead == -1) break;
+            filled += bytesRead;
         }
-        return samples;
+        return filled;
     }
     
     /**
-     * Apply basic noise reduction
+     * Default effect chain; each effect keeps its own state from block to block
      */
-    private float[] applyNoiseReduction(float[] samples) {
-        // Simple noise gate
-        float threshold = 0.01f;
-        
-        for (int i = 0; i < samples.length; i++) {
-            if (Math.abs(samples[i]) < threshold) {
-                samples[i] *= 0.1f; // Reduce noise
-            }
-        }
+    private BlockEffect[] createEffects(AudioFormat format) {
+        return new BlockEffect[] {
+            new VolumeAdjustment(1.2f), // Boost volume by 20%
+            new NoiseGate(0.01f, 0.1f, format.getSampleRate(), format.getChannels()),
+            new ParametricEqualizer(List.of(ParametricEqualizer.Band.lowShelf(200.0f, 0.8f)), // Gentle bass boost
+                format.getSampleRate(), format.getChannels())
+        };
+    }
+    
+    /**
+     * Effect applied to interleaved blocks; anything that depends on earlier samples lives in the
+     * effect so block boundaries are inaudible
+     */
+    public interface BlockEffect {
+        void process(float[] samples, int frames, int channels);
         
-        return samples;
+        /**
+         * Frames by which output trails input; file processing trims and flushes this much
+         */
+        default int getLatencyFrames() { return 0; }
     }
     
     /**
-     * Apply basic equalizer
+     * Apply volume adjustment
      */
-    private float[] applyEqualizer(float[] samples, AudioFormat format) {
-        // Simple bass boost
-        float sampleRate = format.getSampleRate();
-        float bassFreq = 200.0f; // Hz
+    public static class VolumeAdjustment implements BlockEffect {
+        private final float multiplier;
         
-        // This is a simplified EQ - in practice you'd use FFT for proper frequency processing
-        for (int i = 0; i < samples.length; i++) {
-            // Apply simple low-frequency boost
-            samples[i] *= 1.1f;
+        public VolumeAdjustment(float multiplier) {
+            this.multiplier = multiplier;
         }
         
-        return samples;
+        @Override
+        public void process(float[] samples, int frames, int channels) {
+            int count = frames * channels;
+            for (int i = 0; i < count; i++) {
+                samples[i] *= multiplier;
+            }
+        }
     }
     
     /**
-     * Save processed audio to file
+     * Noise gate: quiet passages are attenuated. The level follows a smoothed envelope per channel
+     * so the gate opens and closes without clicks, even across block boundaries.
      */
-    private void saveAudioFile(byte[] audioData, AudioFormat format, String outputFile) throws IOException {
-        ByteArrayInputStream inputStream = new ByteArrayInputStream(audioData);
-        AudioInputStream audioStream = new AudioInputStream(inputStream, format, audioData.length / format.getFrameSize());
+    public static class NoiseGate implements BlockEffect {
+        private final float threshold;
+        private final float attenuation;
+        private final float attack;
+        private final float release;
+        private final float[] envelope;
+        private final float[] gain;
         
-        // Convert to desired format if needed
-        AudioFormat outputFormat = new AudioFormat(
-            AudioFormat.Encoding.PCM_SIGNED,
-            format.getSampleRate(),
-            format.getSampleSizeInBits(),
-            format.getChannels(),
-            format.getFrameSize(),
-            format.getFrameRate(),
-            format.isBigEndian()
-        );
+        public NoiseGate(float threshold, float attenuation, float sampleRate, int channels) {
+            this.threshold = threshold;
+            this.attenuation = attenuation;
+            this.attack = (float) (1 - Math.exp(-1 / (0.001 * sampleRate)));  // 1 ms
+            this.release = (float) (1 - Math.exp(-1 / (0.050 * sampleRate))); // 50 ms
+            this.envelope = new float[channels];
+            this.gain = new float[channels];
+            Arrays.fill(gain, 1f);
+        }
         
-        AudioSystem.write(audioStream, AudioFileFormat.Type.WAVE, new File(outputFile));
-        audioStream.close();
+        @Override
+        public void process(float[] samples, int frames, int channels) {
+            for (int c = 0; c < channels; c++) {
+                float env = envelope[c];
+                float g = gain[c];
+                for (int i = c; i < frames * channels; i += channels) {
+                    float level = Math.abs(samples[i]);
+                    env += (level - env) * (level > env ? attack : release);
+                    float target = env < threshold ? attenuation : 1f;
+                    g += (target - g) * (target > g ? attack : release);
+                    samples[i] *= g;
+                }
+                envelope[c] = env;
+                gain[c] = g;
+            }
+        }
     }
     
     /**
@@ -227,17 +337,19 @@ public class AudioProcessor {
     }
     
     /**
-     * Cancel current processing
+     * Cancel every running job; use {@link ProcessingJob#cancel} to cancel just one
      */
     public void cancelProcessing() {
-        isProcessing = false;
+        for (ProcessingJob job : activeJobs) {
+            job.cancel();
+        }
     }
     
     /**
-     * Check if currently processing
+     * Check if any job is queued or running
      */
     public boolean isProcessing() {
-        return isProcessing;
+        return runningJobs.get() > 0;
     }
     
     /**
@@ -266,6 +378,33 @@ public class AudioProcessor {
      */
     public void shutdown() {
         processingPool.shutdown();
+        SpectralNoiseReducer.shutdown();
+    }
+    
+    /**
+     * Handle for one processing job
+     */
+    public static class ProcessingJob {
+        private final AtomicBoolean cancelled = new AtomicBoolean(false);
+        private CompletableFuture<String> result;
+        
+        /**
+         * Stop this job at its next block; other jobs keep running
+         */
+        public void cancel() {
+            cancelled.set(true);
+        }
+        
+        public boolean isCancelled() {
+            return cancelled.get();
+        }
+        
+        /**
+         * Completes with the output path, or null if the job failed or was cancelled
+         */
+        public CompletableFuture<String> getResult() {
+            return result;
+        }
     }
     
     /**
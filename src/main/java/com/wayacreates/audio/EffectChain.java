@@ -0,0 +1,724 @@
+package com.wayacreates.audio;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Effect Chain
+ * A track's effects compiled into typed DSP nodes and run as one pass per block.
+ *
+ * Effect descriptors (a type name and a parameter map) are parsed once, on the control side,
+ * into nodes whose parameters are primitive fields. A node's targets are volatile and read once
+ * per block; the values actually used ramp from the last block's towards them, so changes never
+ * click. The chain walks the block in small sub-blocks and runs every node over each one in
+ * place, so audio stays in cache across the whole chain and no intermediate buffers exist.
+ * Processing allocates nothing. A chain is run by one thread at a time.
+ */
+public final class EffectChain implements AudioProcessor.BlockEffect {
+    // Each node runs this many frames before the next takes over
+    private static final int SUB_BLOCK_FRAMES = 64;
+
+    // Keeps decaying feedback paths out of the denormal range, where floats get very slow
+    private static final float ANTI_DENORMAL = 1e-18f;
+
+    public enum EffectType {
+        REVERB,
+        DELAY,
+        COMPRESSOR,
+        EQ,
+        LIMITER;
+
+        /**
+         * @return null for names that aren't an effect
+         */
+        public static EffectType parse(String name) {
+            switch (name.toLowerCase(Locale.ROOT)) {
+                case "reverb": return REVERB;
+                case "delay": case "echo": return DELAY;
+                case "compressor": case "compression": return COMPRESSOR;
+                case "eq": case "equalizer": return EQ;
+                case "limiter": return LIMITER;
+                default: return null;
+            }
+        }
+    }
+
+    private final Node[] nodes;
+    private final float sampleRate;
+    private final int channels;
+
+    public EffectChain(List<Node> nodes, float sampleRate, int channels) {
+        for (Node node : nodes) {
+            if (node.sampleRate != sampleRate || node.channels != channels) {
+                throw new IllegalArgumentException(node.getType() + " was compiled for " + node.sampleRate + " Hz, "
+                    + node.channels + " channels, not " + sampleRate + " Hz, " + channels + " channels");
+            }
+        }
+        this.nodes = nodes.toArray(new Node[0]);
+        this.sampleRate = sampleRate;
+        this.channels = channels;
+    }
+
+    /**
+     * Compile one effect descriptor. Missing parameters take their defaults.
+     * @throws IllegalArgumentException if the type isn't an effect or its parameters are invalid
+     */
+    public static Node compile(String type, Map<String, Object> parameters, float sampleRate, int channels) {
+        EffectType effectType = EffectType.parse(type);
+        if (effectType == null) {
+            throw new IllegalArgumentException("Unknown effect type: " + type);
+        }
+        Node node;
+        switch (effectType) {
+            case REVERB -> node = new Reverb(sampleRate, channels);
+            case DELAY -> node = new Delay(sampleRate, channels);
+            case COMPRESSOR -> node = new Compressor(sampleRate, channels);
+            case EQ -> node = new Equalizer(sampleRate, channels, parseBands(parameters).size());
+            default -> node = new Limiter(sampleRate, channels);
+        }
+        node.configure(parameters);
+        return node;
+    }
+
+    @Override
+    public void process(float[] samples, int frames, int channels) {
+        if (channels != this.channels) {
+            throw new IllegalArgumentException("Chain is compiled for " + this.channels + " channels, got " + channels);
+        }
+        for (Node node : nodes) {
+            node.begin(frames);
+        }
+        for (int offset = 0; offset < frames; offset += SUB_BLOCK_FRAMES) {
+            int count = Math.min(SUB_BLOCK_FRAMES, frames - offset);
+            for (Node node : nodes) {
+                node.run(samples, offset, count);
+            }
+        }
+    }
+
+    // Getters
+    public float getSampleRate() { return sampleRate; }
+    public int getChannels() { return channels; }
+    public int getNodeCount() { return nodes.length; }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        for (Node node : nodes) {
+            text.append(text.length() == 0 ? "" : " > ").append(node.getType());
+        }
+        return text.length() == 0 ? "empty" : text.toString();
+    }
+
+    // Parameter parsing: numbers may arrive as any Number or as text
+
+    static float number(Map<String, Object> parameters, String key, float fallback) {
+        Object value = parameters.get(key);
+        if (value instanceof Number number) {
+            return number.floatValue();
+        }
+        if (value instanceof String text) {
+            try {
+                return Float.parseFloat(text.trim());
+            } catch (NumberFormatException e) {
+                return fallback;
+            }
+        }
+        return fallback;
+    }
+
+    private static float dbToGain(float db) {
+        return (float) Math.exp(db * (Math.log(10) / 20));
+    }
+
+    /**
+     * EQ bands from either a "bands" list (Band objects, or maps of type, frequency, gain and q)
+     * or the three-band shorthand: low/mid/high gains in dB plus optional highPass/lowPass in Hz
+     * @throws IllegalArgumentException if a band has an unknown type
+     */
+    static List<ParametricEqualizer.Band> parseBands(Map<String, Object> parameters) {
+        List<ParametricEqualizer.Band> bands = new ArrayList<>();
+        if (parameters.get("bands") instanceof List<?> list) {
+            for (Object entry : list) {
+                if (entry instanceof ParametricEqualizer.Band band) {
+                    bands.add(band);
+                } else if (entry instanceof Map<?, ?> map) {
+                    @SuppressWarnings("unchecked")
+                    Map<String, Object> band = (Map<String, Object>) map;
+                    Object type = band.getOrDefault("type", "peak");
+                    ParametricEqualizer.BandType bandType;
+                    try {
+                        bandType = ParametricEqualizer.BandType.valueOf(String.valueOf(type).toUpperCase(Locale.ROOT)
+                            .replace("SHELF", "_SHELF").replace("PASS", "_PASS").replace("__", "_"));
+                    } catch (IllegalArgumentException e) {
+                        throw new IllegalArgumentException("Unknown EQ band type: " + type);
+                    }
+                    bands.add(new ParametricEqualizer.Band(bandType,
+                        number(band, "frequency", 1000f), number(band, "gain", 0f), number(band, "q", 0.707f)));
+                }
+            }
+            return bands;
+        }
+        if (parameters.containsKey("highPass")) {
+            bands.add(ParametricEqualizer.Band.highPass(number(parameters, "highPass", 20f)));
+        }
+        bands.add(ParametricEqualizer.Band.lowShelf(number(parameters, "lowFrequency", 100f), number(parameters, "low", 0f)));
+        bands.add(ParametricEqualizer.Band.peak(number(parameters, "midFrequency", 1000f), number(parameters, "mid", 0f),
+            number(parameters, "midQ", 0.707f)));
+        bands.add(ParametricEqualizer.Band.highShelf(number(parameters, "highFrequency", 8000f), number(parameters, "high", 0f)));
+        if (parameters.containsKey("lowPass")) {
+            bands.add(ParametricEqualizer.Band.lowPass(number(parameters, "lowPass", 20000f)));
+        }
+        return bands;
+    }
+
+    /**
+     * Time a chain of every effect type, block by block, to see how much of a block period it takes
+     */
+    public static BenchmarkResult benchmark(int sampleRate, int blockFrames, int blocks) {
+        List<Node> nodes = new ArrayList<>();
+        for (EffectType type : new EffectType[] {EffectType.EQ, EffectType.COMPRESSOR, EffectType.DELAY,
+                EffectType.REVERB, EffectType.LIMITER}) {
+            nodes.add(compile(type.name(), Map.of("low", 3f, "high", -2f), sampleRate, 2));
+        }
+        EffectChain chain = new EffectChain(nodes, sampleRate, 2);
+        Node compressor = nodes.get(1);
+        float[] block = new float[blockFrames * 2];
+        long total = 0;
+        long max = 0;
+        float peak = 0f;
+        boolean finite = true;
+        long frame = 0;
+        for (int b = 0; b < blocks; b++) {
+            // A different tone per channel: an exact L/-R pair would cancel in the reverb's mono input
+            for (int i = 0; i < blockFrames; i++, frame++) {
+                block[i * 2] = (float) Math.sin(frame * 2 * Math.PI * 220 / sampleRate) * 0.8f;
+                block[i * 2 + 1] = (float) Math.sin(frame * 2 * Math.PI * 330 / sampleRate) * 0.6f;
+            }
+            // Keep a parameter moving so the ramps are part of the measurement
+            if (b % 10 == 0) {
+                compressor.configure(Map.of("threshold", -12f - (b / 10 % 12)));
+            }
+            long start = System.nanoTime();
+            chain.process(block, blockFrames, 2);
+            long elapsed = System.nanoTime() - start;
+            total += elapsed;
+            max = Math.max(max, elapsed);
+            for (float sample : block) {
+                finite &= Float.isFinite(sample);
+                peak = Math.max(peak, Math.abs(sample));
+            }
+        }
+        return new BenchmarkResult(chain.toString(), blocks, total / 1000.0 / blocks, max / 1000.0,
+            blockFrames * 1_000_000.0 / sampleRate, peak, finite);
+    }
+
+    // DSP Node Class
+    public abstract static class Node {
+        final float sampleRate;
+        final int channels;
+
+        Node(float sampleRate, int channels) {
+            this.sampleRate = sampleRate;
+            this.channels = channels;
+        }
+
+        /**
+         * Take new parameters; the audio glides to them over the next block. Safe to call from
+         * any thread while the chain runs.
+         * @return false if the change needs a freshly compiled node (e.g. the EQ's band count changed)
+         * @throws IllegalArgumentException if the parameters are invalid; the node keeps its settings
+         */
+        public abstract boolean configure(Map<String, Object> parameters);
+
+        public abstract EffectType getType();
+
+        // Start of a block: read the targets, work out this block's per-frame ramps
+        abstract void begin(int frames);
+
+        // Process frames [from, from + frames) of the interleaved block in place
+        abstract void run(float[] samples, int from, int frames);
+    }
+
+    // Reverb Class - Schroeder/Moorer reverb in the Freeverb layout: eight damped combs into
+    // four allpasses per channel, the right channel's delays a little longer
+    public static final class Reverb extends Node {
+        private static final int[] COMB_TUNING = {1116, 1188, 1277, 1356, 1422, 1491, 1557, 1617};
+        private static final int[] ALLPASS_TUNING = {556, 441, 341, 225};
+        private static final int STEREO_SPREAD = 23;
+        private static final float INPUT_GAIN = 0.015f;
+        private static final float WET_SCALE = 3f;
+
+        private volatile float targetFeedback;
+        private volatile float targetDamp;
+        private volatile float targetWet1;
+        private volatile float targetWet2;
+        private volatile float targetDry;
+
+        private float feedback, damp, wet1, wet2, dry;
+        private float feedbackStep, dampStep, wet1Step, wet2Step, dryStep;
+        private boolean started = false;
+
+        private final float[][] combs;
+        private final int[] combIndex;
+        private final float[] combStore;
+        private final float[][] allpasses;
+        private final int[] allpassIndex;
+        private final float[] wetOut;
+
+        Reverb(float sampleRate, int channels) {
+            super(sampleRate, channels);
+            float scale = sampleRate / 44100f;
+            combs = new float[channels * COMB_TUNING.length][];
+            combIndex = new int[combs.length];
+            combStore = new float[combs.length];
+            allpasses = new float[channels * ALLPASS_TUNING.length][];
+            allpassIndex = new int[allpasses.length];
+            for (int channel = 0; channel < channels; channel++) {
+                for (int i = 0; i < COMB_TUNING.length; i++) {
+                    combs[channel * COMB_TUNING.length + i] = new float[(int) ((COMB_TUNING[i] + STEREO_SPREAD * channel) * scale)];
+                }
+                for (int i = 0; i < ALLPASS_TUNING.length; i++) {
+                    allpasses[channel * ALLPASS_TUNING.length + i] = new float[(int) ((ALLPASS_TUNING[i] + STEREO_SPREAD * channel) * scale)];
+                }
+            }
+            wetOut = new float[channels];
+        }
+
+        @Override
+        public boolean configure(Map<String, Object> parameters) {
+            float roomSize = Math.max(0f, Math.min(1f, number(parameters, "roomSize", 0.5f)));
+            float damping = Math.max(0f, Math.min(1f, number(parameters, "damping", 0.5f)));
+            float wet = Math.max(0f, number(parameters, "wet", 0.3f)) * WET_SCALE;
+            float width = Math.max(0f, Math.min(1f, number(parameters, "width", 1f)));
+            targetFeedback = roomSize * 0.28f + 0.7f;
+            targetDamp = damping * 0.4f;
+            targetWet1 = wet * (width / 2 + 0.5f);
+            targetWet2 = wet * ((1 - width) / 2);
+            targetDry = Math.max(0f, number(parameters, "dry", 1f));
+            return true;
+        }
+
+        @Override
+        public EffectType getType() {
+            return EffectType.REVERB;
+        }
+
+        @Override
+        void begin(int frames) {
+            if (!started) {
+                feedback = targetFeedback;
+                damp = targetDamp;
+                wet1 = targetWet1;
+                wet2 = targetWet2;
+                dry = targetDry;
+                started = true;
+            }
+            feedbackStep = (targetFeedback - feedback) / frames;
+            dampStep = (targetDamp - damp) / frames;
+            wet1Step = (targetWet1 - wet1) / frames;
+            wet2Step = (targetWet2 - wet2) / frames;
+            dryStep = (targetDry - dry) / frames;
+        }
+
+        @Override
+        void run(float[] samples, int from, int frames) {
+            int combCount = COMB_TUNING.length;
+            int allpassCount = ALLPASS_TUNING.length;
+            for (int frame = from, end = from + frames; frame < end; frame++) {
+                feedback += feedbackStep;
+                damp += dampStep;
+                wet1 += wet1Step;
+                wet2 += wet2Step;
+                dry += dryStep;
+                int base = frame * channels;
+                float input = 0f;
+                for (int channel = 0; channel < channels; channel++) {
+                    input += samples[base + channel];
+                }
+                // After the sum: out-of-phase channels cancel to exactly zero
+                input = input * INPUT_GAIN + ANTI_DENORMAL;
+                float damp2 = 1 - damp;
+
+                for (int channel = 0; channel < channels; channel++) {
+                    float out = 0f;
+                    for (int c = channel * combCount, last = c + combCount; c < last; c++) {
+                        float[] buffer = combs[c];
+                        int index = combIndex[c];
+                        float delayed = buffer[index];
+                        float store = delayed * damp2 + combStore[c] * damp;
+                        combStore[c] = store;
+                        buffer[index] = input + store * feedback;
+                        combIndex[c] = ++index == buffer.length ? 0 : index;
+                        out += delayed;
+                    }
+                    for (int a = channel * allpassCount, last = a + allpassCount; a < last; a++) {
+                        float[] buffer = allpasses[a];
+                        int index = allpassIndex[a];
+                        float delayed = buffer[index];
+                        buffer[index] = out + delayed * 0.5f;
+                        out = delayed - out;
+                        allpassIndex[a] = ++index == buffer.length ? 0 : index;
+                    }
+                    wetOut[channel] = out;
+                }
+
+                if (channels == 2) {
+                    samples[base] = samples[base] * dry + wetOut[0] * wet1 + wetOut[1] * wet2;
+                    samples[base + 1] = samples[base + 1] * dry + wetOut[1] * wet1 + wetOut[0] * wet2;
+                } else {
+                    for (int channel = 0; channel < channels; channel++) {
+                        samples[base + channel] = samples[base + channel] * dry + wetOut[channel] * (wet1 + wet2);
+                    }
+                }
+            }
+        }
+    }
+
+    // Delay Class - feedback delay line per channel; the delay time glides with a fractional read
+    public static final class Delay extends Node {
+        private static final float MAX_SECONDS = 2f;
+
+        private volatile float targetDelay;
+        private volatile float targetFeedback;
+        private volatile float targetMix;
+
+        private float delay, feedback, mix;
+        private float delayStep, feedbackStep, mixStep;
+        private boolean started = false;
+
+        private final float[][] lines;
+        private final int size;
+        private final int maxDelay;
+        private int write;
+
+        Delay(float sampleRate, int channels) {
+            super(sampleRate, channels);
+            maxDelay = (int) (sampleRate * MAX_SECONDS);
+            size = Integer.highestOneBit(maxDelay + 2) << 1;
+            lines = new float[channels][size];
+            // Kept in [size, 2 * size) so the read position is never negative
+            write = size;
+        }
+
+        @Override
+        public boolean configure(Map<String, Object> parameters) {
+            float millis = number(parameters, "time", 250f);
+            targetDelay = Math.max(1f, Math.min(maxDelay, millis * sampleRate / 1000f));
+            targetFeedback = Math.max(0f, Math.min(0.95f, number(parameters, "feedback", 0.35f)));
+            targetMix = Math.max(0f, Math.min(1f, number(parameters, "mix", 0.3f)));
+            return true;
+        }
+
+        @Override
+        public EffectType getType() {
+            return EffectType.DELAY;
+        }
+
+        @Override
+        void begin(int frames) {
+            if (!started) {
+                delay = targetDelay;
+                feedback = targetFeedback;
+                mix = targetMix;
+                started = true;
+            }
+            delayStep = (targetDelay - delay) / frames;
+            feedbackStep = (targetFeedback - feedback) / frames;
+            mixStep = (targetMix - mix) / frames;
+        }
+
+        @Override
+        void run(float[] samples, int from, int frames) {
+            int mask = size - 1;
+            for (int frame = from, end = from + frames; frame < end; frame++) {
+                delay += delayStep;
+                feedback += feedbackStep;
+                mix += mixStep;
+                float position = write - delay;
+                int index = (int) position;
+                float fraction = position - index;
+                int base = frame * channels;
+                for (int channel = 0; channel < channels; channel++) {
+                    float[] line = lines[channel];
+                    float a = line[index & mask];
+                    float delayed = a + (line[(index + 1) & mask] - a) * fraction;
+                    float input = samples[base + channel];
+                    line[write & mask] = input + delayed * feedback + ANTI_DENORMAL;
+                    samples[base + channel] = input + (delayed - input) * mix;
+                }
+                if (++write == size * 2) {
+                    write = size;
+                }
+            }
+        }
+    }
+
+    // Compressor Class - feed-forward, stereo-linked peak detector; the gain computer runs every
+    // few frames and the gain ramps in between
+    public static final class Compressor extends Node {
+        private static final int CONTROL_FRAMES = 16;
+
+        private volatile float targetThreshold;
+        private volatile float targetSlope;
+        private volatile float targetMakeup;
+        private volatile float attack;
+        private volatile float release;
+        private volatile float gainReductionDb = 0f;
+
+        private float threshold, slope, makeup;
+        private float thresholdStep, slopeStep, makeupStep;
+        private float envelope = 0f;
+        private float gain = 1f;
+        private float gainStep = 0f;
+        private int untilControl = 0;
+        private boolean started = false;
+
+        Compressor(float sampleRate, int channels) {
+            super(sampleRate, channels);
+        }
+
+        @Override
+        public boolean configure(Map<String, Object> parameters) {
+            targetThreshold = number(parameters, "threshold", -18f);
+            targetSlope = 1 - 1 / Math.max(1f, number(parameters, "ratio", 4f));
+            targetMakeup = number(parameters, "makeup", 0f);
+            attack = timeConstant(number(parameters, "attack", 10f));
+            release = timeConstant(number(parameters, "release", 100f));
+            return true;
+        }
+
+        private float timeConstant(float millis) {
+            return (float) Math.exp(-1000.0 / (Math.max(0.01f, millis) * sampleRate));
+        }
+
+        @Override
+        public EffectType getType() {
+            return EffectType.COMPRESSOR;
+        }
+
+        @Override
+        void begin(int frames) {
+            if (!started) {
+                threshold = targetThreshold;
+                slope = targetSlope;
+                makeup = targetMakeup;
+                gain = dbToGain(makeup);
+                started = true;
+            }
+            thresholdStep = (targetThreshold - threshold) / frames;
+            slopeStep = (targetSlope - slope) / frames;
+            makeupStep = (targetMakeup - makeup) / frames;
+        }
+
+        @Override
+        void run(float[] samples, int from, int frames) {
+            float attack = this.attack;
+            float release = this.release;
+            float reduction = gainReductionDb;
+            for (int frame = from, end = from + frames; frame < end; frame++) {
+                threshold += thresholdStep;
+                slope += slopeStep;
+                makeup += makeupStep;
+                int base = frame * channels;
+                float peak = 0f;
+                for (int channel = 0; channel < channels; channel++) {
+                    peak = Math.max(peak, Math.abs(samples[base + channel]));
+                }
+                envelope = peak + (envelope - peak) * (peak > envelope ? attack : release);
+
+                if (untilControl == 0) {
+                    float over = (float) (20 * Math.log10(envelope + 1e-9)) - threshold;
+                    reduction = over > 0 ? over * slope : 0f;
+                    gainStep = (dbToGain(makeup - reduction) - gain) / CONTROL_FRAMES;
+                    untilControl = CONTROL_FRAMES;
+                }
+                untilControl--;
+                gain += gainStep;
+                for (int channel = 0; channel < channels; channel++) {
+                    samples[base + channel] *= gain;
+                }
+            }
+            gainReductionDb = reduction;
+        }
+
+        /**
+         * Current gain reduction, for meters
+         */
+        public float getGainReductionDb() {
+            return gainReductionDb;
+        }
+    }
+
+    // Equalizer Class - the parametric EQ's bands as a biquad cascade whose coefficients glide
+    // to new settings instead of jumping
+    public static final class Equalizer extends Node {
+        private final int bandCount;
+        private volatile float[] target;      // b0, b1, b2, a1, a2 per band
+        private final float[] current;
+        private final float[] step;
+        private final float[] state;          // z1, z2 per band and channel
+        private boolean started = false;
+
+        Equalizer(float sampleRate, int channels, int bandCount) {
+            super(sampleRate, channels);
+            this.bandCount = bandCount;
+            this.target = new float[bandCount * 5];
+            this.current = new float[bandCount * 5];
+            this.step = new float[bandCount * 5];
+            this.state = new float[bandCount * channels * 2];
+        }
+
+        @Override
+        public boolean configure(Map<String, Object> parameters) {
+            List<ParametricEqualizer.Band> bands = parseBands(parameters);
+            if (bands.size() != bandCount) {
+                return false;
+            }
+            float[] coefficients = new float[bandCount * 5];
+            for (int band = 0; band < bandCount; band++) {
+                double[] c = bands.get(band).coefficients(sampleRate);
+                for (int i = 0; i < 5; i++) {
+                    coefficients[band * 5 + i] = (float) c[i];
+                }
+            }
+            target = coefficients;
+            return true;
+        }
+
+        @Override
+        public EffectType getType() {
+            return EffectType.EQ;
+        }
+
+        @Override
+        void begin(int frames) {
+            float[] target = this.target;
+            if (!started) {
+                System.arraycopy(target, 0, current, 0, current.length);
+                started = true;
+            }
+            for (int i = 0; i < current.length; i++) {
+                step[i] = (target[i] - current[i]) / frames;
+            }
+        }
+
+        @Override
+        void run(float[] samples, int from, int frames) {
+            for (int band = 0; band < bandCount; band++) {
+                int k = band * 5;
+                for (int channel = 0; channel < channels; channel++) {
+                    float b0 = current[k], b1 = current[k + 1], b2 = current[k + 2], a1 = current[k + 3], a2 = current[k + 4];
+                    float s0 = step[k], s1 = step[k + 1], s2 = step[k + 2], s3 = step[k + 3], s4 = step[k + 4];
+                    int s = (band * channels + channel) * 2;
+                    float z1 = state[s];
+                    float z2 = state[s + 1];
+                    for (int i = from * channels + channel, end = (from + frames) * channels; i < end; i += channels) {
+                        b0 += s0; b1 += s1; b2 += s2; a1 += s3; a2 += s4;
+                        float x = samples[i] + ANTI_DENORMAL;
+                        float y = b0 * x + z1;
+                        z1 = b1 * x - a1 * y + z2;
+                        z2 = b2 * x - a2 * y;
+                        samples[i] = y;
+                    }
+                    state[s] = z1;
+                    state[s + 1] = z2;
+                }
+                for (int i = k; i < k + 5; i++) {
+                    current[i] += step[i] * frames;
+                }
+            }
+        }
+    }
+
+    // Limiter Class - instant attack, smooth release; output never exceeds the ceiling
+    public static final class Limiter extends Node {
+        private volatile float targetCeiling;
+        private volatile float release;
+
+        private float ceiling;
+        private float ceilingStep;
+        private float gain = 1f;
+        private boolean started = false;
+
+        Limiter(float sampleRate, int channels) {
+            super(sampleRate, channels);
+        }
+
+        @Override
+        public boolean configure(Map<String, Object> parameters) {
+            targetCeiling = dbToGain(Math.min(0f, number(parameters, "ceiling", -1f)));
+            release = (float) Math.exp(-1000.0 / (Math.max(1f, number(parameters, "release", 50f)) * sampleRate));
+            return true;
+        }
+
+        @Override
+        public EffectType getType() {
+            return EffectType.LIMITER;
+        }
+
+        @Override
+        void begin(int frames) {
+            if (!started) {
+                ceiling = targetCeiling;
+                started = true;
+            }
+            ceilingStep = (targetCeiling - ceiling) / frames;
+        }
+
+        @Override
+        void run(float[] samples, int from, int frames) {
+            float release = this.release;
+            for (int frame = from, end = from + frames; frame < end; frame++) {
+                ceiling += ceilingStep;
+                int base = frame * channels;
+                float peak = 0f;
+                for (int channel = 0; channel < channels; channel++) {
+                    peak = Math.max(peak, Math.abs(samples[base + channel]));
+                }
+                float required = peak > ceiling ? ceiling / peak : 1f;
+                gain = required < gain ? required : required + (gain - required) * release;
+                for (int channel = 0; channel < channels; channel++) {
+                    samples[base + channel] *= gain;
+                }
+            }
+        }
+    }
+
+    // Benchmark Result Class
+    public static class BenchmarkResult {
+        public final String chain;
+        public final int blocks;
+        public final double averageMicros;
+        public final double maxMicros;
+        public final double blockMicros;
+        public final float peak;
+        public final boolean finite;
+
+        public BenchmarkResult(String chain, int blocks, double averageMicros, double maxMicros, double blockMicros,
+                               float peak, boolean finite) {
+            this.chain = chain;
+            this.blocks = blocks;
+            this.averageMicros = averageMicros;
+            this.maxMicros = maxMicros;
+            this.blockMicros = blockMicros;
+            this.peak = peak;
+            this.finite = finite;
+        }
+
+        /**
+         * Output stayed finite and under the limiter's ceiling
+         */
+        public boolean isStable() {
+            return finite && peak <= 1f;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%s: avg %.1f us / max %.1f us of %.0f us per block, peak %.2f%s",
+                chain, averageMicros, maxMicros, blockMicros, peak, finite ? "" : " (NaN/Inf)");
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.wayacreates.audio;
+
+/**
+ * Fast Fourier Transform
+ * In-place radix-2 complex FFT on split real/imaginary arrays. Twiddles and the bit-reversal
+ * permutation are computed once per size, so a transform allocates nothing. Instances are
+ * immutable and can be shared between threads.
+ */
+public final class Fft {
+    private final int size;
+    private final int[] reversed;
+    private final float[] cos;
+    private final float[] sin;
+
+    public Fft(int size) {
+        if (size < 2 || Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("FFT size must be a power of two: " + size);
+        }
+        this.size = size;
+        this.reversed = new int[size];
+        int bits = Integer.numberOfTrailingZeros(size);
+        for (int i = 0; i < size; i++) {
+            reversed[i] = Integer.reverse(i) >>> (32 - bits);
+        }
+        this.cos = new float[size / 2];
+        this.sin = new float[size / 2];
+        for (int i = 0; i < size / 2; i++) {
+            double angle = -2 * Math.PI * i / size;
+            cos[i] = (float) Math.cos(angle);
+            sin[i] = (float) Math.sin(angle);
+        }
+    }
+
+    /**
+     * Forward transform, unscaled
+     */
+    public void forward(float[] re, float[] im) {
+        transform(re, im, false);
+    }
+
+    /**
+     * Inverse transform, scaled by 1/size so that inverse(forward(x)) == x
+     */
+    public void inverse(float[] re, float[] im) {
+        transform(re, im, true);
+        float scale = 1f / size;
+        for (int i = 0; i < size; i++) {
+            re[i] *= scale;
+            im[i] *= scale;
+        }
+    }
+
+    private void transform(float[] re, float[] im, boolean inverse) {
+        for (int i = 0; i < size; i++) {
+            int j = reversed[i];
+            if (j > i) {
+                float t = re[i]; re[i] = re[j]; re[j] = t;
+                t = im[i]; im[i] = im[j]; im[j] = t;
+            }
+        }
+        float direction = inverse ? -1f : 1f;
+        for (int half = 1; half < size; half <<= 1) {
+            int step = size / (half * 2);
+            for (int start = 0; start < size; start += half * 2) {
+                for (int k = 0; k < half; k++) {
+                    float wr = cos[k * step];
+                    float wi = sin[k * step] * direction;
+                    int a = start + k;
+                    int b = a + half;
+                    float tr = re[b] * wr - im[b] * wi;
+                    float ti = re[b] * wi + im[b] * wr;
+                    re[b] = re[a] - tr;
+                    im[b] = im[a] - ti;
+                    re[a] += tr;
+                    im[a] += ti;
+                }
+            }
+        }
+    }
+
+    public int getSize() {
+        return size;
+    }
+}
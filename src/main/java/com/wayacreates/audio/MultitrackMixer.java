@@ -0,0 +1,675 @@
+package com.wayacreates.audio;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Multitrack Mixer
+ * Mixes up to a fixed number of stereo tracks through a few group buses into a master bus on a
+ * dedicated render thread, one fixed-size block per period.
+ *
+ * Tracks live in numbered slots. A slot's parameters (volume, pan gains, mute, solo, bus) are
+ * primitive values in an atomic array, written by any thread and read by the render thread once
+ * per block. Gains ramp across the block, so changes never click. Audio reaches a slot through its
+ * own single-producer ring: a feeder thread streams file tracks into it, or a caller writes live
+ * input. Buses and rings are allocated before a slot goes live, so the render loop never hashes,
+ * boxes, locks or allocates. A slot may carry a compiled EffectChain, run on the track before its
+ * gains.
+ */
+public class MultitrackMixer implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger("WayaCreates/MultitrackMixer");
+
+    private static final int RING_BLOCKS = 32;
+
+    // Per-slot parameters, floats stored as raw int bits
+    private static final int ACTIVE = 0;
+    private static final int GAIN_LEFT = 1;
+    private static final int GAIN_RIGHT = 2;
+    private static final int MUTE = 3;
+    private static final int SOLO = 4;
+    private static final int BUS = 5;
+    private static final int ENDED = 6;
+    private static final int PARAMS = 7;
+
+    /**
+     * Receives every mixed block on the render thread. The buffer is reused for the next block.
+     */
+    public interface BlockSink {
+        BlockSink NONE = (interleaved, frames, frameIndex) -> {};
+
+        void onBlock(float[] interleaved, int frames, long frameIndex);
+    }
+
+    private final String name;
+    private final int sampleRate;
+    private final int blockFrames;
+    private final long blockNanos;
+    private final int maxTracks;
+    private final int busCount;
+    private volatile BlockSink sink = BlockSink.NONE;
+
+    // Slot state shared with the render thread
+    private final AtomicIntegerArray params;
+    private final AtomicIntegerArray busGains;
+    private final AtomicIntegerArray meters;
+    private final float[][] rings;
+    private final int ringSize;
+    private final AtomicLongArray ringWrite;
+    private final AtomicLongArray ringRead;
+    private final AtomicReferenceArray<EffectChain> chains;
+    private volatile int slotLimit = 0; // One past the highest slot ever used
+    private volatile float masterTarget = 1f;
+
+    // Control side
+    private final Map<String, Integer> slots = new ConcurrentHashMap<>();
+    private final ArrayDeque<long[]> retired = new ArrayDeque<>(); // {slot, block it was retired at}
+    private final float[] volumes;
+    private final float[] pans;
+    private final CopyOnWriteArrayList<FileFeed> feeds = new CopyOnWriteArrayList<>();
+
+    // Render thread state
+    private final float[] currentLeft;
+    private final float[] currentRight;
+    private final float[] currentBus;
+    private final float[][] buses;
+    private final float[] trackBuffer;
+    private final float[] out;
+    private float master = 1f;
+
+    private final AtomicLong blocks = new AtomicLong();
+    private final AtomicLong lateBlocks = new AtomicLong();
+    private final AtomicLong underruns = new AtomicLong();
+    private final AtomicLong renderNanos = new AtomicLong();
+    private final AtomicLong maxRenderNanos = new AtomicLong();
+    private volatile int activeTracks = 0;
+    private volatile float peak = 0;
+
+    private Thread renderThread;
+    private Thread feederThread;
+    private volatile boolean running = false;
+
+    public MultitrackMixer(String name, int sampleRate, int blockFrames, int maxTracks, int busCount) {
+        this.name = name;
+        this.sampleRate = sampleRate;
+        this.blockFrames = blockFrames;
+        this.blockNanos = blockFrames * 1_000_000_000L / sampleRate;
+        this.maxTracks = maxTracks;
+        this.busCount = Math.max(1, busCount);
+        this.params = new AtomicIntegerArray(maxTracks * PARAMS);
+        this.busGains = new AtomicIntegerArray(this.busCount);
+        this.meters = new AtomicIntegerArray(maxTracks);
+        this.rings = new float[maxTracks][];
+        this.ringSize = Integer.highestOneBit(blockFrames * 2 * RING_BLOCKS - 1) << 1;
+        this.ringWrite = new AtomicLongArray(maxTracks);
+        this.ringRead = new AtomicLongArray(maxTracks);
+        this.chains = new AtomicReferenceArray<>(maxTracks);
+        this.volumes = new float[maxTracks];
+        this.pans = new float[maxTracks];
+        this.currentLeft = new float[maxTracks];
+        this.currentRight = new float[maxTracks];
+        this.currentBus = new float[this.busCount];
+        this.buses = new float[this.busCount][blockFrames * 2];
+        this.trackBuffer = new float[blockFrames * 2];
+        this.out = new float[blockFrames * 2];
+        for (int bus = 0; bus < this.busCount; bus++) {
+            busGains.set(bus, Float.floatToRawIntBits(1f));
+            currentBus[bus] = 1f;
+        }
+    }
+
+    public void start() {
+        running = true;
+        renderThread = new Thread(this::renderLoop, "WayaCreates-Mixer-" + name);
+        renderThread.setDaemon(true);
+        renderThread.setPriority(Thread.MAX_PRIORITY);
+        renderThread.start();
+        feederThread = new Thread(this::feedLoop, "WayaCreates-MixerFeed-" + name);
+        feederThread.setDaemon(true);
+        feederThread.start();
+        LOGGER.info("🎚️ Mixer {} running ({} Hz, {} frame blocks, {} tracks, {} buses)", name, sampleRate, blockFrames,
+            maxTracks, busCount);
+    }
+
+    public void setSink(BlockSink sink) {
+        this.sink = sink != null ? sink : BlockSink.NONE;
+    }
+
+    // Control side: any thread, never waits on the render thread
+
+    /**
+     * Add a track fed by writeTrack
+     * @return false if the name is taken or every slot is in use
+     */
+    public synchronized boolean addTrack(String trackName) {
+        if (slots.containsKey(trackName)) return false;
+        int slot = allocateSlot();
+        if (slot < 0) {
+            LOGGER.warn("⚠️ Mixer {} is full ({} tracks), can't add {}", name, maxTracks, trackName);
+            return false;
+        }
+        if (rings[slot] == null) {
+            rings[slot] = new float[ringSize];
+        }
+        ringRead.set(slot, 0);
+        ringWrite.set(slot, 0);
+        volumes[slot] = 1f;
+        pans[slot] = 0f;
+        int base = slot * PARAMS;
+        params.set(base + MUTE, 0);
+        params.set(base + SOLO, 0);
+        params.set(base + BUS, 0);
+        params.set(base + ENDED, 0);
+        chains.set(slot, null);
+        publishGains(slot);
+        meters.set(slot, 0);
+        // Everything above happens-before the render thread sees the slot active
+        params.set(base + ACTIVE, 1);
+        if (slot >= slotLimit) {
+            slotLimit = slot + 1;
+        }
+        slots.put(trackName, slot);
+        return true;
+    }
+
+    /**
+     * Add a track streamed from an audio file, converted to the mixer's rate and stereo
+     */
+    public synchronized boolean addFileTrack(String trackName, File file) {
+        AudioInputStream stream;
+        try {
+            stream = openStereo(file);
+        } catch (IOException | UnsupportedAudioFileException | IllegalArgumentException e) {
+            LOGGER.warn("⚠️ Mixer {} can't read track {} ({}): {}", name, trackName, file, e.getMessage());
+            return false;
+        }
+        if (!addTrack(trackName)) {
+            closeQuietly(stream);
+            return false;
+        }
+        feeds.add(new FileFeed(trackName, slots.get(trackName), stream));
+        return true;
+    }
+
+    public synchronized void removeTrack(String trackName) {
+        Integer slot = slots.remove(trackName);
+        if (slot == null) return;
+        params.set(slot * PARAMS + ACTIVE, 0);
+        chains.set(slot, null);
+        for (FileFeed feed : feeds) {
+            if (feed.slot == slot) {
+                feeds.remove(feed);
+                feed.close();
+            }
+        }
+        // The render thread may be mid-block on this slot; reuse it only once that block is over
+        retired.add(new long[] {slot, blocks.get()});
+    }
+
+    private int allocateSlot() {
+        long now = blocks.get();
+        if (!retired.isEmpty() && (retired.peek()[1] + 2 <= now || !running)) {
+            return (int) retired.poll()[0];
+        }
+        if (slotLimit < maxTracks) {
+            return slotLimit;
+        }
+        return -1;
+    }
+
+    public synchronized void setVolume(String trackName, float volume) {
+        Integer slot = slots.get(trackName);
+        if (slot == null) return;
+        volumes[slot] = Math.max(0f, volume);
+        publishGains(slot);
+    }
+
+    /**
+     * @param pan -1 (left) to 1 (right)
+     */
+    public synchronized void setPan(String trackName, float pan) {
+        Integer slot = slots.get(trackName);
+        if (slot == null) return;
+        pans[slot] = Math.max(-1f, Math.min(1f, pan));
+        publishGains(slot);
+    }
+
+    // Equal-power pan at unity in the center, worked out here so the render thread does no trig
+    private void publishGains(int slot) {
+        double angle = (pans[slot] + 1) * Math.PI / 4;
+        float volume = volumes[slot];
+        params.set(slot * PARAMS + GAIN_LEFT, Float.floatToRawIntBits((float) (volume * Math.cos(angle) * Math.sqrt(2))));
+        params.set(slot * PARAMS + GAIN_RIGHT, Float.floatToRawIntBits((float) (volume * Math.sin(angle) * Math.sqrt(2))));
+    }
+
+    public void setMute(String trackName, boolean mute) {
+        setFlag(trackName, MUTE, mute ? 1 : 0);
+    }
+
+    public void setSolo(String trackName, boolean solo) {
+        setFlag(trackName, SOLO, solo ? 1 : 0);
+    }
+
+    public void setBus(String trackName, int bus) {
+        setFlag(trackName, BUS, Math.max(0, Math.min(busCount - 1, bus)));
+    }
+
+    private void setFlag(String trackName, int param, int value) {
+        Integer slot = slots.get(trackName);
+        if (slot != null) {
+            params.set(slot * PARAMS + param, value);
+        }
+    }
+
+    /**
+     * Run a track through an effect chain (stereo, at the mixer's rate), or none when null. Nodes
+     * carried over from the previous chain keep their state, so tails ring on.
+     */
+    public void setEffectChain(String trackName, EffectChain chain) {
+        if (chain != null && (chain.getChannels() != 2 || chain.getSampleRate() != sampleRate)) {
+            throw new IllegalArgumentException("Mixer " + name + " needs a stereo " + sampleRate + " Hz chain, got "
+                + chain.getChannels() + " channels at " + chain.getSampleRate() + " Hz");
+        }
+        Integer slot = slots.get(trackName);
+        if (slot != null) {
+            chains.set(slot, chain);
+        }
+    }
+
+    public void setBusGain(int bus, float gain) {
+        if (bus >= 0 && bus < busCount) {
+            busGains.set(bus, Float.floatToRawIntBits(gain));
+        }
+    }
+
+    public void setMasterGain(float gain) {
+        masterTarget = gain;
+    }
+
+    /**
+     * Append live audio (interleaved stereo at the mixer's rate) to a track. One producer per track.
+     * @return frames accepted; the rest is dropped if the track's ring is full
+     */
+    public int writeTrack(String trackName, float[] interleaved, int offset, int frames) {
+        Integer slot = slots.get(trackName);
+        return slot != null ? writeRing(slot, interleaved, offset, frames) : 0;
+    }
+
+    private int writeRing(int slot, float[] interleaved, int offset, int frames) {
+        float[] ring = rings[slot];
+        int mask = ringSize - 1;
+        long write = ringWrite.get(slot);
+        long free = ringSize - (write - ringRead.get(slot));
+        int samples = (int) Math.min(frames * 2L, free & ~1L);
+        for (int i = 0; i < samples; i++) {
+            ring[(int) ((write + i) & mask)] = interleaved[offset + i];
+        }
+        ringWrite.lazySet(slot, write + samples);
+        return samples / 2;
+    }
+
+    /**
+     * Last block's level of a track (peak of the channel average), for meters
+     */
+    public float getTrackPeak(String trackName) {
+        Integer slot = slots.get(trackName);
+        return slot != null ? Float.intBitsToFloat(meters.get(slot)) : 0f;
+    }
+
+    public boolean hasTrack(String trackName) {
+        return slots.containsKey(trackName);
+    }
+
+    // Render side
+
+    private void renderLoop() {
+        long deadline = System.nanoTime();
+        long frameIndex = 0;
+        while (running) {
+            long start = System.nanoTime();
+            render();
+            sink.onBlock(out, blockFrames, frameIndex);
+            frameIndex += blockFrames;
+
+            long elapsed = System.nanoTime() - start;
+            blocks.incrementAndGet();
+            renderNanos.addAndGet(elapsed);
+            if (elapsed > maxRenderNanos.get()) {
+                maxRenderNanos.set(elapsed);
+            }
+
+            deadline += blockNanos;
+            long now = System.nanoTime();
+            if (now - deadline > blockNanos * 4) {
+                // Stalled (GC, suspended machine): skip ahead rather than burst out the missed blocks
+                lateBlocks.incrementAndGet();
+                deadline = now;
+            }
+            long wait;
+            while (running && (wait = deadline - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+        }
+    }
+
+    /**
+     * Mix one block into the output buffer
+     */
+    void render() {
+        int samples = blockFrames * 2;
+        int limit = slotLimit;
+        int mask = ringSize - 1;
+        for (float[] bus : buses) {
+            Arrays.fill(bus, 0f);
+        }
+
+        boolean solo = false;
+        for (int slot = 0; slot < limit; slot++) {
+            int base = slot * PARAMS;
+            if (params.get(base + ACTIVE) != 0 && params.get(base + SOLO) != 0) {
+                solo = true;
+                break;
+            }
+        }
+
+        int active = 0;
+        for (int slot = 0; slot < limit; slot++) {
+            int base = slot * PARAMS;
+            if (params.get(base + ACTIVE) == 0) {
+                currentLeft[slot] = 0f;
+                currentRight[slot] = 0f;
+                continue;
+            }
+            active++;
+            boolean silent = params.get(base + MUTE) != 0 || (solo && params.get(base + SOLO) == 0);
+            float targetLeft = silent ? 0f : Float.intBitsToFloat(params.get(base + GAIN_LEFT));
+            float targetRight = silent ? 0f : Float.intBitsToFloat(params.get(base + GAIN_RIGHT));
+            float[] bus = buses[params.get(base + BUS)];
+
+            float[] ring = rings[slot];
+            long read = ringRead.get(slot);
+            long write = ringWrite.get(slot);
+            int available = (int) Math.min(samples, write - read);
+            if (available < samples && write > 0 && params.get(base + ENDED) == 0) {
+                underruns.incrementAndGet();
+            }
+
+            // Ramp from last block's gains; the ring is read as up to two contiguous runs
+            float left = currentLeft[slot];
+            float right = currentRight[slot];
+            float leftStep = (targetLeft - left) / blockFrames;
+            float rightStep = (targetRight - right) / blockFrames;
+            float trackPeak = 0f;
+            int start = (int) (read & mask);
+            int first = Math.min(available, ringSize - start);
+            EffectChain chain = chains.get(slot);
+            if (chain != null) {
+                // Effects get a whole block, padded with silence on underrun so tails keep ringing
+                System.arraycopy(ring, start, trackBuffer, 0, first);
+                System.arraycopy(ring, 0, trackBuffer, first, available - first);
+                Arrays.fill(trackBuffer, available, samples, 0f);
+                chain.process(trackBuffer, blockFrames, 2);
+                for (int i = 0; i < samples; i += 2) {
+                    left += leftStep;
+                    right += rightStep;
+                    float l = trackBuffer[i] * left;
+                    float r = trackBuffer[i + 1] * right;
+                    bus[i] += l;
+                    bus[i + 1] += r;
+                    trackPeak = Math.max(trackPeak, Math.abs(l) + Math.abs(r));
+                }
+            } else {
+                int index = 0;
+                for (int run = 0; run < 2; run++) {
+                    int from = run == 0 ? start : 0;
+                    int end = from + (run == 0 ? first : available - first);
+                    for (int i = from; i < end; i += 2, index += 2) {
+                        left += leftStep;
+                        right += rightStep;
+                        float l = ring[i] * left;
+                        float r = ring[i + 1] * right;
+                        bus[index] += l;
+                        bus[index + 1] += r;
+                        trackPeak = Math.max(trackPeak, Math.abs(l) + Math.abs(r));
+                    }
+                }
+            }
+            int frames = available / 2;
+            currentLeft[slot] = targetLeft;
+            currentRight[slot] = targetRight;
+            ringRead.lazySet(slot, read + frames * 2);
+            meters.lazySet(slot, Float.floatToRawIntBits(trackPeak * 0.5f));
+        }
+        activeTracks = active;
+
+        // Buses into the master, each with its own ramped gain, then the master ramp and ceiling
+        Arrays.fill(out, 0f);
+        for (int busIndex = 0; busIndex < busCount; busIndex++) {
+            float[] bus = buses[busIndex];
+            float gain = currentBus[busIndex];
+            float target = Float.intBitsToFloat(busGains.get(busIndex));
+            float step = (target - gain) / blockFrames;
+            for (int frame = 0; frame < blockFrames; frame++) {
+                gain += step;
+                out[frame * 2] += bus[frame * 2] * gain;
+                out[frame * 2 + 1] += bus[frame * 2 + 1] * gain;
+            }
+            currentBus[busIndex] = target;
+        }
+        float target = masterTarget;
+        float step = (target - master) / blockFrames;
+        float gain = master;
+        float blockPeak = 0f;
+        for (int frame = 0; frame < blockFrames; frame++) {
+            gain += step;
+            for (int channel = 0; channel < 2; channel++) {
+                int index = frame * 2 + channel;
+                float sample = Math.max(-1f, Math.min(1f, out[index] * gain));
+                out[index] = sample;
+                blockPeak = Math.max(blockPeak, Math.abs(sample));
+            }
+        }
+        master = target;
+        peak = blockPeak;
+    }
+
+    // Feeder side: streams file tracks into their rings, a few blocks ahead of the render thread
+
+    private void feedLoop() {
+        // Sized to the ring, so one read can always fill whatever is free
+        float[] stereo = new float[ringSize];
+        byte[] bytes = new byte[stereo.length * 4];
+        PcmCodec codec = PcmCodec.of(32, true, false, false);
+        while (running) {
+            for (FileFeed feed : feeds) {
+                // removeTrack closes the feed under the same lock, so a removed track's slot,
+                // possibly reused by then, is never written
+                synchronized (feed) {
+                    if (feed.finished) continue;
+                    int free = (int) ((ringSize - (ringWrite.get(feed.slot) - ringRead.get(feed.slot))) / 2);
+                    if (free < blockFrames) continue;
+                    int wanted = Math.min(free, bytes.length / 8);
+                    try {
+                        int frames = readFrames(feed.stream, bytes, wanted);
+                        if (frames > 0) {
+                            codec.decode(bytes, 0, stereo, 0, frames * 2);
+                            writeRing(feed.slot, stereo, 0, frames);
+                        }
+                        if (frames < wanted) {
+                            feed.finished = true;
+                            params.set(feed.slot * PARAMS + ENDED, 1);
+                            LOGGER.debug("🎵 Track {} on mixer {} reached its end", feed.trackName, name);
+                        }
+                    } catch (IOException e) {
+                        feed.finished = true;
+                        LOGGER.warn("⚠️ Mixer {} lost track {}: {}", name, feed.trackName, e.getMessage());
+                    }
+                }
+            }
+            LockSupport.parkNanos(blockNanos * 4);
+        }
+    }
+
+    private static int readFrames(AudioInputStream stream, byte[] bytes, int frames) throws IOException {
+        int wanted = Math.min(frames * 8, bytes.length);
+        int filled = 0;
+        while (filled < wanted) {
+            int read = stream.read(bytes, filled, wanted - filled);
+            if (read == -1) break;
+            filled += read;
+        }
+        return filled / 8;
+    }
+
+    // Little-endian float stereo at the mixer's rate, letting Java Sound convert rate and layout
+    private AudioInputStream openStereo(File file) throws IOException, UnsupportedAudioFileException {
+        AudioInputStream source = AudioSystem.getAudioInputStream(file);
+        AudioFormat format = source.getFormat();
+        if (format.getEncoding() != AudioFormat.Encoding.PCM_SIGNED && format.getEncoding() != AudioFormat.Encoding.PCM_FLOAT
+                && format.getEncoding() != AudioFormat.Encoding.PCM_UNSIGNED) {
+            AudioFormat pcm = new AudioFormat(format.getSampleRate(), 16, format.getChannels(), true, false);
+            source = AudioSystem.getAudioInputStream(pcm, source);
+        }
+        AudioFormat target = new AudioFormat(AudioFormat.Encoding.PCM_FLOAT, sampleRate, 32, 2, 8, sampleRate, false);
+        return AudioSystem.getAudioInputStream(target, source);
+    }
+
+    private static void closeQuietly(AudioInputStream stream) {
+        try {
+            stream.close();
+        } catch (IOException ignored) {
+            // Nothing left to release
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        for (Thread thread : new Thread[] {renderThread, feederThread}) {
+            if (thread == null) continue;
+            LockSupport.unpark(thread);
+            try {
+                thread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (FileFeed feed : feeds) {
+            feed.close();
+        }
+        feeds.clear();
+        LOGGER.info("🎚️ Mixer {} stopped ({})", name, getStats());
+    }
+
+    public MixerStats getStats() {
+        long count = blocks.get();
+        return new MixerStats(count, lateBlocks.get(), underruns.get(), activeTracks,
+            count == 0 ? 0 : renderNanos.get() / 1000.0 / count, maxRenderNanos.get() / 1000.0, blockNanos / 1000.0, peak);
+    }
+
+    /**
+     * Render blocks as fast as possible with every track fed from memory, to see how much of each
+     * block period a full session takes
+     */
+    public static MixerStats benchmark(int tracks, int blockFrames, int renderBlocks) {
+        MultitrackMixer mixer = new MultitrackMixer("bench", 48000, blockFrames, tracks, 4);
+        float[] input = new float[blockFrames * 2];
+        for (int i = 0; i < input.length; i++) {
+            input[i] = (float) Math.sin(i * 0.01) * 0.05f;
+        }
+        for (int track = 0; track < tracks; track++) {
+            mixer.addTrack("track" + track);
+            mixer.setPan("track" + track, (track % 9 - 4) / 4f);
+            mixer.setBus("track" + track, track % 4);
+        }
+        long total = 0;
+        long max = 0;
+        for (int block = 0; block < renderBlocks; block++) {
+            for (int slot = 0; slot < tracks; slot++) {
+                mixer.writeRing(slot, input, 0, blockFrames);
+            }
+            mixer.setVolume("track" + (block % tracks), 0.5f + (block % 7) / 10f);
+            long start = System.nanoTime();
+            mixer.render();
+            long elapsed = System.nanoTime() - start;
+            total += elapsed;
+            max = Math.max(max, elapsed);
+        }
+        return new MixerStats(renderBlocks, 0, mixer.underruns.get(), mixer.activeTracks, total / 1000.0 / renderBlocks,
+            max / 1000.0, mixer.blockNanos / 1000.0, mixer.peak);
+    }
+
+    // Getters
+    public String getName() { return name; }
+    public int getSampleRate() { return sampleRate; }
+    public int getBlockFrames() { return blockFrames; }
+    public int getTrackCount() { return slots.size(); }
+
+    // File-backed track; read by the feeder thread only
+    private static final class FileFeed {
+        final String trackName;
+        final int slot;
+        final AudioInputStream stream;
+        volatile boolean finished = false;
+
+        FileFeed(String trackName, int slot, AudioInputStream stream) {
+            this.trackName = trackName;
+            this.slot = slot;
+            this.stream = stream;
+        }
+
+        synchronized void close() {
+            finished = true;
+            closeQuietly(stream);
+        }
+    }
+
+    // Mixer Stats Class
+    public static class MixerStats {
+        public final long blocks;
+        public final long lateBlocks;
+        public final long underruns;
+        public final int activeTracks;
+        public final double averageRenderMicros;
+        public final double maxRenderMicros;
+        public final double blockMicros;
+        public final float peak;
+
+        public MixerStats(long blocks, long lateBlocks, long underruns, int activeTracks, double averageRenderMicros,
+                          double maxRenderMicros, double blockMicros, float peak) {
+            this.blocks = blocks;
+            this.lateBlocks = lateBlocks;
+            this.underruns = underruns;
+            this.activeTracks = activeTracks;
+            this.averageRenderMicros = averageRenderMicros;
+            this.maxRenderMicros = maxRenderMicros;
+            this.blockMicros = blockMicros;
+            this.peak = peak;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%d tracks, %d blocks (%d late), render avg %.1f us / max %.1f us of %.0f us, " +
+                "underruns %d, peak %.2f", activeTracks, blocks, lateBlocks, averageRenderMicros, maxRenderMicros,
+                blockMicros, underruns, peak);
+        }
+    }
+}
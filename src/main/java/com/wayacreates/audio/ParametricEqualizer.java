@@ -0,0 +1,353 @@
+package com.wayacreates.audio;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Parametric Equalizer
+ * A set of peak, shelf, pass and notch bands, run one of two ways:
+ * - BIQUAD: one biquad per band in cascade. Minimum phase, no latency, and cheapest for a few bands.
+ * - FIR: the cascade's magnitude response as a linear-phase FIR, applied by overlap-add FFT
+ *   convolution. The cost is the same whatever the band count, but it adds latency.
+ * AUTO picks BIQUAD unless linear phase is asked for or the cascade would cost more per sample.
+ *
+ * Filter state carries across blocks. Interleaved audio is processed as is: biquads run both
+ * stereo channels in the same pass, and the FIR packs a channel pair into one complex FFT.
+ */
+public class ParametricEqualizer implements AudioProcessor.BlockEffect {
+    // Cost of one biquad per sample and channel, in the FIR estimate's flops; measured, the
+    // cascade and the 48 kHz FIR break even at about 22 bands
+    private static final int BIQUAD_COST = 6;
+
+    public enum BandType {
+        PEAK,
+        LOW_SHELF,
+        HIGH_SHELF,
+        LOW_PASS,
+        HIGH_PASS,
+        NOTCH
+    }
+
+    public enum Mode {
+        AUTO,
+        BIQUAD,
+        FIR
+    }
+
+    private final Mode mode;
+    private final BiquadCascade cascade;
+    private final FirConvolver convolver;
+
+    public ParametricEqualizer(List<Band> bands, float sampleRate, int channels, Mode mode, boolean linearPhase) {
+        double[][] coefficients = new double[bands.size()][];
+        for (int i = 0; i < bands.size(); i++) {
+            coefficients[i] = bands.get(i).coefficients(sampleRate);
+        }
+        int taps = firTaps(sampleRate);
+        if (mode == Mode.AUTO) {
+            boolean fir = linearPhase || bands.size() * BIQUAD_COST > FirConvolver.cost(taps);
+            mode = fir ? Mode.FIR : Mode.BIQUAD;
+        }
+        this.mode = mode;
+        this.cascade = mode == Mode.BIQUAD ? new BiquadCascade(coefficients, channels) : null;
+        this.convolver = mode == Mode.FIR ? new FirConvolver(designLinearPhase(coefficients, taps), channels) : null;
+    }
+
+    public ParametricEqualizer(List<Band> bands, float sampleRate, int channels) {
+        this(bands, sampleRate, channels, Mode.AUTO, false);
+    }
+
+    // About 12 Hz resolution, as 2^k - 1 taps so the filter has a whole-sample center
+    private static int firTaps(float sampleRate) {
+        return Integer.highestOneBit(Math.max(64, (int) (sampleRate / 12))) * 2 - 1;
+    }
+
+    @Override
+    public void process(float[] samples, int frames, int channels) {
+        if (cascade != null) {
+            cascade.process(samples, frames, channels);
+        } else {
+            convolver.process(samples, frames, channels);
+        }
+    }
+
+    @Override
+    public int getLatencyFrames() {
+        return convolver != null ? convolver.getLatencyFrames() : 0;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Magnitude of the whole cascade at a frequency, as a linear gain
+     */
+    static double magnitude(double[][] coefficients, double omega) {
+        double cos1 = Math.cos(omega), sin1 = Math.sin(omega);
+        double cos2 = Math.cos(2 * omega), sin2 = Math.sin(2 * omega);
+        double gain = 1;
+        for (double[] c : coefficients) {
+            double nr = c[0] + c[1] * cos1 + c[2] * cos2;
+            double ni = -c[1] * sin1 - c[2] * sin2;
+            double dr = 1 + c[3] * cos1 + c[4] * cos2;
+            double di = -c[3] * sin1 - c[4] * sin2;
+            gain *= Math.sqrt((nr * nr + ni * ni) / (dr * dr + di * di));
+        }
+        return gain;
+    }
+
+    /**
+     * Frequency-sampling design: the cascade's magnitude with zero phase, back to the time domain,
+     * centered and Blackman-windowed
+     */
+    private static float[] designLinearPhase(double[][] coefficients, int taps) {
+        int size = taps + 1;
+        Fft fft = new Fft(size);
+        float[] re = new float[size];
+        float[] im = new float[size];
+        for (int bin = 0; bin <= size / 2; bin++) {
+            float gain = (float) magnitude(coefficients, 2 * Math.PI * bin / size);
+            re[bin] = gain;
+            if (bin > 0 && bin < size / 2) {
+                re[size - bin] = gain;
+            }
+        }
+        fft.inverse(re, im);
+
+        float[] kernel = new float[taps];
+        int center = taps / 2;
+        for (int n = 0; n < taps; n++) {
+            double window = 0.42 - 0.5 * Math.cos(2 * Math.PI * n / (taps - 1)) + 0.08 * Math.cos(4 * Math.PI * n / (taps - 1));
+            kernel[n] = (float) (re[(n - center + size) % size] * window);
+        }
+        return kernel;
+    }
+
+    // Biquad Cascade Class - transposed direct form II, state per band and channel
+    private static final class BiquadCascade {
+        private final float[][] coefficients; // b0, b1, b2, a1, a2 per band
+        private final float[] state;          // z1, z2 per band and channel
+
+        BiquadCascade(double[][] coefficients, int channels) {
+            this.coefficients = new float[coefficients.length][5];
+            for (int band = 0; band < coefficients.length; band++) {
+                for (int i = 0; i < 5; i++) {
+                    this.coefficients[band][i] = (float) coefficients[band][i];
+                }
+            }
+            this.state = new float[coefficients.length * channels * 2];
+        }
+
+        void process(float[] samples, int frames, int channels) {
+            for (int band = 0; band < coefficients.length; band++) {
+                float[] c = coefficients[band];
+                float b0 = c[0], b1 = c[1], b2 = c[2], a1 = c[3], a2 = c[4];
+                int base = band * channels * 2;
+                if (channels == 2) {
+                    // Both channels in one pass over the interleaved block
+                    float l1 = state[base], l2 = state[base + 1], r1 = state[base + 2], r2 = state[base + 3];
+                    for (int i = 0; i < frames * 2; i += 2) {
+                        float l = samples[i];
+                        float r = samples[i + 1];
+                        float yl = b0 * l + l1;
+                        float yr = b0 * r + r1;
+                        l1 = b1 * l - a1 * yl + l2;
+                        r1 = b1 * r - a1 * yr + r2;
+                        l2 = b2 * l - a2 * yl;
+                        r2 = b2 * r - a2 * yr;
+                        samples[i] = yl;
+                        samples[i + 1] = yr;
+                    }
+                    state[base] = l1; state[base + 1] = l2; state[base + 2] = r1; state[base + 3] = r2;
+                } else {
+                    for (int ch = 0; ch < channels; ch++) {
+                        float z1 = state[base + ch * 2], z2 = state[base + ch * 2 + 1];
+                        for (int i = ch; i < frames * channels; i += channels) {
+                            float x = samples[i];
+                            float y = b0 * x + z1;
+                            z1 = b1 * x - a1 * y + z2;
+                            z2 = b2 * x - a2 * y;
+                            samples[i] = y;
+                        }
+                        state[base + ch * 2] = z1; state[base + ch * 2 + 1] = z2;
+                    }
+                }
+            }
+        }
+    }
+
+    // FIR Convolver Class - uniform overlap-add, channel pairs packed into one complex FFT
+    private static final class FirConvolver {
+        private final Fft fft;
+        private final int hop;         // Input frames per FFT
+        private final int taps;
+        private final float[] kernelRe;
+        private final float[] kernelIm;
+        private final float[][] input;
+        private final float[][] ready;
+        private final float[][] tail;
+        private final float[] re;
+        private final float[] im;
+        private int position = 0;
+
+        FirConvolver(float[] kernel, int channels) {
+            this.taps = kernel.length;
+            int size = Integer.highestOneBit(taps) * 4;
+            this.fft = new Fft(size);
+            this.hop = size - taps + 1;
+            this.kernelRe = new float[size];
+            this.kernelIm = new float[size];
+            System.arraycopy(kernel, 0, kernelRe, 0, taps);
+            fft.forward(kernelRe, kernelIm);
+            this.input = new float[channels][hop];
+            this.ready = new float[channels][hop];
+            this.tail = new float[channels][taps - 1];
+            this.re = new float[size];
+            this.im = new float[size];
+        }
+
+        // Two FFTs and a complex multiply per hop, shared by a channel pair
+        static int cost(int taps) {
+            int size = Integer.highestOneBit(taps) * 4;
+            int hop = size - taps + 1;
+            double flops = 2 * 5.0 * size * Integer.numberOfTrailingZeros(size) + 6.0 * size;
+            return (int) (flops / (2 * hop));
+        }
+
+        int getLatencyFrames() {
+            return hop + taps / 2;
+        }
+
+        void process(float[] samples, int frames, int channels) {
+            int index = 0;
+            for (int frame = 0; frame < frames; frame++) {
+                for (int ch = 0; ch < channels; ch++, index++) {
+                    input[ch][position] = samples[index];
+                    samples[index] = ready[ch][position];
+                }
+                if (++position == hop) {
+                    position = 0;
+                    for (int ch = 0; ch < channels; ch += 2) {
+                        convolve(ch, Math.min(ch + 1, channels - 1));
+                    }
+                }
+            }
+        }
+
+        // h is real, so (x + iy) * h = x * h + i (y * h): one transform filters two channels
+        private void convolve(int first, int second) {
+            int size = fft.getSize();
+            System.arraycopy(input[first], 0, re, 0, hop);
+            Arrays.fill(re, hop, size, 0f);
+            if (second != first) {
+                System.arraycopy(input[second], 0, im, 0, hop);
+            } else {
+                Arrays.fill(im, 0, hop, 0f);
+            }
+            Arrays.fill(im, hop, size, 0f);
+
+            fft.forward(re, im);
+            for (int k = 0; k < size; k++) {
+                float r = re[k] * kernelRe[k] - im[k] * kernelIm[k];
+                im[k] = re[k] * kernelIm[k] + im[k] * kernelRe[k];
+                re[k] = r;
+            }
+            fft.inverse(re, im);
+
+            overlapAdd(re, first);
+            if (second != first) {
+                overlapAdd(im, second);
+            }
+        }
+
+        // Output = the new block plus the previous tail; the rest of the block becomes the new tail
+        private void overlapAdd(float[] block, int channel) {
+            float[] out = ready[channel];
+            float[] previous = tail[channel];
+            int tailLength = taps - 1;
+            for (int i = 0; i < hop; i++) {
+                out[i] = block[i] + (i < tailLength ? previous[i] : 0f);
+            }
+            for (int i = 0; i < tailLength; i++) {
+                previous[i] = block[hop + i] + (hop + i < tailLength ? previous[hop + i] : 0f);
+            }
+        }
+    }
+
+    // EQ Band Class
+    public static class Band {
+        public final BandType type;
+        public final float frequency; // Hz
+        public final float gainDb;    // Peak and shelf bands only
+        public final float q;
+
+        public Band(BandType type, float frequency, float gainDb, float q) {
+            this.type = type;
+            this.frequency = frequency;
+            this.gainDb = gainDb;
+            this.q = q;
+        }
+
+        public static Band peak(float frequency, float gainDb, float q) { return new Band(BandType.PEAK, frequency, gainDb, q); }
+        public static Band lowShelf(float frequency, float gainDb) { return new Band(BandType.LOW_SHELF, frequency, gainDb, 0.707f); }
+        public static Band highShelf(float frequency, float gainDb) { return new Band(BandType.HIGH_SHELF, frequency, gainDb, 0.707f); }
+        public static Band lowPass(float frequency) { return new Band(BandType.LOW_PASS, frequency, 0f, 0.707f); }
+        public static Band highPass(float frequency) { return new Band(BandType.HIGH_PASS, frequency, 0f, 0.707f); }
+        public static Band notch(float frequency, float q) { return new Band(BandType.NOTCH, frequency, 0f, q); }
+
+        /**
+         * Normalized biquad coefficients b0, b1, b2, a1, a2 (Audio EQ Cookbook)
+         */
+        double[] coefficients(float sampleRate) {
+            double frequencyClamped = Math.min(frequency, sampleRate * 0.49);
+            double omega = 2 * Math.PI * frequencyClamped / sampleRate;
+            double cos = Math.cos(omega);
+            double alpha = Math.sin(omega) / (2 * q);
+            double a = Math.pow(10, gainDb / 40);
+            double b0, b1, b2, a0, a1, a2;
+            switch (type) {
+                case PEAK -> {
+                    b0 = 1 + alpha * a; b1 = -2 * cos; b2 = 1 - alpha * a;
+                    a0 = 1 + alpha / a; a1 = -2 * cos; a2 = 1 - alpha / a;
+                }
+                case LOW_SHELF -> {
+                    double root = 2 * Math.sqrt(a) * alpha;
+                    b0 = a * ((a + 1) - (a - 1) * cos + root);
+                    b1 = 2 * a * ((a - 1) - (a + 1) * cos);
+                    b2 = a * ((a + 1) - (a - 1) * cos - root);
+                    a0 = (a + 1) + (a - 1) * cos + root;
+                    a1 = -2 * ((a - 1) + (a + 1) * cos);
+                    a2 = (a + 1) + (a - 1) * cos - root;
+                }
+                case HIGH_SHELF -> {
+                    double root = 2 * Math.sqrt(a) * alpha;
+                    b0 = a * ((a + 1) + (a - 1) * cos + root);
+                    b1 = -2 * a * ((a - 1) + (a + 1) * cos);
+                    b2 = a * ((a + 1) + (a - 1) * cos - root);
+                    a0 = (a + 1) - (a - 1) * cos + root;
+                    a1 = 2 * ((a - 1) - (a + 1) * cos);
+                    a2 = (a + 1) - (a - 1) * cos - root;
+                }
+                case LOW_PASS -> {
+                    b0 = (1 - cos) / 2; b1 = 1 - cos; b2 = (1 - cos) / 2;
+                    a0 = 1 + alpha; a1 = -2 * cos; a2 = 1 - alpha;
+                }
+                case HIGH_PASS -> {
+                    b0 = (1 + cos) / 2; b1 = -(1 + cos); b2 = (1 + cos) / 2;
+                    a0 = 1 + alpha; a1 = -2 * cos; a2 = 1 - alpha;
+                }
+                default -> {
+                    b0 = 1; b1 = -2 * cos; b2 = 1;
+                    a0 = 1 + alpha; a1 = -2 * cos; a2 = 1 - alpha;
+                }
+            }
+            return new double[] {b0 / a0, b1 / a0, b2 / a0, a1 / a0, a2 / a0};
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s %.0fHz %+.1fdB Q%.2f", type, frequency, gainDb, q);
+        }
+    }
+}
@@ -0,0 +1,358 @@
+package com.wayacreates.audio;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * PCM Codec
+ * Converts between packed PCM bytes and normalized float samples (-1.0 to 1.0) for 8-bit signed
+ * or unsigned, 16/24/32-bit signed integer and 32-bit float audio, in either byte order.
+ *
+ * 16-bit, 32-bit and float data go through ByteBuffer views with bulk get/put. 24-bit has no
+ * view type, so it is assembled by hand. Integers decode as sample / 2^(bits-1) and encode with
+ * rounding and clipping, so decoding and re-encoding gives back the original bytes. A codec keeps
+ * scratch buffers, so use one per thread.
+ */
+public final class PcmCodec {
+    private static final int CHUNK = 2048;
+
+    private final int bits;
+    private final boolean floatingPoint;
+    private final boolean unsigned;
+    private final ByteOrder order;
+    private final int bytesPerSample;
+    private final float scale;    // Integer full scale, 2^(bits-1)
+    private final float invScale;
+
+    private short[] shortScratch;
+    private int[] intScratch;
+
+    private PcmCodec(int bits, boolean floatingPoint, boolean unsigned, boolean bigEndian) {
+        this.bits = bits;
+        this.floatingPoint = floatingPoint;
+        this.unsigned = unsigned;
+        this.order = bigEndian ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+        this.bytesPerSample = bits / 8;
+        this.scale = floatingPoint ? 1f : (float) Math.pow(2, bits - 1);
+        this.invScale = 1f / scale;
+    }
+
+    /**
+     * Codec for a sample layout
+     * @param unsigned only meaningful for 8-bit data
+     */
+    public static PcmCodec of(int bits, boolean floatingPoint, boolean unsigned, boolean bigEndian) {
+        if (floatingPoint ? bits != 32 : bits != 8 && bits != 16 && bits != 24 && bits != 32) {
+            throw new IllegalArgumentException("Unsupported PCM sample size: " + bits + (floatingPoint ? "-bit float" : "-bit"));
+        }
+        if (unsigned && bits != 8) {
+            throw new IllegalArgumentException("Unsigned PCM is only supported for 8-bit samples");
+        }
+        return new PcmCodec(bits, floatingPoint, unsigned, bigEndian);
+    }
+
+    public static PcmCodec of(AudioFormat format) {
+        if (!isSupported(format)) {
+            throw new IllegalArgumentException("Unsupported audio format: " + format);
+        }
+        return of(format.getSampleSizeInBits(), format.getEncoding() == AudioFormat.Encoding.PCM_FLOAT,
+            format.getEncoding() == AudioFormat.Encoding.PCM_UNSIGNED, format.isBigEndian());
+    }
+
+    /**
+     * Packed linear PCM this codec can read and write directly
+     */
+    public static boolean isSupported(AudioFormat format) {
+        AudioFormat.Encoding encoding = format.getEncoding();
+        int bits = format.getSampleSizeInBits();
+        if (format.getFrameSize() != format.getChannels() * (bits / 8)) {
+            return false;
+        }
+        if (encoding == AudioFormat.Encoding.PCM_FLOAT) return bits == 32;
+        if (encoding == AudioFormat.Encoding.PCM_UNSIGNED) return bits == 8;
+        if (encoding == AudioFormat.Encoding.PCM_SIGNED) return bits == 8 || bits == 16 || bits == 24 || bits == 32;
+        return false;
+    }
+
+    /**
+     * Decode samples from bytes to floats
+     */
+    public void decode(byte[] src, int srcOffset, float[] dst, int dstOffset, int samples) {
+        if (floatingPoint) {
+            ByteBuffer.wrap(src, srcOffset, samples * 4).order(order).asFloatBuffer().get(dst, dstOffset, samples);
+            return;
+        }
+        switch (bits) {
+            case 8 -> decode8(src, srcOffset, dst, dstOffset, samples);
+            case 16 -> decode16(src, srcOffset, dst, dstOffset, samples);
+            case 24 -> decode24(src, srcOffset, dst, dstOffset, samples);
+            default -> decode32(src, srcOffset, dst, dstOffset, samples);
+        }
+    }
+
+    /**
+     * Encode floats to bytes. Integer formats clip at full scale; float data is written as is.
+     */
+    public void encode(float[] src, int srcOffset, byte[] dst, int dstOffset, int samples) {
+        if (floatingPoint) {
+            ByteBuffer.wrap(dst, dstOffset, samples * 4).order(order).asFloatBuffer().put(src, srcOffset, samples);
+            return;
+        }
+        switch (bits) {
+            case 8 -> encode8(src, srcOffset, dst, dstOffset, samples);
+            case 16 -> encode16(src, srcOffset, dst, dstOffset, samples);
+            case 24 -> encode24(src, srcOffset, dst, dstOffset, samples);
+            default -> encode32(src, srcOffset, dst, dstOffset, samples);
+        }
+    }
+
+    private void decode8(byte[] src, int srcOffset, float[] dst, int dstOffset, int samples) {
+        int bias = unsigned ? 128 : 0;
+        int mask = unsigned ? 0xFF : -1;
+        for (int i = 0; i < samples; i++) {
+            dst[dstOffset + i] = ((src[srcOffset + i] & mask) - bias) * invScale;
+        }
+    }
+
+    private void encode8(float[] src, int srcOffset, byte[] dst, int dstOffset, int samples) {
+        int bias = unsigned ? 128 : 0;
+        for (int i = 0; i < samples; i++) {
+            dst[dstOffset + i] = (byte) (quantize(src[srcOffset + i]) + bias);
+        }
+    }
+
+    private void decode16(byte[] src, int srcOffset, float[] dst, int dstOffset, int samples) {
+        short[] scratch = shortScratch();
+        for (int done = 0; done < samples; done += CHUNK) {
+            int count = Math.min(CHUNK, samples - done);
+            ByteBuffer.wrap(src, srcOffset + done * 2, count * 2).order(order).asShortBuffer().get(scratch, 0, count);
+            int base = dstOffset + done;
+            for (int i = 0; i < count; i++) {
+                dst[base + i] = scratch[i] * invScale;
+            }
+        }
+    }
+
+    private void encode16(float[] src, int srcOffset, byte[] dst, int dstOffset, int samples) {
+        short[] scratch = shortScratch();
+        for (int done = 0; done < samples; done += CHUNK) {
+            int count = Math.min(CHUNK, samples - done);
+            int base = srcOffset + done;
+            for (int i = 0; i < count; i++) {
+                scratch[i] = (short) quantize(src[base + i]);
+            }
+            ByteBuffer.wrap(dst, dstOffset + done * 2, count * 2).order(order).asShortBuffer().put(scratch, 0, count);
+        }
+    }
+
+    // Two samples (6 bytes) per iteration; the top byte is taken signed to sign-extend
+    private void decode24(byte[] src, int srcOffset, float[] dst, int dstOffset, int samples) {
+        int hi = order == ByteOrder.BIG_ENDIAN ? 0 : 2;
+        int lo = 2 - hi;
+        int i = 0;
+        int p = srcOffset;
+        for (; i + 1 < samples; i += 2, p += 6) {
+            dst[dstOffset + i] = (src[p + hi] << 16 | (src[p + 1] & 0xFF) << 8 | (src[p + lo] & 0xFF)) * invScale;
+            dst[dstOffset + i + 1] = (src[p + 3 + hi] << 16 | (src[p + 4] & 0xFF) << 8 | (src[p + 3 + lo] & 0xFF)) * invScale;
+        }
+        if (i < samples) {
+            dst[dstOffset + i] = (src[p + hi] << 16 | (src[p + 1] & 0xFF) << 8 | (src[p + lo] & 0xFF)) * invScale;
+        }
+    }
+
+    private void encode24(float[] src, int srcOffset, byte[] dst, int dstOffset, int samples) {
+        int hi = order == ByteOrder.BIG_ENDIAN ? 0 : 2;
+        int lo = 2 - hi;
+        int i = 0;
+        int p = dstOffset;
+        for (; i + 1 < samples; i += 2, p += 6) {
+            int a = quantize(src[srcOffset + i]);
+            int b = quantize(src[srcOffset + i + 1]);
+            dst[p + hi] = (byte) (a >> 16);
+            dst[p + 1] = (byte) (a >> 8);
+            dst[p + lo] = (byte) a;
+            dst[p + 3 + hi] = (byte) (b >> 16);
+            dst[p + 4] = (byte) (b >> 8);
+            dst[p + 3 + lo] = (byte) b;
+        }
+        if (i < samples) {
+            int a = quantize(src[srcOffset + i]);
+            dst[p + hi] = (byte) (a >> 16);
+            dst[p + 1] = (byte) (a >> 8);
+            dst[p + lo] = (byte) a;
+        }
+    }
+
+    private void decode32(byte[] src, int srcOffset, float[] dst, int dstOffset, int samples) {
+        int[] scratch = intScratch();
+        for (int done = 0; done < samples; done += CHUNK) {
+            int count = Math.min(CHUNK, samples - done);
+            ByteBuffer.wrap(src, srcOffset + done * 4, count * 4).order(order).asIntBuffer().get(scratch, 0, count);
+            int base = dstOffset + done;
+            for (int i = 0; i < count; i++) {
+                dst[base + i] = scratch[i] * invScale;
+            }
+        }
+    }
+
+    // Floats can't hold 32-bit precision, so full scale is reached in double
+    private void encode32(float[] src, int srcOffset, byte[] dst, int dstOffset, int samples) {
+        int[] scratch = intScratch();
+        for (int done = 0; done < samples; done += CHUNK) {
+            int count = Math.min(CHUNK, samples - done);
+            int base = srcOffset + done;
+            for (int i = 0; i < count; i++) {
+                double value = src[base + i] * 2147483648.0;
+                scratch[i] = (int) Math.max(-2147483648.0, Math.min(2147483647.0, Math.rint(value)));
+            }
+            ByteBuffer.wrap(dst, dstOffset + done * 4, count * 4).order(order).asIntBuffer().put(scratch, 0, count);
+        }
+    }
+
+    // Round to the nearest step (halves up) and clip to [-scale, scale - 1]
+    private int quantize(float sample) {
+        float value = sample * scale;
+        value = Math.max(-scale, Math.min(scale - 1, value));
+        return (int) Math.floor(value + 0.5f);
+    }
+
+    private short[] shortScratch() {
+        if (shortScratch == null) shortScratch = new short[CHUNK];
+        return shortScratch;
+    }
+
+    private int[] intScratch() {
+        if (intScratch == null) intScratch = new int[CHUNK];
+        return intScratch;
+    }
+
+    /**
+     * Format of the same layout with the given channel count and rate, for writers
+     */
+    public AudioFormat toAudioFormat(float sampleRate, int channels) {
+        AudioFormat.Encoding encoding = floatingPoint ? AudioFormat.Encoding.PCM_FLOAT
+            : unsigned ? AudioFormat.Encoding.PCM_UNSIGNED : AudioFormat.Encoding.PCM_SIGNED;
+        return new AudioFormat(encoding, sampleRate, bits, channels, channels * bytesPerSample, sampleRate,
+            order == ByteOrder.BIG_ENDIAN);
+    }
+
+    // Getters
+    public int getBits() { return bits; }
+    public int getBytesPerSample() { return bytesPerSample; }
+    public boolean isFloatingPoint() { return floatingPoint; }
+    public boolean isUnsigned() { return unsigned; }
+    public boolean isBigEndian() { return order == ByteOrder.BIG_ENDIAN; }
+
+    @Override
+    public String toString() {
+        if (floatingPoint) return "f32" + (isBigEndian() ? "be" : "le");
+        return (unsigned ? "u" : "s") + bits + (bits > 8 ? (isBigEndian() ? "be" : "le") : "");
+    }
+
+    /**
+     * Every layout the codec handles, for benchmarks and format pickers
+     */
+    public static List<PcmCodec> allLayouts() {
+        List<PcmCodec> codecs = new ArrayList<>();
+        codecs.add(of(8, false, false, false));
+        codecs.add(of(8, false, true, false));
+        for (int bits : new int[] {16, 24, 32}) {
+            codecs.add(of(bits, false, false, false));
+            codecs.add(of(bits, false, false, true));
+        }
+        codecs.add(of(32, true, false, false));
+        codecs.add(of(32, true, false, true));
+        return codecs;
+    }
+
+    /**
+     * Decode/encode throughput over random data, with round-trip checks: decoding and re-encoding
+     * random bytes must reproduce them (integer formats up to 24 bits, and float), and encoding then
+     * decoding random floats must land within half a step
+     */
+    public static BenchmarkResult benchmark(PcmCodec codec, int samples, int iterations) {
+        Random random = new Random(42);
+        byte[] bytes = new byte[samples * codec.bytesPerSample];
+        byte[] reencoded = new byte[bytes.length];
+        float[] floats = new float[samples];
+        float[] decoded = new float[samples];
+
+        // Round trip from bytes; random float bit patterns would include NaNs, so use real samples there
+        if (codec.floatingPoint) {
+            for (int i = 0; i < samples; i++) floats[i] = random.nextFloat() * 2 - 1;
+            codec.encode(floats, 0, bytes, 0, samples);
+        } else {
+            random.nextBytes(bytes);
+        }
+        codec.decode(bytes, 0, decoded, 0, samples);
+        codec.encode(decoded, 0, reencoded, 0, samples);
+        boolean bytesExact = codec.bits == 32 && !codec.floatingPoint || Arrays.equals(bytes, reencoded);
+
+        // Round trip from floats
+        for (int i = 0; i < samples; i++) {
+            floats[i] = random.nextFloat() * 2 - 1;
+        }
+        floats[0] = 1f;
+        floats[1] = -1f;
+        codec.encode(floats, 0, bytes, 0, samples);
+        codec.decode(bytes, 0, decoded, 0, samples);
+        double maxError = 0;
+        for (int i = 0; i < samples; i++) {
+            // Positive full scale clips one step short in integer formats
+            double limit = Math.min(floats[i], codec.floatingPoint ? 1 : 1 - codec.invScale);
+            maxError = Math.max(maxError, Math.abs(decoded[i] - limit));
+        }
+        double errorBound = codec.floatingPoint ? 0 : codec.bits == 32 ? 1e-7 : codec.invScale / 2 * 1.0001;
+
+        long decodeNanos = 0;
+        long encodeNanos = 0;
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            long start = System.nanoTime();
+            codec.decode(bytes, 0, decoded, 0, samples);
+            long middle = System.nanoTime();
+            codec.encode(decoded, 0, bytes, 0, samples);
+            long end = System.nanoTime();
+            decodeNanos += middle - start;
+            encodeNanos += end - middle;
+        }
+        long total = (long) samples * iterations;
+        return new BenchmarkResult(codec.toString(), total * 1000.0 / decodeNanos, total * 1000.0 / encodeNanos,
+            bytesExact, maxError, errorBound);
+    }
+
+    // Benchmark Result Class
+    public static class BenchmarkResult {
+        public final String layout;
+        public final double decodeMegasamplesPerSecond;
+        public final double encodeMegasamplesPerSecond;
+        public final boolean bytesRoundTrip;
+        public final double maxFloatError;
+        public final double floatErrorBound;
+
+        public BenchmarkResult(String layout, double decodeMegasamplesPerSecond, double encodeMegasamplesPerSecond,
+                               boolean bytesRoundTrip, double maxFloatError, double floatErrorBound) {
+            this.layout = layout;
+            this.decodeMegasamplesPerSecond = decodeMegasamplesPerSecond;
+            this.encodeMegasamplesPerSecond = encodeMegasamplesPerSecond;
+            this.bytesRoundTrip = bytesRoundTrip;
+            this.maxFloatError = maxFloatError;
+            this.floatErrorBound = floatErrorBound;
+        }
+
+        public boolean isCorrect() {
+            return bytesRoundTrip && maxFloatError <= floatErrorBound;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: decode %.0f Msamples/s, encode %.0f Msamples/s, round trip %s (max error %.2e)",
+                layout, decodeMegasamplesPerSecond, encodeMegasamplesPerSecond, isCorrect() ? "ok" : "FAILED", maxFloatError);
+        }
+    }
+}
@@ -0,0 +1,426 @@
+package com.wayacreates.audio;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntConsumer;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+/**
+ * Spectral Noise Reducer
+ * Removes steady background noise (fans, hiss, mic hum) from voice recordings. A noise profile
+ * holds the average power spectrum of a noise-only selection. Each STFT frame then gets a Wiener
+ * gain per bin from a decision-directed SNR estimate, floored so the result never sounds gated.
+ *
+ * Files are split into chunks of several seconds that overlap, and the chunks run on a thread
+ * pool. They are written back in order and crossfaded in the middle of each overlap, far enough
+ * from the chunk edges that every chunk has settled. Only a few chunks are in memory at once.
+ */
+public class SpectralNoiseReducer {
+    private static final int THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    private static final AtomicInteger threadCount = new AtomicInteger();
+    private static final ExecutorService chunkPool = Executors.newFixedThreadPool(THREADS, runnable -> {
+        Thread thread = new Thread(runnable, "WayaCreates-Denoise-" + threadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Settings settings;
+
+    public SpectralNoiseReducer(Settings settings) {
+        this.settings = settings;
+    }
+
+    /**
+     * Learn the noise profile from a noise-only selection of a file
+     */
+    public static NoiseProfile learnProfile(File file, float startSeconds, float endSeconds, int fftSize)
+            throws IOException, UnsupportedAudioFileException {
+        try (AudioInputStream stream = AudioProcessor.openPcm(file)) {
+            AudioFormat format = stream.getFormat();
+            long start = (long) (startSeconds * format.getFrameRate());
+            int frames = (int) Math.min((long) (Math.max(0, endSeconds - startSeconds) * format.getFrameRate()),
+                (long) format.getFrameRate() * 60);
+            skipFully(stream, start * format.getFrameSize());
+            float[] samples = new float[frames * format.getChannels()];
+            frames = readFrames(stream, PcmCodec.of(format), samples, 0, frames);
+            return NoiseProfile.learn(samples, frames, format.getChannels(), fftSize, false);
+        }
+    }
+
+    /**
+     * Guess the noise profile from the quietest tenth of the first seconds, for files without a
+     * noise-only selection
+     */
+    public static NoiseProfile estimateProfile(File file, float seconds, int fftSize)
+            throws IOException, UnsupportedAudioFileException {
+        try (AudioInputStream stream = AudioProcessor.openPcm(file)) {
+            AudioFormat format = stream.getFormat();
+            int frames = (int) (seconds * format.getFrameRate());
+            float[] samples = new float[frames * format.getChannels()];
+            frames = readFrames(stream, PcmCodec.of(format), samples, 0, frames);
+            return NoiseProfile.learn(samples, frames, format.getChannels(), fftSize, true);
+        }
+    }
+
+    /**
+     * Denoise a whole file into a WAV of the same layout
+     * @return false if cancelled
+     */
+    public boolean process(File inputFile, File outputFile, NoiseProfile profile, IntConsumer progress,
+                           BooleanSupplier cancelled) throws IOException, UnsupportedAudioFileException {
+        try (AudioInputStream stream = AudioProcessor.openPcm(inputFile)) {
+            AudioFormat format = stream.getFormat();
+            int channels = format.getChannels();
+            if (profile.channels != channels || profile.fftSize != settings.fftSize) {
+                throw new IllegalArgumentException("Noise profile is for " + profile.channels + " channels at FFT size "
+                    + profile.fftSize + ", not " + channels + " at " + settings.fftSize);
+            }
+            PcmCodec input = PcmCodec.of(format);
+            PcmCodec wav = PcmCodec.of(input.getBits(), input.isFloatingPoint(), input.getBits() == 8, false);
+            try (WavWriter writer = new WavWriter(outputFile, (int) format.getSampleRate(), channels, wav.getBits(),
+                    wav.isFloatingPoint())) {
+                return processChunks(stream, input, new ChunkWriter(writer, wav, channels), profile,
+                    stream.getFrameLength(), progress, cancelled);
+            }
+        }
+    }
+
+    private boolean processChunks(AudioInputStream stream, PcmCodec input, ChunkWriter output, NoiseProfile profile,
+                                  long totalFrames, IntConsumer progress, BooleanSupplier cancelled) throws IOException {
+        int channels = profile.channels;
+        long requested = (long) (settings.chunkSeconds * stream.getFormat().getFrameRate());
+        int chunk = (int) Math.max(settings.fftSize * 16, Math.min(requested, 1 << 24));
+        int overlap = settings.fftSize * 8;
+        ArrayDeque<PendingChunk> pending = new ArrayDeque<>();
+
+        // Chunk i reads [i * chunk - overlap, (i + 1) * chunk + overlap); the first starts at 0
+        float[] carry = null;
+        long start = 0;
+        boolean last = false;
+        for (int index = 0; !last; index++) {
+            if (cancelled.getAsBoolean()) {
+                cancelAll(pending);
+                return false;
+            }
+            int carried = carry != null ? 2 * overlap : 0;
+            int wanted = index == 0 ? chunk + overlap : chunk;
+            float[] samples = new float[(carried + wanted) * channels];
+            if (carry != null) {
+                System.arraycopy(carry, 0, samples, 0, carried * channels);
+            }
+            int read = readFrames(stream, input, samples, carried, wanted);
+            last = read < wanted;
+            int frames = carried + read;
+            if (!last) {
+                carry = Arrays.copyOfRange(samples, (frames - 2 * overlap) * channels, frames * channels);
+            }
+
+            long chunkStart = start;
+            int chunkFrames = frames;
+            Future<float[]> result = chunkPool.submit(() -> denoise(samples, chunkFrames, profile));
+            pending.add(new PendingChunk(index, chunkStart, chunkFrames, last, result));
+            start = (long) (index + 1) * chunk - overlap;
+
+            while (pending.size() > THREADS * 2 || (last && !pending.isEmpty())) {
+                output.write(pending.poll(), chunk, overlap);
+                if (totalFrames > 0) {
+                    progress.accept((int) Math.min(99, output.written * 100 / totalFrames));
+                }
+            }
+        }
+        return true;
+    }
+
+    private static void cancelAll(ArrayDeque<PendingChunk> pending) {
+        for (PendingChunk chunk : pending) {
+            chunk.result.cancel(true);
+        }
+    }
+
+    /**
+     * Short-time Wiener filtering of one chunk, channel pairs sharing each complex FFT
+     */
+    float[] denoise(float[] samples, int frames, NoiseProfile profile) {
+        int size = settings.fftSize;
+        int hop = size / 4;
+        int bins = size / 2 + 1;
+        int channels = profile.channels;
+        Fft fft = profile.fft;
+        float[] window = profile.window;
+        float[] re = new float[size];
+        float[] im = new float[size];
+        float[] output = new float[frames * channels];
+        float[][] cleanPower = new float[channels][bins];
+        float floor = (float) Math.pow(10, -settings.reductionDb / 20);
+        float smoothing = settings.smoothing;
+
+        for (int first = 0; first < channels; first += 2) {
+            int second = Math.min(first + 1, channels - 1);
+            boolean pair = second != first;
+            float[] noiseA = profile.scaledPower(first, settings.overSubtraction);
+            float[] noiseB = profile.scaledPower(second, settings.overSubtraction);
+
+            // Frames cover the chunk from both ends so every sample gets the full window sum
+            for (int position = hop - size; position < frames; position += hop) {
+                for (int n = 0; n < size; n++) {
+                    int frame = position + n;
+                    boolean inside = frame >= 0 && frame < frames;
+                    re[n] = inside ? samples[frame * channels + first] * window[n] : 0f;
+                    im[n] = inside && pair ? samples[frame * channels + second] * window[n] : 0f;
+                }
+                fft.forward(re, im);
+
+                for (int k = 0; k < bins; k++) {
+                    int m = (size - k) & (size - 1);
+                    // Separate the two real spectra packed in one complex transform
+                    float ar = (re[k] + re[m]) * 0.5f, ai = (im[k] - im[m]) * 0.5f;
+                    float br = (im[k] + im[m]) * 0.5f, bi = (re[m] - re[k]) * 0.5f;
+                    float gainA = wienerGain(ar * ar + ai * ai, noiseA[k], cleanPower[first], k, smoothing, floor);
+                    float gainB = pair ? wienerGain(br * br + bi * bi, noiseB[k], cleanPower[second], k, smoothing, floor) : 0f;
+                    re[k] = gainA * ar - gainB * bi;
+                    im[k] = gainA * ai + gainB * br;
+                    if (m != k) {
+                        re[m] = gainA * ar + gainB * bi;
+                        im[m] = -gainA * ai + gainB * br;
+                    }
+                }
+                fft.inverse(re, im);
+
+                for (int n = 0; n < size; n++) {
+                    int frame = position + n;
+                    if (frame < 0 || frame >= frames) continue;
+                    // sqrt-Hann on both sides sums to 2 at a quarter-frame hop
+                    output[frame * channels + first] += re[n] * window[n] * 0.5f;
+                    if (pair) {
+                        output[frame * channels + second] += im[n] * window[n] * 0.5f;
+                    }
+                }
+            }
+        }
+        return output;
+    }
+
+    // Decision-directed a priori SNR (Ephraim-Malah), Wiener gain with a floor
+    private static float wienerGain(float power, float noise, float[] cleanPower, int bin, float smoothing, float floor) {
+        float posterior = power / noise;
+        float prior = smoothing * cleanPower[bin] / noise + (1 - smoothing) * Math.max(posterior - 1, 0f);
+        float gain = Math.max(floor, prior / (1 + prior));
+        cleanPower[bin] = gain * gain * power;
+        return gain;
+    }
+
+    private static int readFrames(AudioInputStream stream, PcmCodec codec, float[] samples, int frameOffset, int frames)
+            throws IOException {
+        int frameSize = stream.getFormat().getFrameSize();
+        int channels = stream.getFormat().getChannels();
+        byte[] block = new byte[Math.min(frames, 8192) * frameSize];
+        int done = 0;
+        while (done < frames) {
+            int wanted = Math.min(frames - done, block.length / frameSize) * frameSize;
+            int filled = 0;
+            while (filled < wanted) {
+                int read = stream.read(block, filled, wanted - filled);
+                if (read == -1) break;
+                filled += read;
+            }
+            int got = filled / frameSize;
+            codec.decode(block, 0, samples, (frameOffset + done) * channels, got * channels);
+            done += got;
+            if (filled < wanted) break;
+        }
+        return done;
+    }
+
+    private static void skipFully(AudioInputStream stream, long bytes) throws IOException {
+        while (bytes > 0) {
+            long skipped = stream.skip(bytes);
+            if (skipped <= 0) {
+                if (stream.read() == -1) return;
+                skipped = 1;
+            }
+            bytes -= skipped;
+        }
+    }
+
+    public static void shutdown() {
+        chunkPool.shutdownNow();
+    }
+
+    private static final class PendingChunk {
+        final int index;
+        final long start;
+        final int frames;
+        final boolean last;
+        final Future<float[]> result;
+
+        PendingChunk(int index, long start, int frames, boolean last, Future<float[]> result) {
+            this.index = index;
+            this.start = start;
+            this.frames = frames;
+            this.last = last;
+            this.result = result;
+        }
+    }
+
+    // Chunk Writer Class - stitches finished chunks in order, crossfading over the middle of each overlap
+    private static final class ChunkWriter {
+        private final WavWriter writer;
+        private final PcmCodec codec;
+        private final int channels;
+        private float[] tail;   // Previous chunk's output over the next crossfade
+        private byte[] bytes = new byte[0];
+        long written = 0;
+
+        ChunkWriter(WavWriter writer, PcmCodec codec, int channels) {
+            this.writer = writer;
+            this.codec = codec;
+            this.channels = channels;
+        }
+
+        void write(PendingChunk chunk, int chunkFrames, int overlap) throws IOException {
+            float[] samples;
+            try {
+                samples = chunk.result.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Noise reduction interrupted", e);
+            } catch (ExecutionException e) {
+                throw new IOException("Noise reduction failed: " + e.getCause(), e.getCause());
+            }
+
+            int half = overlap / 2;
+            long boundary = (long) chunk.index * chunkFrames;
+            int from = 0;
+            if (chunk.index > 0) {
+                // Crossfade [boundary - half, boundary + half) against the previous chunk
+                int local = (int) (boundary - half - chunk.start);
+                for (int frame = 0; frame < overlap; frame++) {
+                    float weight = (frame + 0.5f) / overlap;
+                    for (int ch = 0; ch < channels; ch++) {
+                        int index = (local + frame) * channels + ch;
+                        samples[index] = tail[frame * channels + ch] * (1 - weight) + samples[index] * weight;
+                    }
+                }
+                from = local;
+            }
+            int to = chunk.last ? chunk.frames : (int) (boundary + chunkFrames - half - chunk.start);
+            if (!chunk.last) {
+                tail = Arrays.copyOfRange(samples, to * channels, (to + overlap) * channels);
+            }
+            emit(samples, from, to);
+        }
+
+        private void emit(float[] samples, int from, int to) throws IOException {
+            int count = (to - from) * channels;
+            if (count <= 0) return;
+            int needed = count * codec.getBytesPerSample();
+            if (bytes.length < needed) {
+                bytes = new byte[needed];
+            }
+            codec.encode(samples, from * channels, bytes, 0, count);
+            writer.write(bytes, 0, needed);
+            written += to - from;
+        }
+    }
+
+    // Noise Profile Class - average noise power per bin and channel
+    public static class NoiseProfile {
+        public final int fftSize;
+        public final int channels;
+        private final float[][] power;
+        private final Fft fft;
+        private final float[] window;
+
+        NoiseProfile(int fftSize, int channels, float[][] power) {
+            this.fftSize = fftSize;
+            this.channels = channels;
+            this.power = power;
+            this.fft = new Fft(fftSize);
+            this.window = sqrtHann(fftSize);
+        }
+
+        /**
+         * @param quietest average only the quietest tenth of the frames instead of all of them
+         */
+        public static NoiseProfile learn(float[] samples, int frames, int channels, int fftSize, boolean quietest) {
+            Fft fft = new Fft(fftSize);
+            float[] window = sqrtHann(fftSize);
+            int bins = fftSize / 2 + 1;
+            int hop = fftSize / 2;
+            int count = Math.max(1, (frames - fftSize) / hop + 1);
+            float[][][] spectra = new float[count][channels][bins];
+            double[] energy = new double[count];
+            float[] re = new float[fftSize];
+            float[] im = new float[fftSize];
+            for (int index = 0; index < count; index++) {
+                for (int ch = 0; ch < channels; ch++) {
+                    for (int n = 0; n < fftSize; n++) {
+                        int frame = index * hop + n;
+                        re[n] = frame < frames ? samples[frame * channels + ch] * window[n] : 0f;
+                        im[n] = 0f;
+                    }
+                    fft.forward(re, im);
+                    for (int k = 0; k < bins; k++) {
+                        float p = re[k] * re[k] + im[k] * im[k];
+                        spectra[index][ch][k] = p;
+                        energy[index] += p;
+                    }
+                }
+            }
+
+            Integer[] order = new Integer[count];
+            for (int i = 0; i < count; i++) order[i] = i;
+            int used = count;
+            if (quietest) {
+                Arrays.sort(order, (a, b) -> Double.compare(energy[a], energy[b]));
+                used = Math.max(1, count / 10);
+            }
+            float[][] power = new float[channels][bins];
+            for (int i = 0; i < used; i++) {
+                for (int ch = 0; ch < channels; ch++) {
+                    for (int k = 0; k < bins; k++) {
+                        power[ch][k] += spectra[order[i]][ch][k] / used;
+                    }
+                }
+            }
+            return new NoiseProfile(fftSize, channels, power);
+        }
+
+        // Never zero, so digital silence in the profile can't divide by zero
+        float[] scaledPower(int channel, float factor) {
+            float[] scaled = new float[power[channel].length];
+            for (int k = 0; k < scaled.length; k++) {
+                scaled[k] = Math.max(1e-12f, power[channel][k] * factor);
+            }
+            return scaled;
+        }
+
+        private static float[] sqrtHann(int size) {
+            float[] window = new float[size];
+            for (int n = 0; n < size; n++) {
+                window[n] = (float) Math.sqrt(0.5 - 0.5 * Math.cos(2 * Math.PI * n / size));
+            }
+            return window;
+        }
+    }
+
+    // Settings Class
+    public static class Settings {
+        public int fftSize = 2048;           // ~43 ms at 48 kHz
+        public float reductionDb = 18f;      // Most a bin is ever turned down
+        public float smoothing = 0.98f;      // Decision-directed weight; higher = fewer musical-noise artifacts
+        public float overSubtraction = 1.5f; // Noise profile multiplier
+        public float chunkSeconds = 10f;
+    }
+}
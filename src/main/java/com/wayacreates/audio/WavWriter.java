@@ -0,0 +1,99 @@
+package com.wayacreates.audio;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * WAV file writer that streams sample data straight to disk. The header is written up front with
+ * placeholder sizes and patched on close, so nothing is held in memory however long the file gets.
+ */
+public class WavWriter implements AutoCloseable {
+    private static final int HEADER_BYTES = 44;
+    private static final long MAX_DATA_BYTES = 0xFFFFFFFFL - 36; // RIFF sizes are 32-bit
+
+    private final RandomAccessFile file;
+    private final int frameSize;
+    private long dataBytes = 0;
+    private boolean closed = false;
+
+    /**
+     * @param floatingPoint 32-bit IEEE float samples instead of integer PCM
+     */
+    public WavWriter(File output, int sampleRate, int channels, int bitsPerSample, boolean floatingPoint) throws IOException {
+        this.file = new RandomAccessFile(output, "rw");
+        this.frameSize = channels * (bitsPerSample / 8);
+        file.setLength(0);
+
+        byte[] header = new byte[HEADER_BYTES];
+        putAscii(header, 0, "RIFF");
+        putAscii(header, 8, "WAVE");
+        putAscii(header, 12, "fmt ");
+        putInt(header, 16, 16);
+        putShort(header, 20, floatingPoint ? 3 : 1);
+        putShort(header, 22, channels);
+        putInt(header, 24, sampleRate);
+        putInt(header, 28, sampleRate * frameSize);
+        putShort(header, 32, frameSize);
+        putShort(header, 34, bitsPerSample);
+        putAscii(header, 36, "data");
+        file.write(header);
+    }
+
+    /**
+     * Append little-endian sample bytes; whole frames only
+     */
+    public void write(byte[] data, int offset, int length) throws IOException {
+        if (length % frameSize != 0) {
+            throw new IllegalArgumentException("Partial frame: " + length + " bytes for " + frameSize + "-byte frames");
+        }
+        if (dataBytes + length > MAX_DATA_BYTES) {
+            throw new IOException("WAV data would exceed 4 GB");
+        }
+        file.write(data, offset, length);
+        dataBytes += length;
+    }
+
+    public long getFramesWritten() {
+        return dataBytes / frameSize;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            // Word-align the data chunk, then fill in the sizes
+            if ((dataBytes & 1) != 0) {
+                file.write(0);
+            }
+            byte[] size = new byte[4];
+            putInt(size, 0, (int) (36 + dataBytes + (dataBytes & 1)));
+            file.seek(4);
+            file.write(size);
+            putInt(size, 0, (int) dataBytes);
+            file.seek(40);
+            file.write(size);
+        } finally {
+            file.close();
+        }
+    }
+
+    private static void putAscii(byte[] target, int offset, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            target[offset + i] = (byte) text.charAt(i);
+        }
+    }
+
+    private static void putShort(byte[] target, int offset, int value) {
+        target[offset] = (byte) value;
+        target[offset + 1] = (byte) (value >> 8);
+    }
+
+    private static void putInt(byte[] target, int offset, int value) {
+        target[offset] = (byte) value;
+        target[offset + 1] = (byte) (value >> 8);
+        target[offset + 2] = (byte) (value >> 16);
+        target[offset + 3] = (byte) (value >> 24);
+    }
+}
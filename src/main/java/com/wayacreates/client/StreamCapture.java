@@ -0,0 +1,160 @@
+package com.wayacreates.client;
+
+import com.mojang.blaze3d.platform.GlStateManager;
+import com.wayacreates.WayaCreatesEngine;
+import com.wayacreates.livestream.LivestreamManager;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.gl.Framebuffer;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL12;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL21;
+import org.lwjgl.opengl.GL30;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Stream Capture
+ * Reads each finished frame back from the main framebuffer while the local player is livestreaming
+ * and runs it through {@link LivestreamManager#processFrame} on a capture thread, which applies the
+ * stream's effects and feeds its encoders. Readback goes through a pixel buffer object that is only
+ * mapped when the next frame is due, so the render thread never waits on the GPU. Frames are paced
+ * to the stream's frame rate, and one is skipped while the capture thread is still busy with the
+ * last. Only streams hosted by this game instance (singleplayer or the LAN host) can be captured.
+ */
+public final class StreamCapture {
+    private static final Logger LOGGER = LoggerFactory.getLogger("WayaCreates/StreamCapture");
+
+    private static final ExecutorService CAPTURE_THREAD = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "WayaCreates-StreamCapture");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final AtomicBoolean busy = new AtomicBoolean();
+
+    // Render thread only
+    private static int pbo = 0;
+    private static int width = 0;
+    private static int height = 0;
+    private static boolean pending = false;
+    private static long nextCaptureNanos = 0;
+    private static int[] frame;
+
+    private StreamCapture() {}
+
+    /**
+     * Called on the render thread once the frame (world, HUD and screens) is finished
+     */
+    public static void onFrameRendered() {
+        MinecraftClient client = MinecraftClient.getInstance();
+        LivestreamManager manager = WayaCreatesEngine.getLivestreamManager();
+        UUID playerId = client.player != null ? client.player.getUuid() : null;
+        int frameRate = manager != null && playerId != null ? manager.getCaptureFrameRate(playerId) : 0;
+        if (frameRate <= 0) {
+            release();
+            return;
+        }
+
+        long now = System.nanoTime();
+        if (now < nextCaptureNanos) return;
+        long interval = 1_000_000_000L / frameRate;
+        // Fell more than a frame behind (a hitch or a slow client): restart the pacing from now
+        nextCaptureNanos = now - nextCaptureNanos > interval ? now + interval : nextCaptureNanos + interval;
+
+        Framebuffer framebuffer = client.getFramebuffer();
+        if (framebuffer.textureWidth != width || framebuffer.textureHeight != height) {
+            release();
+            allocate(framebuffer.textureWidth, framebuffer.textureHeight);
+        }
+        if (pending) {
+            // Read back a frame interval ago, so the GPU is long done with it
+            handOff(manager, playerId);
+        }
+        readBack(framebuffer);
+    }
+
+    private static void allocate(int frameWidth, int frameHeight) {
+        width = frameWidth;
+        height = frameHeight;
+        pbo = GL15.glGenBuffers();
+        GL15.glBindBuffer(GL21.GL_PIXEL_PACK_BUFFER, pbo);
+        GL15.glBufferData(GL21.GL_PIXEL_PACK_BUFFER, (long) width * height * 4, GL15.GL_STREAM_READ);
+        GL15.glBindBuffer(GL21.GL_PIXEL_PACK_BUFFER, 0);
+        LOGGER.info("📡 Capturing stream frames at {}x{}", width, height);
+    }
+
+    private static void release() {
+        if (pbo != 0) {
+            GL15.glDeleteBuffers(pbo);
+            pbo = 0;
+        }
+        width = 0;
+        height = 0;
+        pending = false;
+    }
+
+    // Queue an asynchronous copy of the framebuffer into the PBO as BGRA bytes, which read as ARGB ints
+    private static void readBack(Framebuffer framebuffer) {
+        int previousRead = GL11.glGetInteger(GL30.GL_READ_FRAMEBUFFER_BINDING);
+        GlStateManager._glBindFramebuffer(GL30.GL_READ_FRAMEBUFFER, framebuffer.fbo);
+        GL15.glBindBuffer(GL21.GL_PIXEL_PACK_BUFFER, pbo);
+        GL11.glPixelStorei(GL11.GL_PACK_ALIGNMENT, 4);
+        GL11.glReadPixels(0, 0, width, height, GL12.GL_BGRA, GL11.GL_UNSIGNED_BYTE, 0L);
+        GL15.glBindBuffer(GL21.GL_PIXEL_PACK_BUFFER, 0);
+        GlStateManager._glBindFramebuffer(GL30.GL_READ_FRAMEBUFFER, previousRead);
+        pending = true;
+    }
+
+    private static void handOff(LivestreamManager manager, UUID playerId) {
+        pending = false;
+        if (!busy.compareAndSet(false, true)) {
+            // Still processing the last frame; the stream telemetry counts the gap as a late capture
+            return;
+        }
+
+        int frameWidth = width;
+        int frameHeight = height;
+        if (frame == null || frame.length != frameWidth * frameHeight) {
+            frame = new int[frameWidth * frameHeight];
+        }
+        int[] pixels = frame;
+        GL15.glBindBuffer(GL21.GL_PIXEL_PACK_BUFFER, pbo);
+        ByteBuffer mapped = GL15.glMapBuffer(GL21.GL_PIXEL_PACK_BUFFER, GL15.GL_READ_ONLY);
+        if (mapped != null) {
+            // GL rows run bottom-up
+            IntBuffer rows = mapped.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+            for (int y = 0; y < frameHeight; y++) {
+                rows.position((frameHeight - 1 - y) * frameWidth);
+                rows.get(pixels, y * frameWidth, frameWidth);
+            }
+            GL15.glUnmapBuffer(GL21.GL_PIXEL_PACK_BUFFER);
+        }
+        GL15.glBindBuffer(GL21.GL_PIXEL_PACK_BUFFER, 0);
+        if (mapped == null) {
+            busy.set(false);
+            return;
+        }
+
+        CAPTURE_THREAD.execute(() -> {
+            try {
+                // The framebuffer's alpha is whatever blending left behind; stream frames are opaque
+                for (int i = 0; i < pixels.length; i++) {
+                    pixels[i] |= 0xFF000000;
+                }
+                manager.processFrame(playerId, pixels, frameWidth, frameHeight);
+            } catch (RuntimeException e) {
+                LOGGER.error("❌ Stream frame processing failed", e);
+            } finally {
+                busy.set(false);
+            }
+        });
+    }
+}
@@ -0,0 +1,77 @@
+package com.wayacreates.commands;
+
+import com.mojang.brigadier.builder.LiteralArgumentBuilder;
+import com.wayacreates.audio.EffectChain;
+import com.wayacreates.audio.MultitrackMixer;
+import com.wayacreates.audio.PcmCodec;
+import net.minecraft.server.command.ServerCommandSource;
+
+import static net.minecraft.server.command.CommandManager.literal;
+
+/**
+ * Audio Bench Commands for WayaCreates Engine
+ * Benchmarks for PCM conversion, the multitrack mixer and effect chains
+ */
+public class AudioBenchCommands {
+    
+    public static void register(LiteralArgumentBuilder<ServerCommandSource> bench) {
+        bench.then(literal("pcm")
+                .executes(context -> benchPcm(context.getSource())))
+            .then(literal("mixer")
+                .executes(context -> benchMixer(context.getSource())))
+            .then(literal("effects")
+                .executes(context -> benchEffects(context.getSource())));
+    }
+    
+    /**
+     * Round-trips every packed PCM layout
+     */
+    public static int benchPcm(ServerCommandSource source) {
+        return BenchCommands.runAsync(source, "Benchmarking PCM conversion...", feedback -> {
+            boolean correct = true;
+            for (PcmCodec codec : PcmCodec.allLayouts()) {
+                // Warm up once so the JIT doesn't dominate the numbers
+                PcmCodec.benchmark(codec, 1 << 16, 100);
+                PcmCodec.BenchmarkResult result = PcmCodec.benchmark(codec, 1 << 16, 400);
+                feedback.info("🔊 " + result);
+                correct &= result.isCorrect();
+            }
+            if (!correct) {
+                feedback.error("❌ PCM round trip failed");
+            }
+        });
+    }
+    
+    /**
+     * Renders mixer blocks at increasing track counts against the real-time budget
+     */
+    public static int benchMixer(ServerCommandSource source) {
+        return BenchCommands.runAsync(source, "Benchmarking multitrack mixer...", feedback -> {
+            // Warm up once so the JIT doesn't dominate the numbers
+            MultitrackMixer.benchmark(64, 480, 2000);
+            for (int tracks : new int[] {16, 64, 128}) {
+                MultitrackMixer.MixerStats result = MultitrackMixer.benchmark(tracks, 480, 2000);
+                feedback.info("🎚️ " + result);
+                if (result.averageRenderMicros > result.blockMicros) {
+                    feedback.error("❌ Mixer can't keep up with " + tracks + " tracks");
+                    return;
+                }
+            }
+        });
+    }
+    
+    /**
+     * Runs a compiled effect chain and checks its output stays in range
+     */
+    public static int benchEffects(ServerCommandSource source) {
+        return BenchCommands.runAsync(source, "Benchmarking effect chain...", feedback -> {
+            // Warm up once so the JIT doesn't dominate the numbers
+            EffectChain.benchmark(48000, 480, 2000);
+            EffectChain.BenchmarkResult result = EffectChain.benchmark(48000, 480, 2000);
+            feedback.info("🎨 " + result);
+            if (!result.isStable()) {
+                feedback.error("❌ Effect chain output went out of range");
+            }
+        });
+    }
+}
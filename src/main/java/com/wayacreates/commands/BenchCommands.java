@@ -0,0 +1,82 @@
+package com.wayacreates.commands;
+
+import com.mojang.brigadier.builder.LiteralArgumentBuilder;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.command.ServerCommandSource;
+import net.minecraft.text.Text;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static net.minecraft.server.command.CommandManager.literal;
+
+/**
+ * Bench Commands for WayaCreates Engine
+ * Builds the operator-only /wce bench tree from the per-subsystem bench commands and runs every
+ * benchmark on a worker thread, one at a time, so the server tick never stalls on one. Results are
+ * sent back to the command source on the server thread.
+ */
+public class BenchCommands {
+    
+    // One worker: benchmarks queue up instead of competing with each other for cores
+    private static final ExecutorService BENCH_THREAD = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "WayaCreates-Bench");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    /**
+     * Reports progress and results from the bench thread
+     */
+    public interface Feedback {
+        void info(String message);
+        void error(String message);
+    }
+    
+    /**
+     * A benchmark body, run on the bench thread
+     */
+    @FunctionalInterface
+    public interface Benchmark {
+        void run(Feedback feedback) throws Exception;
+    }
+    
+    /**
+     * The bench node with every subsystem's benchmarks, for server operators only
+     */
+    public static LiteralArgumentBuilder<ServerCommandSource> create() {
+        LiteralArgumentBuilder<ServerCommandSource> bench = literal("bench")
+            .requires(source -> source.hasPermissionLevel(2));
+        RecordingBenchCommands.register(bench);
+        VideoBenchCommands.register(bench);
+        AudioBenchCommands.register(bench);
+        return bench;
+    }
+    
+    /**
+     * Queue a benchmark on the bench thread; its feedback arrives on the server thread
+     */
+    public static int runAsync(ServerCommandSource source, String description, Benchmark benchmark) {
+        source.sendFeedback(() -> Text.literal(description), false);
+        MinecraftServer server = source.getServer();
+        Feedback feedback = new Feedback() {
+            @Override
+            public void info(String message) {
+                server.execute(() -> source.sendFeedback(() -> Text.literal(message), false));
+            }
+            
+            @Override
+            public void error(String message) {
+                server.execute(() -> source.sendError(Text.literal(message)));
+            }
+        };
+        BENCH_THREAD.execute(() -> {
+            try {
+                benchmark.run(feedback);
+            } catch (Exception e) {
+                feedback.error("❌ Error running benchmark: " + e.getMessage());
+            }
+        });
+        return 1;
+    }
+}
@@ -3,11 +3,20 @@ package com.wayacreates.commands;
 import com.wayacreates.WayaCreatesEngine;
 import com.wayacreates.shader.ShaderManager;
 import com.wayacreates.entity.EntityModelManager;
+import com.wayacreates.livestream.LivestreamManager;
+import com.wayacreates.livestream.StreamAudioMixer;
+import com.wayacreates.livestream.StreamDelay;
+import com.wayacreates.livestream.StreamEngine;
+import com.wayacreates.livestream.StreamTelemetry;
+import com.wayacreates.utils.LeakDetector;
 import com.mojang.brigadier.CommandDispatcher;
 import com.mojang.brigadier.context.CommandContext;
 import net.minecraft.server.command.ServerCommandSource;
 import net.minecraft.text.Text;
 
+import java.util.List;
+import java.util.UUID;
+
 import static net.minecraft.server.command.CommandManager.literal;
 
 /**
@@ -22,13 +31,19 @@ public class DebugCommands {
             .then(literal("debug")
                 .executes(DebugCommands::showDebugInfo))
             .then(literal("reload")
+                .requires(source -> source.hasPermissionLevel(2))
                 .executes(DebugCommands::reloadAll))
             .then(literal("status")
                 .executes(DebugCommands::showStatus))
             .then(literal("shaders")
                 .executes(DebugCommands::testShaders))
             .then(literal("entities")
-                .executes(DebugCommands::testEntities)));
+                .executes(DebugCommands::testEntities))
+            .then(literal("leaks")
+                .executes(DebugCommands::showLeaks))
+            .then(literal("stream")
+                .executes(DebugCommands::showStreamHealth))
+            .then(BenchCommands.create()));
     }
     
     private static int showDebugInfo(CommandContext<ServerCommandSource> context) {
@@ -181,4 +196,70 @@ public class DebugCommands {
         
         return 1;
     }
+    
+    private static int showLeaks(CommandContext<ServerCommandSource> context) {
+        context.getSource().sendFeedback(() -> Text.literal("=== Session Resources ==="), false);
+        
+        List<LeakDetector.OpenResource> open = LeakDetector.getOpenResources();
+        long leaked = LeakDetector.getLeakedCount();
+        context.getSource().sendFeedback(() -> Text.literal("Open: " + open.size() + ", leaked (GC'd unclosed): " + leaked), false);
+        for (LeakDetector.OpenResource resource : open) {
+            context.getSource().sendFeedback(() -> Text.literal("- " + resource), false);
+        }
+        
+        if (leaked > 0) {
+            context.getSource().sendError(Text.literal("💧 Leaks detected - see the server log for details"));
+        }
+        return 1;
+    }
+    
+    private static int showStreamHealth(CommandContext<ServerCommandSource> context) {
+        LivestreamManager livestreamManager = WayaCreatesEngine.getLivestreamManager();
+        if (livestreamManager == null) {
+            context.getSource().sendError(Text.literal("❌ Livestream system not available"));
+            return 0;
+        }
+        
+        context.getSource().sendFeedback(() -> Text.literal("=== Stream Health ==="), false);
+        if (livestreamManager.getStreamingPlayers().isEmpty()) {
+            context.getSource().sendFeedback(() -> Text.literal("No active streams"), false);
+            return 1;
+        }
+        
+        for (UUID playerId : livestreamManager.getStreamingPlayers()) {
+            LivestreamManager.StreamStatus status = livestreamManager.getStreamStatus(playerId);
+            if (status == null) continue;
+            StreamTelemetry.Snapshot telemetry = status.telemetry;
+            context.getSource().sendFeedback(() -> Text.literal("📡 " + status.sessionId + " on " + status.platform + " at "
+                + status.quality + ", " + status.currentViewers + " viewers, up " + status.streamDuration / 1000 + "s"), false);
+            if (telemetry.latest != null) {
+                context.getSource().sendFeedback(() -> Text.literal("  Now: " + telemetry.latest), false);
+            }
+            context.getSource().sendFeedback(() -> Text.literal("  Total: " + telemetry), false);
+            
+            StreamEngine.StreamStats stats = livestreamManager.getStreamStats(playerId);
+            if (stats != null) {
+                for (StreamEngine.OutputStats output : stats.outputs) {
+                    context.getSource().sendFeedback(() -> Text.literal("  ➜ " + output), false);
+                }
+            }
+            StreamAudioMixer mixer = livestreamManager.getAudioMixer(playerId);
+            if (mixer != null) {
+                StreamAudioMixer.MixerStats audio = mixer.getStats();
+                context.getSource().sendFeedback(() -> Text.literal("  🎵 " + audio), false);
+            }
+            StreamDelay.DelayStats delay = livestreamManager.getDelayStats(playerId);
+            if (delay != null) {
+                context.getSource().sendFeedback(() -> Text.literal("  ⏳ " + delay), false);
+            }
+            
+            // Last ten seconds of throughput, oldest first
+            StringBuilder trend = new StringBuilder("  Last 10s:");
+            for (StreamTelemetry.Sample sample : livestreamManager.getTelemetryHistory(playerId, 10)) {
+                trend.append(String.format(" %.0ffps/%.0fk", sample.encodeFps, sample.outputBps / 1000));
+            }
+            context.getSource().sendFeedback(() -> Text.literal(trend.toString()), false);
+        }
+        return 1;
+    }
 }
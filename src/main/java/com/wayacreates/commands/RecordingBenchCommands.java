@@ -0,0 +1,36 @@
+package com.wayacreates.commands;
+
+import com.mojang.brigadier.builder.LiteralArgumentBuilder;
+import com.wayacreates.recording.TransformStreamCodec;
+import net.minecraft.server.command.ServerCommandSource;
+
+import static net.minecraft.server.command.CommandManager.literal;
+
+/**
+ * Recording Bench Commands for WayaCreates Engine
+ * Benchmarks for the recording codecs
+ */
+public class RecordingBenchCommands {
+    
+    public static void register(LiteralArgumentBuilder<ServerCommandSource> bench) {
+        bench.then(literal("transforms")
+            .executes(context -> benchTransforms(context.getSource())));
+    }
+    
+    /**
+     * Encodes and decodes synthetic entity transforms and checks the error bound
+     */
+    public static int benchTransforms(ServerCommandSource source) {
+        return BenchCommands.runAsync(source, "Benchmarking transform stream codec...", feedback -> {
+            TransformStreamCodec codec = new TransformStreamCodec();
+            // Warm up once so the JIT doesn't dominate the numbers
+            TransformStreamCodec.benchmark(codec, 100, 100, 0.3);
+            TransformStreamCodec.BenchmarkResult result = TransformStreamCodec.benchmark(codec, 500, 200, 0.3);
+            
+            feedback.info("📦 " + result);
+            if (!result.isWithinErrorBound()) {
+                feedback.error("❌ Decoded transforms exceeded the error bound");
+            }
+        });
+    }
+}
@@ -0,0 +1,37 @@
+package com.wayacreates.commands;
+
+import com.mojang.brigadier.builder.LiteralArgumentBuilder;
+import com.wayacreates.video.OverlayLayer;
+import net.minecraft.server.command.ServerCommandSource;
+
+import static net.minecraft.server.command.CommandManager.literal;
+
+/**
+ * Video Bench Commands for WayaCreates Engine
+ * Benchmarks for frame compositing
+ */
+public class VideoBenchCommands {
+    
+    public static void register(LiteralArgumentBuilder<ServerCommandSource> bench) {
+        bench.then(literal("overlays")
+            .executes(context -> benchOverlays(context.getSource())));
+    }
+    
+    /**
+     * Composites overlays through the cached layer and checks it against per-overlay blending
+     */
+    public static int benchOverlays(ServerCommandSource source) {
+        return BenchCommands.runAsync(source, "Benchmarking overlay compositing...", feedback -> {
+            // Warm up once so the JIT doesn't dominate the numbers
+            OverlayLayer.benchmark(24, 1920, 1080, 20);
+            for (int overlays : new int[] {24, 48}) {
+                OverlayLayer.BenchmarkResult result = OverlayLayer.benchmark(overlays, 1920, 1080, 120);
+                feedback.info("🖼️ " + result);
+                if (!result.isMatching()) {
+                    feedback.error("❌ Layered output differs from per-overlay output");
+                    return;
+                }
+            }
+        });
+    }
+}
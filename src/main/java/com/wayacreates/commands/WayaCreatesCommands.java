@@ -16,6 +16,8 @@ import net.minecraft.command.CommandRegistryAccess;
  * - LivestreamCommands: Livestream functionality commands
  * - SystemCommands: Plugin management and settings commands
  * - CommandRegistry: Command registration and help system
+ * - DebugCommands: Debug and status commands (/wce)
+ * - BenchCommands: Operator-only benchmarks (/wce bench), with Recording-, Video- and AudioBenchCommands
  * 
  * All TODOs have been implemented with proper error handling and null checks.
  * Each file is under 300 lines as per the coding standards.
@@ -28,5 +30,6 @@ public class WayaCreatesCommands {
      */
     public static void register(CommandDispatcher<net.minecraft.server.command.ServerCommandSource> dispatcher, CommandRegistryAccess registryAccess) {
         CommandRegistry.register(dispatcher, registryAccess);
+        DebugCommands.registerCommands(dispatcher);
     }
 }
@@ -1,12 +1,16 @@
 package com.wayacreates.engine;
 
+import java.util.Arrays;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.wayacreates.integrations.MocapSampleStore;
+
 import net.minecraft.server.world.ServerWorld;
 
 /**
@@ -24,6 +28,7 @@ public class AnimationEngine {
     private CharacterRigSystem characterRigSystem;
     private FaceRigSystem faceRigSystem;
     private KeyframeTimeline keyframeTimeline;
+    private final KeyframeReducer keyframeReducer = new KeyframeReducer();
     private final Map<UUID, AnimationSession> activeSessions = new ConcurrentHashMap<>();
     
     // Animation settings
@@ -168,6 +173,37 @@ public class AnimationEngine {
         }
     }
     
+    /**
+     * Import a captured mocap take as reduced Bezier keyframes instead of one key per sample.
+     * Extraction (which may page spilled chunks back from disk) and fitting run off the calling thread.
+     * @return completes with the reduced take once its curves are on the timeline, or with null if
+     *         there is no session or nothing to import
+     */
+    public CompletableFuture<KeyframeReducer.ReducedTake> importMocapTake(UUID playerId, String target, MocapSampleStore take) {
+        AnimationSession session = activeSessions.get(playerId);
+        if (session == null || take == null || take.size() == 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+        
+        AnimationSettings settings = session.getSettings();
+        // Curves start at the playhead as it was when the import was asked for, so a take can be
+        // dropped anywhere on the timeline
+        float startTime = session.getCurrentTime();
+        return CompletableFuture.supplyAsync(() -> take.extract(take.getFirstTimestamp(), take.getLastTimestamp()))
+            .thenCompose(samples -> keyframeReducer.reduceAsync(samples,
+                settings.mocapPositionTolerance, settings.mocapRotationTolerance))
+            .thenApply(reduced -> {
+                keyframeTimeline.addCurves(session, target, reduced, startTime);
+                LOGGER.info("🎬 Imported mocap take for {}: {}", target, reduced);
+                return reduced;
+            })
+            .whenComplete((reduced, error) -> {
+                if (error != null) {
+                    LOGGER.error("❌ Failed to import mocap take for {}", target, error);
+                }
+            });
+    }
+    
     /**
      * Play animation
      */
@@ -321,6 +357,8 @@ public class AnimationEngine {
         public boolean autoKeyframe = false;
         public boolean showTimeline = true;
         public boolean showKeyframes = true;
+        public float mocapPositionTolerance = 0.01f; // Blocks
+        public float mocapRotationTolerance = 0.5f;  // Degrees
         
         @Override
         public String toString() {
@@ -503,6 +541,37 @@ public class AnimationEngine {
     }
     
     private static class KeyframeTimeline {
+        // Imported curves per session, keyed by "target.property"
+        private final Map<String, Map<String, TimelineCurve>> curves = new ConcurrentHashMap<>();
+        // Stepped animation-state keys per session, keyed by target
+        private final Map<String, Map<String, TimelineStates>> states = new ConcurrentHashMap<>();
+        
+        public void addCurves(AnimationSession session, String target, KeyframeReducer.ReducedTake take, float startTime) {
+            Map<String, TimelineCurve> sessionCurves = curves.computeIfAbsent(session.getSessionId(), k -> new ConcurrentHashMap<>());
+            sessionCurves.put(target + ".x", new TimelineCurve(take.posX, startTime));
+            sessionCurves.put(target + ".y", new TimelineCurve(take.posY, startTime));
+            sessionCurves.put(target + ".z", new TimelineCurve(take.posZ, startTime));
+            sessionCurves.put(target + ".yaw", new TimelineCurve(take.yaw, startTime));
+            sessionCurves.put(target + ".pitch", new TimelineCurve(take.pitch, startTime));
+            states.computeIfAbsent(session.getSessionId(), k -> new ConcurrentHashMap<>())
+                .put(target, new TimelineStates(take.stateTimes, take.stateBits, startTime));
+        }
+        
+        public double evaluate(AnimationSession session, String channel, float time) {
+            Map<String, TimelineCurve> sessionCurves = curves.get(session.getSessionId());
+            TimelineCurve curve = sessionCurves != null ? sessionCurves.get(channel) : null;
+            return curve != null ? curve.curve.evaluate(time - curve.startTime) : 0;
+        }
+        
+        /**
+         * Packed animation-state bits of a target at a time (held from the last key at or before it)
+         */
+        public long evaluateStates(AnimationSession session, String target, float time) {
+            Map<String, TimelineStates> sessionStates = states.get(session.getSessionId());
+            TimelineStates track = sessionStates != null ? sessionStates.get(target) : null;
+            return track != null ? track.evaluate(time - track.startTime) : 0;
+        }
+        
         public void addCharacterAnimation(AnimationSession session, String characterType, String animationName, float time) {
             // TODO: Add character animation to timeline
         }
@@ -527,4 +596,34 @@ public class AnimationEngine {
             // TODO: Update timeline
         }
     }
+    
+    private static class TimelineStates {
+        final double[] times;
+        final long[] bits;
+        final float startTime;
+        
+        TimelineStates(double[] times, long[] bits, float startTime) {
+            this.times = times;
+            this.bits = bits;
+            this.startTime = startTime;
+        }
+        
+        long evaluate(double time) {
+            if (times.length == 0) return 0;
+            int index = Arrays.binarySearch(times, time);
+            // Before the first key the take's opening state holds
+            int key = index >= 0 ? index : Math.max(0, -index - 2);
+            return bits[key];
+        }
+    }
+    
+    private static class TimelineCurve {
+        final KeyframeReducer.Curve curve;
+        final float startTime;
+        
+        TimelineCurve(KeyframeReducer.Curve curve, float startTime) {
+            this.curve = curve;
+            this.startTime = startTime;
+        }
+    }
 }
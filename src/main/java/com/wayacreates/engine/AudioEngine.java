@@ -1,13 +1,19 @@
 package com.wayacreates.engine;
 
+import com.wayacreates.audio.EffectChain;
+import com.wayacreates.audio.MultitrackMixer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.Arrays;
 import java.util.Map;
 import java.util.UUID;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.HashMap;
 
 /**
  * Audio Engine with Professional Mixing Capabilities
@@ -42,7 +48,7 @@ public class AudioEngine {
         
         // Initialize components
         audioMixer = new AudioMixer();
-        effectProcessor = new EffectProcessor();
+        effectProcessor = new EffectProcessor(audioMixer);
         audioRecorder = new AudioRecorder();
         
         // Load audio effects
@@ -75,6 +81,9 @@ public class AudioEngine {
         AudioSession session = activeSessions.remove(playerId);
         if (session != null) {
             session.stop();
+            if (audioMixer != null) {
+                audioMixer.closeSession(session);
+            }
             LOGGER.info("⏹️ Stopped audio session: {}", session.getSessionId());
             return true;
         }
@@ -114,6 +123,9 @@ public class AudioEngine {
             AudioTrack track = new AudioTrack(trackName, filePath);
             session.addTrack(track);
             audioMixer.addTrack(session, track);
+            if (effectProcessor != null) {
+                effectProcessor.installChain(session, trackName);
+            }
             LOGGER.info("🎵 Added audio track: {} for session: {}", trackName, session.getSessionId());
         }
     }
@@ -143,6 +155,20 @@ public class AudioEngine {
         }
     }
     
+    /**
+     * Change an effect's parameters while it plays; the sound glides to the new settings
+     */
+    public void updateEffect(UUID playerId, String trackName, int effectIndex, Map<String, Object> parameters) {
+        AudioSession session = activeSessions.get(playerId);
+        if (session == null || effectProcessor == null) return;
+        List<AudioEffect> trackEffects = session.getEffects().get(trackName);
+        if (trackEffects == null || effectIndex < 0 || effectIndex >= trackEffects.size()) {
+            LOGGER.warn("⚠️ No effect {} on track: {} for session: {}", effectIndex, trackName, session.getSessionId());
+            return;
+        }
+        effectProcessor.updateEffect(session, trackName, trackEffects.get(effectIndex), parameters);
+    }
+    
     /**
      * Play sound effect
      */
@@ -189,6 +215,15 @@ public class AudioEngine {
         }
     }
     
+    /**
+     * The session's live mixer, for feeding live input into tracks, metering and output; null
+     * until the session has a track
+     */
+    public MultitrackMixer getMixer(UUID playerId) {
+        AudioSession session = activeSessions.get(playerId);
+        return session != null && audioMixer != null ? audioMixer.getMixer(session) : null;
+    }
+    
     /**
      * Get audio session status
      */
@@ -236,6 +271,11 @@ public class AudioEngine {
         public float masterVolume = 1.0f;
         public String outputFormat = "WAV";
         
+        // Live mixer
+        public int blockFrames = 480; // 10 ms at 48 kHz
+        public int maxTracks = 64;
+        public int mixBuses = 4;
+        
         @Override
         public String toString() {
             return String.format("%dHz %d kbps %d channels Volume:%.1f", 
@@ -253,8 +293,6 @@ public class AudioEngine {
         private float currentTime = 0.0f;
         private final Map<String, AudioTrack> tracks = new ConcurrentHashMap<>();
         private final Map<String, List<AudioEffect>> effects = new ConcurrentHashMap<>();
-        private final Map<String, Float> trackVolumes = new ConcurrentHashMap<>();
-        private final Map<String, Float> trackPans = new ConcurrentHashMap<>();
         
         public AudioSession(String sessionId, UUID playerId, AudioSettings settings) {
             this.sessionId = sessionId;
@@ -276,14 +314,10 @@ public class AudioEngine {
         // Track management
         public void addTrack(AudioTrack track) {
             tracks.put(track.getName(), track);
-            trackVolumes.put(track.getName(), 1.0f);
-            trackPans.put(track.getName(), 0.0f);
         }
         
         public void removeTrack(String trackName) {
             tracks.remove(trackName);
-            trackVolumes.remove(trackName);
-            trackPans.remove(trackName);
             effects.remove(trackName);
         }
         
@@ -294,11 +328,17 @@ public class AudioEngine {
         
         // Volume and pan
         public void setTrackVolume(String trackName, float volume) {
-            trackVolumes.put(trackName, volume);
+            AudioTrack track = tracks.get(trackName);
+            if (track != null) {
+                track.setVolume(volume);
+            }
         }
         
         public void setTrackPan(String trackName, float pan) {
-            trackPans.put(trackName, pan);
+            AudioTrack track = tracks.get(trackName);
+            if (track != null) {
+                track.setPan(pan);
+            }
         }
         
         // Getters
@@ -315,8 +355,6 @@ public class AudioEngine {
         public int getSampleRate() { return settings.sampleRate; }
         public Map<String, AudioTrack> getTracks() { return tracks; }
         public Map<String, List<AudioEffect>> getEffects() { return effects; }
-        public Map<String, Float> getTrackVolumes() { return trackVolumes; }
-        public Map<String, Float> getTrackPans() { return trackPans; }
     }
     
     // Audio Session Status Class
@@ -348,6 +386,8 @@ public class AudioEngine {
         private final long duration;
         private boolean isMuted = false;
         private boolean isSolo = false;
+        private float volume = 1.0f;
+        private float pan = 0.0f;
         
         public AudioTrack(String name, String filePath) {
             this.name = name;
@@ -360,9 +400,13 @@ public class AudioEngine {
         public long getDuration() { return duration; }
         public boolean isMuted() { return isMuted; }
         public boolean isSolo() { return isSolo; }
+        public float getVolume() { return volume; }
+        public float getPan() { return pan; }
         
         public void setMuted(boolean muted) { isMuted = muted; }
         public void setSolo(boolean solo) { isSolo = solo; }
+        public void setVolume(float volume) { this.volume = volume; }
+        public void setPan(float pan) { this.pan = pan; }
     }
     
     // Audio Effect Class
@@ -370,6 +414,7 @@ public class AudioEngine {
         private final String type;
         private final Map<String, Object> parameters;
         private boolean enabled = true;
+        private EffectChain.Node compiled; // Null until compiled, or if the type is unknown
         
         public AudioEffect(String type, Map<String, Object> parameters) {
             this.type = type;
@@ -399,13 +444,47 @@ public class AudioEngine {
     }
     
     // Component classes (simplified)
+    // Session tracks go to a per-session MultitrackMixer; this only maps names and sessions onto it
     private static class AudioMixer {
+        private final Map<String, MultitrackMixer> mixers = new ConcurrentHashMap<>();
+        
+        private MultitrackMixer mixerFor(AudioSession session) {
+            return mixers.computeIfAbsent(session.getSessionId(), id -> {
+                AudioSettings settings = session.getSettings();
+                MultitrackMixer mixer = new MultitrackMixer(id, settings.sampleRate, settings.blockFrames,
+                    settings.maxTracks, settings.mixBuses);
+                mixer.setMasterGain(settings.masterVolume);
+                mixer.start();
+                return mixer;
+            });
+        }
+        
+        public MultitrackMixer getMixer(AudioSession session) {
+            return mixers.get(session.getSessionId());
+        }
+        
+        /**
+         * File tracks stream from disk; a track without a readable file takes live input instead
+         */
         public void addTrack(AudioSession session, AudioTrack track) {
-            // TODO: Add track to mixer
+            MultitrackMixer mixer = mixerFor(session);
+            String path = track.getFilePath();
+            boolean added = path != null && new File(path).isFile()
+                ? mixer.addFileTrack(track.getName(), new File(path))
+                : mixer.addTrack(track.getName());
+            if (added) {
+                mixer.setVolume(track.getName(), track.getVolume());
+                mixer.setPan(track.getName(), track.getPan());
+                mixer.setMute(track.getName(), track.isMuted());
+                mixer.setSolo(track.getName(), track.isSolo());
+            }
         }
         
         public void removeTrack(AudioSession session, String trackName) {
-            // TODO: Remove track from mixer
+            MultitrackMixer mixer = getMixer(session);
+            if (mixer != null) {
+                mixer.removeTrack(trackName);
+            }
         }
         
         public void playSoundEffect(String soundName, AudioSession session) {
@@ -413,33 +492,104 @@ public class AudioEngine {
         }
         
         public void setTrackVolume(AudioSession session, String trackName, float volume) {
-            // TODO: Set track volume
+            MultitrackMixer mixer = getMixer(session);
+            if (mixer != null) {
+                mixer.setVolume(trackName, volume);
+            }
         }
         
         public void setTrackPan(AudioSession session, String trackName, float pan) {
-            // TODO: Set track pan
+            MultitrackMixer mixer = getMixer(session);
+            if (mixer != null) {
+                mixer.setPan(trackName, pan);
+            }
+        }
+        
+        public void setEffectChain(AudioSession session, String trackName, EffectChain chain) {
+            MultitrackMixer mixer = getMixer(session);
+            if (mixer != null) {
+                mixer.setEffectChain(trackName, chain);
+            }
         }
         
         public void exportAudio(AudioSession session, String outputPath, AudioExportFormat format) {
             // TODO: Export audio
         }
         
+        public void closeSession(AudioSession session) {
+            MultitrackMixer mixer = mixers.remove(session.getSessionId());
+            if (mixer != null) {
+                mixer.close();
+            }
+        }
+        
         public void tick() {
-            // TODO: Update mixer
+            // Mixing runs on each session's own render thread
         }
     }
     
+    // Effects are compiled into typed nodes once, here, and run inside each session's mixer
     private static class EffectProcessor {
+        private final AudioMixer audioMixer;
+        
+        EffectProcessor(AudioMixer audioMixer) {
+            this.audioMixer = audioMixer;
+        }
+        
         public void loadEffects() {
-            // TODO: Load audio effects
+            LOGGER.info("🎨 Audio effects available: {}", Arrays.toString(EffectChain.EffectType.values()));
         }
         
         public void addEffect(AudioSession session, String trackName, AudioEffect effect) {
-            // TODO: Add effect to track
+            compile(session, effect);
+            installChain(session, trackName);
+        }
+        
+        public void updateEffect(AudioSession session, String trackName, AudioEffect effect, Map<String, Object> parameters) {
+            // Validate against the merged settings first, so a bad update leaves the effect as it was
+            Map<String, Object> merged = new HashMap<>(effect.getParameters());
+            merged.putAll(parameters);
+            try {
+                if (effect.compiled != null && effect.compiled.configure(merged)) {
+                    effect.getParameters().putAll(parameters);
+                    return;
+                }
+                // The new settings need a different node (e.g. more EQ bands)
+                effect.compiled = EffectChain.compile(effect.getType(), merged, session.getSampleRate(), 2);
+            } catch (IllegalArgumentException e) {
+                LOGGER.warn("⚠️ Ignoring {} effect update for session {}: {}", effect.getType(), session.getSessionId(), e.getMessage());
+                return;
+            }
+            effect.getParameters().putAll(parameters);
+            installChain(session, trackName);
+        }
+        
+        /**
+         * Rebuild a track's chain from its enabled effects. Already compiled nodes are reused, so
+         * their delay lines and reverb tails carry over.
+         */
+        public void installChain(AudioSession session, String trackName) {
+            List<EffectChain.Node> nodes = new ArrayList<>();
+            for (AudioEffect effect : session.getEffects().getOrDefault(trackName, List.of())) {
+                if (effect.isEnabled() && effect.compiled != null) {
+                    nodes.add(effect.compiled);
+                }
+            }
+            EffectChain chain = nodes.isEmpty() ? null : new EffectChain(nodes, session.getSampleRate(), 2);
+            audioMixer.setEffectChain(session, trackName, chain);
+        }
+        
+        private void compile(AudioSession session, AudioEffect effect) {
+            try {
+                effect.compiled = EffectChain.compile(effect.getType(), effect.getParameters(), session.getSampleRate(), 2);
+            } catch (IllegalArgumentException e) {
+                effect.compiled = null;
+                LOGGER.warn("⚠️ Can't compile {} effect for session {}: {}", effect.getType(), session.getSessionId(), e.getMessage());
+            }
         }
         
         public void tick() {
-            // TODO: Update effects
+            // Effects run on each session's mixer thread
         }
     }
     
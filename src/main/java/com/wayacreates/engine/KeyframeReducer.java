@@ -0,0 +1,368 @@
+package com.wayacreates.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.wayacreates.integrations.MocapSampleStore;
+
+/**
+ * Keyframe Reducer
+ * Fits dense captured samples with the fewest cubic Bezier keyframes that stay within an error
+ * tolerance. Handles sit at 1/3 and 2/3 of each segment in time (the usual animation-curve
+ * convention), so each fit is a 2x2 least-squares solve for the two handle values; segments whose
+ * worst sample exceeds the tolerance are split there and refit. Each channel is cut into windows
+ * that share their boundary samples and every (channel, window) pair is fitted in parallel.
+ */
+public class KeyframeReducer {
+    private static final Logger LOGGER = LoggerFactory.getLogger("WayaCreates/KeyframeReducer");
+
+    // Samples per independently fitted window
+    private static final int WINDOW_SIZE = 2048;
+
+    private final ExecutorService executor;
+
+    public KeyframeReducer() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public KeyframeReducer(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Reduce a captured take to keyframe curves. Times are converted to seconds from the first sample.
+     * @param positionTolerance max position error in blocks
+     * @param rotationTolerance max yaw/pitch error in degrees
+     */
+    public ReducedTake reduce(MocapSampleStore.Columns samples, double positionTolerance, double rotationTolerance) {
+        return reduceAsync(samples, positionTolerance, rotationTolerance).join();
+    }
+
+    /**
+     * Same as reduce(), completing once every channel is fitted instead of blocking for it
+     */
+    public CompletableFuture<ReducedTake> reduceAsync(MocapSampleStore.Columns captured, double positionTolerance,
+                                                      double rotationTolerance) {
+        long start = System.nanoTime();
+        MocapSampleStore.Columns samples = mergeDuplicateTimes(captured);
+        int n = samples.length();
+        double[] times = new double[n];
+        long origin = n > 0 ? samples.timestamp[0] : 0;
+        for (int i = 0; i < n; i++) {
+            times[i] = (samples.timestamp[i] - origin) / 1000.0;
+        }
+
+        double[] yaw = unwrapDegrees(samples.yaw, n);
+        double[] pitch = toDoubles(samples.pitch, n);
+
+        CompletableFuture<Curve> posX = reduceAsync(times, samples.posX, n, positionTolerance);
+        CompletableFuture<Curve> posY = reduceAsync(times, samples.posY, n, positionTolerance);
+        CompletableFuture<Curve> posZ = reduceAsync(times, samples.posZ, n, positionTolerance);
+        CompletableFuture<Curve> yawCurve = reduceAsync(times, yaw, n, rotationTolerance);
+        CompletableFuture<Curve> pitchCurve = reduceAsync(times, pitch, n, rotationTolerance);
+
+        // State bits are discrete: keep a stepped key only where they change
+        List<Integer> changes = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            if (i == 0 || samples.stateBits[i] != samples.stateBits[i - 1]) {
+                changes.add(i);
+            }
+        }
+        double[] stateTimes = new double[changes.size()];
+        long[] stateBits = new long[changes.size()];
+        for (int k = 0; k < changes.size(); k++) {
+            stateTimes[k] = times[changes.get(k)];
+            stateBits[k] = samples.stateBits[changes.get(k)];
+        }
+
+        return CompletableFuture.allOf(posX, posY, posZ, yawCurve, pitchCurve).thenApply(ignored -> {
+            ReducedTake take = new ReducedTake(n, posX.join(), posY.join(), posZ.join(), yawCurve.join(),
+                pitchCurve.join(), stateTimes, stateBits);
+            LOGGER.info("🔑 Reduced {} samples to {} keyframes in {} ms", n, take.getKeyframeCount(),
+                (System.nanoTime() - start) / 1_000_000);
+            return take;
+        });
+    }
+
+    /**
+     * Samples that share a timestamp (several in one millisecond, or clamped out-of-order ones)
+     * would become zero-length segments; keep only the last sample at each time
+     */
+    static MocapSampleStore.Columns mergeDuplicateTimes(MocapSampleStore.Columns samples) {
+        int n = samples.length();
+        int unique = 0;
+        for (int i = 0; i < n; i++) {
+            if (i == n - 1 || samples.timestamp[i + 1] != samples.timestamp[i]) unique++;
+        }
+        if (unique == n) return samples;
+
+        MocapSampleStore.Columns merged = new MocapSampleStore.Columns(unique);
+        int k = 0;
+        for (int i = 0; i < n; i++) {
+            if (i < n - 1 && samples.timestamp[i + 1] == samples.timestamp[i]) continue;
+            merged.timestamp[k] = samples.timestamp[i];
+            merged.posX[k] = samples.posX[i];
+            merged.posY[k] = samples.posY[i];
+            merged.posZ[k] = samples.posZ[i];
+            merged.yaw[k] = samples.yaw[i];
+            merged.pitch[k] = samples.pitch[i];
+            merged.stateBits[k] = samples.stateBits[i];
+            k++;
+        }
+        return merged;
+    }
+
+    /**
+     * Reduce a single channel (times ascending, one value per time)
+     */
+    public Curve reduce(double[] times, double[] values, int count, double tolerance) {
+        return reduceAsync(times, values, count, tolerance).join();
+    }
+
+    private CompletableFuture<Curve> reduceAsync(double[] times, double[] values, int count, double tolerance) {
+        if (count == 0) {
+            return CompletableFuture.completedFuture(new Curve(new double[0], new double[0], new double[0], new double[0]));
+        }
+
+        // Windows overlap by one sample so the boundary key is shared and the curve stays continuous
+        List<CompletableFuture<List<double[]>>> windows = new ArrayList<>();
+        for (int from = 0; from < count - 1 || windows.isEmpty(); from += WINDOW_SIZE) {
+            int first = from;
+            int last = Math.min(count - 1, from + WINDOW_SIZE);
+            windows.add(CompletableFuture.supplyAsync(() -> fitWindow(times, values, first, last, tolerance), executor));
+        }
+
+        return CompletableFuture.allOf(windows.toArray(new CompletableFuture<?>[0])).thenApply(ignored -> {
+            List<double[]> segments = new ArrayList<>();
+            for (CompletableFuture<List<double[]>> window : windows) {
+                segments.addAll(window.join());
+            }
+            return Curve.fromSegments(times, values, segments, count);
+        });
+    }
+
+    /**
+     * Fit [first, last] with as few segments as possible. Each result is {startIndex, endIndex, handle1, handle2}.
+     */
+    static List<double[]> fitWindow(double[] times, double[] values, int first, int last, double tolerance) {
+        List<double[]> segments = new ArrayList<>();
+        if (first == last) {
+            segments.add(new double[] {first, last, values[first], values[last]});
+            return segments;
+        }
+
+        // Explicit stack (right half pushed first) keeps segments in time order without deep recursion
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = first;
+        stack[top++] = last;
+        double[] handles = new double[2];
+        while (top > 0) {
+            int end = stack[--top];
+            int begin = stack[--top];
+
+            int worst = fitSegment(times, values, begin, end, tolerance, handles);
+            if (worst < 0) {
+                segments.add(new double[] {begin, end, handles[0], handles[1]});
+                continue;
+            }
+
+            if (top + 4 > stack.length) {
+                stack = Arrays.copyOf(stack, stack.length * 2);
+            }
+            stack[top++] = worst;
+            stack[top++] = end;
+            stack[top++] = begin;
+            stack[top++] = worst;
+        }
+        return segments;
+    }
+
+    /**
+     * Least-squares fit of the two handle values of one segment
+     * @return -1 if every sample is within tolerance, otherwise the index of the worst sample to split at
+     */
+    static int fitSegment(double[] times, double[] values, int begin, int end, double tolerance, double[] handles) {
+        double p0 = values[begin];
+        double p3 = values[end];
+        double t0 = times[begin];
+        double span = times[end] - t0;
+
+        double c11 = 0, c12 = 0, c22 = 0, x1 = 0, x2 = 0;
+        for (int i = begin + 1; i < end; i++) {
+            double u = span > 0 ? (times[i] - t0) / span : (double) (i - begin) / (end - begin);
+            double inv = 1 - u;
+            double b0 = inv * inv * inv;
+            double b1 = 3 * u * inv * inv;
+            double b2 = 3 * u * u * inv;
+            double b3 = u * u * u;
+            double residual = values[i] - p0 * b0 - p3 * b3;
+            c11 += b1 * b1;
+            c12 += b1 * b2;
+            c22 += b2 * b2;
+            x1 += b1 * residual;
+            x2 += b2 * residual;
+        }
+
+        double det = c11 * c22 - c12 * c12;
+        if (Math.abs(det) > 1e-12) {
+            handles[0] = (x1 * c22 - x2 * c12) / det;
+            handles[1] = (c11 * x2 - c12 * x1) / det;
+        } else {
+            // Too few interior samples to pin both handles: fall back to a straight segment
+            handles[0] = p0 + (p3 - p0) / 3;
+            handles[1] = p0 + (p3 - p0) * 2 / 3;
+        }
+
+        double worstError = tolerance;
+        int worst = -1;
+        for (int i = begin + 1; i < end; i++) {
+            double u = span > 0 ? (times[i] - t0) / span : (double) (i - begin) / (end - begin);
+            double error = Math.abs(values[i] - bezier(p0, handles[0], handles[1], p3, u));
+            if (error > worstError) {
+                worstError = error;
+                worst = i;
+            }
+        }
+        return worst;
+    }
+
+    static double bezier(double p0, double p1, double p2, double p3, double u) {
+        double inv = 1 - u;
+        return inv * inv * inv * p0 + 3 * u * inv * inv * p1 + 3 * u * u * inv * p2 + u * u * u * p3;
+    }
+
+    // Remove 360 degree jumps so yaw fits as a continuous curve
+    private static double[] unwrapDegrees(float[] angles, int n) {
+        double[] out = new double[n];
+        double offset = 0;
+        for (int i = 0; i < n; i++) {
+            if (i > 0) {
+                double delta = angles[i] - angles[i - 1];
+                if (delta > 180) offset -= 360;
+                else if (delta < -180) offset += 360;
+            }
+            out[i] = angles[i] + offset;
+        }
+        return out;
+    }
+
+    private static double[] toDoubles(float[] values, int n) {
+        double[] out = new double[n];
+        for (int i = 0; i < n; i++) {
+            out[i] = values[i];
+        }
+        return out;
+    }
+
+    // Curve Class - keys with Bezier handles at 1/3 and 2/3 of each segment in time
+    public static class Curve {
+        public final double[] times;
+        public final double[] values;
+        public final double[] outHandles; // Handle value leaving key i (unused on the last key)
+        public final double[] inHandles;  // Handle value entering key i (unused on the first key)
+
+        public Curve(double[] times, double[] values, double[] outHandles, double[] inHandles) {
+            this.times = times;
+            this.values = values;
+            this.outHandles = outHandles;
+            this.inHandles = inHandles;
+        }
+
+        static Curve fromSegments(double[] sampleTimes, double[] sampleValues, List<double[]> segments, int count) {
+            int keys = segments.size() + 1;
+            if (count == 1) keys = 1;
+            double[] times = new double[keys];
+            double[] values = new double[keys];
+            double[] outHandles = new double[keys];
+            double[] inHandles = new double[keys];
+
+            for (int k = 0; k < segments.size() && keys > 1; k++) {
+                double[] segment = segments.get(k);
+                int begin = (int) segment[0];
+                int end = (int) segment[1];
+                times[k] = sampleTimes[begin];
+                values[k] = sampleValues[begin];
+                outHandles[k] = segment[2];
+                inHandles[k + 1] = segment[3];
+                times[k + 1] = sampleTimes[end];
+                values[k + 1] = sampleValues[end];
+            }
+            if (keys == 1) {
+                times[0] = sampleTimes[0];
+                values[0] = sampleValues[0];
+            }
+            inHandles[0] = values[0];
+            outHandles[keys - 1] = values[keys - 1];
+            return new Curve(times, values, outHandles, inHandles);
+        }
+
+        /**
+         * Evaluate at a time in seconds. Handles are evenly spaced in time, so the Bezier parameter is
+         * linear in time and evaluation is a binary search plus one cubic.
+         */
+        public double evaluate(double time) {
+            int keys = times.length;
+            if (keys == 0) return 0;
+            if (time <= times[0]) return values[0];
+            if (time >= times[keys - 1]) return values[keys - 1];
+
+            int low = 0;
+            int high = keys - 1;
+            while (high - low > 1) {
+                int mid = (low + high) >>> 1;
+                if (times[mid] <= time) low = mid;
+                else high = mid;
+            }
+            double span = times[high] - times[low];
+            if (span <= 0) return values[high]; // Keys at the same time: a jump, not a segment
+            double u = (time - times[low]) / span;
+            return bezier(values[low], outHandles[low], inHandles[high], values[high], u);
+        }
+
+        public int getKeyCount() { return times.length; }
+    }
+
+    // Reduced Take Class
+    public static class ReducedTake {
+        public final int sourceSamples;
+        public final Curve posX;
+        public final Curve posY;
+        public final Curve posZ;
+        public final Curve yaw;
+        public final Curve pitch;
+        public final double[] stateTimes; // Stepped keys
+        public final long[] stateBits;
+
+        public ReducedTake(int sourceSamples, Curve posX, Curve posY, Curve posZ, Curve yaw, Curve pitch,
+                           double[] stateTimes, long[] stateBits) {
+            this.sourceSamples = sourceSamples;
+            this.posX = posX;
+            this.posY = posY;
+            this.posZ = posZ;
+            this.yaw = yaw;
+            this.pitch = pitch;
+            this.stateTimes = stateTimes;
+            this.stateBits = stateBits;
+        }
+
+        public int getKeyframeCount() {
+            return posX.getKeyCount() + posY.getKeyCount() + posZ.getKeyCount() + yaw.getKeyCount()
+                + pitch.getKeyCount() + stateTimes.length;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d samples -> %d keys (x=%d y=%d z=%d yaw=%d pitch=%d states=%d)", sourceSamples,
+                getKeyframeCount(), posX.getKeyCount(), posY.getKeyCount(), posZ.getKeyCount(),
+                yaw.getKeyCount(), pitch.getKeyCount(), stateTimes.length);
+        }
+    }
+}
@@ -1,9 +1,16 @@
 package com.wayacreates.engine;
 
+import com.wayacreates.WayaCreatesEngine;
+import com.wayacreates.recording.AsyncBlockWriter;
+import com.wayacreates.recording.EncoderPool;
+import com.wayacreates.recording.LayerRecorder;
+import com.wayacreates.utils.ResourceScope;
 import net.minecraft.server.world.ServerWorld;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.Map;
 import java.util.UUID;
@@ -95,14 +102,33 @@ public class RenderEngine {
         RenderSession session = new RenderSession(sessionId, playerId, 
             settings != null ? settings : defaultSettings);
         
+        // Never orphan a running session (and its layer files) by replacing it
+        stopRender(playerId);
         activeSessions.put(playerId, session);
         LOGGER.info("🎬 Started render session: {} for player: {}", sessionId, playerId);
         
+        // Record every active layer as its own stream, encoded on the server's shared encoder pool
+        EncoderPool encoderPool = WayaCreatesEngine.getRecordingManager() != null
+            ? WayaCreatesEngine.getRecordingManager().getEncoderPool() : null;
+        if (!session.getActiveLayers().isEmpty() && encoderPool == null) {
+            LOGGER.error("❌ No encoder pool available, layers won't be recorded for render: {}", sessionId);
+        } else if (!session.getActiveLayers().isEmpty()) {
+            RenderSettings sessionSettings = session.getSettings();
+            try {
+                session.setLayerRecorder(session.getResources().track("layer recorder",
+                    new LayerRecorder(sessionId, session.getActiveLayers(), sessionSettings.resolutionX,
+                        sessionSettings.resolutionY, new File(sessionSettings.outputDirectory), encoderPool, 1,
+                        sessionSettings.outputWriter)));
+            } catch (IOException e) {
+                LOGGER.error("❌ Failed to start layer recording for render: {}", sessionId, e);
+            }
+        }
+        
         return session;
     }
     
     /**
-     * Stop render session
+     * Stop render session and release everything it holds
      */
     public boolean stopRender(UUID playerId) {
         RenderSession session = activeSessions.remove(playerId);
@@ -114,6 +140,17 @@ public class RenderEngine {
         return false;
     }
     
+    /**
+     * Submit a rendered ARGB frame for one layer of a render session
+     */
+    public boolean submitLayerFrame(UUID playerId, String layerName, int[] argb) {
+        RenderSession session = activeSessions.get(playerId);
+        if (session == null || session.getLayerRecorder() == null) {
+            return false;
+        }
+        return session.getLayerRecorder().submitFrame(layerName, argb);
+    }
+    
     /**
      * Render with Fresh Animations character
      */
@@ -247,6 +284,16 @@ public class RenderEngine {
         updateResourceMonitoring();
     }
     
+    /**
+     * Stop every render session and release its resources (server stopping)
+     */
+    public void shutdown() {
+        for (UUID playerId : List.copyOf(activeSessions.keySet())) {
+            stopRender(playerId);
+        }
+        LOGGER.info("⏹️ Render Engine shut down");
+    }
+    
     public void onWorldLoad(ServerWorld world) {
         LOGGER.info("🌍 Render Engine ready for world: {}", world.getRegistryKey().getValue());
         
@@ -292,6 +339,8 @@ public class RenderEngine {
         public boolean enableMocap = false;
         public boolean enableBaritone = false;
         public boolean exportLayers = false;
+        public String outputDirectory = "renders";
+        public AsyncBlockWriter.Options outputWriter = new AsyncBlockWriter.Options();
         public boolean createThumbnails = true;
         public String thumbnailSize = "512x512";
         
@@ -309,16 +358,19 @@ public class RenderEngine {
         private final UUID playerId;
         private final RenderSettings settings;
         private final long startTime;
+        private final ResourceScope resources;
         private boolean isRendering = false;
         private float currentTime = 0.0f;
         private final Map<String, Boolean> overlayStates = new ConcurrentHashMap<>();
         private final List<String> activeLayers = new ArrayList<>();
+        private LayerRecorder layerRecorder;
         
         public RenderSession(String sessionId, UUID playerId, RenderSettings settings) {
             this.sessionId = sessionId;
             this.playerId = playerId;
             this.settings = settings;
             this.startTime = System.currentTimeMillis();
+            this.resources = new ResourceScope(sessionId);
             this.isRendering = true;
             
             // Initialize overlay states
@@ -343,8 +395,12 @@ public class RenderEngine {
             }
         }
         
+        /**
+         * Stop rendering and release the layer recorder and anything else registered with the session
+         */
         public void stop() {
             isRendering = false;
+            resources.closeAll();
         }
         
         public void setOverlayEnabled(String overlayType, boolean enabled) {
@@ -363,6 +419,9 @@ public class RenderEngine {
         public boolean isRendering() { return isRendering; }
         public float getCurrentTime() { return currentTime; }
         public List<String> getActiveLayers() { return activeLayers; }
+        public ResourceScope getResources() { return resources; }
+        public LayerRecorder getLayerRecorder() { return layerRecorder; }
+        public void setLayerRecorder(LayerRecorder layerRecorder) { this.layerRecorder = layerRecorder; }
     }
     
     // Manager classes (simplified for brevity)
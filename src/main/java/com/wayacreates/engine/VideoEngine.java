@@ -1,10 +1,18 @@
 package com.wayacreates.engine;
 
+import com.wayacreates.WayaCreatesEngine;
+import com.wayacreates.recording.AsyncBlockWriter;
+import com.wayacreates.recording.EncoderPool;
+import com.wayacreates.recording.LayerRecorder;
+import com.wayacreates.utils.ResourceScope;
 import net.minecraft.server.world.ServerWorld;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
@@ -19,6 +27,9 @@ public class VideoEngine {
     // Debug flag for verbose logging
     private static final boolean DEBUG_MODE = Boolean.parseBoolean(System.getProperty("wayacreates.debug", "false"));
     
+    // Single stream recorded per video session
+    private static final String VIDEO_LAYER = "video";
+    
     // Video processing state
     private final Map<UUID, VideoSession> activeSessions = new ConcurrentHashMap<>();
     private final Map<String, VideoProject> projects = new ConcurrentHashMap<>();
@@ -96,14 +107,42 @@ public class VideoEngine {
         VideoSession session = new VideoSession(sessionId, playerId, 
             settings != null ? settings : defaultSettings);
         
+        // Never orphan a running session by replacing it
+        stopRecording(playerId);
         activeSessions.put(playerId, session);
         LOGGER.info("🎥 Started video recording session: {} for player: {}", sessionId, playerId);
         
+        // Frames are encoded on the server's shared encoder pool; the session scope owns the recorder,
+        // and through it the encoder queue and output writer
+        EncoderPool encoderPool = WayaCreatesEngine.getRecordingManager() != null
+            ? WayaCreatesEngine.getRecordingManager().getEncoderPool() : null;
+        if (encoderPool == null) {
+            LOGGER.error("❌ No encoder pool available, frames won't be recorded for session: {}", sessionId);
+        } else {
+            VideoSettings sessionSettings = session.getSettings();
+            try {
+                session.setRecorder(session.getResources().track("recorder", new LayerRecorder(sessionId,
+                    List.of(VIDEO_LAYER), sessionSettings.resolutionX, sessionSettings.resolutionY,
+                    new File(sessionSettings.outputDirectory), encoderPool, 1, sessionSettings.outputWriter)));
+            } catch (IOException e) {
+                LOGGER.error("❌ Failed to start frame recording for session: {}", sessionId, e);
+            }
+        }
+        
         return session;
     }
     
     /**
-     * Stop video recording session
+     * Submit a captured ARGB frame to the player's recording session
+     * @return false if there is no recording or the encoder is behind and the frame was dropped
+     */
+    public boolean submitFrame(UUID playerId, int[] argb) {
+        VideoSession session = activeSessions.get(playerId);
+        return session != null && session.submitFrame(argb);
+    }
+    
+    /**
+     * Stop video recording session and release everything it holds
      */
     public boolean stopRecording(UUID playerId) {
         VideoSession session = activeSessions.remove(playerId);
@@ -176,17 +215,20 @@ public class VideoEngine {
         
         // Update video processing
         updateVideoProcessing();
-        
-        // Cleanup completed sessions
-        cleanupCompletedSessions();
     }
     
     private void updateVideoProcessing() {
         // TODO: Update video processing queue
     }
     
-    private void cleanupCompletedSessions() {
-        // TODO: Cleanup finished recording sessions
+    /**
+     * Stop every session and release its resources (server stopping)
+     */
+    public void shutdown() {
+        for (UUID playerId : List.copyOf(activeSessions.keySet())) {
+            stopRecording(playerId);
+        }
+        LOGGER.info("⏹️ Video Engine shut down");
     }
     
     /**
@@ -214,6 +256,8 @@ public class VideoEngine {
         public int audioBitRate = 320000; // 320 kbps
         public String audioCodec = "AAC";
         public boolean useHardwareAcceleration = true;
+        public String outputDirectory = "recordings";
+        public AsyncBlockWriter.Options outputWriter = new AsyncBlockWriter.Options();
         
         @Override
         public String toString() {
@@ -249,7 +293,9 @@ public class VideoEngine {
         private final UUID playerId;
         private final VideoSettings settings;
         private final long startTime;
-        private boolean isRecording = false;
+        private final ResourceScope resources;
+        private volatile boolean isRecording = false;
+        private volatile LayerRecorder recorder;
         private int frameCount = 0;
         
         public VideoSession(String sessionId, UUID playerId, VideoSettings settings) {
@@ -257,19 +303,32 @@ public class VideoEngine {
             this.playerId = playerId;
             this.settings = settings;
             this.startTime = System.currentTimeMillis();
+            this.resources = new ResourceScope(sessionId);
             this.isRecording = true;
         }
         
         public void tick() {
-            if (isRecording) {
-                frameCount++;
-                // TODO: Capture frame
+            // Frames arrive through submitFrame as they are captured
+        }
+        
+        /**
+         * Queue one captured frame for encoding
+         */
+        public boolean submitFrame(int[] argb) {
+            LayerRecorder current = recorder;
+            if (!isRecording || current == null || !current.submitFrame(VIDEO_LAYER, argb)) {
+                return false;
             }
+            frameCount++;
+            return true;
         }
         
+        /**
+         * Stop capturing and release grabbers, recorders and frame buffers registered with the session
+         */
         public void stop() {
             isRecording = false;
-            // TODO: Stop recording and save video
+            resources.closeAll();
         }
         
         // Getters
@@ -278,6 +337,9 @@ public class VideoEngine {
         public VideoSettings getSettings() { return settings; }
         public long getStartTime() { return startTime; }
         public boolean isRecording() { return isRecording; }
+        public ResourceScope getResources() { return resources; }
+        public LayerRecorder getRecorder() { return recorder; }
+        public void setRecorder(LayerRecorder recorder) { this.recorder = recorder; }
         public int getFrameCount() { return frameCount; }
         public long getDuration() { return System.currentTimeMillis() - startTime; }
     }
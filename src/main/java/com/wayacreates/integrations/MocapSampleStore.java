@@ -0,0 +1,385 @@
+package com.wayacreates.integrations;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Columnar Motion-capture Sample Store
+ * Samples live in fixed-size chunks of primitive arrays, one per channel, so a long take costs a
+ * handful of arrays instead of an object per sample. Full chunks beyond the resident limit spill
+ * to a temp file and their arrays are recycled for the next chunk (a ring of chunk buffers), so
+ * memory stays bounded however long the take runs. Timestamps are non-decreasing, so time range
+ * lookups are two binary searches: one over the chunk index, one inside the chunk.
+ */
+public class MocapSampleStore implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger("WayaCreates/Mocap");
+
+    public static final int DEFAULT_CHUNK_SIZE = 4096;
+    public static final int DEFAULT_RESIDENT_CHUNKS = 16;
+
+    // timestamp(8) + posX/Y/Z(3 * 8) + yaw/pitch(2 * 4) + state bits(8)
+    private static final int BYTES_PER_SAMPLE = 48;
+
+    private final int chunkSize;
+    private final int maxResidentChunks;
+    private final List<Chunk> chunks = new ArrayList<>(); // In time order; spilled chunks keep only their index entry
+    private final ArrayDeque<Columns> recycled = new ArrayDeque<>();
+    private Chunk head;
+    private int residentChunks = 0;
+    private int spilledChunks = 0;
+    private long sampleCount = 0;
+    private long lastAppended = 0;
+    private int stateCount = 0; // Animation states per sample; the bits alone can't tell trailing false states apart
+
+    private Path spillPath;
+    private FileChannel spillChannel;
+    private long spillPosition = 0;
+    private ByteBuffer spillBuffer;
+    private Chunk cachedSpilledChunk; // Last chunk paged back in for a query
+    private Columns cachedColumns;
+    private boolean closed = false;
+
+    public MocapSampleStore() {
+        this(DEFAULT_CHUNK_SIZE, DEFAULT_RESIDENT_CHUNKS);
+    }
+
+    public MocapSampleStore(int chunkSize, int maxResidentChunks) {
+        this.chunkSize = Math.max(16, chunkSize);
+        this.maxResidentChunks = Math.max(2, maxResidentChunks);
+    }
+
+    /**
+     * Visitor for range queries; called once per sample with primitive values only
+     */
+    @FunctionalInterface
+    public interface SampleVisitor {
+        void visit(long timestamp, double x, double y, double z, float yaw, float pitch, long stateBits);
+    }
+
+    /**
+     * Append one sample carrying stateCount packed animation states. Out-of-order timestamps are
+     * clamped to the previous one to keep the index sorted.
+     */
+    public synchronized void append(long timestamp, double x, double y, double z, float yaw, float pitch,
+                                    long stateBits, int stateCount) {
+        if (closed) return;
+        this.stateCount = Math.max(this.stateCount, Math.min(64, stateCount));
+        if (head == null || head.count == chunkSize) {
+            startChunk();
+        }
+        if (sampleCount > 0 && timestamp < lastAppended) {
+            timestamp = lastAppended;
+        }
+        if (head.count == 0) {
+            head.firstTimestamp = timestamp;
+        }
+
+        Columns c = head.columns;
+        int i = head.count++;
+        c.timestamp[i] = timestamp;
+        c.posX[i] = x;
+        c.posY[i] = y;
+        c.posZ[i] = z;
+        c.yaw[i] = yaw;
+        c.pitch[i] = pitch;
+        c.stateBits[i] = stateBits;
+        head.lastTimestamp = timestamp;
+        lastAppended = timestamp;
+        sampleCount++;
+    }
+
+    /**
+     * Visit every sample with fromTime <= timestamp <= toTime, in time order
+     * @return number of samples visited
+     */
+    public synchronized int query(long fromTime, long toTime, SampleVisitor visitor) {
+        if (chunks.isEmpty() || fromTime > toTime) return 0;
+
+        int visited = 0;
+        for (int chunkIndex = firstChunkEndingAtOrAfter(fromTime); chunkIndex < chunks.size(); chunkIndex++) {
+            Chunk chunk = chunks.get(chunkIndex);
+            if (chunk.count == 0 || chunk.firstTimestamp > toTime) break;
+
+            Columns c = columnsOf(chunk);
+            int start = lowerBound(c.timestamp, chunk.count, fromTime);
+            for (int i = start; i < chunk.count && c.timestamp[i] <= toTime; i++) {
+                visitor.visit(c.timestamp[i], c.posX[i], c.posY[i], c.posZ[i], c.yaw[i], c.pitch[i], c.stateBits[i]);
+                visited++;
+            }
+        }
+        return visited;
+    }
+
+    /**
+     * Copy a time range out as dense per-channel arrays (for curve fitting and export)
+     */
+    public synchronized Columns extract(long fromTime, long toTime) {
+        // One pass into a buffer that doubles as it fills, so spilled chunks are paged in only once
+        Columns[] buffer = { new Columns(Math.min(chunkSize, (int) Math.min(Integer.MAX_VALUE, sampleCount))) };
+        int count = query(fromTime, toTime, new SampleVisitor() {
+            private int index = 0;
+
+            @Override
+            public void visit(long t, double x, double y, double z, float yaw, float pitch, long bits) {
+                Columns out = buffer[0];
+                if (index == out.length()) {
+                    out = buffer[0] = out.copyOf(Math.max(16, out.length() * 2));
+                }
+                int i = index++;
+                out.timestamp[i] = t;
+                out.posX[i] = x;
+                out.posY[i] = y;
+                out.posZ[i] = z;
+                out.yaw[i] = yaw;
+                out.pitch[i] = pitch;
+                out.stateBits[i] = bits;
+            }
+        });
+        return buffer[0].length() == count ? buffer[0] : buffer[0].copyOf(count);
+    }
+
+    /**
+     * Copy the most recent sample into a MocapData, or return false if the store is empty
+     */
+    public synchronized boolean latest(ModIntegrationManager.MocapData into) {
+        if (head == null || head.count == 0) return false;
+        Columns c = head.columns;
+        int i = head.count - 1;
+        into.timestamp = c.timestamp[i];
+        into.posX = (float) c.posX[i];
+        into.posY = (float) c.posY[i];
+        into.posZ = (float) c.posZ[i];
+        into.yaw = c.yaw[i];
+        into.pitch = c.pitch[i];
+        into.animationStates = ModIntegrationManager.MocapData.unpackStates(c.stateBits[i], stateCount);
+        return true;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) return;
+        closed = true;
+        chunks.clear();
+        recycled.clear();
+        head = null;
+        cachedSpilledChunk = null;
+        cachedColumns = null;
+        if (spillChannel != null) {
+            try {
+                spillChannel.close();
+                Files.deleteIfExists(spillPath);
+            } catch (IOException e) {
+                LOGGER.warn("⚠️ Failed to remove mocap spill file: {}", spillPath, e);
+            }
+        }
+    }
+
+    // Getters
+    public synchronized long size() { return sampleCount; }
+    public synchronized int getStateCount() { return stateCount; }
+    public synchronized int getChunkCount() { return chunks.size(); }
+    public synchronized int getResidentChunkCount() { return residentChunks; }
+    public synchronized long getSpilledBytes() { return spillPosition; }
+    public synchronized long getFirstTimestamp() { return chunks.isEmpty() ? 0 : chunks.get(0).firstTimestamp; }
+    public synchronized long getLastTimestamp() { return head == null ? 0 : head.lastTimestamp; }
+    public int getChunkSize() { return chunkSize; }
+
+    private void startChunk() {
+        if (residentChunks >= maxResidentChunks) {
+            spillOldestResident();
+        }
+
+        Columns columns = recycled.isEmpty() ? new Columns(chunkSize) : recycled.pop();
+        head = new Chunk(columns);
+        chunks.add(head);
+        residentChunks++;
+    }
+
+    // Spilled chunks are always a prefix of the index, so the oldest resident one is at spilledChunks
+    private void spillOldestResident() {
+        Chunk chunk = chunks.get(spilledChunks);
+        try {
+            writeSpill(chunk);
+        } catch (IOException e) {
+            // Keep the data in memory rather than lose it; the resident limit is soft in this case
+            LOGGER.error("❌ Mocap spill failed, keeping chunk in memory", e);
+            return;
+        }
+        recycled.push(chunk.columns);
+        chunk.columns = null;
+        spilledChunks++;
+        residentChunks--;
+    }
+
+    private void writeSpill(Chunk chunk) throws IOException {
+        if (spillChannel == null) {
+            spillPath = Files.createTempFile("wayacreates-mocap-", ".bin");
+            spillPath.toFile().deleteOnExit();
+            spillChannel = FileChannel.open(spillPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            spillBuffer = ByteBuffer.allocateDirect(chunkSize * BYTES_PER_SAMPLE);
+        }
+
+        // Column-major on disk too, so a chunk pages back in with bulk gets
+        Columns c = chunk.columns;
+        int n = chunk.count;
+        spillBuffer.clear();
+        spillBuffer.asLongBuffer().put(c.timestamp, 0, n);
+        spillBuffer.position(spillBuffer.position() + n * 8);
+        putDoubles(c.posX, n);
+        putDoubles(c.posY, n);
+        putDoubles(c.posZ, n);
+        spillBuffer.asFloatBuffer().put(c.yaw, 0, n);
+        spillBuffer.position(spillBuffer.position() + n * 4);
+        spillBuffer.asFloatBuffer().put(c.pitch, 0, n);
+        spillBuffer.position(spillBuffer.position() + n * 4);
+        spillBuffer.asLongBuffer().put(c.stateBits, 0, n);
+        spillBuffer.position(spillBuffer.position() + n * 8);
+        spillBuffer.flip();
+
+        chunk.spillOffset = spillPosition;
+        long position = spillPosition;
+        while (spillBuffer.hasRemaining()) {
+            position += spillChannel.write(spillBuffer, position);
+        }
+        spillPosition = position;
+    }
+
+    private void putDoubles(double[] values, int n) {
+        spillBuffer.asDoubleBuffer().put(values, 0, n);
+        spillBuffer.position(spillBuffer.position() + n * 8);
+    }
+
+    private Columns columnsOf(Chunk chunk) {
+        if (chunk.columns != null) return chunk.columns;
+        if (chunk == cachedSpilledChunk) return cachedColumns;
+
+        if (cachedColumns == null) {
+            cachedColumns = new Columns(chunkSize);
+        }
+        try {
+            readSpill(chunk, cachedColumns);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to page in mocap chunk", e);
+        }
+        cachedSpilledChunk = chunk;
+        return cachedColumns;
+    }
+
+    private void readSpill(Chunk chunk, Columns into) throws IOException {
+        int n = chunk.count;
+        ByteBuffer buffer = ByteBuffer.allocate(n * BYTES_PER_SAMPLE);
+        long position = chunk.spillOffset;
+        while (buffer.hasRemaining()) {
+            int read = spillChannel.read(buffer, position);
+            if (read < 0) throw new IOException("Truncated mocap spill file");
+            position += read;
+        }
+        buffer.flip();
+
+        buffer.asLongBuffer().get(into.timestamp, 0, n);
+        buffer.position(buffer.position() + n * 8);
+        buffer.asDoubleBuffer().get(into.posX, 0, n);
+        buffer.position(buffer.position() + n * 8);
+        buffer.asDoubleBuffer().get(into.posY, 0, n);
+        buffer.position(buffer.position() + n * 8);
+        buffer.asDoubleBuffer().get(into.posZ, 0, n);
+        buffer.position(buffer.position() + n * 8);
+        buffer.asFloatBuffer().get(into.yaw, 0, n);
+        buffer.position(buffer.position() + n * 4);
+        buffer.asFloatBuffer().get(into.pitch, 0, n);
+        buffer.position(buffer.position() + n * 4);
+        buffer.asLongBuffer().get(into.stateBits, 0, n);
+    }
+
+    // First chunk whose last timestamp is >= time (chunk index is sorted by time)
+    private int firstChunkEndingAtOrAfter(long time) {
+        int low = 0;
+        int high = chunks.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (chunks.get(mid).lastTimestamp < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static int lowerBound(long[] values, int count, long key) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (values[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Index entry for one chunk; columns is null while the chunk is spilled
+    private static class Chunk {
+        Columns columns;
+        int count = 0;
+        long firstTimestamp;
+        long lastTimestamp;
+        long spillOffset = -1;
+
+        Chunk(Columns columns) {
+            this.columns = columns;
+        }
+    }
+
+    // Columns Class - one primitive array per channel
+    public static class Columns {
+        public final long[] timestamp;
+        public final double[] posX;
+        public final double[] posY;
+        public final double[] posZ;
+        public final float[] yaw;
+        public final float[] pitch;
+        public final long[] stateBits;
+
+        public Columns(int capacity) {
+            this.timestamp = new long[capacity];
+            this.posX = new double[capacity];
+            this.posY = new double[capacity];
+            this.posZ = new double[capacity];
+            this.yaw = new float[capacity];
+            this.pitch = new float[capacity];
+            this.stateBits = new long[capacity];
+        }
+
+        public int length() {
+            return timestamp.length;
+        }
+
+        // The first min(capacity, length) samples in arrays of the given capacity
+        Columns copyOf(int capacity) {
+            Columns copy = new Columns(capacity);
+            int length = Math.min(capacity, length());
+            System.arraycopy(timestamp, 0, copy.timestamp, 0, length);
+            System.arraycopy(posX, 0, copy.posX, 0, length);
+            System.arraycopy(posY, 0, copy.posY, 0, length);
+            System.arraycopy(posZ, 0, copy.posZ, 0, length);
+            System.arraycopy(yaw, 0, copy.yaw, 0, length);
+            System.arraycopy(pitch, 0, copy.pitch, 0, length);
+            System.arraycopy(stateBits, 0, copy.stateBits, 0, length);
+            return copy;
+        }
+    }
+}
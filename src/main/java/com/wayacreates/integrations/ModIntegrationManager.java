@@ -1,5 +1,7 @@
 package com.wayacreates.integrations;
 
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.util.math.Vec3d;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -159,6 +161,16 @@ public class ModIntegrationManager {
         return null;
     }
     
+    /**
+     * Get the full captured take for a player (time range queries, export, keyframe reduction)
+     */
+    public MocapSampleStore getMocapTake(UUID playerId) {
+        if (mocapIntegration.isModLoaded()) {
+            return mocapIntegration.getTake(playerId);
+        }
+        return null;
+    }
+    
     /**
      * Execute Baritone command
      */
@@ -179,6 +191,16 @@ public class ModIntegrationManager {
         return null;
     }
     
+    /**
+     * Server tick: samples recording mocap players, then updates every integration
+     */
+    public void tick(MinecraftServer server) {
+        if (mocapIntegration.isModLoaded()) {
+            mocapIntegration.captureSamples(server);
+        }
+        tick();
+    }
+    
     public void tick() {
         // Update all integrations
         for (ModIntegration integration : integrations.values()) {
@@ -272,7 +294,11 @@ public class ModIntegrationManager {
     
     public static class MocapIntegration implements ModIntegration {
         private boolean isLoaded = false;
-        private final Map<UUID, MocapData> recordingData = new ConcurrentHashMap<>();
+        // One columnar store per take; kept after stopRecording until the next take replaces it
+        private final Map<UUID, MocapSampleStore> takes = new ConcurrentHashMap<>();
+        private final Map<UUID, Boolean> recording = new ConcurrentHashMap<>();
+        // Reused for every sample; only touched on the server thread
+        private final boolean[] sampledStates = new boolean[MocapData.ANIMATION_STATES];
         
         @Override
         public boolean isModLoaded() {
@@ -297,16 +323,73 @@ public class ModIntegrationManager {
         }
         
         public void startRecording(UUID playerId) {
-            recordingData.put(playerId, new MocapData());
+            MocapSampleStore previous = takes.put(playerId, new MocapSampleStore());
+            if (previous != null) {
+                previous.close();
+            }
+            recording.put(playerId, true);
             // TODO: Start motion capture recording
         }
         
         public void stopRecording(UUID playerId) {
+            recording.put(playerId, false);
             // TODO: Stop motion capture recording
         }
         
+        /**
+         * Append one captured sample to the player's current take
+         */
+        public void recordSample(UUID playerId, long timestamp, double x, double y, double z,
+                                 float yaw, float pitch, boolean[] animationStates) {
+            MocapSampleStore take = takes.get(playerId);
+            if (take != null && recording.getOrDefault(playerId, false)) {
+                int stateCount = animationStates != null ? animationStates.length : 0;
+                take.append(timestamp, x, y, z, yaw, pitch, MocapData.packStates(animationStates), stateCount);
+            }
+        }
+        
+        /**
+         * Sample every recording player once; called each server tick
+         */
+        public void captureSamples(MinecraftServer server) {
+            long now = System.currentTimeMillis();
+            for (Map.Entry<UUID, Boolean> entry : recording.entrySet()) {
+                if (!entry.getValue()) continue;
+                ServerPlayerEntity player = server.getPlayerManager().getPlayer(entry.getKey());
+                if (player == null) continue; // Offline for now; the take resumes when they rejoin
+                
+                sampledStates[0] = player.isSneaking();
+                sampledStates[1] = player.isSprinting();
+                sampledStates[2] = player.isSwimming();
+                sampledStates[3] = player.isFallFlying();
+                sampledStates[4] = player.isOnGround();
+                sampledStates[5] = player.isUsingItem();
+                sampledStates[6] = player.handSwinging;
+                sampledStates[7] = player.isSleeping();
+                recordSample(entry.getKey(), now, player.getX(), player.getY(), player.getZ(),
+                    player.getYaw(), player.getPitch(), sampledStates);
+            }
+        }
+        
         public MocapData getData(UUID playerId) {
-            return recordingData.get(playerId);
+            MocapSampleStore take = takes.get(playerId);
+            MocapData data = new MocapData();
+            return take != null && take.latest(data) ? data : null;
+        }
+        
+        public MocapSampleStore getTake(UUID playerId) {
+            return takes.get(playerId);
+        }
+        
+        /**
+         * Drop a take and its spill file
+         */
+        public void discardTake(UUID playerId) {
+            recording.remove(playerId);
+            MocapSampleStore take = takes.remove(playerId);
+            if (take != null) {
+                take.close();
+            }
         }
         
         @Override
@@ -373,9 +456,31 @@ public class ModIntegrationManager {
         public boolean[] animationStates;
         public long timestamp;
         
+        // Sneaking, sprinting, swimming, elytra, on ground, using item, swinging, sleeping
+        public static final int ANIMATION_STATES = 8;
+        
         public MocapData() {
             this.timestamp = System.currentTimeMillis();
         }
+        
+        // Up to 64 animation states packed into one column value
+        public static long packStates(boolean[] states) {
+            long bits = 0;
+            if (states != null) {
+                for (int i = 0; i < Math.min(64, states.length); i++) {
+                    if (states[i]) bits |= 1L << i;
+                }
+            }
+            return bits;
+        }
+        
+        public static boolean[] unpackStates(long bits, int stateCount) {
+            boolean[] states = new boolean[Math.max(0, Math.min(64, stateCount))];
+            for (int i = 0; i < states.length; i++) {
+                states[i] = (bits & (1L << i)) != 0;
+            }
+            return states;
+        }
     }
     
     public static class BaritonePath {
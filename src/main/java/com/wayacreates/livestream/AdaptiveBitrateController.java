@@ -0,0 +1,141 @@
+package com.wayacreates.livestream;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Adaptive Bitrate Controller
+ * Steps a stream up or down a quality ladder from the sender's backlog (how many milliseconds of
+ * stream are waiting in the send queue) and the measured throughput. Stepping down needs the
+ * backlog to stay high for a short hold and lands on the highest rung the measured throughput can
+ * carry; stepping up needs a long clear period and goes one rung at a time. An upgrade that has to
+ * be undone soon after doubles the wait before the next probe, so a marginal link settles instead
+ * of oscillating.
+ */
+public class AdaptiveBitrateController {
+    private final Settings settings;
+    private final List<LivestreamManager.StreamQuality> ladder = new ArrayList<>();
+    private int floor;
+    private int ceiling;
+    private int rung;
+
+    private long congestedSince = -1;
+    private long clearSince = -1;
+    private long lastChangeAt = Long.MIN_VALUE / 2;
+    private long lastUpgradeAt = -1;
+    private long upHoldMillis;
+
+    public AdaptiveBitrateController(LivestreamManager.StreamQuality floor, LivestreamManager.StreamQuality ceiling, Settings settings) {
+        this(Arrays.asList(LivestreamManager.StreamQuality.values()), settings);
+        this.floor = ladder.indexOf(floor);
+        this.ceiling = Math.max(this.floor, ladder.indexOf(ceiling));
+        this.rung = this.ceiling;
+    }
+
+    /**
+     * Controller over an explicit set of rungs, e.g. the renditions a simulcast encoder produces
+     */
+    public AdaptiveBitrateController(List<LivestreamManager.StreamQuality> rungs, Settings settings) {
+        this.settings = settings != null ? settings : new Settings();
+        ladder.addAll(rungs);
+        ladder.sort(Comparator.comparingInt(quality -> quality.bitRate));
+        this.floor = 0;
+        this.ceiling = ladder.size() - 1;
+        this.rung = this.ceiling;
+        this.upHoldMillis = this.settings.upHoldMillis;
+    }
+
+    /**
+     * Feed one observation
+     * @param backlogMillis stream time waiting in the send queue
+     * @param throughputBps measured send rate (0 if unknown)
+     * @return the quality to switch to, or null to stay
+     */
+    public LivestreamManager.StreamQuality update(long backlogMillis, double throughputBps, long nowMillis) {
+        if (backlogMillis > settings.highWaterMillis) {
+            clearSince = -1;
+            if (congestedSince < 0) congestedSince = nowMillis;
+
+            boolean severe = backlogMillis > settings.highWaterMillis * 2;
+            boolean held = nowMillis - congestedSince >= settings.downHoldMillis;
+            boolean cooled = nowMillis - lastChangeAt >= (severe ? settings.downHoldMillis : settings.changeCooldownMillis);
+            if ((held || severe) && cooled && rung > floor) {
+                int target = rung - 1;
+                if (throughputBps > 0) {
+                    // Go straight to what the link is actually carrying, with some headroom
+                    while (target > floor && ladder.get(target).bitRate > throughputBps * settings.throughputHeadroom) {
+                        target--;
+                    }
+                }
+                if (lastUpgradeAt >= 0 && nowMillis - lastUpgradeAt < settings.failedProbeWindowMillis) {
+                    upHoldMillis = Math.min(settings.maxUpHoldMillis, upHoldMillis * 2);
+                }
+                return changeTo(target, nowMillis);
+            }
+            return null;
+        }
+
+        congestedSince = -1;
+        if (backlogMillis >= settings.lowWaterMillis) {
+            // Between the water marks: hold position and require a fresh clear period to probe
+            clearSince = -1;
+            return null;
+        }
+
+        if (clearSince < 0) clearSince = nowMillis;
+        if (lastUpgradeAt >= 0 && nowMillis - lastUpgradeAt > settings.maxUpHoldMillis) {
+            // Stable for a long time: probing can go back to its normal pace
+            upHoldMillis = settings.upHoldMillis;
+        }
+        if (rung < ceiling && nowMillis - clearSince >= upHoldMillis
+                && nowMillis - lastChangeAt >= settings.changeCooldownMillis) {
+            lastUpgradeAt = nowMillis;
+            return changeTo(rung + 1, nowMillis);
+        }
+        return null;
+    }
+
+    /**
+     * Manually chosen quality becomes the new ceiling and the current rung
+     */
+    public void setCeiling(LivestreamManager.StreamQuality quality, long nowMillis) {
+        int index = ladder.indexOf(quality);
+        if (index < 0) return;
+        ceiling = Math.max(floor, index);
+        floor = Math.min(floor, ceiling);
+        rung = ceiling;
+        lastChangeAt = nowMillis;
+        congestedSince = -1;
+        clearSince = -1;
+        lastUpgradeAt = -1;
+        upHoldMillis = settings.upHoldMillis;
+    }
+
+    private LivestreamManager.StreamQuality changeTo(int target, long nowMillis) {
+        rung = target;
+        lastChangeAt = nowMillis;
+        congestedSince = -1;
+        clearSince = -1;
+        return ladder.get(rung);
+    }
+
+    // Getters
+    public LivestreamManager.StreamQuality getCurrent() { return ladder.get(rung); }
+    public LivestreamManager.StreamQuality getCeiling() { return ladder.get(ceiling); }
+    public boolean contains(LivestreamManager.StreamQuality quality) { return ladder.contains(quality); }
+    public long getUpHoldMillis() { return upHoldMillis; }
+
+    // Controller Settings Class
+    public static class Settings {
+        public long highWaterMillis = 1500;    // Backlog that counts as congestion
+        public long lowWaterMillis = 300;      // Backlog that counts as a clear link
+        public long downHoldMillis = 1000;     // Congestion must last this long before stepping down
+        public long upHoldMillis = 10000;      // Clear period required before probing a higher rung
+        public long maxUpHoldMillis = 120000;  // Cap for the probe backoff
+        public long changeCooldownMillis = 3000;
+        public long failedProbeWindowMillis = 15000; // A step down this soon after an upgrade means the probe failed
+        public double throughputHeadroom = 0.85;
+    }
+}
@@ -0,0 +1,470 @@
+package com.wayacreates.livestream;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Background Remover
+ * CPU chroma/luma keyer for stream frames. The key mask is computed on a downscaled grid in
+ * YCbCr, box-filtered and blended with the previous frame's mask, then bilinearly upsampled in the
+ * same full-resolution pass that applies spill suppression and writes the result. Mask cells whose
+ * corners are all background or all foreground are filled or copied without per-pixel keying.
+ * Each session keeps a per-frame time budget: when frames run over it the keyer degrades in steps
+ * (spill on edges only, mask refreshed every other frame, coarser mask) and recovers with headroom.
+ */
+public class BackgroundRemover {
+    private static final Logger LOGGER = LoggerFactory.getLogger("WayaCreates/BackgroundRemover");
+
+    private static final int BAND_ROWS = 64;
+    private static final int THIRD = 21846; // 1/3 in 16.16, exact for sums of three 0..255 values
+
+    // Degradation steps under budget pressure
+    private static final int LEVEL_FULL = 0;
+    private static final int LEVEL_EDGE_SPILL = 1;
+    private static final int LEVEL_HALF_RATE_MASK = 2;
+    private static final int LEVEL_COARSE_MASK = 3;
+
+    // Run classes of the per-row mask cell runs
+    private static final int RUN_BACKGROUND = 0;
+    private static final int RUN_FOREGROUND = 1;
+    private static final int RUN_MIXED = 2;
+
+    private final Map<String, KeyState> sessions = new ConcurrentHashMap<>();
+
+    public enum KeyMode {
+        CHROMA,
+        LUMA
+    }
+
+    public void initialize() {
+        LOGGER.info("🎨 Background Remover initialized ({} threads)", Runtime.getRuntime().availableProcessors());
+    }
+
+    public void enableForSession(LivestreamManager.StreamSession session) {
+        sessions.computeIfAbsent(session.getSessionId(), id -> new KeyState(session.getSettings().keying));
+    }
+
+    public void disableForSession(LivestreamManager.StreamSession session) {
+        sessions.remove(session.getSessionId());
+    }
+
+    public void removeSession(LivestreamManager.StreamSession session) {
+        sessions.remove(session.getSessionId());
+    }
+
+    /**
+     * Key one ARGB frame in place. Background pixels get the settings' background color (or
+     * transparency) and foreground edges keep a soft alpha.
+     */
+    public void process(LivestreamManager.StreamSession session, int[] frame, int width, int height) {
+        KeyState state = sessions.get(session.getSessionId());
+        if (state != null) {
+            state.process(frame, width, height);
+        }
+    }
+
+    public void tick() {
+        // Keying runs per frame on the capture path
+    }
+
+    public KeyStats getStats(LivestreamManager.StreamSession session) {
+        KeyState state = sessions.get(session.getSessionId());
+        return state != null ? state.snapshot() : null;
+    }
+
+    // Per-session mask history and budget control
+    private static class KeyState {
+        final KeySettings settings;
+        int level = LEVEL_FULL;
+        int downscale;
+        long frameCount = 0;
+        double averageMillis = 0;
+        long overBudgetFrames = 0;
+
+        // Reduced-resolution mask (0..255, temporally smoothed) and the raw samples of the latest refresh
+        int maskWidth, maskHeight;
+        int[] mask;
+        int[] scratch;
+        int[] rowBuffer;
+        int[] previousRow;
+        int[][] rowRuns;  // Per mask row: (class, fromX, toX) triples
+        int[] rowRunCount;
+        boolean hasHistory = false;
+
+        // Upsampling tables for the current frame size
+        int frameWidth, frameHeight;
+        int[] columnIndex;
+        int[] columnWeight;
+        int[] spanEnd; // First frame column past each mask column's span
+
+        // Key color in CbCr and its unit direction (16.16 fixed point)
+        final int keyCb, keyCr;
+        final int keyDirCb, keyDirCr;
+
+        KeyState(KeySettings settings) {
+            this.settings = settings;
+            this.downscale = baseDownscale();
+            int r = (settings.keyColor >> 16) & 0xFF;
+            int g = (settings.keyColor >> 8) & 0xFF;
+            int b = settings.keyColor & 0xFF;
+            keyCb = cb(r, g, b);
+            keyCr = cr(r, g, b);
+            double length = Math.max(1e-6, Math.hypot(keyCb, keyCr));
+            keyDirCb = (int) Math.round(keyCb / length * 65536);
+            keyDirCr = (int) Math.round(keyCr / length * 65536);
+        }
+
+        synchronized void process(int[] frame, int width, int height) {
+            long start = System.nanoTime();
+            prepare(width, height);
+
+            int maskInterval = level >= LEVEL_HALF_RATE_MASK ? 2 : 1;
+            if (frameCount % maskInterval == 0 || !hasHistory) {
+                computeMask(frame, width, height);
+            }
+            applyMask(frame, width, height);
+            frameCount++;
+
+            double millis = (System.nanoTime() - start) / 1_000_000.0;
+            averageMillis = frameCount == 1 ? millis : averageMillis * 0.9 + millis * 0.1;
+            if (millis > settings.frameBudgetMillis) {
+                overBudgetFrames++;
+            }
+            adaptToBudget();
+        }
+
+        private int baseDownscale() {
+            return Math.max(1, settings.downscale);
+        }
+
+        private void prepare(int width, int height) {
+            downscale = level >= LEVEL_COARSE_MASK ? baseDownscale() * 2 : baseDownscale();
+            int newMaskWidth = (width + downscale - 1) / downscale;
+            int newMaskHeight = (height + downscale - 1) / downscale;
+            if (width != frameWidth || height != frameHeight || newMaskWidth != maskWidth || newMaskHeight != maskHeight) {
+                frameWidth = width;
+                frameHeight = height;
+                maskWidth = newMaskWidth;
+                maskHeight = newMaskHeight;
+                mask = new int[maskWidth * maskHeight];
+                scratch = new int[maskWidth * maskHeight];
+                rowBuffer = new int[maskWidth];
+                previousRow = new int[maskWidth];
+                rowRuns = new int[maskHeight][maskWidth * 3];
+                rowRunCount = new int[maskHeight];
+                hasHistory = false;
+
+                // Mask sample i sits at the centre of its block; precompute each column's pair and weight
+                columnIndex = new int[width];
+                columnWeight = new int[width];
+                for (int x = 0; x < width; x++) {
+                    int fixed = Math.max(0, ((x << 8) + 128) / downscale - 128);
+                    columnIndex[x] = Math.min(maskWidth - 1, fixed >> 8);
+                    columnWeight[x] = columnIndex[x] == maskWidth - 1 ? 0 : fixed & 0xFF;
+                }
+                spanEnd = new int[maskWidth];
+                for (int x = 0; x < width; x++) {
+                    spanEnd[columnIndex[x]] = x + 1;
+                }
+                for (int mx = 1; mx < maskWidth; mx++) {
+                    spanEnd[mx] = Math.max(spanEnd[mx], spanEnd[mx - 1]);
+                }
+            }
+        }
+
+        // Key each block's centre pixel, box filter, then blend with the previous mask
+        private void computeMask(int[] frame, int width, int height) {
+            int half = downscale / 2;
+            int low = (int) (settings.similarity * 255);
+            int high = (int) ((settings.similarity + Math.max(0.001f, settings.smoothness)) * 255);
+            int lowSquared = low * low;
+            int highSquared = high * high;
+            int lumaLow = (int) (settings.lumaLow * 255);
+            int lumaHigh = (int) (settings.lumaHigh * 255);
+
+            for (int my = 0; my < maskHeight; my++) {
+                int y = Math.min(height - 1, my * downscale + half);
+                int row = y * width;
+                for (int mx = 0; mx < maskWidth; mx++) {
+                    int x = Math.min(width - 1, mx * downscale + half);
+                    int pixel = frame[row + x];
+                    int r = (pixel >> 16) & 0xFF;
+                    int g = (pixel >> 8) & 0xFF;
+                    int b = pixel & 0xFF;
+
+                    int alpha;
+                    if (settings.mode == KeyMode.LUMA) {
+                        int luma = (77 * r + 150 * g + 29 * b) >> 8;
+                        // Dark (or, inverted, bright) pixels are background
+                        alpha = settings.invertLuma ? 255 - ramp(luma, lumaLow, lumaHigh) : ramp(luma, lumaLow, lumaHigh);
+                    } else {
+                        int dCb = cb(r, g, b) - keyCb;
+                        int dCr = cr(r, g, b) - keyCr;
+                        // Chroma distance scaled so 255 is roughly opposite the key color; only the soft edge needs a sqrt
+                        int distanceSquared = dCb * dCb + dCr * dCr;
+                        if (distanceSquared <= lowSquared) {
+                            alpha = 0;
+                        } else if (distanceSquared >= highSquared) {
+                            alpha = 255;
+                        } else {
+                            alpha = ramp((int) Math.sqrt(distanceSquared), low, high);
+                        }
+                    }
+                    scratch[my * maskWidth + mx] = alpha;
+                }
+            }
+
+            boxFilter(scratch, maskWidth, maskHeight);
+
+            // Temporal smoothing: weight of the previous mask in 0..256
+            float smoothing = Math.max(0, Math.min(0.95f, settings.temporalSmoothing));
+            int history = hasHistory ? (int) (smoothing * 256) : 0;
+            for (int i = 0; i < mask.length; i++) {
+                mask[i] = (mask[i] * history + scratch[i] * (256 - history) + 128) >> 8;
+            }
+            hasHistory = true;
+            buildRuns();
+        }
+
+        // 3x3 box filter in place (separable, row-major), removes single-sample speckle from sensor noise
+        private void boxFilter(int[] values, int w, int h) {
+            for (int y = 0; y < h; y++) {
+                int offset = y * w;
+                for (int x = 0; x < w; x++) {
+                    int left = values[offset + Math.max(0, x - 1)];
+                    int right = values[offset + Math.min(w - 1, x + 1)];
+                    rowBuffer[x] = ((left + values[offset + x] + right) * THIRD) >> 16;
+                }
+                System.arraycopy(rowBuffer, 0, values, offset, w);
+            }
+
+            // Vertical pass keeps the unfiltered row above in a buffer so it can write in place
+            System.arraycopy(values, 0, previousRow, 0, w);
+            for (int y = 0; y < h; y++) {
+                int offset = y * w;
+                int below = Math.min(h - 1, y + 1) * w;
+                for (int x = 0; x < w; x++) {
+                    int current = values[offset + x];
+                    values[offset + x] = ((previousRow[x] + current + values[below + x]) * THIRD) >> 16;
+                    previousRow[x] = current;
+                }
+            }
+        }
+
+        // Classify each mask cell row into runs of background, foreground and mixed cells
+        private void buildRuns() {
+            for (int my = 0; my < maskHeight; my++) {
+                int rowA = my * maskWidth;
+                int rowB = Math.min(maskHeight - 1, my + 1) * maskWidth;
+                int[] runs = rowRuns[my];
+                int count = 0;
+                int runClass = -1;
+                int runStart = 0;
+                for (int mx = 0; mx < maskWidth; mx++) {
+                    int mx1 = Math.min(maskWidth - 1, mx + 1);
+                    int a00 = mask[rowA + mx], a01 = mask[rowA + mx1], a10 = mask[rowB + mx], a11 = mask[rowB + mx1];
+                    int cellClass = (a00 | a01 | a10 | a11) == 0 ? RUN_BACKGROUND
+                        : (a00 & a01 & a10 & a11) == 255 ? RUN_FOREGROUND : RUN_MIXED;
+                    int from = mx == 0 ? 0 : spanEnd[mx - 1];
+                    if (cellClass != runClass) {
+                        if (runClass >= 0 && from > runStart) {
+                            runs[count++] = runClass;
+                            runs[count++] = runStart;
+                            runs[count++] = from;
+                        }
+                        runClass = cellClass;
+                        runStart = from;
+                    }
+                }
+                if (frameWidth > runStart) {
+                    runs[count++] = runClass;
+                    runs[count++] = runStart;
+                    runs[count++] = frameWidth;
+                }
+                rowRunCount[my] = count;
+            }
+        }
+
+        // Full-resolution pass: bilinear alpha, spill suppression and output in one sweep, banded across cores
+        private void applyMask(int[] frame, int width, int height) {
+            int bands = (height + BAND_ROWS - 1) / BAND_ROWS;
+            IntStream.range(0, bands).parallel().forEach(band -> {
+                int yEnd = Math.min(height, (band + 1) * BAND_ROWS);
+                for (int y = band * BAND_ROWS; y < yEnd; y++) {
+                    applyRow(frame, width, y);
+                }
+            });
+        }
+
+        private void applyRow(int[] frame, int width, int y) {
+            int fixedY = Math.max(0, ((y << 8) + 128) / downscale - 128);
+            int my0 = Math.min(maskHeight - 1, fixedY >> 8);
+            int my1 = Math.min(maskHeight - 1, my0 + 1);
+            int wy = my0 == maskHeight - 1 ? 0 : fixedY & 0xFF;
+            int rowA = my0 * maskWidth;
+            int rowB = my1 * maskWidth;
+
+            int background = settings.backgroundColor;
+            int backgroundAlpha = background >>> 24;
+            int spill = settings.mode == KeyMode.CHROMA ? (int) (Math.max(0, Math.min(1, settings.spillSuppression)) * 256) : 0;
+            boolean interiorSpill = spill > 0 && level < LEVEL_EDGE_SPILL;
+            int offset = y * width;
+
+            int[] runs = rowRuns[my0];
+            int count = rowRunCount[my0];
+            for (int r = 0; r < count; r += 3) {
+                int from = offset + runs[r + 1];
+                int to = offset + runs[r + 2];
+                switch (runs[r]) {
+                    case RUN_BACKGROUND:
+                        Arrays.fill(frame, from, to, background);
+                        break;
+                    case RUN_FOREGROUND:
+                        if (interiorSpill) {
+                            for (int i = from; i < to; i++) {
+                                frame[i] = suppressSpill(frame[i], spill) | 0xFF000000;
+                            }
+                        } else {
+                            for (int i = from; i < to; i++) {
+                                frame[i] |= 0xFF000000;
+                            }
+                        }
+                        break;
+                    default:
+                        for (int i = from; i < to; i++) {
+                            int x = i - offset;
+                            int mx0 = columnIndex[x];
+                            int mx1 = Math.min(maskWidth - 1, mx0 + 1);
+                            int wx = columnWeight[x];
+                            int left = mask[rowA + mx0] * (256 - wy) + mask[rowB + mx0] * wy;
+                            int right = mask[rowA + mx1] * (256 - wy) + mask[rowB + mx1] * wy;
+                            int alpha = (left * (256 - wx) + right * wx) >> 16;
+                            if (alpha <= 0) {
+                                frame[i] = background;
+                                continue;
+                            }
+                            int pixel = spill > 0 ? suppressSpill(frame[i], spill) : frame[i];
+                            if (alpha >= 255) {
+                                frame[i] = pixel | 0xFF000000;
+                            } else if (backgroundAlpha == 0) {
+                                frame[i] = (pixel & 0x00FFFFFF) | (alpha << 24);
+                            } else {
+                                frame[i] = mix(pixel, background, alpha);
+                            }
+                        }
+                        break;
+                }
+            }
+        }
+
+        // Remove the part of the pixel's chroma that points toward the key color, keeping its luma
+        private int suppressSpill(int pixel, int spill) {
+            int r = (pixel >> 16) & 0xFF;
+            int g = (pixel >> 8) & 0xFF;
+            int b = pixel & 0xFF;
+            int y = (77 * r + 150 * g + 29 * b) >> 8;
+            int pixelCb = cb(r, g, b);
+            int pixelCr = cr(r, g, b);
+            long projection = ((long) pixelCb * keyDirCb + (long) pixelCr * keyDirCr) >> 16;
+            if (projection <= 0) return pixel;
+
+            long remove = projection * spill >> 8;
+            int newCb = pixelCb - (int) (remove * keyDirCb >> 16);
+            int newCr = pixelCr - (int) (remove * keyDirCr >> 16);
+            int nr = clamp(y + ((359 * newCr) >> 8));
+            int ng = clamp(y - ((88 * newCb + 183 * newCr) >> 8));
+            int nb = clamp(y + ((454 * newCb) >> 8));
+            return (pixel & 0xFF000000) | (nr << 16) | (ng << 8) | nb;
+        }
+
+        private void adaptToBudget() {
+            // Re-evaluate about once a second's worth of frames
+            if (frameCount % 30 != 0) return;
+            if (averageMillis > settings.frameBudgetMillis && level < LEVEL_COARSE_MASK) {
+                level++;
+                LOGGER.warn("⚠️ Background removal over budget ({} ms > {} ms) - degrading to level {}",
+                    String.format("%.1f", averageMillis), settings.frameBudgetMillis, level);
+            } else if (averageMillis < settings.frameBudgetMillis * 0.5 && level > LEVEL_FULL) {
+                level--;
+                LOGGER.debug("🎨 Background removal has headroom - back to level {}", level);
+            }
+        }
+
+        KeyStats snapshot() {
+            return new KeyStats(averageMillis, level, downscale, frameCount, overBudgetFrames);
+        }
+    }
+
+    private static int ramp(int value, int low, int high) {
+        if (value <= low) return 0;
+        if (value >= high) return 255;
+        // Smoothstep between the thresholds for a soft edge
+        int t = (value - low) * 255 / (high - low);
+        return t * t * (765 - 2 * t) / 65025;
+    }
+
+    private static int mix(int foreground, int background, int alpha) {
+        int inverse = 255 - alpha;
+        int r = (((foreground >> 16) & 0xFF) * alpha + ((background >> 16) & 0xFF) * inverse) / 255;
+        int g = (((foreground >> 8) & 0xFF) * alpha + ((background >> 8) & 0xFF) * inverse) / 255;
+        int b = ((foreground & 0xFF) * alpha + (background & 0xFF) * inverse) / 255;
+        return 0xFF000000 | (r << 16) | (g << 8) | b;
+    }
+
+    // BT.601 chroma, centred on zero
+    private static int cb(int r, int g, int b) {
+        return (-43 * r - 85 * g + 128 * b) >> 8;
+    }
+
+    private static int cr(int r, int g, int b) {
+        return (128 * r - 107 * g - 21 * b) >> 8;
+    }
+
+    private static int clamp(int value) {
+        return value < 0 ? 0 : Math.min(255, value);
+    }
+
+    // Key Settings Class
+    public static class KeySettings {
+        public KeyMode mode = KeyMode.CHROMA;
+        public int keyColor = 0x00FF00;        // Chroma key color (RGB)
+        public float similarity = 0.25f;       // Chroma distance (0..1) below which a pixel is background
+        public float smoothness = 0.08f;       // Width of the soft edge above the similarity threshold
+        public float spillSuppression = 0.6f;  // 0 = off, 1 = remove all key-colored chroma from the foreground
+        public float lumaLow = 0.1f;           // Luma keying: background below lumaLow, foreground above lumaHigh
+        public float lumaHigh = 0.2f;
+        public boolean invertLuma = false;
+        public float temporalSmoothing = 0.6f; // Weight of the previous mask (0 = none)
+        public int downscale = 4;              // Mask resolution divisor
+        public int backgroundColor = 0x00000000; // ARGB; transparent leaves alpha in the frame
+        public float frameBudgetMillis = 8.0f;
+    }
+
+    // Key Stats Class
+    public static class KeyStats {
+        public final double averageMillis;
+        public final int level;
+        public final int downscale;
+        public final long frames;
+        public final long overBudgetFrames;
+
+        public KeyStats(double averageMillis, int level, int downscale, long frames, long overBudgetFrames) {
+            this.averageMillis = averageMillis;
+            this.level = level;
+            this.downscale = downscale;
+            this.frames = frames;
+            this.overBudgetFrames = overBudgetFrames;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%.2f ms/frame, level %d, mask 1/%d, %d/%d frames over budget",
+                averageMillis, level, downscale, overBudgetFrames, frames);
+        }
+    }
+}
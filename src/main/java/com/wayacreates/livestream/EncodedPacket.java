@@ -0,0 +1,64 @@
+package com.wayacreates.livestream;
+
+/**
+ * Encoded Stream Packet
+ * One compressed video frame or audio block as produced by the stream encoder. Packets are
+ * immutable once built so the same instance can be queued for several outputs. When the encoder
+ * produces a rendition ladder, video packets carry the rendition they belong to; audio is shared.
+ */
+public final class EncodedPacket {
+    public enum Type {
+        VIDEO,
+        AUDIO
+    }
+
+    private final Type type;
+    private final long timestampMillis;
+    private final boolean keyframe;
+    private final byte[] data;
+    private final LivestreamManager.StreamQuality rendition; // null = the session's only rendition, or shared audio
+
+    public EncodedPacket(Type type, long timestampMillis, boolean keyframe, byte[] data) {
+        this(type, null, timestampMillis, keyframe, data);
+    }
+
+    public EncodedPacket(Type type, LivestreamManager.StreamQuality rendition, long timestampMillis, boolean keyframe, byte[] data) {
+        this.type = type;
+        this.rendition = rendition;
+        this.timestampMillis = timestampMillis;
+        this.keyframe = keyframe;
+        this.data = data;
+    }
+
+    public static EncodedPacket video(long timestampMillis, boolean keyframe, byte[] data) {
+        return new EncodedPacket(Type.VIDEO, timestampMillis, keyframe, data);
+    }
+
+    public static EncodedPacket video(LivestreamManager.StreamQuality rendition, long timestampMillis, boolean keyframe, byte[] data) {
+        return new EncodedPacket(Type.VIDEO, rendition, timestampMillis, keyframe, data);
+    }
+
+    public static EncodedPacket audio(long timestampMillis, byte[] data) {
+        return new EncodedPacket(Type.AUDIO, timestampMillis, true, data);
+    }
+
+    public boolean isVideo() { return type == Type.VIDEO; }
+
+    /**
+     * A non-key video frame; once one is dropped the rest of its GOP must go too
+     */
+    public boolean isDroppable() { return type == Type.VIDEO && !keyframe; }
+
+    // Getters
+    public Type getType() { return type; }
+    public LivestreamManager.StreamQuality getRendition() { return rendition; }
+    public long getTimestampMillis() { return timestampMillis; }
+    public boolean isKeyframe() { return keyframe; }
+    public byte[] getData() { return data; }
+    public int getSize() { return data.length; }
+
+    @Override
+    public String toString() {
+        return String.format("%s%s@%dms%s (%d bytes)", type, rendition != null ? "/" + rendition : "", timestampMillis, keyframe && type == Type.VIDEO ? " key" : "", data.length);
+    }
+}
@@ -0,0 +1,288 @@
+package com.wayacreates.livestream;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * HLS Segmenter
+ * Cuts a stream's encoded packets into low-latency HLS segments (at the first keyframe past the
+ * target duration) and partial segments (every part target). Completed segments and parts are
+ * immutable byte arrays shared by every viewer, kept in a rolling window bounded by segment count
+ * and bytes. Part lists are only retained for the newest segments, which is all LL-HLS clients use.
+ *
+ * Packet payloads are written as-is, so the encoder must emit container-ready chunks (MPEG-TS, or
+ * CMAF fragments plus an init segment set with {@link #setInitSegment}).
+ */
+public class HlsSegmenter {
+    // Segments that still advertise their parts in the playlist
+    private static final int SEGMENTS_WITH_PARTS = 2;
+
+    private final String extension;
+    private final long targetSegmentMillis;
+    private final long targetPartMillis;
+    private final int windowSegments;
+    private final long maxWindowBytes;
+
+    private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+    private long windowBytes = 0;
+    private long maxSegmentMillis = 0;
+    private long nextSequence = 0;
+    private volatile byte[] initSegment;
+
+    // In-progress segment and part
+    private Segment current;
+    private final ByteArrayOutputStream partBuffer = new ByteArrayOutputStream();
+    private long partStart;
+    private long lastTimestamp;
+    private long lastVideoTimestamp = -1;
+    private long frameMillis = 0;
+    private boolean partIndependent;
+    private boolean ended = false;
+
+    public HlsSegmenter(String extension, long targetSegmentMillis, long targetPartMillis, int windowSegments, long maxWindowBytes) {
+        this.extension = extension;
+        this.targetSegmentMillis = targetSegmentMillis;
+        this.targetPartMillis = Math.min(targetPartMillis, targetSegmentMillis);
+        this.windowSegments = Math.max(3, windowSegments);
+        this.maxWindowBytes = maxWindowBytes;
+    }
+
+    /**
+     * fMP4/CMAF initialization segment, advertised with EXT-X-MAP
+     */
+    public void setInitSegment(byte[] initSegment) {
+        this.initSegment = initSegment;
+    }
+
+    public synchronized void accept(EncodedPacket packet) {
+        if (ended) return;
+        long timestamp = Math.max(packet.getTimestampMillis(), lastTimestamp);
+        boolean keyframe = packet.isVideo() && packet.isKeyframe();
+
+        if (current != null && keyframe && timestamp - current.startMillis >= targetSegmentMillis) {
+            closePart(timestamp);
+            closeSegment(timestamp);
+        }
+        if (current == null) {
+            // Every segment starts on a keyframe
+            if (!keyframe) return;
+            current = new Segment(nextSequence++, timestamp);
+        }
+        if (!keyframe && current.size + partBuffer.size() > maxWindowBytes / 2) {
+            // Encoder stopped sending keyframes: don't let one segment eat the whole window
+            return;
+        }
+        if (packet.isVideo()) {
+            if (lastVideoTimestamp >= 0 && timestamp > lastVideoTimestamp) {
+                frameMillis = timestamp - lastVideoTimestamp;
+            }
+            lastVideoTimestamp = timestamp;
+        }
+        // Close the part before the frame that would take it past the part target
+        if (partBuffer.size() > 0 && timestamp + frameMillis - partStart > targetPartMillis) {
+            closePart(timestamp);
+        }
+        if (partBuffer.size() == 0) {
+            partStart = timestamp;
+            partIndependent = keyframe;
+        }
+
+        byte[] data = packet.getData();
+        partBuffer.write(data, 0, data.length);
+        lastTimestamp = timestamp;
+    }
+
+    /**
+     * Close out the in-progress segment; later packets are ignored
+     */
+    public synchronized void end() {
+        if (current != null) {
+            closePart(lastTimestamp);
+            closeSegment(lastTimestamp);
+        }
+        ended = true;
+        notifyAll();
+    }
+
+    // Caller holds the monitor
+    private void closePart(long timestamp) {
+        if (partBuffer.size() == 0) return;
+        Part part = new Part(current.parts.size(), Math.max(1, timestamp - partStart), partIndependent, partBuffer.toByteArray());
+        partBuffer.reset();
+        current.parts.add(part);
+        current.size += part.data.length;
+        windowBytes += part.data.length;
+        notifyAll();
+    }
+
+    // Caller holds the monitor
+    private void closeSegment(long timestamp) {
+        Segment segment = current;
+        current = null;
+        if (segment.parts.isEmpty()) return;
+
+        segment.durationMillis = Math.max(1, timestamp - segment.startMillis);
+        ByteArrayOutputStream joined = new ByteArrayOutputStream(segment.size);
+        for (Part part : segment.parts) {
+            joined.write(part.data, 0, part.data.length);
+        }
+        segment.data = joined.toByteArray();
+        windowBytes += segment.size; // Parts and joined data both live until the parts are released
+        segments.add(segment);
+        maxSegmentMillis = Math.max(maxSegmentMillis, segment.durationMillis);
+
+        int index = 0;
+        int withParts = segments.size() - SEGMENTS_WITH_PARTS;
+        for (Segment completed : segments) {
+            if (index++ >= withParts) break;
+            if (completed.parts != null) {
+                windowBytes -= completed.size;
+                completed.parts = null;
+            }
+        }
+        while (segments.size() > windowSegments || (windowBytes > maxWindowBytes && segments.size() > 1)) {
+            Segment evicted = segments.poll();
+            windowBytes -= evicted.size * (evicted.parts != null ? 2L : 1L);
+        }
+        notifyAll();
+    }
+
+    /**
+     * Wait until a segment (part < 0) or one of its parts is available, for blocking playlist reloads
+     * @return true if it became available before the timeout
+     */
+    public synchronized boolean await(long sequence, int part, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (!isAvailable(sequence, part) && !ended) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) return false;
+            wait(remaining);
+        }
+        return isAvailable(sequence, part);
+    }
+
+    // Caller holds the monitor
+    private boolean isAvailable(long sequence, int part) {
+        if (current != null && sequence == current.sequence) {
+            return part >= 0 && part < current.parts.size();
+        }
+        return sequence < nextSequence;
+    }
+
+    public synchronized String renderPlaylist() {
+        StringBuilder playlist = new StringBuilder(1024);
+        long targetDuration = Math.max(1, (Math.max(maxSegmentMillis, targetSegmentMillis) + 999) / 1000);
+        playlist.append("#EXTM3U\n");
+        playlist.append("#EXT-X-VERSION:9\n");
+        // Every segment starts on a keyframe
+        playlist.append("#EXT-X-INDEPENDENT-SEGMENTS\n");
+        playlist.append("#EXT-X-TARGETDURATION:").append(targetDuration).append('\n');
+        playlist.append("#EXT-X-PART-INF:PART-TARGET=").append(seconds(targetPartMillis)).append('\n');
+        playlist.append("#EXT-X-SERVER-CONTROL:CAN-BLOCK-RELOAD=YES,PART-HOLD-BACK=")
+            .append(seconds(targetPartMillis * 3)).append('\n');
+        long firstSequence = segments.isEmpty() ? (current != null ? current.sequence : 0) : segments.peek().sequence;
+        playlist.append("#EXT-X-MEDIA-SEQUENCE:").append(firstSequence).append('\n');
+        if (initSegment != null) {
+            playlist.append("#EXT-X-MAP:URI=\"init.mp4\"\n");
+        }
+
+        for (Segment segment : segments) {
+            appendParts(playlist, segment);
+            playlist.append("#EXTINF:").append(seconds(segment.durationMillis)).append(",\n");
+            playlist.append(segmentName(segment.sequence)).append('\n');
+        }
+        if (current != null) {
+            appendParts(playlist, current);
+            playlist.append("#EXT-X-PRELOAD-HINT:TYPE=PART,URI=\"")
+                .append(partName(current.sequence, current.parts.size())).append("\"\n");
+        }
+        if (ended) {
+            playlist.append("#EXT-X-ENDLIST\n");
+        }
+        return playlist.toString();
+    }
+
+    private void appendParts(StringBuilder playlist, Segment segment) {
+        if (segment.parts == null) return;
+        for (Part part : segment.parts) {
+            playlist.append("#EXT-X-PART:DURATION=").append(seconds(part.durationMillis))
+                .append(",URI=\"").append(partName(segment.sequence, part.index)).append('"');
+            if (part.independent) {
+                playlist.append(",INDEPENDENT=YES");
+            }
+            playlist.append('\n');
+        }
+    }
+
+    /**
+     * Bytes of a completed segment, or null if it is not (or no longer) in the window
+     */
+    public synchronized byte[] getSegment(long sequence) {
+        for (Segment segment : segments) {
+            if (segment.sequence == sequence) return segment.data;
+        }
+        return null;
+    }
+
+    public synchronized byte[] getPart(long sequence, int index) {
+        if (current != null && current.sequence == sequence) {
+            return index < current.parts.size() ? current.parts.get(index).data : null;
+        }
+        for (Segment segment : segments) {
+            if (segment.sequence == sequence) {
+                return segment.parts != null && index < segment.parts.size() ? segment.parts.get(index).data : null;
+            }
+        }
+        return null;
+    }
+
+    public String segmentName(long sequence) {
+        return "seg" + sequence + "." + extension;
+    }
+
+    public String partName(long sequence, int index) {
+        return "seg" + sequence + ".part" + index + "." + extension;
+    }
+
+    private static String seconds(long millis) {
+        return String.format(Locale.ROOT, "%.3f", millis / 1000.0);
+    }
+
+    // Getters
+    public String getExtension() { return extension; }
+    public byte[] getInitSegment() { return initSegment; }
+    public synchronized long getWindowBytes() { return windowBytes; }
+    public synchronized int getSegmentCount() { return segments.size(); }
+    public long getTargetPartMillis() { return targetPartMillis; }
+
+    private static class Segment {
+        final long sequence;
+        final long startMillis;
+        long durationMillis;
+        List<Part> parts = new ArrayList<>();
+        int size = 0;
+        byte[] data;
+
+        Segment(long sequence, long startMillis) {
+            this.sequence = sequence;
+            this.startMillis = startMillis;
+        }
+    }
+
+    private static class Part {
+        final int index;
+        final long durationMillis;
+        final boolean independent;
+        final byte[] data;
+
+        Part(int index, long durationMillis, boolean independent, byte[] data) {
+            this.index = index;
+            this.durationMillis = durationMillis;
+            this.independent = independent;
+            this.data = data;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.wayacreates.livestream;
+
+/**
+ * Ingest Output
+ * One destination of a stream with its own queue, sender thread and reconnect loop. Whatever feeds
+ * an output only ever enqueues, so a slow or dead destination never blocks it.
+ */
+public interface IngestOutput extends AutoCloseable {
+    void start();
+
+    /**
+     * Measure send throughput since the last sample (engine tick thread only)
+     */
+    double sampleThroughput(long nowNanos);
+
+    /**
+     * Encoded bytes waiting to be sent; estimated for outputs that queue raw frames
+     */
+    long getQueuedBytes();
+
+    boolean isConnected();
+    double getThroughputBps();
+    long getBytesSent();
+    long getPacketsSent();
+    long getPacketsDropped();
+    long getReconnects();
+
+    @Override
+    void close();
+}
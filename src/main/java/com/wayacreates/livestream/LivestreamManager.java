@@ -1,14 +1,20 @@
 package com.wayacreates.livestream;
 
+import com.wayacreates.video.OverlayCompositor;
+import com.wayacreates.video.OverlayLayer;
 import net.minecraft.server.world.ServerWorld;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.ArrayList;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.List;
-import java.util.ArrayList;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Livestream Manager with Background Removal and Overlay Support
@@ -23,8 +29,14 @@ public class LivestreamManager {
     // Livestream components
     private StreamEngine streamEngine;
     private BackgroundRemover backgroundRemover;
+    private SceneTransitioner sceneTransitioner;
     private OverlaySystem overlaySystem;
-    private AudioMixer audioMixer;
+    private final Map<String, StreamAudioMixer> audioMixers = new ConcurrentHashMap<>();
+    private final Map<String, StreamDelay> delays = new ConcurrentHashMap<>();
+    private final Map<String, StreamEncoder> encoders = new ConcurrentHashMap<>();
+    private volatile StreamEngine.EncoderControl externalEncoderControl = StreamEngine.EncoderControl.NONE;
+    private final Map<Integer, SoundBank> soundBanks = new ConcurrentHashMap<>();
+    private volatile StreamAudioMixer.AudioSink audioSink = StreamAudioMixer.AudioSink.NONE;
     private final Map<UUID, StreamSession> activeSessions = new ConcurrentHashMap<>();
     
     // Stream settings
@@ -44,7 +56,7 @@ public class LivestreamManager {
         
         if (DEBUG_MODE) {
             LOGGER.debug("🔧 Initializing livestream components...");
-            LOGGER.debug("- Stream Engine: Setting up RTMP/RTSP protocols");
+            LOGGER.debug("- Stream Engine: Setting up RTMP and local outputs");
             LOGGER.debug("- Background Remover: Loading AI models");
             LOGGER.debug("- Overlay System: Initializing drag & drop");
             LOGGER.debug("- Audio Mixer: Setting up sound effects");
@@ -52,9 +64,10 @@ public class LivestreamManager {
         
         // Initialize components
         streamEngine = new StreamEngine();
+        streamEngine.setEncoderControl(new EncoderDispatch());
         backgroundRemover = new BackgroundRemover();
+        sceneTransitioner = new SceneTransitioner();
         overlaySystem = new OverlaySystem();
-        audioMixer = new AudioMixer();
         
         // Initialize background remover
         backgroundRemover.initialize();
@@ -78,6 +91,21 @@ public class LivestreamManager {
         
         // Start streaming
         streamEngine.startStream(session);
+        if (session.getSettings().broadcastDelaySeconds > 0) {
+            startDelay(session);
+        }
+        if (streamEngine.needsPackets(session)) {
+            startEncoder(session);
+        }
+        if (session.getSettings().enableBackgroundRemoval) {
+            enableBackgroundRemoval(playerId, true);
+        }
+        if (session.getSettings().enableTransitions) {
+            sceneTransitioner.prepare(session);
+        }
+        if (session.getSettings().enableAudio) {
+            startAudioMixer(session);
+        }
         
         return session;
     }
@@ -89,7 +117,22 @@ public class LivestreamManager {
         StreamSession session = activeSessions.remove(playerId);
         if (session != null) {
             session.stop();
+            StreamEncoder encoder = encoders.remove(session.getSessionId());
+            if (encoder != null) {
+                encoder.close();
+            }
+            StreamDelay delay = delays.remove(session.getSessionId());
+            if (delay != null) {
+                delay.close();
+            }
             streamEngine.stopStream(session);
+            backgroundRemover.removeSession(session);
+            sceneTransitioner.removeSession(session);
+            StreamAudioMixer mixer = audioMixers.remove(session.getSessionId());
+            if (mixer != null) {
+                mixer.close();
+            }
+            overlaySystem.removeSession(session);
             LOGGER.info("⏹️ Stopped livestream: {}", session.getSessionId());
             return true;
         }
@@ -138,17 +181,71 @@ public class LivestreamManager {
         }
     }
     
+    // Sound effects are decoded once per sample rate, before any stream needs them
+    private void startAudioMixer(StreamSession session) {
+        StreamSettings settings = session.getSettings();
+        SoundBank bank = soundBanks.computeIfAbsent(settings.audioSampleRate, rate -> {
+            SoundBank loaded = new SoundBank(rate);
+            loaded.loadDirectory(new File(settings.soundEffectsDirectory));
+            return loaded;
+        });
+        StreamAudioMixer mixer = new StreamAudioMixer(session, bank, settings.audioBlockFrames, this::onMixedAudio);
+        audioMixers.put(session.getSessionId(), mixer);
+        mixer.start();
+    }
+    
     /**
-     * Play sound effect during stream
+     * Play sound effect during stream. Safe from the game thread: it only queues a trigger for the mixer.
      */
     public void playSoundEffect(UUID playerId, String soundName) {
         StreamSession session = activeSessions.get(playerId);
-        if (session != null) {
-            audioMixer.playSoundEffect(soundName, session);
-            LOGGER.info("🎵 Played sound effect: {} for stream: {}", soundName, session.getSessionId());
+        if (session == null) return;
+        StreamAudioMixer mixer = audioMixers.get(session.getSessionId());
+        if (mixer == null) return;
+        if (mixer.playSound(soundName, 1f, 0f)) {
+            if (DEBUG_MODE) {
+                LOGGER.debug("🎵 Played sound effect: {} for stream: {}", soundName, session.getSessionId());
+            }
+        } else {
+            LOGGER.warn("⚠️ Unknown sound effect: {} (put it in {})", soundName, session.getSettings().soundEffectsDirectory);
         }
     }
     
+    /**
+     * The stream's audio mixer, for program audio input and gain changes
+     */
+    public StreamAudioMixer getAudioMixer(UUID playerId) {
+        StreamSession session = activeSessions.get(playerId);
+        return session != null ? audioMixers.get(session.getSessionId()) : null;
+    }
+    
+    /**
+     * Where mixed stream audio goes besides the stream's own encoders, e.g. a recorder
+     */
+    public void setAudioSink(StreamAudioMixer.AudioSink sink) {
+        audioSink = sink != null ? sink : StreamAudioMixer.AudioSink.NONE;
+    }
+    
+    // Mixer thread: every block goes to the RTMP outputs and the packet encoder, which copy it
+    private void onMixedAudio(StreamSession session, float[] interleaved, int frames, long timestampMillis) {
+        streamEngine.submitAudio(session, interleaved, frames, timestampMillis);
+        StreamEncoder encoder = encoders.get(session.getSessionId());
+        if (encoder != null) {
+            encoder.offerAudio(interleaved, frames, timestampMillis);
+        }
+        audioSink.onBlock(session, interleaved, frames, timestampMillis);
+    }
+    
+    // Local HLS and MPEG-TS outputs take encoded packets, which go through submitPacket like any other
+    private void startEncoder(StreamSession session) {
+        UUID playerId = session.getPlayerId();
+        StreamEncoder encoder = new StreamEncoder(session, streamEngine.getPacketContainer(session),
+            packet -> submitPacket(playerId, packet),
+            initSegment -> streamEngine.setInitSegment(session, initSegment));
+        encoders.put(session.getSessionId(), encoder);
+        encoder.start();
+    }
+    
     /**
      * Add meme overlay
      */
@@ -188,32 +285,239 @@ public class LivestreamManager {
                 session.getStreamDuration(),
                 session.getQuality(),
                 session.isBackgroundRemovalEnabled(),
-                session.getOverlayCount()
+                session.getOverlayCount(),
+                session.getTelemetry().snapshot()
             );
         }
         return null;
     }
     
     /**
-     * Transition between scenes
+     * Run a captured ARGB frame through the session's frame effects (background removal, scene
+     * transition, then overlays) and hand it to the session's RTMP outputs and packet encoder,
+     * which copy it. Called from the capture thread.
+     */
+    public void processFrame(UUID playerId, int[] frame, int frameWidth, int frameHeight) {
+        StreamSession session = activeSessions.get(playerId);
+        if (session == null) return;
+        session.getTelemetry().recordCapture();
+        if (session.isBackgroundRemovalEnabled()) {
+            backgroundRemover.process(session, frame, frameWidth, frameHeight);
+        }
+        if (session.getSettings().enableTransitions) {
+            sceneTransitioner.process(session, frame, frameWidth, frameHeight);
+        }
+        if (session.getSettings().enableOverlays) {
+            overlaySystem.compositeFrame(session, frame, frameWidth, frameHeight);
+        }
+        long now = System.currentTimeMillis();
+        streamEngine.submitFrame(session, frame, frameWidth, frameHeight, now);
+        StreamEncoder encoder = encoders.get(session.getSessionId());
+        if (encoder != null) {
+            encoder.offerFrame(frame, frameWidth, frameHeight, now);
+        }
+    }
+    
+    /**
+     * Blend the session's overlays into an outgoing ARGB frame
+     */
+    public void compositeOverlays(UUID playerId, int[] frame, int frameWidth, int frameHeight) {
+        StreamSession session = activeSessions.get(playerId);
+        if (session != null && session.getSettings().enableOverlays) {
+            overlaySystem.compositeFrame(session, frame, frameWidth, frameHeight);
+        }
+    }
+    
+    /**
+     * Transition between scenes: call just before the captured frames switch to the new scene
      */
     public void transitionScene(UUID playerId, String transitionType, float duration) {
+        StreamSession session = activeSessions.get(playerId);
+        if (session != null && session.getSettings().enableTransitions) {
+            if (sceneTransitioner.start(session, transitionType, duration)) {
+                LOGGER.info("🎬 Scene transition: {} ({}s) for stream: {}", transitionType, duration, session.getSessionId());
+            } else {
+                LOGGER.info("🎬 Scene cut for stream: {}", session.getSessionId());
+            }
+        }
+    }
+    
+    /**
+     * Hand an encoded packet to the player's stream output, through the broadcast delay if one is
+     * set. Never blocks the caller.
+     */
+    public boolean submitPacket(UUID playerId, EncodedPacket packet) {
+        StreamSession session = activeSessions.get(playerId);
+        if (session == null || !session.isStreaming()) return false;
+        // Counted as encoded on arrival, before any broadcast delay; once per frame on a ladder
+        if (packet.isVideo() && (packet.getRendition() == null || packet.getRendition() == topRendition(session))) {
+            session.getTelemetry().recordEncoded();
+        }
+        StreamDelay delay = delays.get(session.getSessionId());
+        return delay != null ? delay.submit(packet) : streamEngine.submitPacket(session, packet);
+    }
+    
+    private static StreamQuality topRendition(StreamSession session) {
+        StreamQuality top = null;
+        for (StreamQuality rendition : session.getSettings().renditions) {
+            if (top == null || rendition.bitRate > top.bitRate) {
+                top = rendition;
+            }
+        }
+        return top;
+    }
+    
+    // Room for twice the delay at the top rendition's bitrate plus audio, unless set explicitly
+    private void startDelay(StreamSession session) {
+        StreamSettings settings = session.getSettings();
+        long maxBytes = settings.broadcastDelayMaxBytes;
+        if (maxBytes <= 0) {
+            int videoBitRate = Math.max(settings.bitRate, settings.quality.bitRate);
+            for (StreamQuality rendition : settings.renditions) {
+                videoBitRate = Math.max(videoBitRate, rendition.bitRate);
+            }
+            long ladder = Math.max(1, settings.renditions.size());
+            maxBytes = 2L * settings.broadcastDelaySeconds * (videoBitRate * ladder + settings.audioBitRate) / 8;
+        }
+        StreamDelay delay = new StreamDelay(session.getSessionId(), settings.broadcastDelaySeconds * 1000L, maxBytes,
+            packet -> streamEngine.submitPacket(session, packet),
+            rendition -> streamEngine.requestKeyframe(session, rendition));
+        delays.put(session.getSessionId(), delay);
+        delay.start();
+    }
+    
+    /**
+     * Panic button: drop the last seconds of a delayed stream before they air and show the slate
+     * instead. Only content still inside the broadcast delay can be cut.
+     * @return seconds actually cut
+     */
+    public float cutStream(UUID playerId, float seconds) {
+        StreamSession session = activeSessions.get(playerId);
+        if (session == null) return 0;
+        StreamDelay delay = delays.get(session.getSessionId());
+        if (delay == null) {
+            LOGGER.warn("⚠️ Stream {} has no broadcast delay, nothing can be cut", session.getSessionId());
+            return 0;
+        }
+        return delay.cut((long) (seconds * 1000)) / 1000f;
+    }
+    
+    /**
+     * Pre-encoded clip shown over cut content, encoded with the stream's own settings and starting
+     * on a keyframe
+     */
+    public void setDelaySlate(UUID playerId, List<EncodedPacket> slate) {
+        StreamSession session = activeSessions.get(playerId);
+        StreamDelay delay = session != null ? delays.get(session.getSessionId()) : null;
+        if (delay != null) {
+            delay.setSlate(slate, session.getSettings().frameRate);
+        }
+    }
+    
+    public StreamDelay.DelayStats getDelayStats(UUID playerId) {
+        StreamSession session = activeSessions.get(playerId);
+        StreamDelay delay = session != null ? delays.get(session.getSessionId()) : null;
+        return delay != null ? delay.getStats() : null;
+    }
+    
+    /**
+     * Get send-side stats (queue, throughput, drops) for a player's stream
+     */
+    public StreamEngine.StreamStats getStreamStats(UUID playerId) {
+        StreamSession session = activeSessions.get(playerId);
+        return session != null ? streamEngine.getStats(session) : null;
+    }
+    
+    /**
+     * Health counters for a player's stream. The encoder should hold on to this and report encode
+     * latency, queue depth and skipped frames to it directly.
+     */
+    public StreamTelemetry getTelemetry(UUID playerId) {
+        StreamSession session = activeSessions.get(playerId);
+        return session != null ? session.getTelemetry() : null;
+    }
+    
+    /**
+     * The last few minutes of a player's stream health, one sample per second, oldest first
+     */
+    public List<StreamTelemetry.Sample> getTelemetryHistory(UUID playerId, int maxSamples) {
+        StreamSession session = activeSessions.get(playerId);
+        return session != null ? session.getTelemetry().getHistory(maxSamples) : List.of();
+    }
+    
+    /**
+     * Viewer count reported by the streaming platform's API
+     */
+    public void setPlatformViewers(UUID playerId, int viewers) {
         StreamSession session = activeSessions.get(playerId);
         if (session != null) {
-            streamEngine.transitionScene(session, transitionType, duration);
-            LOGGER.info("🎬 Scene transition: {} ({}s) for stream: {}", transitionType, duration, session.getSessionId());
+            session.setPlatformViewers(viewers);
         }
     }
     
+    public Set<UUID> getStreamingPlayers() {
+        return activeSessions.keySet();
+    }
+    
+    /**
+     * Set the CMAF init segment served to local HLS viewers of a player's stream
+     */
+    public void setLocalHlsInitSegment(UUID playerId, byte[] initSegment) {
+        StreamSession session = activeSessions.get(playerId);
+        if (session != null) {
+            streamEngine.setInitSegment(session, initSegment);
+        }
+    }
+    
+    /**
+     * Hooks for an external encoder that also feeds {@link #submitPacket}; the built-in encoders
+     * are steered either way
+     */
+    public void setEncoderControl(StreamEngine.EncoderControl encoderControl) {
+        externalEncoderControl = encoderControl != null ? encoderControl : StreamEngine.EncoderControl.NONE;
+    }
+    
+    /**
+     * Frame rate a player's stream should be captured at, or 0 if they aren't streaming
+     */
+    public int getCaptureFrameRate(UUID playerId) {
+        StreamSession session = activeSessions.get(playerId);
+        return session != null && session.isStreaming() ? session.getSettings().frameRate : 0;
+    }
+    
+    /**
+     * Stop every stream and close their connections
+     */
+    public void shutdown() {
+        if (!isInitialized) return;
+        for (UUID playerId : activeSessions.keySet()) {
+            stopStream(playerId);
+        }
+        streamEngine.shutdown();
+    }
+    
     public void tick() {
-        // Update active sessions
-        activeSessions.values().forEach(StreamSession::tick);
+        if (!isInitialized) return;
         
         // Update components
         streamEngine.tick();
+        
+        // Sample stream health once a second
+        long now = System.currentTimeMillis();
+        for (StreamSession session : activeSessions.values()) {
+            StreamTelemetry telemetry = session.getTelemetry();
+            if (!telemetry.isSampleDue(now)) continue;
+            StreamEngine.StreamStats stats = streamEngine.getStats(session);
+            if (stats != null) {
+                telemetry.sample(now, stats.getTotalBytesSent(), stats.getTotalReconnects(), stats.getTotalQueuedBytes());
+                session.setLocalViewers(stats.localViewers);
+            } else {
+                telemetry.sample(now, 0, 0, 0);
+            }
+        }
         backgroundRemover.tick();
+        sceneTransitioner.tick();
         overlaySystem.tick();
-        audioMixer.tick();
     }
     
     public void onWorldLoad(ServerWorld world) {
@@ -232,11 +536,52 @@ public class LivestreamManager {
         public int bitRate = 6000000; // 6 Mbps
         public StreamQuality quality = StreamQuality.HIGH;
         public boolean enableBackgroundRemoval = false;
+        public BackgroundRemover.KeySettings keying = new BackgroundRemover.KeySettings();
         public boolean enableOverlays = true;
         public boolean enableAudio = true;
         public int audioBitRate = 128000; // 128 kbps
+        public int audioSampleRate = 48000;
+        public int audioBlockFrames = 480; // 10 ms at 48 kHz
+        public String soundEffectsDirectory = "config/wayacreates/sounds";
         public boolean enableMemes = true;
         public boolean enableTransitions = true;
+        public int transitionSoftness = 24; // Width of wipe edges, in 1/255ths of the transition
+        public String stingerPath = null; // Stinger video with alpha, decoded when the stream starts
+        public int stingerCutMillis = -1; // When the stinger covers the frame; -1 = halfway
+        
+        // Ingest
+        public String ingestUrl = null; // rtmp:// or rtmps:// ingest (tcp:// for a local MPEG-TS receiver); null = the platform's default
+        public String streamKey = "";
+        public int maxSendQueueSeconds = 4;
+        
+        // Broadcast delay: packets are held this long so content can still be cut; 0 = live
+        public int broadcastDelaySeconds = 0;
+        public long broadcastDelayMaxBytes = 0; // 0 = sized from the bitrates
+        
+        // Seconds of per-second health samples kept for each stream
+        public int telemetryHistorySeconds = 300;
+        
+        // Adaptive bitrate: quality moves between minQuality and the chosen quality
+        public boolean adaptiveBitrate = true;
+        public StreamQuality minQuality = StreamQuality.LOW;
+        public AdaptiveBitrateController.Settings bitrateControl = new AdaptiveBitrateController.Settings();
+        
+        // Simulcast: the stream also goes to these outputs, each with its own queue, recorder and
+        // reconnect loop. Twitch and YouTube have default ingests; Kick and custom servers need a URL.
+        public List<OutputTarget> simulcastTargets = new ArrayList<>();
+        // Renditions the encoder produces; empty = one rendition at 'quality'. With a ladder each
+        // output picks its own rendition instead of steering the encoder.
+        public List<StreamQuality> renditions = new ArrayList<>();
+        
+        // Local LL-HLS for LAN viewers (platform "local" streams only to this)
+        public boolean localHls = false;
+        public int localHlsPort = 8089;
+        public String localHlsContainer = "ts"; // "ts", or "m4s" for CMAF with an init segment
+        public int hlsSegmentMillis = 2000;
+        public int hlsPartMillis = 333;
+        public int hlsWindowSegments = 6;
+        public long hlsMaxWindowBytes = 64L * 1024 * 1024;
+        public int localHlsMaxViewers = 32;
         
         @Override
         public String toString() {
@@ -244,6 +589,24 @@ public class LivestreamManager {
         }
     }
     
+    // Simulcast Output Target Class - platform names the output and picks a default ingest; the URL decides where it goes
+    public static class OutputTarget {
+        public final String platform;
+        public final String ingestUrl; // rtmp://, rtmps:// or tcp:// (MPEG-TS); null = the platform's default
+        public final String streamKey;
+        
+        public OutputTarget(String platform, String ingestUrl, String streamKey) {
+            this.platform = platform;
+            this.ingestUrl = ingestUrl;
+            this.streamKey = streamKey;
+        }
+        
+        @Override
+        public String toString() {
+            return platform;
+        }
+    }
+    
     // Stream Quality Enum
     public enum StreamQuality {
         LOW(480, 360, 1000000),
@@ -271,10 +634,12 @@ public class LivestreamManager {
         private final StreamSettings settings;
         private final long startTime;
         private boolean isStreaming = false;
-        private float currentViewers = 0;
+        private volatile int platformViewers = 0;
+        private volatile int localViewers = 0;
         private StreamQuality quality;
         private boolean backgroundRemovalEnabled = false;
-        private final List<StreamOverlay> overlays = new ArrayList<>();
+        private final List<StreamOverlay> overlays = new CopyOnWriteArrayList<>();
+        private final StreamTelemetry telemetry;
         
         public StreamSession(String sessionId, UUID playerId, String platform, StreamSettings settings) {
             this.sessionId = sessionId;
@@ -283,16 +648,10 @@ public class LivestreamManager {
             this.settings = settings;
             this.startTime = System.currentTimeMillis();
             this.quality = settings.quality;
+            this.telemetry = new StreamTelemetry(settings.telemetryHistorySeconds, settings.frameRate);
             this.isStreaming = true;
         }
         
-        public void tick() {
-            if (isStreaming) {
-                // Update viewer count (mock)
-                currentViewers = (float) (100 + Math.sin(System.currentTimeMillis() / 10000.0) * 50);
-            }
-        }
-        
         public void stop() {
             isStreaming = false;
         }
@@ -316,7 +675,10 @@ public class LivestreamManager {
         public StreamSettings getSettings() { return settings; }
         public long getStartTime() { return startTime; }
         public boolean isStreaming() { return isStreaming; }
-        public float getCurrentViewers() { return currentViewers; }
+        public int getCurrentViewers() { return platformViewers + localViewers; }
+        public void setPlatformViewers(int viewers) { this.platformViewers = viewers; }
+        public void setLocalViewers(int viewers) { this.localViewers = viewers; }
+        public StreamTelemetry getTelemetry() { return telemetry; }
         public long getStreamDuration() { return System.currentTimeMillis() - startTime; }
         public StreamQuality getQuality() { return quality; }
         public void setQuality(StreamQuality quality) { this.quality = quality; }
@@ -330,14 +692,16 @@ public class LivestreamManager {
         public final String sessionId;
         public final String platform;
         public final boolean isStreaming;
-        public final float currentViewers;
+        public final int currentViewers;
         public final long streamDuration;
         public final StreamQuality quality;
         public final boolean backgroundRemovalEnabled;
         public final int overlayCount;
+        public final StreamTelemetry.Snapshot telemetry;
         
-        public StreamStatus(String sessionId, String platform, boolean isStreaming, float currentViewers, 
-                           long streamDuration, StreamQuality quality, boolean backgroundRemovalEnabled, int overlayCount) {
+        public StreamStatus(String sessionId, String platform, boolean isStreaming, int currentViewers, 
+                           long streamDuration, StreamQuality quality, boolean backgroundRemovalEnabled, int overlayCount,
+                           StreamTelemetry.Snapshot telemetry) {
             this.sessionId = sessionId;
             this.platform = platform;
             this.isStreaming = isStreaming;
@@ -346,83 +710,84 @@ public class LivestreamManager {
             this.quality = quality;
             this.backgroundRemovalEnabled = backgroundRemovalEnabled;
             this.overlayCount = overlayCount;
+            this.telemetry = telemetry;
         }
     }
     
-    // Component classes (simplified)
-    private static class StreamEngine {
-        public void startStream(StreamSession session) {
-            // TODO: Start streaming to platform
-        }
-        
-        public void stopStream(StreamSession session) {
-            // TODO: Stop streaming
-        }
-        
-        public void updateQuality(StreamSession session, StreamQuality quality) {
-            // TODO: Update stream quality
-        }
-        
-        public void transitionScene(StreamSession session, String transitionType, float duration) {
-            // TODO: Apply scene transition
+    // Steers the session's built-in packet encoder, then any external one
+    private class EncoderDispatch implements StreamEngine.EncoderControl {
+        @Override
+        public void onQualityChanged(StreamSession session, StreamQuality quality) {
+            StreamEncoder encoder = encoders.get(session.getSessionId());
+            if (encoder != null) {
+                encoder.setQuality(quality);
+            }
+            externalEncoderControl.onQualityChanged(session, quality);
         }
         
-        public void tick() {
-            // TODO: Update streaming engine
+        @Override
+        public void requestKeyframe(StreamSession session, StreamQuality rendition) {
+            StreamEncoder encoder = encoders.get(session.getSessionId());
+            if (encoder != null) {
+                encoder.requestKeyframe(rendition);
+            }
+            externalEncoderControl.requestKeyframe(session, rendition);
         }
     }
     
-    private static class BackgroundRemover {
-        public void initialize() {
-            LOGGER.info("🎨 Background Remover initialized");
-        }
+    // Component classes (simplified)
+    private static class OverlaySystem {
+        private final Map<String, OverlayCompositor> compositors = new ConcurrentHashMap<>();
+        // Capture thread only: each session's flattened overlays, redrawn where they changed
+        private final Map<String, OverlayLayer> layers = new ConcurrentHashMap<>();
         
-        public void enableForSession(StreamSession session) {
-            // TODO: Enable background removal for session
+        public void addOverlay(StreamSession session, StreamOverlay overlay) {
+            // Rasterize up front so the first streamed frame doesn't pay for it
+            compositorFor(session).getOrRasterize(overlay.getId(), overlay.getContent(), null);
         }
         
-        public void disableForSession(StreamSession session) {
-            // TODO: Disable background removal for session
+        public void removeOverlay(StreamSession session, String overlayId) {
+            compositorFor(session).invalidate(overlayId);
         }
         
-        public void tick() {
-            // TODO: Update background removal
-        }
-    }
-    
-    private static class OverlaySystem {
-        public void addOverlay(StreamSession session, StreamOverlay overlay) {
-            // TODO: Add overlay to stream
+        public void compositeFrame(StreamSession session, int[] frame, int frameWidth, int frameHeight) {
+            OverlayCompositor compositor = compositorFor(session);
+            OverlayLayer layer = layers.computeIfAbsent(session.getSessionId(), id -> new OverlayLayer());
+            // Cached bitmaps come back as the same instance, so unchanged overlays cost nothing here
+            layer.beginFrame();
+            for (StreamOverlay overlay : session.getOverlays()) {
+                layer.place(overlay.getId(), compositor.getOrRasterize(overlay.getId(), overlay.getContent(), null),
+                    overlay.getX(), overlay.getY());
+            }
+            layer.composite(frame, frameWidth, frameHeight);
         }
         
-        public void removeOverlay(StreamSession session, String overlayId) {
-            // TODO: Remove overlay from stream
+        public void removeSession(StreamSession session) {
+            compositors.remove(session.getSessionId());
+            layers.remove(session.getSessionId());
         }
         
-        public void tick() {
-            // TODO: Update overlay system
-        }
-    }
-    
-    private static class AudioMixer {
-        public void playSoundEffect(String soundName, StreamSession session) {
-            // TODO: Play sound effect for stream
+        private OverlayCompositor compositorFor(StreamSession session) {
+            return compositors.computeIfAbsent(session.getSessionId(), id -> new OverlayCompositor());
         }
         
         public void tick() {
-            // TODO: Update audio mixer
+            // Overlays are composited per frame by the capture path
         }
     }
     
     // Overlay classes
     public static class StreamOverlay {
+        private static final AtomicLong NEXT_ID = new AtomicLong();
+        
         private final String id;
         private final String type;
         private final String content;
         private final int x, y;
         
         public StreamOverlay(String type, String content, int x, int y) {
-            this.id = "overlay_" + System.currentTimeMillis();
+            // The counter keeps overlays added in the same millisecond apart
+            this.id = "overlay_" + System.currentTimeMillis() + "_" + NEXT_ID.incrementAndGet();
             this.type = type;
             this.content = content;
             this.x = x;
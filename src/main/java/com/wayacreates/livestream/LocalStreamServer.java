@@ -0,0 +1,222 @@
+package com.wayacreates.livestream;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local Stream Server
+ * Embedded HTTP server for LAN viewers. Serves each stream's {@link HlsSegmenter} window at
+ * /live/&lt;stream&gt;/index.m3u8 with LL-HLS blocking playlist reloads (_HLS_msn / _HLS_part) and
+ * partial segments. Every viewer gets the same shared segment bytes, so viewers cost bandwidth
+ * and a request thread, never an encode.
+ */
+public class LocalStreamServer implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger("WayaCreates/LocalStreamServer");
+
+    private static final Map<String, String> CONTENT_TYPES = Map.of(
+        "m3u8", "application/vnd.apple.mpegurl",
+        "ts", "video/mp2t",
+        "m4s", "video/iso.segment",
+        "mp4", "video/mp4"
+    );
+
+    // A viewer counts while it keeps reloading the playlist
+    private static final long VIEWER_TIMEOUT_MILLIS = 10000;
+
+    private final Map<String, HlsSegmenter> streams = new ConcurrentHashMap<>();
+    private final Map<String, Map<InetAddress, Long>> viewers = new ConcurrentHashMap<>();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong bytesServed = new AtomicLong();
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final int port;
+
+    public LocalStreamServer(int port, int maxRequestThreads) throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        AtomicInteger threadCount = new AtomicInteger();
+        // Blocking playlist reloads park a thread each, so the pool is sized for viewers, not cores
+        this.executor = new ThreadPoolExecutor(maxRequestThreads, maxRequestThreads, 30, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "WayaCreates-HLS-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        ((ThreadPoolExecutor) executor).allowCoreThreadTimeOut(true);
+        this.server.setExecutor(executor);
+        this.server.createContext("/live/", this::handle);
+        this.port = server.getAddress().getPort();
+    }
+
+    public void start() {
+        server.start();
+        LOGGER.info("🌐 Local stream server listening on port {}", port);
+    }
+
+    public void publish(String streamName, HlsSegmenter segmenter) {
+        streams.put(streamName, segmenter);
+        LOGGER.info("🌐 Local HLS: http://<this-machine>:{}/live/{}/index.m3u8", port, streamName);
+    }
+
+    public void unpublish(String streamName) {
+        streams.remove(streamName);
+        viewers.remove(streamName);
+    }
+
+    /**
+     * Distinct addresses that loaded the stream's playlist recently
+     */
+    public int getViewerCount(String streamName) {
+        Map<InetAddress, Long> seen = viewers.get(streamName);
+        if (seen == null) return 0;
+        long cutoff = System.currentTimeMillis() - VIEWER_TIMEOUT_MILLIS;
+        seen.values().removeIf(lastSeen -> lastSeen < cutoff);
+        return seen.size();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        try {
+            if (!"GET".equals(exchange.getRequestMethod()) && !"HEAD".equals(exchange.getRequestMethod())) {
+                sendStatus(exchange, 405);
+                return;
+            }
+
+            // /live/<stream>/<file>
+            URI uri = exchange.getRequestURI();
+            String[] path = uri.getPath().split("/");
+            if (path.length != 4) {
+                sendStatus(exchange, 404);
+                return;
+            }
+            HlsSegmenter segmenter = streams.get(path[2]);
+            if (segmenter == null) {
+                sendStatus(exchange, 404);
+                return;
+            }
+
+            String file = path[3];
+            if (file.equals("index.m3u8")) {
+                viewers.computeIfAbsent(path[2], name -> new ConcurrentHashMap<>())
+                    .put(exchange.getRemoteAddress().getAddress(), System.currentTimeMillis());
+                servePlaylist(exchange, segmenter, parseQuery(uri.getRawQuery()));
+            } else if (file.equals("init.mp4")) {
+                sendBytes(exchange, segmenter.getInitSegment(), "mp4", true);
+            } else if (file.startsWith("seg")) {
+                serveMedia(exchange, segmenter, file);
+            } else {
+                sendStatus(exchange, 404);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            sendStatus(exchange, 503);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void servePlaylist(HttpExchange exchange, HlsSegmenter segmenter, Map<String, String> query)
+            throws IOException, InterruptedException {
+        String msn = query.get("_HLS_msn");
+        if (msn != null) {
+            // Blocking reload: hold the request until the asked-for segment or part exists
+            try {
+                long sequence = Long.parseLong(msn);
+                int part = query.containsKey("_HLS_part") ? Integer.parseInt(query.get("_HLS_part")) : -1;
+                if (!segmenter.await(sequence, part, segmenter.getTargetPartMillis() * 3 + 3000)) {
+                    sendStatus(exchange, 503);
+                    return;
+                }
+            } catch (NumberFormatException e) {
+                sendStatus(exchange, 400);
+                return;
+            }
+        }
+        sendBytes(exchange, segmenter.renderPlaylist().getBytes(StandardCharsets.UTF_8), "m3u8", false);
+    }
+
+    // seg<msn>.<ext> or seg<msn>.part<index>.<ext>
+    private void serveMedia(HttpExchange exchange, HlsSegmenter segmenter, String file) throws IOException, InterruptedException {
+        String[] pieces = file.substring(3).split("\\.");
+        try {
+            long sequence = Long.parseLong(pieces[0]);
+            if (pieces.length == 2) {
+                sendBytes(exchange, segmenter.getSegment(sequence), pieces[1], true);
+            } else if (pieces.length == 3 && pieces[1].startsWith("part")) {
+                int index = Integer.parseInt(pieces[1].substring(4));
+                // Preload hints point at the part being built; wait for it like a blocking reload
+                segmenter.await(sequence, index, segmenter.getTargetPartMillis() * 3 + 3000);
+                sendBytes(exchange, segmenter.getPart(sequence, index), pieces[2], true);
+            } else {
+                sendStatus(exchange, 404);
+            }
+        } catch (NumberFormatException e) {
+            sendStatus(exchange, 404);
+        }
+    }
+
+    private void sendBytes(HttpExchange exchange, byte[] body, String extension, boolean immutable) throws IOException {
+        if (body == null) {
+            sendStatus(exchange, 404);
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPES.getOrDefault(extension, "application/octet-stream"));
+        exchange.getResponseHeaders().set("Cache-Control", immutable ? "max-age=60" : "no-cache");
+        exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(200, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+        bytesServed.addAndGet(body.length);
+    }
+
+    private static void sendStatus(HttpExchange exchange, int status) throws IOException {
+        exchange.sendResponseHeaders(status, -1);
+    }
+
+    private static Map<String, String> parseQuery(String query) {
+        Map<String, String> values = new HashMap<>();
+        if (query == null) return values;
+        for (String pair : query.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0) {
+                values.put(pair.substring(0, equals), pair.substring(equals + 1));
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+        LOGGER.info("🌐 Local stream server stopped ({} requests, {} MB served)", requests.get(), bytesServed.get() / (1024 * 1024));
+    }
+
+    // Getters
+    public int getPort() { return port; }
+    public long getRequestCount() { return requests.get(); }
+    public long getBytesServed() { return bytesServed.get(); }
+}
@@ -0,0 +1,207 @@
+package com.wayacreates.livestream;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Raw Media Queue
+ * Short bounded queue of raw ARGB frames and interleaved audio blocks between the capture or mixer
+ * thread and one encoder thread. Buffers are pooled and offers never block: when a kind is full,
+ * its oldest entry is dropped and reported to the drop listener (under the queue's lock).
+ */
+final class RawMediaQueue {
+    interface DropListener {
+        void onDropped(boolean video);
+    }
+
+    private final int maxFrames;
+    private final int maxAudioBlocks;
+    private final DropListener dropListener;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final ArrayDeque<Item> queue = new ArrayDeque<>();
+    private final ArrayDeque<Item> freeFrames = new ArrayDeque<>();
+    private final ArrayDeque<Item> freeAudio = new ArrayDeque<>();
+    private int queuedFrames = 0;
+    private int queuedAudio = 0;
+    private boolean closed = false;
+
+    RawMediaQueue(int maxFrames, int maxAudioBlocks, DropListener dropListener) {
+        this.maxFrames = Math.max(1, maxFrames);
+        this.maxAudioBlocks = Math.max(1, maxAudioBlocks);
+        this.dropListener = dropListener;
+    }
+
+    /**
+     * Copy a frame in. Frames are stored as BGRA bytes, which is how ARGB ints sit in memory.
+     * @return false once closed
+     */
+    boolean offerFrame(int[] argb, int width, int height, long timestampMillis) {
+        int pixels = width * height;
+        Item item;
+        lock.lock();
+        try {
+            if (closed) return false;
+            if (queuedFrames >= maxFrames) {
+                dropOldest(true);
+            }
+            item = freeFrames.poll();
+        } finally {
+            lock.unlock();
+        }
+
+        // Copied outside the lock so the encoder isn't held up by it
+        if (item == null || item.pixels.capacity() < pixels * 4) {
+            item = new Item(true);
+            item.pixels = ByteBuffer.allocateDirect(pixels * 4).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        item.pixels.clear();
+        item.pixels.asIntBuffer().put(argb, 0, pixels);
+        item.pixels.limit(pixels * 4);
+        item.width = width;
+        item.height = height;
+        item.timestampMillis = timestampMillis;
+        return enqueue(item);
+    }
+
+    /**
+     * Copy an audio block in; once the pool has warmed up this never allocates
+     * @return false once closed
+     */
+    boolean offerAudio(float[] interleaved, int samples, int frames, long timestampMillis) {
+        Item item;
+        lock.lock();
+        try {
+            if (closed) return false;
+            if (queuedAudio >= maxAudioBlocks) {
+                dropOldest(false);
+            }
+            item = freeAudio.poll();
+        } finally {
+            lock.unlock();
+        }
+
+        if (item == null || item.samples.length < samples) {
+            item = new Item(false);
+            item.samples = new float[samples];
+        }
+        System.arraycopy(interleaved, 0, item.samples, 0, samples);
+        item.sampleCount = samples;
+        item.frames = frames;
+        item.timestampMillis = timestampMillis;
+        return enqueue(item);
+    }
+
+    private boolean enqueue(Item item) {
+        lock.lock();
+        try {
+            if (closed) return false;
+            queue.add(item);
+            if (item.video) {
+                queuedFrames++;
+            } else {
+                queuedAudio++;
+            }
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Next entry in arrival order; hand it back with {@link #recycle} once encoded
+     * @return null on timeout or once closed
+     */
+    Item poll(long timeout, TimeUnit unit) throws InterruptedException {
+        lock.lock();
+        try {
+            if (queue.isEmpty() && !closed) {
+                notEmpty.await(timeout, unit);
+            }
+            return closed ? null : queue.poll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void recycle(Item item) {
+        lock.lock();
+        try {
+            release(item);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Caller holds the lock
+    private void dropOldest(boolean video) {
+        Iterator<Item> iterator = queue.iterator();
+        while (iterator.hasNext()) {
+            Item queued = iterator.next();
+            if (queued.video != video) continue;
+            iterator.remove();
+            release(queued);
+            dropListener.onDropped(video);
+            return;
+        }
+    }
+
+    // Caller holds the lock. Polled entries stay counted until they come back here.
+    private void release(Item item) {
+        if (item.video) {
+            queuedFrames--;
+            freeFrames.add(item);
+        } else {
+            queuedAudio--;
+            freeAudio.add(item);
+        }
+    }
+
+    /**
+     * Drop everything queued and wake the encoder thread
+     */
+    void close() {
+        lock.lock();
+        try {
+            closed = true;
+            while (!queue.isEmpty()) {
+                release(queue.poll());
+            }
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int getQueuedFrames() {
+        lock.lock();
+        try {
+            return queuedFrames;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // One queued frame or audio block
+    static final class Item {
+        final boolean video;
+        ByteBuffer pixels;
+        float[] samples;
+        int sampleCount;
+        int width;
+        int height;
+        int frames;
+        long timestampMillis;
+
+        Item(boolean video) {
+            this.video = video;
+        }
+    }
+}
@@ -0,0 +1,346 @@
+package com.wayacreates.livestream;
+
+import java.net.URI;
+import java.nio.FloatBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.bytedeco.ffmpeg.global.avcodec;
+import org.bytedeco.ffmpeg.global.avutil;
+import org.bytedeco.javacv.FFmpegFrameRecorder;
+import org.bytedeco.javacv.Frame;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * RTMP Output
+ * Pushes a stream to an RTMP or RTMPS ingest (Twitch, YouTube, Kick or any media server) as
+ * H.264/AAC in FLV, through its own {@link FFmpegFrameRecorder}. Every target encodes for itself:
+ * processed frames and mixed audio blocks are copied into a short bounded queue and a dedicated
+ * thread encodes and sends them. A slow ingest only drops this target's oldest frames, and an
+ * encoder or connection failure only restarts this target's recorder, with exponential backoff.
+ *
+ * Quality changes restart the recorder at the new size and bitrate, which the ingest sees as a
+ * brief reconnect. Byte counts are estimated from the frames delivered at the configured bitrates,
+ * since the recorder doesn't report what it wrote.
+ */
+public class RtmpOutput implements IngestOutput {
+    private static final Logger LOGGER = LoggerFactory.getLogger("WayaCreates/RtmpOutput");
+
+    private static final long MIN_BACKOFF_MILLIS = 1000;
+    private static final long MAX_BACKOFF_MILLIS = 30000;
+    private static final int GOP_SECONDS = 2; // What Twitch and YouTube ask for
+    private static final int MAX_QUEUED_AUDIO_BLOCKS = 256;
+    private static final String IO_TIMEOUT_MICROS = "5000000";
+
+    private final String name;
+    private final String ingestUrl; // Without the stream key, for logs
+    private final String publishUrl;
+    private final int frameRate;
+    private final int audioChannels;
+    private final int sampleRate;
+    private final int audioBitRate;
+    private final StreamTelemetry telemetry;
+    private final RawMediaQueue media;
+    private volatile boolean countsEncodes;
+    private volatile LivestreamManager.StreamQuality quality;
+
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong packetsSent = new AtomicLong();
+    private final AtomicLong packetsDropped = new AtomicLong();
+    private final AtomicLong reconnects = new AtomicLong();
+
+    // Sender thread only
+    private Thread sender;
+    private FFmpegFrameRecorder recorder;
+    private LivestreamManager.StreamQuality recorderQuality;
+    private long baseMillis;
+    private long lastFrameNumber;
+    private volatile boolean connected = false;
+    private volatile boolean closed = false;
+
+    // Throughput sampling (engine tick thread only)
+    private long lastSampleNanos = 0;
+    private long lastSampleBytes = 0;
+    private double throughputBps = 0;
+
+    public RtmpOutput(String name, String ingestUrl, String streamKey, LivestreamManager.StreamQuality quality,
+                      LivestreamManager.StreamSettings settings, StreamTelemetry telemetry) {
+        this.name = name;
+        this.ingestUrl = ingestUrl;
+        this.publishUrl = publishUrl(ingestUrl, streamKey);
+        this.quality = quality;
+        this.frameRate = Math.max(1, settings.frameRate);
+        this.audioChannels = settings.enableAudio ? 2 : 0;
+        this.sampleRate = settings.audioSampleRate;
+        this.audioBitRate = settings.audioBitRate;
+        this.telemetry = telemetry;
+        // Half a second of raw frames: anything older is better dropped than sent late
+        this.media = new RawMediaQueue(Math.max(2, frameRate / 2), MAX_QUEUED_AUDIO_BLOCKS, video -> {
+            if (video) {
+                countDropped(connected ? StreamTelemetry.DropCause.CONGESTION : StreamTelemetry.DropCause.RECONNECT);
+            } else {
+                packetsDropped.incrementAndGet();
+            }
+        });
+    }
+
+    /**
+     * The URL actually published to: the ingest URL with the stream key as its last path element
+     */
+    public static String publishUrl(String ingestUrl, String streamKey) {
+        URI uri = URI.create(ingestUrl);
+        String scheme = uri.getScheme() != null ? uri.getScheme().toLowerCase() : "";
+        if (!scheme.equals("rtmp") && !scheme.equals("rtmps")) {
+            throw new IllegalArgumentException("Not an RTMP ingest URL: " + ingestUrl);
+        }
+        if (uri.getHost() == null) {
+            throw new IllegalArgumentException("Ingest URL has no host: " + ingestUrl);
+        }
+        if (streamKey == null || streamKey.isEmpty()) {
+            return ingestUrl;
+        }
+        return ingestUrl.endsWith("/") ? ingestUrl + streamKey : ingestUrl + "/" + streamKey;
+    }
+
+    @Override
+    public void start() {
+        sender = new Thread(this::senderLoop, "WayaCreates-Rtmp-" + name);
+        sender.setDaemon(true);
+        sender.start();
+        LOGGER.info("📡 RTMP output {} -> {} at {}", name, ingestUrl, quality);
+    }
+
+    /**
+     * Queue a processed ARGB frame (capture thread). Never blocks; when the queue is full the
+     * oldest queued frame is dropped.
+     * @return false if the output is closed
+     */
+    public boolean offerFrame(int[] argb, int width, int height, long timestampMillis) {
+        return media.offerFrame(argb, width, height, timestampMillis);
+    }
+
+    /**
+     * Queue a block of interleaved stereo audio (mixer thread). Never blocks and, once the pool has
+     * warmed up, never allocates.
+     */
+    public boolean offerAudio(float[] interleaved, int frames, long timestampMillis) {
+        if (audioChannels == 0) return false;
+        return media.offerAudio(interleaved, frames * audioChannels, frames, timestampMillis);
+    }
+
+    private void countDropped(StreamTelemetry.DropCause cause) {
+        packetsDropped.incrementAndGet();
+        if (telemetry == null) return;
+        if (countsEncodes) {
+            // Never reached the encoder, so it is a skip as far as frame accounting goes
+            telemetry.recordSkip(StreamTelemetry.SkipCause.ENCODER_BUSY);
+        } else {
+            telemetry.recordDrop(cause);
+        }
+    }
+
+    /**
+     * Whether this output reports encoded and skipped frames to the telemetry; exactly one encoder
+     * of a session should
+     */
+    void setCountsEncodes(boolean countsEncodes) {
+        this.countsEncodes = countsEncodes;
+    }
+
+    /**
+     * Change the size and bitrate; takes effect on the next frame by restarting the recorder
+     */
+    public void setQuality(LivestreamManager.StreamQuality quality) {
+        this.quality = quality;
+    }
+
+    @Override
+    public double sampleThroughput(long nowNanos) {
+        long sent = bytesSent.get();
+        if (lastSampleNanos != 0) {
+            long elapsed = nowNanos - lastSampleNanos;
+            if (elapsed < 100_000_000L) return throughputBps;
+            double instant = (sent - lastSampleBytes) * 8.0 * 1_000_000_000L / elapsed;
+            double alpha = Math.min(1.0, elapsed / 2_000_000_000.0);
+            throughputBps += (instant - throughputBps) * alpha;
+        }
+        lastSampleNanos = nowNanos;
+        lastSampleBytes = sent;
+        return throughputBps;
+    }
+
+    /**
+     * Stop sending and drop anything still queued
+     */
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        media.close();
+        if (sender != null) {
+            sender.interrupt();
+            try {
+                sender.join(TimeUnit.SECONDS.toMillis(2));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        LOGGER.info("📡 RTMP output {} closed ({} frames sent, {} dropped, {} reconnects)", name,
+            packetsSent.get(), packetsDropped.get(), reconnects.get());
+    }
+
+    private void senderLoop() {
+        long backoff = MIN_BACKOFF_MILLIS;
+        try {
+            while (!closed) {
+                if (recorder != null && recorderQuality != quality) {
+                    LOGGER.info("📊 RTMP output {} restarting at {}", name, quality);
+                    stopRecorder();
+                }
+                if (recorder == null) {
+                    if (!startRecorder()) {
+                        sleepQuietly(backoff);
+                        backoff = Math.min(MAX_BACKOFF_MILLIS, backoff * 2);
+                        continue;
+                    }
+                    backoff = MIN_BACKOFF_MILLIS;
+                }
+
+                RawMediaQueue.Item item;
+                try {
+                    // Wake up now and then to pick up quality changes
+                    item = media.poll(500, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (item == null) continue;
+
+                try {
+                    if (item.video) {
+                        writeFrame(item);
+                    } else {
+                        writeAudio(item);
+                    }
+                } catch (Exception e) {
+                    if (closed) return;
+                    LOGGER.warn("⚠️ RTMP output {} lost connection: {}", name, e.getMessage());
+                    stopRecorder();
+                    reconnects.incrementAndGet();
+                } finally {
+                    media.recycle(item);
+                }
+            }
+        } finally {
+            stopRecorder();
+        }
+    }
+
+    private boolean startRecorder() {
+        LivestreamManager.StreamQuality target = quality;
+        FFmpegFrameRecorder created = new FFmpegFrameRecorder(publishUrl, target.width, target.height, audioChannels);
+        created.setFormat("flv");
+        created.setVideoCodec(avcodec.AV_CODEC_ID_H264);
+        created.setPixelFormat(avutil.AV_PIX_FMT_YUV420P);
+        created.setFrameRate(frameRate);
+        created.setGopSize(frameRate * GOP_SECONDS);
+        created.setVideoBitrate(target.bitRate);
+        created.setVideoOption("preset", "veryfast");
+        created.setVideoOption("tune", "zerolatency");
+        if (audioChannels > 0) {
+            created.setAudioCodec(avcodec.AV_CODEC_ID_AAC);
+            created.setSampleRate(sampleRate);
+            created.setAudioBitrate(audioBitRate);
+        }
+        // A stalled ingest fails the write instead of hanging this thread forever
+        created.setOption("rw_timeout", IO_TIMEOUT_MICROS);
+        try {
+            created.start();
+        } catch (Exception e) {
+            LOGGER.warn("⚠️ RTMP output {} could not connect to {}: {}", name, ingestUrl, e.getMessage());
+            releaseQuietly(created);
+            return false;
+        }
+        recorder = created;
+        recorderQuality = target;
+        baseMillis = -1;
+        lastFrameNumber = -1;
+        connected = true;
+        LOGGER.info("✅ RTMP output {} connected to {}", name, ingestUrl);
+        return true;
+    }
+
+    private void stopRecorder() {
+        connected = false;
+        FFmpegFrameRecorder current = recorder;
+        recorder = null;
+        if (current != null) {
+            releaseQuietly(current);
+        }
+    }
+
+    private void writeFrame(RawMediaQueue.Item item) throws Exception {
+        if (baseMillis < 0) {
+            baseMillis = item.timestampMillis;
+        }
+        // The recorder times frames by frame number, so two frames in one slot would repeat a timestamp
+        long micros = (item.timestampMillis - baseMillis) * 1000L;
+        long frameNumber = Math.round(micros * frameRate / 1_000_000.0);
+        if (frameNumber <= lastFrameNumber) {
+            // Captured faster than the stream's frame rate
+            if (countsEncodes && telemetry != null) {
+                telemetry.recordSkip(StreamTelemetry.SkipCause.ENCODER_BUSY);
+            }
+            return;
+        }
+        lastFrameNumber = frameNumber;
+
+        recorder.setTimestamp(micros);
+        recorder.recordImage(item.width, item.height, Frame.DEPTH_UBYTE, 4, item.width * 4, avutil.AV_PIX_FMT_BGRA, item.pixels);
+        if (countsEncodes && telemetry != null) {
+            telemetry.recordEncoded();
+        }
+        bytesSent.addAndGet(recorderQuality.bitRate / 8L / frameRate);
+        packetsSent.incrementAndGet();
+    }
+
+    private void writeAudio(RawMediaQueue.Item item) throws Exception {
+        if (baseMillis < 0) {
+            baseMillis = item.timestampMillis;
+        }
+        recorder.recordSamples(sampleRate, audioChannels, FloatBuffer.wrap(item.samples, 0, item.sampleCount));
+        bytesSent.addAndGet((long) audioBitRate / 8 * item.frames / sampleRate);
+    }
+
+    private void releaseQuietly(FFmpegFrameRecorder target) {
+        try {
+            target.close();
+        } catch (Exception e) {
+            LOGGER.debug("RTMP output {} recorder did not close cleanly: {}", name, e.getMessage());
+        }
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public long getQueuedBytes() {
+        return (long) media.getQueuedFrames() * quality.bitRate / 8 / frameRate;
+    }
+
+    // Getters
+    public String getName() { return name; }
+    public String getIngestUrl() { return ingestUrl; }
+    public LivestreamManager.StreamQuality getQuality() { return quality; }
+    @Override public boolean isConnected() { return connected; }
+    @Override public double getThroughputBps() { return throughputBps; }
+    @Override public long getBytesSent() { return bytesSent.get(); }
+    @Override public long getPacketsSent() { return packetsSent.get(); }
+    @Override public long getPacketsDropped() { return packetsDropped.get(); }
+    @Override public long getReconnects() { return reconnects.get(); }
+}
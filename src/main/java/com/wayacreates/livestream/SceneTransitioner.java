@@ -0,0 +1,495 @@
+package com.wayacreates.livestream;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.bytedeco.ffmpeg.global.avutil;
+import org.bytedeco.javacv.FFmpegFrameGrabber;
+import org.bytedeco.javacv.Frame;
+import org.bytedeco.javacv.Java2DFrameConverter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.wayacreates.video.OverlayCompositor;
+
+/**
+ * Scene Transitioner
+ * Live scene transitions for stream frames. Everything shaped per pixel is prepared off the frame
+ * path when the stream starts: each wipe shape becomes a threshold mask (the progress at which
+ * a pixel switches to the new scene) and the stinger video is decoded, scaled to the stream size
+ * and packed into its non-transparent row spans. A transition frame then needs one 256-entry
+ * lookup table and a single fused pass that mixes the held outgoing frame with the live one and
+ * lays the stinger over the result, so it costs about as much as the frame copy every normal
+ * frame already pays to keep the outgoing frame.
+ */
+public class SceneTransitioner {
+    private static final Logger LOGGER = LoggerFactory.getLogger("WayaCreates/SceneTransitions");
+
+    private static final int MAX_STINGER_FRAMES = 180;
+    // Packed stinger pixels kept in memory; longer or larger stingers keep every 2nd, 4th... frame
+    private static final long MAX_STINGER_BYTES = 256L << 20;
+
+    private final Map<String, TransitionState> sessions = new ConcurrentHashMap<>();
+
+    // Threshold mask shapes; direction variants read the same mask inverted
+    private enum MaskShape {
+        HORIZONTAL,
+        VERTICAL,
+        RADIAL,
+        DIAMOND,
+        NOISE
+    }
+
+    public enum TransitionType {
+        CUT(null, false),
+        FADE(null, false),
+        WIPE_RIGHT(MaskShape.HORIZONTAL, false),
+        WIPE_LEFT(MaskShape.HORIZONTAL, true),
+        WIPE_DOWN(MaskShape.VERTICAL, false),
+        WIPE_UP(MaskShape.VERTICAL, true),
+        IRIS_OPEN(MaskShape.RADIAL, false),
+        IRIS_CLOSE(MaskShape.RADIAL, true),
+        DIAMOND(MaskShape.DIAMOND, false),
+        DISSOLVE(MaskShape.NOISE, false),
+        STINGER(null, false);
+
+        private final MaskShape shape;
+        private final boolean inverted;
+
+        TransitionType(MaskShape shape, boolean inverted) {
+            this.shape = shape;
+            this.inverted = inverted;
+        }
+
+        /**
+         * Parse names like "fade", "wipe-left" or "IRIS_OPEN"; null if unknown
+         */
+        public static TransitionType parse(String name) {
+            if (name == null) return null;
+            try {
+                return valueOf(name.trim().toUpperCase(Locale.ROOT).replace('-', '_').replace(' ', '_'));
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Build the session's masks and decode its stinger in the background. Transitions requested
+     * before this finishes are hard cuts.
+     */
+    public void prepare(LivestreamManager.StreamSession session) {
+        LivestreamManager.StreamSettings settings = session.getSettings();
+        TransitionState state = new TransitionState(session.getSessionId(), settings.transitionSoftness,
+            settings.stingerPath, settings.stingerCutMillis);
+        sessions.put(session.getSessionId(), state);
+        state.prepareAsync(settings.resolutionX, settings.resolutionY);
+    }
+
+    public void removeSession(LivestreamManager.StreamSession session) {
+        sessions.remove(session.getSessionId());
+    }
+
+    /**
+     * Start a transition from the scene currently on air to whatever the next frames show
+     * @return false if the transition can't run yet and the change will be a hard cut
+     */
+    public boolean start(LivestreamManager.StreamSession session, String transitionType, float durationSeconds) {
+        TransitionState state = sessions.get(session.getSessionId());
+        TransitionType type = TransitionType.parse(transitionType);
+        if (type == null) {
+            LOGGER.warn("⚠️ Unknown transition {}, using a fade", transitionType);
+            type = TransitionType.FADE;
+        }
+        if (state == null || state.prepared == null || type == TransitionType.CUT) {
+            return false;
+        }
+
+        Stinger stinger = state.prepared.stinger;
+        if (type == TransitionType.STINGER && stinger == null) {
+            LOGGER.warn("⚠️ No stinger loaded for {}, using a fade", session.getSessionId());
+            type = TransitionType.FADE;
+        }
+        long durationNanos = type == TransitionType.STINGER ? stinger.durationNanos : (long) (durationSeconds * 1_000_000_000L);
+        if (durationNanos <= 0) return false;
+        state.active = new ActiveTransition(type, durationNanos);
+        return true;
+    }
+
+    /**
+     * Keep the outgoing frame, or blend a running transition into the frame in place
+     */
+    public void process(LivestreamManager.StreamSession session, int[] frame, int width, int height) {
+        TransitionState state = sessions.get(session.getSessionId());
+        if (state != null) {
+            state.process(frame, width, height);
+        }
+    }
+
+    public void tick() {
+        // Transitions advance per frame on the capture path
+    }
+
+    // Threshold of each pixel: the progress (0-255) at which it switches to the new scene
+    private static byte[] buildMask(MaskShape shape, int width, int height) {
+        byte[] mask = new byte[width * height];
+        float centerX = (width - 1) / 2f;
+        float centerY = (height - 1) / 2f;
+        float maxRadius = (float) Math.sqrt(centerX * centerX + centerY * centerY);
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            float dy = y - centerY;
+            for (int x = 0; x < width; x++) {
+                float value;
+                switch (shape) {
+                    case HORIZONTAL:
+                        value = x / (float) Math.max(1, width - 1);
+                        break;
+                    case VERTICAL:
+                        value = y / (float) Math.max(1, height - 1);
+                        break;
+                    case RADIAL:
+                        float dx = x - centerX;
+                        value = (float) Math.sqrt(dx * dx + dy * dy) / maxRadius;
+                        break;
+                    case DIAMOND:
+                        value = (Math.abs(x - centerX) / Math.max(1f, centerX) + Math.abs(dy) / Math.max(1f, centerY)) / 2f;
+                        break;
+                    default:
+                        // 4x4 blocks so the dissolve reads as grain rather than shimmer
+                        value = (hash((x >> 2) * 73856093 ^ (y >> 2) * 19349663) & 0xFF) / 255f;
+                        break;
+                }
+                mask[row + x] = (byte) Math.round(Math.min(1f, value) * 255);
+            }
+        }
+        return mask;
+    }
+
+    private static int hash(int value) {
+        value ^= value >>> 16;
+        value *= 0x7feb352d;
+        value ^= value >>> 15;
+        value *= 0x846ca68b;
+        return value ^ (value >>> 16);
+    }
+
+    private static Stinger decodeStinger(String path, int width, int height, int cutMillis) {
+        List<StingerFrame> frames = new ArrayList<>();
+        double frameRate;
+        int decoded = 0;
+        int step = 1;
+        long bytes = 0;
+        try (FFmpegFrameGrabber grabber = new FFmpegFrameGrabber(path);
+             Java2DFrameConverter converter = new Java2DFrameConverter()) {
+            // BGRA keeps the stinger's alpha channel
+            grabber.setPixelFormat(avutil.AV_PIX_FMT_BGRA);
+            grabber.start();
+            frameRate = grabber.getVideoFrameRate() > 0 ? grabber.getVideoFrameRate() : 30;
+
+            BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+            int[] pixels = ((DataBufferInt) scaled.getRaster().getDataBuffer()).getData();
+            Frame frame;
+            while (decoded < MAX_STINGER_FRAMES && (frame = grabber.grabImage()) != null) {
+                BufferedImage image = converter.convert(frame);
+                if (image == null) continue;
+                if (decoded++ % step != 0) continue;
+                Graphics2D graphics = scaled.createGraphics();
+                graphics.setComposite(AlphaComposite.Src);
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.drawImage(image, 0, 0, width, height, null);
+                graphics.dispose();
+                StingerFrame packed = StingerFrame.pack(pixels, width, height);
+                frames.add(packed);
+                bytes += packed.sizeBytes();
+
+                // Over budget: halve the stinger's frame rate instead of cutting it short
+                while (bytes > MAX_STINGER_BYTES && frames.size() > 1) {
+                    bytes = 0;
+                    List<StingerFrame> kept = new ArrayList<>();
+                    for (int i = 0; i < frames.size(); i += 2) {
+                        kept.add(frames.get(i));
+                        bytes += frames.get(i).sizeBytes();
+                    }
+                    frames = kept;
+                    step *= 2;
+                }
+            }
+            grabber.stop();
+        } catch (Exception e) {
+            LOGGER.error("❌ Could not load stinger {}: {}", path, e.getMessage());
+            return null;
+        }
+        if (frames.isEmpty()) {
+            LOGGER.warn("⚠️ Stinger {} has no video frames", path);
+            return null;
+        }
+
+        if (step > 1) {
+            LOGGER.warn("⚠️ Stinger {} is too large at {}x{}, keeping every {} frames ({} MB)", path, width, height,
+                step == 2 ? "2nd" : step + "th", bytes >> 20);
+        }
+
+        long frameNanos = (long) (1_000_000_000L / frameRate);
+        long durationNanos = frameNanos * decoded;
+        frameNanos *= step;
+        long cutNanos = cutMillis >= 0 ? Math.min(durationNanos, cutMillis * 1_000_000L) : durationNanos / 2;
+        return new Stinger(frames, frameNanos, durationNanos, cutNanos);
+    }
+
+    // One session's prepared assets, held outgoing frame and running transition
+    private static class TransitionState {
+        final String sessionId;
+        final int softness;
+        final String stingerPath;
+        final int stingerCutMillis;
+        final int[] lut = new int[256];
+        volatile Prepared prepared;
+        volatile ActiveTransition active;
+        int[] held;
+        boolean heldValid = false;
+        // Size the assets being prepared in the background are for (0 when idle)
+        private int preparingWidth;
+        private int preparingHeight;
+
+        TransitionState(String sessionId, int softness, String stingerPath, int stingerCutMillis) {
+            this.sessionId = sessionId;
+            this.softness = Math.max(1, Math.min(255, softness));
+            this.stingerPath = stingerPath;
+            this.stingerCutMillis = stingerCutMillis;
+        }
+
+        synchronized void prepareAsync(int width, int height) {
+            if (preparingWidth == width && preparingHeight == height) return;
+            preparingWidth = width;
+            preparingHeight = height;
+            CompletableFuture.runAsync(() -> {
+                long start = System.nanoTime();
+                Prepared assets = new Prepared(width, height);
+                for (MaskShape shape : MaskShape.values()) {
+                    assets.masks[shape.ordinal()] = buildMask(shape, width, height);
+                }
+                if (stingerPath != null) {
+                    assets.stinger = decodeStinger(stingerPath, width, height, stingerCutMillis);
+                }
+                finishPreparing(assets);
+                LOGGER.info("🎬 Transitions ready for {} at {}x{} in {} ms{}", sessionId, width, height,
+                    (System.nanoTime() - start) / 1_000_000,
+                    assets.stinger != null ? " (stinger: " + assets.stinger.frames.size() + " frames)" : "");
+            }).exceptionally(e -> {
+                LOGGER.error("❌ Could not prepare transitions for {}", sessionId, e);
+                return null;
+            });
+        }
+
+        // A newer prepare for another size wins; stale assets are dropped
+        private synchronized void finishPreparing(Prepared assets) {
+            if (preparingWidth != assets.width || preparingHeight != assets.height) return;
+            prepared = assets;
+            preparingWidth = 0;
+            preparingHeight = 0;
+        }
+
+        void process(int[] frame, int width, int height) {
+            Prepared assets = prepared;
+            if (assets == null || assets.width != width || assets.height != height) {
+                // Not ready, or the capture size changed: scene changes are hard cuts until assets
+                // for the real frame size are ready
+                active = null;
+                if (assets != null) {
+                    requestResize(assets, width, height);
+                }
+                return;
+            }
+            int pixels = width * height;
+            if (held == null || held.length != pixels) {
+                // First frame, or assets re-prepared for a new size: the old held frame can't be mixed
+                held = new int[pixels];
+                heldValid = false;
+            }
+
+            ActiveTransition transition = active;
+            if (transition != null && !heldValid) {
+                active = null;
+                transition = null;
+            }
+            if (transition == null) {
+                System.arraycopy(frame, 0, held, 0, pixels);
+                heldValid = true;
+                return;
+            }
+
+            long now = System.nanoTime();
+            if (transition.startNanos == 0) {
+                transition.startNanos = now;
+            }
+            long elapsed = now - transition.startNanos;
+            if (elapsed >= transition.durationNanos) {
+                active = null;
+                System.arraycopy(frame, 0, held, 0, pixels);
+                return;
+            }
+
+            float progress = elapsed / (float) transition.durationNanos;
+            TransitionType type = transition.type;
+            byte[] mask = type.shape != null ? assets.masks[type.shape.ordinal()] : null;
+            int uniform;
+            if (type == TransitionType.STINGER) {
+                // Swap scenes underneath the stinger once it covers the frame
+                uniform = elapsed >= assets.stinger.cutNanos ? 256 : 0;
+            } else {
+                uniform = Math.round(progress * 256);
+            }
+            if (mask != null) {
+                fillLut(progress, type.inverted);
+            }
+            StingerFrame stinger = type == TransitionType.STINGER
+                ? assets.stinger.frames.get((int) Math.min(assets.stinger.frames.size() - 1, elapsed / assets.stinger.frameNanos))
+                : null;
+
+            blend(frame, held, mask, uniform, stinger, width, height);
+        }
+
+        private synchronized void requestResize(Prepared assets, int width, int height) {
+            if (preparingWidth == width && preparingHeight == height) return;
+            LOGGER.warn("⚠️ Stream {} frames are {}x{} but transitions were prepared for {}x{}, re-preparing",
+                sessionId, width, height, assets.width, assets.height);
+            prepareAsync(width, height);
+        }
+
+        // Mix weight (0-256) of the new scene for every mask threshold at this progress
+        private void fillLut(float progress, boolean inverted) {
+            float edge = progress * (255 + softness);
+            for (int value = 0; value < 256; value++) {
+                float threshold = inverted ? 255 - value : value;
+                float weight = (edge - threshold) / softness;
+                lut[value] = weight <= 0 ? 0 : weight >= 1 ? 256 : (int) (weight * 256);
+            }
+        }
+
+        // The fused pass: mask lookup, old/new mix and stinger overlay in one walk over the frame
+        private void blend(int[] frame, int[] from, byte[] mask, int uniform, StingerFrame stinger, int width, int height) {
+            int[] weights = lut;
+            int packed = 0;
+            for (int y = 0; y < height; y++) {
+                int row = y * width;
+                int spanStart = width;
+                int spanEnd = width;
+                if (stinger != null) {
+                    spanStart = stinger.spans[y * 2];
+                    spanEnd = stinger.spans[y * 2 + 1];
+                }
+                for (int x = 0; x < width; x++) {
+                    int index = row + x;
+                    int weight = mask != null ? weights[mask[index] & 0xFF] : uniform;
+                    int pixel = mix(from[index], frame[index], weight);
+                    if (x >= spanStart && x < spanEnd) {
+                        int source = stinger.pixels[packed++];
+                        int alpha = source >>> 24;
+                        if (alpha == 255) {
+                            pixel = source;
+                        } else if (alpha != 0) {
+                            pixel = OverlayCompositor.blendPremultiplied(source, pixel, alpha);
+                        }
+                    }
+                    frame[index] = pixel;
+                }
+            }
+        }
+    }
+
+    // Two channels per multiply: weight is the new frame's share out of 256
+    static int mix(int from, int to, int weight) {
+        if (weight == 0) return from;
+        if (weight == 256) return to;
+        int inverse = 256 - weight;
+        int redBlue = (((from & 0xFF00FF) * inverse + (to & 0xFF00FF) * weight) >>> 8) & 0xFF00FF;
+        int alphaGreen = (((from >>> 8) & 0xFF00FF) * inverse + ((to >>> 8) & 0xFF00FF) * weight) & 0xFF00FF00;
+        return alphaGreen | redBlue;
+    }
+
+    private static class ActiveTransition {
+        final TransitionType type;
+        final long durationNanos;
+        long startNanos = 0; // Set by the first frame it's applied to
+
+        ActiveTransition(TransitionType type, long durationNanos) {
+            this.type = type;
+            this.durationNanos = durationNanos;
+        }
+    }
+
+    private static class Prepared {
+        final int width;
+        final int height;
+        final byte[][] masks = new byte[MaskShape.values().length][];
+        Stinger stinger;
+
+        Prepared(int width, int height) {
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    private static class Stinger {
+        final List<StingerFrame> frames;
+        final long frameNanos;
+        final long durationNanos;
+        final long cutNanos;
+
+        Stinger(List<StingerFrame> frames, long frameNanos, long durationNanos, long cutNanos) {
+            this.frames = frames;
+            this.frameNanos = frameNanos;
+            this.durationNanos = durationNanos;
+            this.cutNanos = cutNanos;
+        }
+    }
+
+    // Premultiplied stinger pixels, stored only between each row's first and last visible pixel
+    private static class StingerFrame {
+        final int[] spans; // start, end per row
+        final int[] pixels;
+
+        StingerFrame(int[] spans, int[] pixels) {
+            this.spans = spans;
+            this.pixels = pixels;
+        }
+
+        static StingerFrame pack(int[] image, int width, int height) {
+            int[] spans = new int[height * 2];
+            int total = 0;
+            for (int y = 0; y < height; y++) {
+                int row = y * width;
+                int start = 0;
+                while (start < width && image[row + start] >>> 24 == 0) start++;
+                int end = width;
+                while (end > start && image[row + end - 1] >>> 24 == 0) end--;
+                spans[y * 2] = start;
+                spans[y * 2 + 1] = end;
+                total += end - start;
+            }
+
+            int[] pixels = new int[total];
+            int offset = 0;
+            for (int y = 0; y < height; y++) {
+                int length = spans[y * 2 + 1] - spans[y * 2];
+                System.arraycopy(image, y * width + spans[y * 2], pixels, offset, length);
+                offset += length;
+            }
+            return new StingerFrame(spans, pixels);
+        }
+
+        long sizeBytes() {
+            return 4L * (spans.length + pixels.length);
+        }
+    }
+}
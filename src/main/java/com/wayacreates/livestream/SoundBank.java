@@ -0,0 +1,144 @@
+package com.wayacreates.livestream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sound Bank
+ * Sound effects decoded up front into interleaved stereo float samples at the mixer's rate, so
+ * triggering one during a stream is a map lookup and never touches a file or a decoder.
+ */
+public class SoundBank {
+    private static final Logger LOGGER = LoggerFactory.getLogger("WayaCreates/SoundBank");
+
+    private final int sampleRate;
+    private final Map<String, Sound> sounds = new ConcurrentHashMap<>();
+
+    public SoundBank(int sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * Decode every .wav/.aiff/.au file in a directory; the file name without extension is the sound name
+     */
+    public int loadDirectory(File directory) {
+        File[] files = directory.listFiles();
+        if (files == null) return 0;
+        int loaded = 0;
+        for (File file : files) {
+            String name = file.getName();
+            int dot = name.lastIndexOf('.');
+            if (dot <= 0) continue;
+            String extension = name.substring(dot + 1).toLowerCase(Locale.ROOT);
+            if (!extension.equals("wav") && !extension.equals("aiff") && !extension.equals("aif") && !extension.equals("au")) {
+                continue;
+            }
+            if (load(name.substring(0, dot), file)) {
+                loaded++;
+            }
+        }
+        LOGGER.info("🎵 Loaded {} sound effects from {}", loaded, directory);
+        return loaded;
+    }
+
+    public boolean load(String name, File file) {
+        try (AudioInputStream source = AudioSystem.getAudioInputStream(file)) {
+            AudioFormat format = source.getFormat();
+            int channels = format.getChannels();
+            AudioFormat pcm = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, format.getSampleRate(), 16, channels,
+                channels * 2, format.getSampleRate(), false);
+            try (AudioInputStream decoded = AudioSystem.getAudioInputStream(pcm, source)) {
+                byte[] bytes = readAll(decoded);
+                put(name, toStereo(bytes, channels, format.getSampleRate()));
+                return true;
+            }
+        } catch (UnsupportedAudioFileException | IOException | IllegalArgumentException e) {
+            LOGGER.warn("⚠️ Could not load sound effect {}: {}", file, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Register already-decoded interleaved stereo samples at the bank's rate
+     */
+    public void put(String name, float[] stereo) {
+        sounds.put(name.toLowerCase(Locale.ROOT), new Sound(name, stereo));
+    }
+
+    public Sound get(String name) {
+        return name != null ? sounds.get(name.toLowerCase(Locale.ROOT)) : null;
+    }
+
+    public Set<String> getNames() {
+        return sounds.keySet();
+    }
+
+    private static byte[] readAll(AudioInputStream stream) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[16 * 1024];
+        int read;
+        while ((read = stream.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    // 16-bit little-endian PCM to interleaved stereo at the bank's rate (mono is duplicated, extra channels ignored)
+    private float[] toStereo(byte[] bytes, int channels, float sourceRate) {
+        int sourceFrames = bytes.length / (channels * 2);
+        float[] left = new float[sourceFrames];
+        float[] right = new float[sourceFrames];
+        for (int frame = 0; frame < sourceFrames; frame++) {
+            int offset = frame * channels * 2;
+            left[frame] = (short) ((bytes[offset] & 0xFF) | (bytes[offset + 1] << 8)) / 32768f;
+            right[frame] = channels > 1
+                ? (short) ((bytes[offset + 2] & 0xFF) | (bytes[offset + 3] << 8)) / 32768f
+                : left[frame];
+        }
+
+        // Linear resampling is plenty for short effects
+        double step = sourceRate / sampleRate;
+        int frames = (int) Math.floor((sourceFrames - 1) / step) + 1;
+        if (sourceFrames == 0) frames = 0;
+        float[] stereo = new float[frames * 2];
+        for (int frame = 0; frame < frames; frame++) {
+            double position = frame * step;
+            int index = (int) position;
+            float fraction = (float) (position - index);
+            int next = Math.min(sourceFrames - 1, index + 1);
+            stereo[frame * 2] = left[index] + (left[next] - left[index]) * fraction;
+            stereo[frame * 2 + 1] = right[index] + (right[next] - right[index]) * fraction;
+        }
+        return stereo;
+    }
+
+    // Getters
+    public int getSampleRate() { return sampleRate; }
+    public int size() { return sounds.size(); }
+
+    // Decoded Sound Class - immutable, shared by every voice playing it
+    public static class Sound {
+        public final String name;
+        public final float[] samples; // Interleaved stereo
+        public final int frames;
+
+        public Sound(String name, float[] samples) {
+            this.name = name;
+            this.samples = samples;
+            this.frames = samples.length / 2;
+        }
+    }
+}
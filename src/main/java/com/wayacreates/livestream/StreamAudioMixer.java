@@ -0,0 +1,380 @@
+package com.wayacreates.livestream;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stream Audio Mixer
+ * Mixes a stream's program audio (game or microphone, written by the capture thread) with
+ * triggered sound effects on a dedicated render thread, one fixed-size block per period, and hands
+ * each block to the encoder's {@link AudioSink}.
+ *
+ * The render thread never allocates or takes a lock: sound triggers and gain changes arrive as
+ * commands on a lock-free queue, effects play from {@link SoundBank} samples decoded before the
+ * stream started, voices are a fixed pool, program audio comes through a single-producer ring and
+ * gain changes ramp across one block so they never click.
+ */
+public class StreamAudioMixer implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger("WayaCreates/StreamAudioMixer");
+
+    private static final int MAX_VOICES = 32;
+    private static final int INPUT_BUFFER_BLOCKS = 16;
+
+    // Command types
+    private static final int PLAY = 0;
+    private static final int STOP_EFFECTS = 1;
+    private static final int MASTER_GAIN = 2;
+    private static final int EFFECTS_GAIN = 3;
+    private static final int INPUT_GAIN = 4;
+
+    /**
+     * Receives every mixed block on the mixer thread. The buffer is reused for the next block, so
+     * copy or encode it before returning.
+     */
+    public interface AudioSink {
+        AudioSink NONE = (session, interleaved, frames, timestampMillis) -> {};
+
+        void onBlock(LivestreamManager.StreamSession session, float[] interleaved, int frames, long timestampMillis);
+    }
+
+    private final LivestreamManager.StreamSession session;
+    private final SoundBank bank;
+    private final int sampleRate;
+    private final int blockFrames;
+    private final long blockNanos;
+    private volatile AudioSink sink;
+
+    private final ConcurrentLinkedQueue<Command> commands = new ConcurrentLinkedQueue<>();
+
+    // Program input ring: capture thread writes, render thread reads (positions in samples)
+    private final float[] input;
+    private final int inputMask;
+    private final AtomicLong inputWrite = new AtomicLong();
+    private final AtomicLong inputRead = new AtomicLong();
+
+    // Render thread state, all allocated up front
+    private final Voice[] voices = new Voice[MAX_VOICES];
+    private final float[] effects;
+    private final float[] out;
+    private float masterGain = 1f;
+    private float effectsGain = 1f;
+    private float inputGain = 1f;
+    private float targetMasterGain = 1f;
+    private float targetEffectsGain = 1f;
+    private float targetInputGain = 1f;
+    private long blockIndex = 0;
+
+    private final AtomicLong blocks = new AtomicLong();
+    private final AtomicLong lateBlocks = new AtomicLong();
+    private final AtomicLong inputUnderruns = new AtomicLong();
+    private final AtomicLong inputOverflows = new AtomicLong();
+    private final AtomicLong renderNanos = new AtomicLong();
+    private final AtomicLong maxRenderNanos = new AtomicLong();
+    private volatile int activeVoices = 0;
+    private volatile float peak = 0;
+
+    private Thread thread;
+    private volatile boolean running = false;
+
+    public StreamAudioMixer(LivestreamManager.StreamSession session, SoundBank bank, int blockFrames, AudioSink sink) {
+        this.session = session;
+        this.bank = bank;
+        this.sampleRate = bank.getSampleRate();
+        this.blockFrames = blockFrames;
+        this.blockNanos = blockFrames * 1_000_000_000L / sampleRate;
+        this.sink = sink != null ? sink : AudioSink.NONE;
+        this.input = new float[Integer.highestOneBit(blockFrames * 2 * INPUT_BUFFER_BLOCKS - 1) << 1];
+        this.inputMask = input.length - 1;
+        this.effects = new float[blockFrames * 2];
+        this.out = new float[blockFrames * 2];
+        for (int i = 0; i < MAX_VOICES; i++) {
+            voices[i] = new Voice();
+        }
+    }
+
+    public void start() {
+        running = true;
+        thread = new Thread(this::renderLoop, "WayaCreates-StreamAudio-" + session.getSessionId());
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MAX_PRIORITY);
+        thread.start();
+        LOGGER.info("🎵 Stream audio mixer for {} running ({} Hz, {} frame blocks)", session.getSessionId(), sampleRate, blockFrames);
+    }
+
+    public void setSink(AudioSink sink) {
+        this.sink = sink != null ? sink : AudioSink.NONE;
+    }
+
+    // Control side: any thread, never waits on the render thread
+
+    /**
+     * Trigger a pre-decoded sound effect
+     * @param pan -1 (left) to 1 (right)
+     * @return false if the sound isn't in the bank
+     */
+    public boolean playSound(String name, float gain, float pan) {
+        SoundBank.Sound sound = bank.get(name);
+        if (sound == null) return false;
+        // Equal-power pan, worked out here so the render thread does no trig
+        double angle = (Math.max(-1f, Math.min(1f, pan)) + 1) * Math.PI / 4;
+        commands.add(new Command(PLAY, sound, (float) (gain * Math.cos(angle)), (float) (gain * Math.sin(angle))));
+        return true;
+    }
+
+    public void stopEffects() {
+        commands.add(new Command(STOP_EFFECTS, null, 0, 0));
+    }
+
+    public void setMasterGain(float gain) {
+        commands.add(new Command(MASTER_GAIN, null, gain, 0));
+    }
+
+    public void setEffectsGain(float gain) {
+        commands.add(new Command(EFFECTS_GAIN, null, gain, 0));
+    }
+
+    public void setInputGain(float gain) {
+        commands.add(new Command(INPUT_GAIN, null, gain, 0));
+    }
+
+    /**
+     * Append program audio (interleaved stereo at the mixer's rate). Single producer only.
+     * @return frames accepted; the rest is dropped if the mixer has fallen that far behind
+     */
+    public int writeInput(float[] interleaved, int offset, int frames) {
+        long write = inputWrite.get();
+        long free = input.length - (write - inputRead.get());
+        int samples = (int) Math.min(frames * 2L, free & ~1L);
+        if (samples < frames * 2) {
+            inputOverflows.incrementAndGet();
+        }
+        for (int i = 0; i < samples; i++) {
+            input[(int) ((write + i) & inputMask)] = interleaved[offset + i];
+        }
+        inputWrite.lazySet(write + samples);
+        return samples / 2;
+    }
+
+    // Render side
+
+    private void renderLoop() {
+        long deadline = System.nanoTime();
+        while (running) {
+            long start = System.nanoTime();
+            drainCommands();
+            render();
+            sink.onBlock(session, out, blockFrames, blockIndex * blockNanos / 1_000_000L);
+            blockIndex++;
+
+            long elapsed = System.nanoTime() - start;
+            blocks.incrementAndGet();
+            renderNanos.addAndGet(elapsed);
+            if (elapsed > maxRenderNanos.get()) {
+                maxRenderNanos.set(elapsed);
+            }
+
+            deadline += blockNanos;
+            long now = System.nanoTime();
+            if (now - deadline > blockNanos * 4) {
+                // Stalled (GC, suspended machine): skip ahead rather than burst out the missed blocks
+                lateBlocks.incrementAndGet();
+                deadline = now;
+            }
+            long wait;
+            while (running && (wait = deadline - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+        }
+    }
+
+    private void drainCommands() {
+        Command command;
+        while ((command = commands.poll()) != null) {
+            switch (command.type) {
+                case PLAY:
+                    startVoice(command);
+                    break;
+                case STOP_EFFECTS:
+                    for (Voice voice : voices) {
+                        voice.sound = null;
+                    }
+                    break;
+                case MASTER_GAIN:
+                    targetMasterGain = command.left;
+                    break;
+                case EFFECTS_GAIN:
+                    targetEffectsGain = command.left;
+                    break;
+                case INPUT_GAIN:
+                    targetInputGain = command.left;
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private void startVoice(Command command) {
+        // Free voice, or steal the one that has played longest
+        Voice chosen = voices[0];
+        for (Voice voice : voices) {
+            if (voice.sound == null) {
+                chosen = voice;
+                break;
+            }
+            if (voice.position > chosen.position) {
+                chosen = voice;
+            }
+        }
+        chosen.sound = command.sound;
+        chosen.position = 0;
+        chosen.left = command.left;
+        chosen.right = command.right;
+    }
+
+    private void render() {
+        int samples = blockFrames * 2;
+        Arrays.fill(effects, 0, samples, 0f);
+
+        int active = 0;
+        for (Voice voice : voices) {
+            SoundBank.Sound sound = voice.sound;
+            if (sound == null) continue;
+            float[] source = sound.samples;
+            int frames = Math.min(blockFrames, sound.frames - voice.position);
+            int offset = voice.position * 2;
+            float left = voice.left;
+            float right = voice.right;
+            for (int frame = 0; frame < frames; frame++) {
+                effects[frame * 2] += source[offset + frame * 2] * left;
+                effects[frame * 2 + 1] += source[offset + frame * 2 + 1] * right;
+            }
+            voice.position += frames;
+            if (voice.position >= sound.frames) {
+                voice.sound = null;
+            } else {
+                active++;
+            }
+        }
+        activeVoices = active;
+
+        // Program input, zero-filled on underrun
+        long read = inputRead.get();
+        int available = (int) Math.min(samples, inputWrite.get() - read);
+        if (available < samples && blockIndex > 0 && inputWrite.get() > 0) {
+            inputUnderruns.incrementAndGet();
+        }
+
+        // Gains ramp linearly across the block
+        float masterStep = (targetMasterGain - masterGain) / blockFrames;
+        float effectsStep = (targetEffectsGain - effectsGain) / blockFrames;
+        float inputStep = (targetInputGain - inputGain) / blockFrames;
+        float blockPeak = 0;
+        for (int frame = 0; frame < blockFrames; frame++) {
+            masterGain += masterStep;
+            effectsGain += effectsStep;
+            inputGain += inputStep;
+            for (int channel = 0; channel < 2; channel++) {
+                int index = frame * 2 + channel;
+                float program = index < available ? input[(int) ((read + index) & inputMask)] : 0f;
+                float sample = (program * inputGain + effects[index] * effectsGain) * masterGain;
+                // Hard ceiling; effects stacked on loud program audio must not wrap in the encoder
+                sample = Math.max(-1f, Math.min(1f, sample));
+                out[index] = sample;
+                blockPeak = Math.max(blockPeak, Math.abs(sample));
+            }
+        }
+        masterGain = targetMasterGain;
+        effectsGain = targetEffectsGain;
+        inputGain = targetInputGain;
+        inputRead.lazySet(read + available);
+        peak = blockPeak;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            try {
+                thread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        LOGGER.info("🎵 Stream audio mixer for {} stopped ({})", session.getSessionId(), getStats());
+    }
+
+    public MixerStats getStats() {
+        long count = blocks.get();
+        return new MixerStats(count, lateBlocks.get(), inputUnderruns.get(), inputOverflows.get(), activeVoices,
+            count == 0 ? 0 : renderNanos.get() / 1000.0 / count, maxRenderNanos.get() / 1000.0,
+            blockNanos / 1000.0, peak);
+    }
+
+    // Getters
+    public int getSampleRate() { return sampleRate; }
+    public int getBlockFrames() { return blockFrames; }
+
+    // Control message; built on the caller's thread so the render thread only reads it
+    private static final class Command {
+        final int type;
+        final SoundBank.Sound sound;
+        final float left;
+        final float right;
+
+        Command(int type, SoundBank.Sound sound, float left, float right) {
+            this.type = type;
+            this.sound = sound;
+            this.left = left;
+            this.right = right;
+        }
+    }
+
+    // One playing sound effect (render thread only)
+    private static final class Voice {
+        SoundBank.Sound sound;
+        int position;
+        float left;
+        float right;
+    }
+
+    // Mixer Stats Class
+    public static class MixerStats {
+        public final long blocks;
+        public final long lateBlocks;
+        public final long inputUnderruns;
+        public final long inputOverflows;
+        public final int activeVoices;
+        public final double averageRenderMicros;
+        public final double maxRenderMicros;
+        public final double blockMicros;
+        public final float peak;
+
+        public MixerStats(long blocks, long lateBlocks, long inputUnderruns, long inputOverflows, int activeVoices,
+                          double averageRenderMicros, double maxRenderMicros, double blockMicros, float peak) {
+            this.blocks = blocks;
+            this.lateBlocks = lateBlocks;
+            this.inputUnderruns = inputUnderruns;
+            this.inputOverflows = inputOverflows;
+            this.activeVoices = activeVoices;
+            this.averageRenderMicros = averageRenderMicros;
+            this.maxRenderMicros = maxRenderMicros;
+            this.blockMicros = blockMicros;
+            this.peak = peak;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%d blocks (%d late), render avg %.0f us / max %.0f us of %.0f us, %d voices, " +
+                    "input underruns %d / overflows %d, peak %.2f", blocks, lateBlocks, averageRenderMicros, maxRenderMicros,
+                blockMicros, activeVoices, inputUnderruns, inputOverflows, peak);
+        }
+    }
+}
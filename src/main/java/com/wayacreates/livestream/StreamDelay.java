@@ -0,0 +1,347 @@
+package com.wayacreates.livestream;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stream Delay
+ * Broadcast delay between the encoder and the stream outputs. Encoded packets wait in a
+ * byte-bounded queue and a release thread hands each one on once it is the configured delay old.
+ *
+ * {@link #cut} is the panic button: the newest buffered packets are thrown away before anyone sees
+ * them and the gap is filled with the pre-encoded slate (a clip that starts on a keyframe), retimed
+ * and looped to cover the cut. Live video resumes on its next keyframe, so nothing is re-encoded
+ * and the receiver never sees a broken GOP.
+ */
+public class StreamDelay implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger("WayaCreates/StreamDelay");
+
+    private final String name;
+    private final long delayNanos;
+    private final long maxBytes;
+    private final Consumer<EncodedPacket> downstream;
+    private final Consumer<LivestreamManager.StreamQuality> keyframeRequest;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final ArrayDeque<Entry> queue = new ArrayDeque<>();
+    private long queuedBytes = 0;
+    private long newestTimestamp = Long.MIN_VALUE;
+    private long earlyReleases = 0;
+    private long packetsCut = 0;
+
+    // Video renditions seen, and those waiting for a keyframe after a cut (null rendition = the single flags)
+    private final EnumSet<LivestreamManager.StreamQuality> renditions = EnumSet.noneOf(LivestreamManager.StreamQuality.class);
+    private final EnumSet<LivestreamManager.StreamQuality> awaitingKeyframe = EnumSet.noneOf(LivestreamManager.StreamQuality.class);
+    private boolean singleRendition = false;
+    private boolean awaitingSingleKeyframe = false;
+    private List<EncodedPacket> slate = List.of();
+    private long slateDurationMillis = 0;
+
+    private Thread releaser;
+    private volatile boolean closed = false;
+
+    /**
+     * @param keyframeRequest asks the encoder for a keyframe on a rendition (null = only rendition)
+     */
+    public StreamDelay(String name, long delayMillis, long maxBytes, Consumer<EncodedPacket> downstream,
+                       Consumer<LivestreamManager.StreamQuality> keyframeRequest) {
+        this.name = name;
+        this.delayNanos = TimeUnit.MILLISECONDS.toNanos(delayMillis);
+        this.maxBytes = maxBytes;
+        this.downstream = downstream;
+        this.keyframeRequest = keyframeRequest;
+    }
+
+    public void start() {
+        releaser = new Thread(this::releaseLoop, "WayaCreates-StreamDelay-" + name);
+        releaser.setDaemon(true);
+        releaser.start();
+        LOGGER.info("⏳ Stream {} delayed by {} s", name, TimeUnit.NANOSECONDS.toSeconds(delayNanos));
+    }
+
+    /**
+     * Pre-encoded slate shown in place of cut content. Must start on a keyframe and match the
+     * stream's encoder settings; with a rendition ladder it needs packets for every rendition.
+     * @param frameRate the stream's nominal frame rate, which times a single-frame slate
+     */
+    public void setSlate(List<EncodedPacket> packets, int frameRate) {
+        if (frameRate <= 0) {
+            throw new IllegalArgumentException("Slate frame rate must be positive: " + frameRate);
+        }
+        List<EncodedPacket> copy = new ArrayList<>(packets);
+        long first = copy.isEmpty() ? 0 : copy.get(0).getTimestampMillis();
+        long last = first;
+        long frameMillis = 0;
+        long lastVideo = -1;
+        for (EncodedPacket packet : copy) {
+            last = Math.max(last, packet.getTimestampMillis());
+            if (packet.isVideo()) {
+                if (lastVideo >= 0 && packet.getTimestampMillis() > lastVideo) {
+                    frameMillis = packet.getTimestampMillis() - lastVideo;
+                }
+                lastVideo = packet.getTimestampMillis();
+            }
+        }
+        if (!copy.isEmpty() && !(copy.get(0).isVideo() && copy.get(0).isKeyframe())) {
+            throw new IllegalArgumentException("Slate must start with a video keyframe");
+        }
+        if (frameMillis == 0) {
+            // A single frame (per rendition) has no interval of its own: hold it for one nominal
+            // frame, or each loop of the cut would re-send it every millisecond
+            frameMillis = Math.max(1, Math.round(1000.0 / frameRate));
+        }
+        lock.lock();
+        try {
+            slate = copy;
+            // The last frame is on screen for one frame interval too
+            slateDurationMillis = copy.isEmpty() ? 0 : last - first + frameMillis;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Queue an encoded packet; it goes out once it is the delay old. Never blocks.
+     */
+    public boolean submit(EncodedPacket packet) {
+        lock.lock();
+        try {
+            if (closed) return false;
+            if (packet.isVideo()) {
+                LivestreamManager.StreamQuality rendition = packet.getRendition();
+                if (rendition == null) {
+                    singleRendition = true;
+                } else {
+                    renditions.add(rendition);
+                }
+                if (isAwaitingKeyframe(rendition)) {
+                    if (!packet.isKeyframe()) {
+                        return false;
+                    }
+                    clearAwaitingKeyframe(rendition);
+                }
+            }
+
+            boolean wasEmpty = queue.isEmpty();
+            queue.add(new Entry(packet, System.nanoTime() + delayNanos));
+            queuedBytes += packet.getSize();
+            newestTimestamp = Math.max(newestTimestamp, packet.getTimestampMillis());
+            if (wasEmpty || queuedBytes > maxBytes) {
+                changed.signal();
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drop the most recent content before it airs and splice in the slate
+     * @return milliseconds of content actually cut (less than asked if some had already aired)
+     */
+    public long cut(long millis) {
+        boolean spliceDone = false;
+        lock.lock();
+        try {
+            if (queue.isEmpty()) return 0;
+            long cutFrom = newestTimestamp - millis;
+
+            // Packets are in encode order, so the cut is a suffix of the queue
+            Entry firstCut = null;
+            long cutBytes = 0;
+            int cutCount = 0;
+            Iterator<Entry> iterator = queue.descendingIterator();
+            while (iterator.hasNext()) {
+                Entry entry = iterator.next();
+                if (entry.packet.getTimestampMillis() < cutFrom) break;
+                firstCut = entry;
+                cutBytes += entry.packet.getSize();
+                cutCount++;
+            }
+            if (firstCut == null) return 0;
+            long cutStart = firstCut.packet.getTimestampMillis();
+            long releaseStart = firstCut.releaseAtNanos;
+            for (int i = 0; i < cutCount; i++) {
+                queue.pollLast();
+            }
+            queuedBytes -= cutBytes;
+            packetsCut += cutCount;
+
+            // Loop the slate over the cut span, retimed onto the stream clock
+            long cutEnd = newestTimestamp;
+            int spliced = 0;
+            if (!slate.isEmpty()) {
+                long slateStart = slate.get(0).getTimestampMillis();
+                for (long loopStart = cutStart; loopStart <= cutEnd; loopStart += slateDurationMillis) {
+                    for (EncodedPacket packet : slate) {
+                        long timestamp = loopStart + packet.getTimestampMillis() - slateStart;
+                        if (timestamp > cutEnd) continue;
+                        EncodedPacket retimed = new EncodedPacket(packet.getType(), packet.getRendition(), timestamp,
+                            packet.isKeyframe(), packet.getData());
+                        queue.add(new Entry(retimed, releaseStart + TimeUnit.MILLISECONDS.toNanos(timestamp - cutStart)));
+                        queuedBytes += retimed.getSize();
+                        spliced++;
+                    }
+                }
+            }
+
+            // Live video picks up again on its next keyframe, after the slate
+            awaitingSingleKeyframe = singleRendition;
+            awaitingKeyframe.addAll(renditions);
+            spliceDone = true;
+            changed.signal();
+            LOGGER.warn("✂️ Cut {} ms ({} packets) from stream {}, spliced {} slate packets", cutEnd - cutStart, cutCount,
+                name, spliced);
+            return cutEnd - cutStart;
+        } finally {
+            lock.unlock();
+            if (spliceDone) {
+                requestKeyframes();
+            }
+        }
+    }
+
+    // Caller holds the lock
+    private boolean isAwaitingKeyframe(LivestreamManager.StreamQuality rendition) {
+        return rendition == null ? awaitingSingleKeyframe : awaitingKeyframe.contains(rendition);
+    }
+
+    private void clearAwaitingKeyframe(LivestreamManager.StreamQuality rendition) {
+        if (rendition == null) {
+            awaitingSingleKeyframe = false;
+        } else {
+            awaitingKeyframe.remove(rendition);
+        }
+    }
+
+    private void requestKeyframes() {
+        List<LivestreamManager.StreamQuality> pending;
+        boolean single;
+        lock.lock();
+        try {
+            pending = new ArrayList<>(awaitingKeyframe);
+            single = awaitingSingleKeyframe;
+        } finally {
+            lock.unlock();
+        }
+        if (single) {
+            keyframeRequest.accept(null);
+        }
+        for (LivestreamManager.StreamQuality rendition : pending) {
+            keyframeRequest.accept(rendition);
+        }
+    }
+
+    private void releaseLoop() {
+        while (!closed) {
+            EncodedPacket packet;
+            lock.lock();
+            try {
+                Entry head = queue.peek();
+                if (head == null) {
+                    changed.await(500, TimeUnit.MILLISECONDS);
+                    continue;
+                }
+                long wait = head.releaseAtNanos - System.nanoTime();
+                if (wait > 0 && queuedBytes <= maxBytes) {
+                    changed.awaitNanos(wait);
+                    continue;
+                }
+                if (wait > 0) {
+                    // Over the byte budget: the oldest content airs early rather than being lost
+                    earlyReleases++;
+                }
+                queue.poll();
+                queuedBytes -= head.packet.getSize();
+                packet = head.packet;
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+            downstream.accept(packet);
+        }
+    }
+
+    /**
+     * Stop releasing; anything still delayed never airs
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) return;
+            closed = true;
+            queue.clear();
+            queuedBytes = 0;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (releaser != null) {
+            releaser.interrupt();
+        }
+        LOGGER.info("⏳ Stream delay {} closed ({} packets cut, {} released early)", name, packetsCut, earlyReleases);
+    }
+
+    public DelayStats getStats() {
+        lock.lock();
+        try {
+            long buffered = queue.isEmpty() ? 0 : queue.peekLast().packet.getTimestampMillis() - queue.peek().packet.getTimestampMillis();
+            return new DelayStats(TimeUnit.NANOSECONDS.toMillis(delayNanos), buffered, queuedBytes, maxBytes, packetsCut,
+                earlyReleases, !slate.isEmpty());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static final class Entry {
+        final EncodedPacket packet;
+        final long releaseAtNanos;
+
+        Entry(EncodedPacket packet, long releaseAtNanos) {
+            this.packet = packet;
+            this.releaseAtNanos = releaseAtNanos;
+        }
+    }
+
+    // Delay Stats Class
+    public static class DelayStats {
+        public final long delayMillis;
+        public final long bufferedMillis;
+        public final long bufferedBytes;
+        public final long maxBytes;
+        public final long packetsCut;
+        public final long earlyReleases;
+        public final boolean hasSlate;
+
+        public DelayStats(long delayMillis, long bufferedMillis, long bufferedBytes, long maxBytes, long packetsCut,
+                          long earlyReleases, boolean hasSlate) {
+            this.delayMillis = delayMillis;
+            this.bufferedMillis = bufferedMillis;
+            this.bufferedBytes = bufferedBytes;
+            this.maxBytes = maxBytes;
+            this.packetsCut = packetsCut;
+            this.earlyReleases = earlyReleases;
+            this.hasSlate = hasSlate;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("delay %d ms, buffered %d ms / %d of %d KB, %d packets cut, %d released early%s",
+                delayMillis, bufferedMillis, bufferedBytes / 1024, maxBytes / 1024, packetsCut, earlyReleases,
+                hasSlate ? "" : ", no slate");
+        }
+    }
+}
@@ -0,0 +1,351 @@
+package com.wayacreates.livestream;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.bytedeco.ffmpeg.global.avcodec;
+import org.bytedeco.ffmpeg.global.avutil;
+import org.bytedeco.javacv.FFmpegFrameRecorder;
+import org.bytedeco.javacv.Frame;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stream Encoder
+ * Encodes a session's processed frames and mixed audio for its packet outputs (local HLS and
+ * MPEG-TS over TCP) and hands every chunk it produces to {@link LivestreamManager#submitPacket},
+ * so the broadcast delay, telemetry and rendition switching all see it. Each rendition has its own
+ * {@link FFmpegFrameRecorder} muxing H.264/AAC into memory on the encoder thread: MPEG-TS, or
+ * fragmented MP4 plus an init segment for CMAF. Capture never waits on it; frames beyond a short
+ * queue are skipped and reported to the telemetry.
+ *
+ * Keyframes come every two seconds at fixed positions (scene-cut keyframes are off) and nothing is
+ * reordered, so each frame's bytes come out of its own record call and which ones start a GOP is
+ * known without parsing them. A keyframe request restarts that rendition's recorder, which always
+ * opens on one, unless a scheduled keyframe is due within half a second anyway.
+ */
+public class StreamEncoder implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger("WayaCreates/StreamEncoder");
+
+    private static final int GOP_SECONDS = 2;
+    private static final int MAX_QUEUED_FRAMES = 2;
+    private static final int MAX_QUEUED_AUDIO_BLOCKS = 256;
+    private static final long RETRY_MILLIS = 1000;
+
+    private final LivestreamManager.StreamSession session;
+    private final String container;
+    private final int frameRate;
+    private final int gopFrames;
+    private final int audioChannels;
+    private final int sampleRate;
+    private final int audioBitRate;
+    private final Consumer<EncodedPacket> sink;
+    private final Consumer<byte[]> initSegmentSink;
+    private final StreamTelemetry telemetry;
+    private final RawMediaQueue media;
+    private final List<Track> tracks = new ArrayList<>();
+    private final boolean renditionLadder;
+
+    private Thread worker;
+    private volatile boolean closed = false;
+
+    // Encoder thread only
+    private long baseMillis = -1;
+    private long lastFrameNumber = -1;
+
+    /**
+     * @param container "ts" for MPEG-TS, "m4s" for CMAF fragments
+     * @param sink receives every encoded chunk, on the encoder thread
+     * @param initSegmentSink receives the CMAF init segment of the best rendition whenever it changes
+     */
+    public StreamEncoder(LivestreamManager.StreamSession session, String container, Consumer<EncodedPacket> sink,
+                         Consumer<byte[]> initSegmentSink) {
+        LivestreamManager.StreamSettings settings = session.getSettings();
+        this.session = session;
+        this.container = container;
+        this.frameRate = Math.max(1, settings.frameRate);
+        this.gopFrames = frameRate * GOP_SECONDS;
+        this.audioChannels = settings.enableAudio ? 2 : 0;
+        this.sampleRate = settings.audioSampleRate;
+        this.audioBitRate = settings.audioBitRate;
+        this.sink = sink;
+        this.initSegmentSink = initSegmentSink;
+        this.telemetry = session.getTelemetry();
+        this.media = new RawMediaQueue(MAX_QUEUED_FRAMES, MAX_QUEUED_AUDIO_BLOCKS, video -> {
+            if (video) {
+                telemetry.recordSkip(StreamTelemetry.SkipCause.ENCODER_BUSY);
+            }
+        });
+
+        this.renditionLadder = settings.renditions.size() > 1;
+        if (renditionLadder) {
+            LivestreamManager.StreamQuality best = null;
+            for (LivestreamManager.StreamQuality rendition : settings.renditions) {
+                if (best == null || rendition.bitRate > best.bitRate) {
+                    best = rendition;
+                }
+            }
+            for (LivestreamManager.StreamQuality rendition : settings.renditions) {
+                tracks.add(new Track(rendition, rendition, rendition == best));
+            }
+        } else {
+            tracks.add(new Track(null, session.getQuality(), true));
+        }
+    }
+
+    public void start() {
+        worker = new Thread(this::encodeLoop, "WayaCreates-StreamEncoder-" + session.getSessionId());
+        worker.setDaemon(true);
+        worker.start();
+        LOGGER.info("🎞️ Stream encoder for {} started ({} rendition(s), {})", session.getSessionId(), tracks.size(), container);
+    }
+
+    /**
+     * Queue a processed ARGB frame (capture thread). Never blocks.
+     */
+    public boolean offerFrame(int[] argb, int width, int height, long timestampMillis) {
+        return media.offerFrame(argb, width, height, timestampMillis);
+    }
+
+    /**
+     * Queue a block of interleaved stereo audio (mixer thread). Never blocks.
+     */
+    public boolean offerAudio(float[] interleaved, int frames, long timestampMillis) {
+        if (audioChannels == 0) return false;
+        return media.offerAudio(interleaved, frames * audioChannels, frames, timestampMillis);
+    }
+
+    /**
+     * New size and bitrate for a single-rendition encode, from the next frame on
+     */
+    public void setQuality(LivestreamManager.StreamQuality quality) {
+        if (!renditionLadder) {
+            tracks.get(0).requestedQuality = quality;
+        }
+    }
+
+    /**
+     * @param rendition the rendition that needs a keyframe, or null for every rendition
+     */
+    public void requestKeyframe(LivestreamManager.StreamQuality rendition) {
+        for (Track track : tracks) {
+            if (rendition == null || track.rendition == rendition) {
+                track.keyframeRequested = true;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        media.close();
+        if (worker != null) {
+            worker.interrupt();
+            try {
+                worker.join(TimeUnit.SECONDS.toMillis(2));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        LOGGER.info("🎞️ Stream encoder for {} stopped", session.getSessionId());
+    }
+
+    private void encodeLoop() {
+        try {
+            while (!closed) {
+                RawMediaQueue.Item item;
+                try {
+                    item = media.poll(500, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (item == null) continue;
+                try {
+                    if (item.video) {
+                        encodeFrame(item);
+                    } else {
+                        encodeAudio(item);
+                    }
+                } finally {
+                    media.recycle(item);
+                }
+            }
+        } finally {
+            for (Track track : tracks) {
+                track.stop();
+            }
+        }
+    }
+
+    private void encodeFrame(RawMediaQueue.Item item) {
+        if (baseMillis < 0) {
+            baseMillis = item.timestampMillis;
+        }
+        // The recorders time frames by frame number, so two frames in one slot would repeat a timestamp
+        long micros = (item.timestampMillis - baseMillis) * 1000L;
+        long frameNumber = Math.round(micros * frameRate / 1_000_000.0);
+        if (frameNumber <= lastFrameNumber) {
+            telemetry.recordSkip(StreamTelemetry.SkipCause.ENCODER_BUSY);
+            return;
+        }
+        lastFrameNumber = frameNumber;
+
+        for (Track track : tracks) {
+            // One failing rendition restarts on its own; the others keep going
+            try {
+                track.encodeFrame(item, micros);
+            } catch (Exception e) {
+                LOGGER.warn("⚠️ Stream encoder for {} failed on {}: {}", session.getSessionId(), track.quality, e.getMessage());
+                track.stop();
+                track.retryAtMillis = System.currentTimeMillis() + RETRY_MILLIS;
+            }
+        }
+    }
+
+    private void encodeAudio(RawMediaQueue.Item item) {
+        for (Track track : tracks) {
+            try {
+                track.encodeAudio(item);
+            } catch (Exception e) {
+                LOGGER.warn("⚠️ Stream encoder for {} failed on {} audio: {}", session.getSessionId(), track.quality, e.getMessage());
+                track.stop();
+            }
+        }
+    }
+
+    // One rendition's recorder, writing into memory (encoder thread only, apart from the requests)
+    private class Track {
+        final LivestreamManager.StreamQuality rendition; // null = the session's only rendition
+        final boolean publishesInit;
+        final ChunkStream out = new ChunkStream();
+        volatile LivestreamManager.StreamQuality requestedQuality;
+        volatile boolean keyframeRequested = false;
+        LivestreamManager.StreamQuality quality;
+        FFmpegFrameRecorder recorder;
+        long framesSinceStart;
+        long startMicros;
+        long retryAtMillis = 0;
+
+        Track(LivestreamManager.StreamQuality rendition, LivestreamManager.StreamQuality quality, boolean publishesInit) {
+            this.rendition = rendition;
+            this.requestedQuality = quality;
+            this.quality = quality;
+            this.publishesInit = publishesInit;
+        }
+
+        void encodeFrame(RawMediaQueue.Item item, long micros) throws Exception {
+            boolean restart = requestedQuality != quality;
+            if (keyframeRequested) {
+                keyframeRequested = false;
+                long untilKeyframe = gopFrames - framesSinceStart % gopFrames;
+                restart |= recorder != null && untilKeyframe > frameRate / 2;
+            }
+            if (restart) {
+                stop();
+            }
+            if (recorder == null) {
+                if (System.currentTimeMillis() < retryAtMillis) return;
+                start(micros);
+            }
+
+            boolean keyframe = framesSinceStart % gopFrames == 0;
+            recorder.setTimestamp(micros - startMicros);
+            recorder.recordImage(item.width, item.height, Frame.DEPTH_UBYTE, 4, item.width * 4, avutil.AV_PIX_FMT_BGRA, item.pixels);
+            framesSinceStart++;
+            byte[] chunk = out.drain();
+            if (chunk.length > 0) {
+                sink.accept(EncodedPacket.video(rendition, item.timestampMillis, keyframe, chunk));
+            }
+        }
+
+        void encodeAudio(RawMediaQueue.Item item) throws Exception {
+            // Audio joins once video has opened the recorder
+            if (recorder == null) return;
+            recorder.recordSamples(sampleRate, audioChannels, FloatBuffer.wrap(item.samples, 0, item.sampleCount));
+            byte[] chunk = out.drain();
+            if (chunk.length > 0) {
+                sink.accept(new EncodedPacket(EncodedPacket.Type.AUDIO, rendition, item.timestampMillis, true, chunk));
+            }
+        }
+
+        void start(long micros) throws Exception {
+            quality = requestedQuality;
+            FFmpegFrameRecorder created = new FFmpegFrameRecorder(out, quality.width, quality.height, audioChannels);
+            boolean cmaf = "m4s".equals(container);
+            created.setFormat(cmaf ? "mp4" : "mpegts");
+            if (cmaf) {
+                created.setOption("movflags", "empty_moov+default_base_moof+frag_every_frame");
+            }
+            created.setVideoCodec(avcodec.AV_CODEC_ID_H264);
+            created.setPixelFormat(avutil.AV_PIX_FMT_YUV420P);
+            created.setFrameRate(frameRate);
+            created.setGopSize(gopFrames);
+            created.setVideoBitrate(quality.bitRate);
+            created.setVideoOption("preset", "veryfast");
+            // No B-frames or lookahead, and keyframes only where the GOP says
+            created.setVideoOption("tune", "zerolatency");
+            created.setVideoOption("sc_threshold", "0");
+            if (audioChannels > 0) {
+                created.setAudioCodec(avcodec.AV_CODEC_ID_AAC);
+                created.setSampleRate(sampleRate);
+                created.setAudioBitrate(audioBitRate);
+            }
+            // Every packet goes out of its own record call instead of waiting to be interleaved
+            created.setInterleaved(false);
+            created.setOption("flush_packets", "1");
+            out.reset();
+            try {
+                created.start();
+            } catch (Exception e) {
+                releaseQuietly(created);
+                throw e;
+            }
+            recorder = created;
+            framesSinceStart = 0;
+            startMicros = micros;
+            if (cmaf) {
+                // The header is the init segment; MPEG-TS headers stay buffered for the first keyframe
+                byte[] init = out.drain();
+                if (publishesInit) {
+                    initSegmentSink.accept(init);
+                }
+            }
+        }
+
+        void stop() {
+            FFmpegFrameRecorder current = recorder;
+            recorder = null;
+            if (current != null) {
+                releaseQuietly(current);
+            }
+            // Whatever the trailer flushed belongs to no packet
+            out.reset();
+        }
+    }
+
+    private void releaseQuietly(FFmpegFrameRecorder target) {
+        try {
+            target.close();
+        } catch (Exception e) {
+            LOGGER.debug("Stream encoder for {} did not close cleanly: {}", session.getSessionId(), e.getMessage());
+        }
+    }
+
+    // Collects what the recorder writes during one record call
+    private static final class ChunkStream extends ByteArrayOutputStream {
+        ChunkStream() {
+            super(256 * 1024);
+        }
+
+        byte[] drain() {
+            byte[] chunk = toByteArray();
+            reset();
+            return chunk;
+        }
+    }
+}
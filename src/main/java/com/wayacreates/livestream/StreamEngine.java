@@ -0,0 +1,523 @@
+package com.wayacreates.livestream;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.wayacreates.utils.ResourceScope;
+
+/**
+ * Stream Engine
+ * Feeds every output of a session (the primary platform plus any simulcast targets). Platform
+ * ingests are rtmp:// or rtmps:// URLs pushed by an {@link RtmpOutput}, which encodes the processed
+ * frames and mixed audio itself; tcp:// URLs are {@link StreamOutput}s sending MPEG-TS to a local
+ * receiver, fed the session's shared packets from {@link StreamEncoder}. Every output has its own
+ * queue, sender thread and reconnect loop, so a slow destination only ever drops its own frames or GOPs.
+ *
+ * Each RTMP output's {@link AdaptiveBitrateController} steers its own recorder. For packet outputs
+ * with a single rendition the first one's controller steers the encoder through
+ * {@link EncoderControl}; with a rendition ladder the encoder stays put and each packet output's
+ * controller picks which rendition it forwards, switching on that rendition's next keyframe.
+ *
+ * Streams with local HLS enabled also feed an {@link HlsSegmenter} published on a shared
+ * {@link LocalStreamServer}, so LAN viewers watch the same encode without a platform in between.
+ */
+public class StreamEngine {
+    private static final Logger LOGGER = LoggerFactory.getLogger("WayaCreates/StreamEngine");
+
+    // Throughput floor used when estimating how long the backlog takes to drain
+    private static final double MIN_DRAIN_BPS = 64_000;
+
+    private static final String LOCAL_PLATFORM = "local";
+
+    // Ingests used when a platform target has no URL of its own; Kick's is per account
+    private static final Map<String, String> PLATFORM_INGESTS = Map.of(
+        "twitch", "rtmp://live.twitch.tv/app",
+        "youtube", "rtmp://a.rtmp.youtube.com/live2");
+
+    private final Map<String, StreamPipeline> pipelines = new ConcurrentHashMap<>();
+    private volatile EncoderControl encoderControl = EncoderControl.NONE;
+    private LocalStreamServer localServer;
+
+    /**
+     * Hooks into whatever encodes the stream
+     */
+    public interface EncoderControl {
+        EncoderControl NONE = new EncoderControl() {
+            @Override public void onQualityChanged(LivestreamManager.StreamSession session, LivestreamManager.StreamQuality quality) {}
+            @Override public void requestKeyframe(LivestreamManager.StreamSession session, LivestreamManager.StreamQuality rendition) {}
+        };
+
+        void onQualityChanged(LivestreamManager.StreamSession session, LivestreamManager.StreamQuality quality);
+
+        /**
+         * @param rendition the rendition that needs a keyframe, or null for the session's only rendition
+         */
+        void requestKeyframe(LivestreamManager.StreamSession session, LivestreamManager.StreamQuality rendition);
+    }
+
+    public void setEncoderControl(EncoderControl encoderControl) {
+        this.encoderControl = encoderControl != null ? encoderControl : EncoderControl.NONE;
+    }
+
+    public void startStream(LivestreamManager.StreamSession session) {
+        LivestreamManager.StreamSettings settings = session.getSettings();
+        List<LivestreamManager.OutputTarget> targets = new ArrayList<>();
+        boolean localOnly = LOCAL_PLATFORM.equalsIgnoreCase(session.getPlatform());
+        if (!localOnly) {
+            targets.add(new LivestreamManager.OutputTarget(session.getPlatform(), settings.ingestUrl, settings.streamKey));
+        }
+        targets.addAll(settings.simulcastTargets);
+
+        StreamPipeline pipeline = new StreamPipeline(session, this);
+        for (LivestreamManager.OutputTarget target : targets) {
+            String ingestUrl = target.ingestUrl != null ? target.ingestUrl : PLATFORM_INGESTS.get(target.platform.toLowerCase());
+            if (ingestUrl == null) {
+                LOGGER.error("❌ No ingest URL for platform {} - set the rtmp:// or rtmps:// URL from its dashboard", target.platform);
+                continue;
+            }
+            try {
+                pipeline.addOutput(target, ingestUrl);
+            } catch (IllegalArgumentException e) {
+                LOGGER.error("❌ Invalid ingest URL for {} on stream {}: {}", target.platform, session.getSessionId(), e.getMessage());
+            }
+        }
+        if (settings.localHls || localOnly) {
+            LocalStreamServer server = localServer(settings);
+            if (server != null) {
+                pipeline.publishLocal(server);
+            }
+        }
+        if (pipeline.links.isEmpty() && pipeline.hls == null) {
+            pipeline.close();
+            return;
+        }
+        // Exactly one encoder accounts for encoded frames: the packet encoder if there is one
+        for (OutputLink link : pipeline.links) {
+            if (link.output instanceof RtmpOutput) {
+                ((RtmpOutput) link.output).setCountsEncodes(!pipeline.needsPackets());
+                break;
+            }
+        }
+        if (settings.broadcastDelaySeconds > 0 && pipeline.hasFrameOutputs()) {
+            LOGGER.warn("⚠️ Broadcast delay only holds back encoded packets; RTMP outputs of {} go out live", session.getSessionId());
+        }
+
+        StreamPipeline previous = pipelines.put(session.getSessionId(), pipeline);
+        if (previous != null) {
+            previous.close();
+        }
+        for (OutputLink link : pipeline.links) {
+            link.output.start();
+        }
+        LOGGER.info("📡 Streaming {} at {} to {} output(s) (adaptive: {}, renditions: {})", session.getSessionId(),
+            session.getQuality(), pipeline.links.size(), settings.adaptiveBitrate,
+            pipeline.renditionLadder ? settings.renditions : session.getQuality());
+    }
+
+    public void stopStream(LivestreamManager.StreamSession session) {
+        StreamPipeline pipeline = pipelines.remove(session.getSessionId());
+        if (pipeline != null) {
+            pipeline.close();
+        }
+    }
+
+    /**
+     * Hand one processed ARGB frame to every RTMP output of the session, which copy it. Never blocks.
+     */
+    public void submitFrame(LivestreamManager.StreamSession session, int[] frame, int frameWidth, int frameHeight, long timestampMillis) {
+        StreamPipeline pipeline = pipelines.get(session.getSessionId());
+        if (pipeline == null) return;
+        for (OutputLink link : pipeline.links) {
+            if (link.output instanceof RtmpOutput) {
+                ((RtmpOutput) link.output).offerFrame(frame, frameWidth, frameHeight, timestampMillis);
+            }
+        }
+    }
+
+    /**
+     * Hand one mixed audio block (interleaved stereo) to every RTMP output of the session. Never blocks.
+     */
+    public void submitAudio(LivestreamManager.StreamSession session, float[] interleaved, int frames, long timestampMillis) {
+        StreamPipeline pipeline = pipelines.get(session.getSessionId());
+        if (pipeline == null) return;
+        for (OutputLink link : pipeline.links) {
+            if (link.output instanceof RtmpOutput) {
+                ((RtmpOutput) link.output).offerAudio(interleaved, frames, timestampMillis);
+            }
+        }
+    }
+
+    /**
+     * Whether the session has outputs fed encoded packets (local HLS or MPEG-TS over TCP), which
+     * need a {@link StreamEncoder}
+     */
+    public boolean needsPackets(LivestreamManager.StreamSession session) {
+        StreamPipeline pipeline = pipelines.get(session.getSessionId());
+        return pipeline != null && pipeline.needsPackets();
+    }
+
+    /**
+     * Container the session's packets must be in: "ts", or "m4s" for CMAF local HLS
+     */
+    public String getPacketContainer(LivestreamManager.StreamSession session) {
+        StreamPipeline pipeline = pipelines.get(session.getSessionId());
+        return pipeline != null ? pipeline.container : "ts";
+    }
+
+    /**
+     * Hand one encoded packet to every packet output of the session. Never blocks.
+     * @return false if no output accepted the packet
+     */
+    public boolean submitPacket(LivestreamManager.StreamSession session, EncodedPacket packet) {
+        StreamPipeline pipeline = pipelines.get(session.getSessionId());
+        return pipeline != null && pipeline.submit(packet);
+    }
+
+    /**
+     * Ask the encoder for a keyframe on a rendition (null = the session's only rendition)
+     */
+    public void requestKeyframe(LivestreamManager.StreamSession session, LivestreamManager.StreamQuality rendition) {
+        encoderControl.requestKeyframe(session, rendition);
+    }
+
+    public void setInitSegment(LivestreamManager.StreamSession session, byte[] initSegment) {
+        StreamPipeline pipeline = pipelines.get(session.getSessionId());
+        if (pipeline != null && pipeline.hls != null) {
+            pipeline.hls.setInitSegment(initSegment);
+        }
+    }
+
+    // The first stream asking for local HLS decides the port
+    private synchronized LocalStreamServer localServer(LivestreamManager.StreamSettings settings) {
+        if (localServer == null) {
+            try {
+                localServer = new LocalStreamServer(settings.localHlsPort, settings.localHlsMaxViewers);
+                localServer.start();
+            } catch (IOException e) {
+                LOGGER.error("❌ Could not start local stream server on port {}", settings.localHlsPort, e);
+                return null;
+            }
+        }
+        return localServer;
+    }
+
+    public void updateQuality(LivestreamManager.StreamSession session, LivestreamManager.StreamQuality quality) {
+        StreamPipeline pipeline = pipelines.get(session.getSessionId());
+        if (pipeline == null) return;
+
+        long now = System.currentTimeMillis();
+        OutputLink primary = null;
+        for (OutputLink link : pipeline.links) {
+            if (link.output instanceof RtmpOutput) {
+                // RTMP outputs encode for themselves
+                link.controller.setCeiling(quality, now);
+                link.selected = link.controller.getCurrent();
+                ((RtmpOutput) link.output).setQuality(link.selected);
+            } else if (pipeline.renditionLadder) {
+                // Cap every packet output at the chosen rendition
+                link.controller.setCeiling(quality, now);
+                link.select(link.controller.getCurrent(), session, this);
+            } else if (primary == null) {
+                primary = link;
+                primary.controller.setCeiling(quality, now);
+            }
+        }
+        if (!pipeline.renditionLadder) {
+            encoderControl.onQualityChanged(session, quality);
+        }
+    }
+
+    public void tick() {
+        long nowMillis = System.currentTimeMillis();
+        long nowNanos = System.nanoTime();
+        for (StreamPipeline pipeline : pipelines.values()) {
+            pipeline.tick(nowMillis, nowNanos);
+        }
+    }
+
+    public StreamStats getStats(LivestreamManager.StreamSession session) {
+        StreamPipeline pipeline = pipelines.get(session.getSessionId());
+        return pipeline != null ? pipeline.snapshot() : null;
+    }
+
+    public void shutdown() {
+        for (StreamPipeline pipeline : pipelines.values()) {
+            pipeline.close();
+        }
+        pipelines.clear();
+        synchronized (this) {
+            if (localServer != null) {
+                localServer.close();
+                localServer = null;
+            }
+        }
+    }
+
+    // One session's outputs
+    private static class StreamPipeline {
+        final LivestreamManager.StreamSession session;
+        final StreamEngine engine;
+        final boolean renditionLadder;
+        final List<OutputLink> links = new ArrayList<>();
+        final ResourceScope resources;
+        String container = "ts";
+        HlsSegmenter hls;
+        LocalStreamServer server;
+        LivestreamManager.StreamQuality localRendition;
+
+        StreamPipeline(LivestreamManager.StreamSession session, StreamEngine engine) {
+            this.session = session;
+            this.engine = engine;
+            this.renditionLadder = session.getSettings().renditions.size() > 1;
+            this.resources = new ResourceScope("stream " + session.getSessionId());
+        }
+
+        // The URL's scheme picks the transport: RTMP(S) for platforms, tcp:// for a local MPEG-TS receiver
+        void addOutput(LivestreamManager.OutputTarget target, String ingestUrl) {
+            LivestreamManager.StreamSettings settings = session.getSettings();
+            String scheme = URI.create(ingestUrl).getScheme();
+            boolean rtmp = "rtmp".equalsIgnoreCase(scheme) || "rtmps".equalsIgnoreCase(scheme);
+            String name = session.getSessionId() + "-" + target.platform;
+
+            if (rtmp) {
+                AdaptiveBitrateController controller = new AdaptiveBitrateController(settings.minQuality, session.getQuality(), settings.bitrateControl);
+                OutputLink link = new OutputLink(target, controller);
+                link.output = resources.track("output " + target.platform, new RtmpOutput(name, ingestUrl, target.streamKey,
+                    controller.getCurrent(), settings, session.getTelemetry()));
+                links.add(link);
+                return;
+            }
+
+            StreamOutput.Endpoint endpoint = StreamOutput.Endpoint.parse(ingestUrl);
+            AdaptiveBitrateController controller = renditionLadder
+                ? new AdaptiveBitrateController(settings.renditions, settings.bitrateControl)
+                : new AdaptiveBitrateController(settings.minQuality, session.getQuality(), settings.bitrateControl);
+
+            // Budget the queue against the highest quality this output may carry
+            long maxQueuedBytes = controller.getCeiling().bitRate / 8L * settings.maxSendQueueSeconds;
+            OutputLink link = new OutputLink(target, controller);
+            link.output = resources.track("output " + target.platform, new StreamOutput(name, endpoint, maxQueuedBytes,
+                () -> engine.encoderControl.requestKeyframe(session, renditionLadder ? link.selected : null),
+                session.getTelemetry()));
+            links.add(link);
+        }
+
+        boolean hasFrameOutputs() {
+            for (OutputLink link : links) {
+                if (link.output instanceof RtmpOutput) return true;
+            }
+            return false;
+        }
+
+        boolean hasTcpOutputs() {
+            for (OutputLink link : links) {
+                if (link.output instanceof StreamOutput) return true;
+            }
+            return false;
+        }
+
+        boolean needsPackets() {
+            return hls != null || hasTcpOutputs();
+        }
+
+        void publishLocal(LocalStreamServer server) {
+            this.server = server;
+            LivestreamManager.StreamSettings settings = session.getSettings();
+            container = settings.localHlsContainer;
+            if (!"ts".equals(container) && hasTcpOutputs()) {
+                // TCP receivers get the same chunks and can't use fMP4 fragments without the init segment
+                LOGGER.warn("⚠️ Stream {} has MPEG-TS outputs, so local HLS uses ts instead of {}", session.getSessionId(), container);
+                container = "ts";
+            }
+            HlsSegmenter segmenter = new HlsSegmenter(container, settings.hlsSegmentMillis,
+                settings.hlsPartMillis, settings.hlsWindowSegments, settings.hlsMaxWindowBytes);
+            // LAN viewers get the best rendition
+            localRendition = renditionLadder ? new AdaptiveBitrateController(settings.renditions, null).getCeiling() : null;
+            String name = session.getSessionId();
+            server.publish(name, segmenter);
+            resources.track("local hls", () -> {
+                segmenter.end();
+                server.unpublish(name);
+            });
+            hls = segmenter;
+        }
+
+        // Each rendition is its own transport stream, so audio muxed into it carries the rendition too
+        boolean submit(EncodedPacket packet) {
+            boolean accepted = false;
+            if (hls != null && (!renditionLadder || packet.getRendition() == null || packet.getRendition() == localRendition)) {
+                hls.accept(packet);
+                accepted = true;
+            }
+            for (OutputLink link : links) {
+                if (!(link.output instanceof StreamOutput)) continue;
+                if (renditionLadder && packet.getRendition() != null && !(packet.isVideo() ? link.wants(packet) : packet.getRendition() == link.selected)) {
+                    continue;
+                }
+                accepted |= ((StreamOutput) link.output).enqueue(packet);
+            }
+            return accepted;
+        }
+
+        void tick(long nowMillis, long nowNanos) {
+            boolean primarySeen = false;
+            for (OutputLink link : links) {
+                double throughput = link.output.sampleThroughput(nowNanos);
+                boolean rtmp = link.output instanceof RtmpOutput;
+                boolean secondary = !rtmp && !renditionLadder && primarySeen;
+                primarySeen |= !rtmp;
+                if (!session.getSettings().adaptiveBitrate || !link.output.isConnected()) {
+                    // Nothing is draining while disconnected; hold position until the reconnect settles
+                    continue;
+                }
+                if (secondary) {
+                    // Only the first packet output steers a single-rendition encoder
+                    continue;
+                }
+
+                LivestreamManager.StreamQuality current = rtmp || renditionLadder ? link.selected : session.getQuality();
+                // Backlog as the time it will take to drain at the rate the link is actually delivering
+                double drainRate = Math.max(MIN_DRAIN_BPS, throughput > 0 ? throughput : current.bitRate);
+                long backlogMillis = (long) (link.output.getQueuedBytes() * 8000.0 / drainRate);
+
+                LivestreamManager.StreamQuality next = link.controller.update(backlogMillis, throughput, nowMillis);
+                if (next == null || next == current) continue;
+
+                LOGGER.info("📊 Stream {} {} {} {} -> {} (backlog {} ms, throughput {} kbps)", session.getSessionId(),
+                    link.target.platform, next.bitRate < current.bitRate ? "stepping down" : "stepping up",
+                    current, next, backlogMillis, (long) (throughput / 1000));
+                if (rtmp) {
+                    link.selected = next;
+                    ((RtmpOutput) link.output).setQuality(next);
+                } else if (renditionLadder) {
+                    link.select(next, session, engine);
+                } else {
+                    session.setQuality(next);
+                    engine.encoderControl.onQualityChanged(session, next);
+                }
+            }
+        }
+
+        StreamStats snapshot() {
+            List<OutputStats> outputs = new ArrayList<>();
+            for (OutputLink link : links) {
+                IngestOutput output = link.output;
+                boolean ownQuality = renditionLadder || output instanceof RtmpOutput;
+                outputs.add(new OutputStats(link.target.platform, ownQuality ? link.selected : session.getQuality(),
+                    output.isConnected(), output.getQueuedBytes(), output.getThroughputBps(), output.getBytesSent(),
+                    output.getPacketsSent(), output.getPacketsDropped(), output.getReconnects()));
+            }
+            int localViewers = server != null ? server.getViewerCount(session.getSessionId()) : 0;
+            return new StreamStats(session.getQuality(), outputs, localViewers);
+        }
+
+        void close() {
+            resources.closeAll();
+        }
+    }
+
+    // One destination of a session and the rendition it is forwarding
+    private static class OutputLink {
+        final LivestreamManager.OutputTarget target;
+        final AdaptiveBitrateController controller;
+        IngestOutput output;
+        volatile LivestreamManager.StreamQuality selected;
+        volatile LivestreamManager.StreamQuality pending;
+
+        OutputLink(LivestreamManager.OutputTarget target, AdaptiveBitrateController controller) {
+            this.target = target;
+            this.controller = controller;
+            this.selected = controller.getCurrent();
+        }
+
+        // Encoder thread: forward the selected rendition, switching at the pending one's next keyframe
+        boolean wants(EncodedPacket packet) {
+            LivestreamManager.StreamQuality switchTo = pending;
+            if (switchTo != null && packet.getRendition() == switchTo && packet.isKeyframe()) {
+                selected = switchTo;
+                pending = null;
+                return true;
+            }
+            return packet.getRendition() == selected;
+        }
+
+        void select(LivestreamManager.StreamQuality rendition, LivestreamManager.StreamSession session, StreamEngine engine) {
+            if (rendition == selected) {
+                pending = null;
+                return;
+            }
+            pending = rendition;
+            engine.encoderControl.requestKeyframe(session, rendition);
+        }
+    }
+
+    // Output Stats Class
+    public static class OutputStats {
+        public final String platform;
+        public final LivestreamManager.StreamQuality rendition;
+        public final boolean connected;
+        public final long queuedBytes;
+        public final double throughputBps;
+        public final long bytesSent;
+        public final long packetsSent;
+        public final long packetsDropped;
+        public final long reconnects;
+
+        public OutputStats(String platform, LivestreamManager.StreamQuality rendition, boolean connected, long queuedBytes,
+                           double throughputBps, long bytesSent, long packetsSent, long packetsDropped, long reconnects) {
+            this.platform = platform;
+            this.rendition = rendition;
+            this.connected = connected;
+            this.queuedBytes = queuedBytes;
+            this.throughputBps = throughputBps;
+            this.bytesSent = bytesSent;
+            this.packetsSent = packetsSent;
+            this.packetsDropped = packetsDropped;
+            this.reconnects = reconnects;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s %s %s queued=%dKB %.0fkbps sent=%d dropped=%d reconnects=%d", platform, rendition,
+                connected ? "connected" : "reconnecting", queuedBytes / 1024, throughputBps / 1000, packetsSent,
+                packetsDropped, reconnects);
+        }
+    }
+
+    // Stream Stats Class
+    public static class StreamStats {
+        public final LivestreamManager.StreamQuality quality;
+        public final List<OutputStats> outputs;
+        public final int localViewers;
+
+        public StreamStats(LivestreamManager.StreamQuality quality, List<OutputStats> outputs, int localViewers) {
+            this.quality = quality;
+            this.outputs = outputs;
+            this.localViewers = localViewers;
+        }
+
+        public long getTotalBytesSent() {
+            return outputs.stream().mapToLong(output -> output.bytesSent).sum();
+        }
+
+        public long getTotalReconnects() {
+            return outputs.stream().mapToLong(output -> output.reconnects).sum();
+        }
+
+        public long getTotalQueuedBytes() {
+            return outputs.stream().mapToLong(output -> output.queuedBytes).sum();
+        }
+
+        @Override
+        public String toString() {
+            return quality + " " + outputs + (localViewers > 0 ? " local viewers=" + localViewers : "");
+        }
+    }
+}
@@ -0,0 +1,395 @@
+package com.wayacreates.livestream;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stream Output
+ * One ingest connection with its own bounded send queue and sender thread. The encoder only ever
+ * enqueues, so a slow or dead connection never blocks it. When the queue backs up, whole GOPs are
+ * dropped from the oldest end (audio is kept) and video resumes on the next keyframe; when the
+ * connection drops, the sender reconnects with exponential backoff and restarts on a keyframe.
+ *
+ * Packet payloads are MPEG-TS chunks from {@link StreamEncoder}, written back to back with no
+ * framing of our own, so anything that listens for MPEG-TS over TCP can take the stream (for
+ * example ffmpeg or VLC with tcp://0.0.0.0:port?listen, or an OBS media source). It is a local
+ * transport; platform ingests (Twitch, YouTube, Kick) are pushed over RTMP by {@link RtmpOutput}.
+ */
+public class StreamOutput implements IngestOutput {
+    private static final Logger LOGGER = LoggerFactory.getLogger("WayaCreates/StreamOutput");
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+    private static final int SEND_BUFFER_BYTES = 256 * 1024;
+    private static final long MIN_BACKOFF_MILLIS = 1000;
+    private static final long MAX_BACKOFF_MILLIS = 30000;
+
+    private final String name;
+    private final Endpoint endpoint;
+    private final long maxQueuedBytes;
+    private final Runnable keyframeRequest;
+    private final StreamTelemetry telemetry;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final ArrayDeque<EncodedPacket> queue = new ArrayDeque<>();
+    private long queuedBytes = 0;
+    private boolean skipToKeyframe = true; // Nothing decodable until the first keyframe
+
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong packetsSent = new AtomicLong();
+    private final AtomicLong packetsDropped = new AtomicLong();
+    private final AtomicLong reconnects = new AtomicLong();
+
+    private Thread sender;
+    private volatile Socket socket;
+    private OutputStream out;
+    private volatile boolean connected = false;
+    private volatile boolean closed = false;
+
+    // Throughput sampling (engine tick thread only)
+    private long lastSampleNanos = 0;
+    private long lastSampleBytes = 0;
+    private double throughputBps = 0;
+
+    public StreamOutput(String name, Endpoint endpoint, long maxQueuedBytes, Runnable keyframeRequest) {
+        this(name, endpoint, maxQueuedBytes, keyframeRequest, null);
+    }
+
+    /**
+     * @param telemetry session telemetry that dropped video frames are reported to, or null
+     */
+    public StreamOutput(String name, Endpoint endpoint, long maxQueuedBytes, Runnable keyframeRequest, StreamTelemetry telemetry) {
+        this.name = name;
+        this.endpoint = endpoint;
+        this.maxQueuedBytes = Math.max(64 * 1024, maxQueuedBytes);
+        this.keyframeRequest = keyframeRequest != null ? keyframeRequest : () -> {};
+        this.telemetry = telemetry;
+    }
+
+    @Override
+    public void start() {
+        sender = new Thread(this::senderLoop, "WayaCreates-Stream-" + name);
+        sender.setDaemon(true);
+        sender.start();
+        LOGGER.info("📡 Stream output {} -> {}", name, endpoint);
+    }
+
+    /**
+     * Queue a packet for sending. Never blocks.
+     * @return false if the packet was dropped
+     */
+    public boolean enqueue(EncodedPacket packet) {
+        lock.lock();
+        try {
+            if (closed) return false;
+
+            if (queuedBytes + packet.getSize() > maxQueuedBytes) {
+                dropOldestGop();
+                if (queuedBytes + packet.getSize() > maxQueuedBytes && packet.isDroppable()) {
+                    // Still no room: lose the rest of this GOP rather than send a broken one
+                    countDropped(packet, StreamTelemetry.DropCause.CONGESTION);
+                    startSkipping();
+                    return false;
+                }
+                // Audio is only trimmed once the queue is far past its budget (a long disconnect)
+                while (queuedBytes + packet.getSize() > maxQueuedBytes * 2 && dropOldestAudio()) {
+                    packetsDropped.incrementAndGet();
+                }
+            }
+
+            if (packet.isVideo() && skipToKeyframe) {
+                if (!packet.isKeyframe()) {
+                    countDropped(packet, StreamTelemetry.DropCause.KEYFRAME_WAIT);
+                    return false;
+                }
+                skipToKeyframe = false;
+            }
+
+            queue.add(packet);
+            queuedBytes += packet.getSize();
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Measure send throughput since the last sample, smoothed over roughly two seconds of samples
+     */
+    @Override
+    public double sampleThroughput(long nowNanos) {
+        long sent = bytesSent.get();
+        if (lastSampleNanos != 0) {
+            long elapsed = nowNanos - lastSampleNanos;
+            if (elapsed < 100_000_000L) return throughputBps;
+            double instant = (sent - lastSampleBytes) * 8.0 * 1_000_000_000L / elapsed;
+            double alpha = Math.min(1.0, elapsed / 2_000_000_000.0);
+            throughputBps += (instant - throughputBps) * alpha;
+        }
+        lastSampleNanos = nowNanos;
+        lastSampleBytes = sent;
+        return throughputBps;
+    }
+
+    /**
+     * Stop sending and drop anything still queued
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) return;
+            closed = true;
+            queue.clear();
+            queuedBytes = 0;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        disconnect();
+        if (sender != null) {
+            sender.interrupt();
+            try {
+                sender.join(TimeUnit.SECONDS.toMillis(2));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        LOGGER.info("📡 Stream output {} closed ({} sent, {} dropped, {} reconnects)", name,
+            packetsSent.get(), packetsDropped.get(), reconnects.get());
+    }
+
+    // Caller holds the lock. Removes video from the head up to the next keyframe; audio stays.
+    private void dropOldestGop() {
+        boolean seenVideo = false;
+        Iterator<EncodedPacket> iterator = queue.iterator();
+        while (iterator.hasNext()) {
+            EncodedPacket queued = iterator.next();
+            if (!queued.isVideo()) continue;
+            if (queued.isKeyframe() && seenVideo) {
+                return;
+            }
+            seenVideo = true;
+            iterator.remove();
+            queuedBytes -= queued.getSize();
+            countDropped(queued, StreamTelemetry.DropCause.CONGESTION);
+        }
+        // No later keyframe was queued, so everything from here on is undecodable
+        if (seenVideo) {
+            startSkipping();
+        }
+    }
+
+    // Caller holds the lock
+    private boolean dropOldestAudio() {
+        Iterator<EncodedPacket> iterator = queue.iterator();
+        while (iterator.hasNext()) {
+            EncodedPacket queued = iterator.next();
+            if (!queued.isVideo()) {
+                iterator.remove();
+                queuedBytes -= queued.getSize();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void countDropped(EncodedPacket packet, StreamTelemetry.DropCause cause) {
+        packetsDropped.incrementAndGet();
+        if (telemetry != null && packet.isVideo()) {
+            // A queue that overflows while nothing drains is an outage, not congestion
+            telemetry.recordDrop(cause == StreamTelemetry.DropCause.CONGESTION && !connected ? StreamTelemetry.DropCause.RECONNECT : cause);
+        }
+    }
+
+    // Caller holds the lock
+    private void startSkipping() {
+        if (!skipToKeyframe) {
+            skipToKeyframe = true;
+            keyframeRequest.run();
+        }
+    }
+
+    private void senderLoop() {
+        long backoff = MIN_BACKOFF_MILLIS;
+        while (!closed) {
+            if (!connected) {
+                if (!connect()) {
+                    sleepQuietly(backoff);
+                    backoff = Math.min(MAX_BACKOFF_MILLIS, backoff * 2);
+                    continue;
+                }
+                backoff = MIN_BACKOFF_MILLIS;
+            }
+
+            EncodedPacket packet;
+            boolean more;
+            lock.lock();
+            try {
+                while (queue.isEmpty() && !closed) {
+                    notEmpty.await(500, TimeUnit.MILLISECONDS);
+                }
+                if (closed) return;
+                packet = queue.poll();
+                queuedBytes -= packet.getSize();
+                more = !queue.isEmpty();
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                writePacket(packet);
+                // Batch writes while the queue has more, flush once it runs dry
+                if (!more) out.flush();
+                bytesSent.addAndGet(packet.getSize());
+                packetsSent.incrementAndGet();
+            } catch (IOException e) {
+                if (closed) return;
+                LOGGER.warn("⚠️ Stream output {} lost connection: {}", name, e.getMessage());
+                disconnect();
+                reconnects.incrementAndGet();
+                lock.lock();
+                try {
+                    // The receiver saw a cut mid-GOP, so resume on a fresh keyframe
+                    purgeUntilKeyframe();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    // Caller holds the lock
+    private void purgeUntilKeyframe() {
+        Iterator<EncodedPacket> iterator = queue.iterator();
+        while (iterator.hasNext()) {
+            EncodedPacket queued = iterator.next();
+            if (!queued.isVideo()) continue;
+            if (queued.isKeyframe()) return;
+            iterator.remove();
+            queuedBytes -= queued.getSize();
+            countDropped(queued, StreamTelemetry.DropCause.RECONNECT);
+        }
+        startSkipping();
+    }
+
+    private boolean connect() {
+        try {
+            Socket raw = new Socket();
+            raw.setTcpNoDelay(true);
+            // Keep the kernel buffer modest so congestion shows up in our queue, where it can be measured
+            raw.setSendBufferSize(SEND_BUFFER_BYTES);
+            raw.connect(new InetSocketAddress(endpoint.host, endpoint.port), CONNECT_TIMEOUT_MILLIS);
+            out = new BufferedOutputStream(raw.getOutputStream(), 64 * 1024);
+            socket = raw;
+            connected = true;
+            LOGGER.info("✅ Stream output {} connected to {}", name, endpoint);
+            return true;
+        } catch (IOException e) {
+            LOGGER.warn("⚠️ Stream output {} could not connect to {}: {}", name, endpoint, e.getMessage());
+            return false;
+        }
+    }
+
+    private void disconnect() {
+        connected = false;
+        Socket current = socket;
+        socket = null;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException ignored) {
+                // Already broken
+            }
+        }
+    }
+
+    // Payloads are already a transport stream; the receiver resyncs on TS packet boundaries after gaps
+    private void writePacket(EncodedPacket packet) throws IOException {
+        out.write(packet.getData());
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public long getQueuedBytes() {
+        lock.lock();
+        try {
+            return queuedBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Getters
+    public String getName() { return name; }
+    public Endpoint getEndpoint() { return endpoint; }
+    @Override public boolean isConnected() { return connected; }
+    @Override public double getThroughputBps() { return throughputBps; }
+    @Override public long getBytesSent() { return bytesSent.get(); }
+    @Override public long getPacketsSent() { return packetsSent.get(); }
+    @Override public long getPacketsDropped() { return packetsDropped.get(); }
+    @Override public long getReconnects() { return reconnects.get(); }
+
+    // Receiver Endpoint Class
+    public static class Endpoint {
+        public final String host;
+        public final int port;
+
+        public Endpoint(String host, int port) {
+            this.host = host;
+            this.port = port;
+        }
+
+        /**
+         * Parse a receiver URL such as tcp://127.0.0.1:9000
+         */
+        public static Endpoint parse(String url) {
+            URI uri = URI.create(url);
+            String scheme = uri.getScheme() != null ? uri.getScheme().toLowerCase() : "";
+            switch (scheme) {
+                case "tcp":
+                    break;
+                case "rtmp":
+                case "rtmps":
+                    throw new IllegalArgumentException("RTMP ingests are pushed by RtmpOutput, not as raw MPEG-TS");
+                default:
+                    throw new IllegalArgumentException("Unsupported ingest protocol: " + scheme);
+            }
+            if (uri.getHost() == null) {
+                throw new IllegalArgumentException("Ingest URL has no host: " + url);
+            }
+            if (uri.getPort() <= 0) {
+                throw new IllegalArgumentException("Ingest URL needs a port: " + url);
+            }
+            return new Endpoint(uri.getHost(), uri.getPort());
+        }
+
+        @Override
+        public String toString() {
+            return host + ":" + port;
+        }
+    }
+}
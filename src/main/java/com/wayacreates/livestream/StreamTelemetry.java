@@ -0,0 +1,355 @@
+package com.wayacreates.livestream;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.wayacreates.utils.LatencyHistogram;
+
+/**
+ * Stream Telemetry
+ * Per-session health counters written from the capture, encoder and sender threads. Hot-path calls
+ * are only striped adds and atomic sets, so recording never contends with the frame path. Once a
+ * second the tick folds the counters into a {@link Sample} kept in a fixed-size ring, which gives a
+ * rolling time series of the last few minutes without growing.
+ *
+ * Skipped frames never reached the encoder; dropped frames were encoded but discarded before
+ * sending. Drops are counted per output, so a frame lost on two simulcast outputs counts twice.
+ *
+ * Encoders that time themselves call recordEncode and setEncoderQueueDepth. Otherwise the stream
+ * path calls recordEncoded when a frame's packet arrives: packets come back in capture order, so
+ * each is matched to its frame's capture time, and the queue depth is the frames still unmatched.
+ */
+public class StreamTelemetry {
+    public static final long SAMPLE_INTERVAL_MILLIS = 1000;
+
+    /**
+     * Why a captured frame was never encoded
+     */
+    public enum SkipCause {
+        ENCODER_BUSY("encoder busy"),
+        CAPTURE_LATE("capture late");
+
+        public final String label;
+
+        SkipCause(String label) {
+            this.label = label;
+        }
+    }
+
+    /**
+     * Why an encoded frame was not sent
+     */
+    public enum DropCause {
+        CONGESTION("congestion"),
+        KEYFRAME_WAIT("waiting for keyframe"),
+        RECONNECT("reconnect");
+
+        public final String label;
+
+        DropCause(String label) {
+            this.label = label;
+        }
+    }
+
+    private final LongAdder framesCaptured = new LongAdder();
+    private final LongAdder framesEncoded = new LongAdder();
+    private final LongAdder[] skipped = adders(SkipCause.values().length);
+    private final LongAdder[] dropped = adders(DropCause.values().length);
+    private final LatencyHistogram encodeLatency = new LatencyHistogram();
+    private final LatencyHistogram intervalLatency = new LatencyHistogram();
+    private final AtomicInteger encoderQueueDepth = new AtomicInteger();
+    private final AtomicInteger intervalMaxQueueDepth = new AtomicInteger();
+
+    // Capture times of recent frames by capture sequence, for matching encoded packets to them
+    private static final int CAPTURE_RING = 256;
+    private final AtomicLongArray captureNanos = new AtomicLongArray(CAPTURE_RING);
+    private final AtomicLong captureSequence = new AtomicLong();
+    private final AtomicLong encodeSequence = new AtomicLong();
+    private final long frameIntervalNanos;
+    private long lastCaptureNanos = 0; // Capture thread only
+
+    // Sampling state (tick thread only)
+    private final Sample[] history;
+    private int historyStart = 0;
+    private int historySize = 0;
+    private long lastSampleMillis = 0;
+    private long lastCaptured;
+    private long lastEncoded;
+    private long lastSkipped;
+    private long lastDropped;
+    private long lastBytesSent;
+    private volatile Sample latest;
+
+    /**
+     * @param frameRate nominal capture rate; captures arriving later than 1.5 frames count missed slots as skipped
+     */
+    public StreamTelemetry(int historySeconds, int frameRate) {
+        this.history = new Sample[Math.max(10, historySeconds)];
+        this.frameIntervalNanos = 1_000_000_000L / Math.max(1, frameRate);
+    }
+
+    private static LongAdder[] adders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    // Hot path
+
+    /**
+     * A frame entered the stream path (capture thread)
+     */
+    public void recordCapture() {
+        long now = System.nanoTime();
+        if (lastCaptureNanos != 0) {
+            long gap = now - lastCaptureNanos;
+            if (gap * 2 > frameIntervalNanos * 3) {
+                skipped[SkipCause.CAPTURE_LATE.ordinal()].add((gap + frameIntervalNanos / 2) / frameIntervalNanos - 1);
+            }
+        }
+        lastCaptureNanos = now;
+
+        long sequence = captureSequence.getAndIncrement();
+        captureNanos.set((int) (sequence & (CAPTURE_RING - 1)), now);
+        framesCaptured.increment();
+        setEncoderQueueDepth((int) Math.max(0, sequence + 1 - encodeSequence.get()));
+    }
+
+    public void recordSkip(SkipCause cause) {
+        skipped[cause.ordinal()].increment();
+        if (cause == SkipCause.ENCODER_BUSY) {
+            // The encoder dropped a captured frame; the next packet belongs to the frame after it
+            encodeSequence.incrementAndGet();
+        }
+    }
+
+    /**
+     * A captured frame came back from the encoder (one call per frame, not per rendition); its
+     * latency is measured from recordCapture
+     */
+    public void recordEncoded() {
+        long now = System.nanoTime();
+        long captured = captureSequence.get();
+        long sequence = encodeSequence.getAndIncrement();
+        if (sequence < captured && captured - sequence <= CAPTURE_RING) {
+            recordEncode(now - captureNanos.get((int) (sequence & (CAPTURE_RING - 1))));
+        } else {
+            // Frames fed to the encoder around recordCapture, or too far behind to match
+            framesEncoded.increment();
+            if (sequence >= captured) {
+                encodeSequence.set(captured);
+            }
+        }
+        setEncoderQueueDepth((int) Math.max(0, captured - encodeSequence.get()));
+    }
+
+    public void recordEncode(long latencyNanos) {
+        framesEncoded.increment();
+        encodeLatency.record(latencyNanos);
+        intervalLatency.record(latencyNanos);
+    }
+
+    public void recordDrop(DropCause cause) {
+        dropped[cause.ordinal()].increment();
+    }
+
+    /**
+     * Frames waiting in the encoder, as reported by the encoder whenever it changes
+     */
+    public void setEncoderQueueDepth(int depth) {
+        encoderQueueDepth.set(depth);
+        intervalMaxQueueDepth.accumulateAndGet(depth, Math::max);
+    }
+
+    // Sampling
+
+    public boolean isSampleDue(long nowMillis) {
+        return nowMillis - lastSampleMillis >= SAMPLE_INTERVAL_MILLIS;
+    }
+
+    /**
+     * Close the current interval and append it to the history
+     * @param bytesSent total bytes sent across all outputs so far
+     * @param reconnects total reconnects across all outputs so far
+     * @param queuedBytes bytes currently waiting in send queues
+     */
+    public void sample(long nowMillis, long bytesSent, long reconnects, long queuedBytes) {
+        long captured = framesCaptured.sum();
+        long encoded = framesEncoded.sum();
+        long skippedTotal = sum(skipped);
+        long droppedTotal = sum(dropped);
+
+        if (lastSampleMillis != 0) {
+            double seconds = Math.max(1, nowMillis - lastSampleMillis) / 1000.0;
+            Sample sample = new Sample(nowMillis,
+                (captured - lastCaptured) / seconds,
+                (encoded - lastEncoded) / seconds,
+                intervalLatency.getAverageMillis(),
+                intervalLatency.percentileMillis(95),
+                intervalMaxQueueDepth.getAndSet(encoderQueueDepth.get()),
+                skippedTotal - lastSkipped,
+                droppedTotal - lastDropped,
+                Math.max(0, bytesSent - lastBytesSent) * 8 / seconds,
+                queuedBytes,
+                reconnects);
+            intervalLatency.reset();
+            append(sample);
+            latest = sample;
+        }
+
+        lastSampleMillis = nowMillis;
+        lastCaptured = captured;
+        lastEncoded = encoded;
+        lastSkipped = skippedTotal;
+        lastDropped = droppedTotal;
+        lastBytesSent = bytesSent;
+    }
+
+    private synchronized void append(Sample sample) {
+        int index = (historyStart + historySize) % history.length;
+        history[index] = sample;
+        if (historySize < history.length) {
+            historySize++;
+        } else {
+            historyStart = (historyStart + 1) % history.length;
+        }
+    }
+
+    /**
+     * The newest samples, oldest first
+     */
+    public synchronized List<Sample> getHistory(int maxSamples) {
+        int count = Math.min(maxSamples, historySize);
+        List<Sample> samples = new ArrayList<>(count);
+        for (int i = historySize - count; i < historySize; i++) {
+            samples.add(history[(historyStart + i) % history.length]);
+        }
+        return samples;
+    }
+
+    public Snapshot snapshot() {
+        Map<SkipCause, Long> skippedByCause = new EnumMap<>(SkipCause.class);
+        for (SkipCause cause : SkipCause.values()) {
+            skippedByCause.put(cause, skipped[cause.ordinal()].sum());
+        }
+        Map<DropCause, Long> droppedByCause = new EnumMap<>(DropCause.class);
+        for (DropCause cause : DropCause.values()) {
+            droppedByCause.put(cause, dropped[cause.ordinal()].sum());
+        }
+        return new Snapshot(framesCaptured.sum(), framesEncoded.sum(), encodeLatency.getAverageMillis(),
+            encodeLatency.percentileMillis(95), encodeLatency.getMaxMillis(), encoderQueueDepth.get(),
+            skippedByCause, droppedByCause, latest);
+    }
+
+    private static long sum(LongAdder[] adders) {
+        long total = 0;
+        for (LongAdder adder : adders) {
+            total += adder.sum();
+        }
+        return total;
+    }
+
+    // One second of stream health
+    public static class Sample {
+        public final long timeMillis;
+        public final double captureFps;
+        public final double encodeFps;
+        public final double encodeAverageMillis;
+        public final double encodeP95Millis;
+        public final int maxEncoderQueueDepth;
+        public final long framesSkipped;
+        public final long framesDropped;
+        public final double outputBps;
+        public final long queuedBytes;
+        public final long reconnects;
+
+        public Sample(long timeMillis, double captureFps, double encodeFps, double encodeAverageMillis, double encodeP95Millis,
+                      int maxEncoderQueueDepth, long framesSkipped, long framesDropped, double outputBps, long queuedBytes,
+                      long reconnects) {
+            this.timeMillis = timeMillis;
+            this.captureFps = captureFps;
+            this.encodeFps = encodeFps;
+            this.encodeAverageMillis = encodeAverageMillis;
+            this.encodeP95Millis = encodeP95Millis;
+            this.maxEncoderQueueDepth = maxEncoderQueueDepth;
+            this.framesSkipped = framesSkipped;
+            this.framesDropped = framesDropped;
+            this.outputBps = outputBps;
+            this.queuedBytes = queuedBytes;
+            this.reconnects = reconnects;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "capture %.1f fps, encode %.1f fps (avg %.1f ms, p95 %.1f ms), queue %d, skipped %d, dropped %d, %.0f kbps, %d KB queued",
+                captureFps, encodeFps, encodeAverageMillis, encodeP95Millis, maxEncoderQueueDepth, framesSkipped,
+                framesDropped, outputBps / 1000, queuedBytes / 1024);
+        }
+    }
+
+    // Totals since the stream started, plus the latest sample
+    public static class Snapshot {
+        public final long framesCaptured;
+        public final long framesEncoded;
+        public final double encodeAverageMillis;
+        public final double encodeP95Millis;
+        public final double encodeMaxMillis;
+        public final int encoderQueueDepth;
+        public final Map<SkipCause, Long> skipped;
+        public final Map<DropCause, Long> dropped;
+        public final Sample latest; // null until the first full interval
+
+        public Snapshot(long framesCaptured, long framesEncoded, double encodeAverageMillis, double encodeP95Millis,
+                        double encodeMaxMillis, int encoderQueueDepth, Map<SkipCause, Long> skipped,
+                        Map<DropCause, Long> dropped, Sample latest) {
+            this.framesCaptured = framesCaptured;
+            this.framesEncoded = framesEncoded;
+            this.encodeAverageMillis = encodeAverageMillis;
+            this.encodeP95Millis = encodeP95Millis;
+            this.encodeMaxMillis = encodeMaxMillis;
+            this.encoderQueueDepth = encoderQueueDepth;
+            this.skipped = skipped;
+            this.dropped = dropped;
+            this.latest = latest;
+        }
+
+        public long getTotalSkipped() {
+            return skipped.values().stream().mapToLong(Long::longValue).sum();
+        }
+
+        public long getTotalDropped() {
+            return dropped.values().stream().mapToLong(Long::longValue).sum();
+        }
+
+        public double getCaptureFps() { return latest != null ? latest.captureFps : 0; }
+        public double getOutputBps() { return latest != null ? latest.outputBps : 0; }
+        public long getReconnects() { return latest != null ? latest.reconnects : 0; }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%d captured, %d encoded (avg %.1f ms, p95 %.1f ms, max %.1f ms), encoder queue %d, skipped %s, dropped %s",
+                framesCaptured, framesEncoded, encodeAverageMillis, encodeP95Millis, encodeMaxMillis, encoderQueueDepth,
+                labels(skipped), labels(dropped));
+        }
+
+        private static String labels(Map<? extends Enum<?>, Long> counts) {
+            StringBuilder text = new StringBuilder("{");
+            for (Map.Entry<? extends Enum<?>, Long> entry : counts.entrySet()) {
+                if (text.length() > 1) text.append(", ");
+                Enum<?> cause = entry.getKey();
+                text.append(cause instanceof SkipCause ? ((SkipCause) cause).label : ((DropCause) cause).label)
+                    .append('=').append(entry.getValue());
+            }
+            return text.append('}').toString();
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.wayacreates.mixin;
+
+import com.wayacreates.WayaCreatesEngine;
+import com.wayacreates.recording.RecordingManager;
+import net.minecraft.particle.ParticleEffect;
+import net.minecraft.registry.Registries;
+import net.minecraft.server.world.ServerWorld;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+
+/**
+ * Feeds server-spawned particles into game-state replays
+ */
+@Mixin(ServerWorld.class)
+public abstract class ServerWorldMixin {
+    @Inject(method = "spawnParticles(Lnet/minecraft/particle/ParticleEffect;DDDIDDDD)I", at = @At("HEAD"))
+    private void wayacreates$recordParticles(ParticleEffect particle, double x, double y, double z, int count,
+                                             double deltaX, double deltaY, double deltaZ, double speed,
+                                             CallbackInfoReturnable<Integer> cir) {
+        RecordingManager recordingManager = WayaCreatesEngine.getRecordingManager();
+        if (recordingManager != null) {
+            String particleId = String.valueOf(Registries.PARTICLE_TYPE.getId(particle.getType()));
+            recordingManager.onParticleSpawned((ServerWorld) (Object) this, particleId, x, y, z, count);
+        }
+    }
+}
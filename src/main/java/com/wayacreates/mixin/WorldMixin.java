@@ -0,0 +1,30 @@
+package com.wayacreates.mixin;
+
+import com.wayacreates.WayaCreatesEngine;
+import com.wayacreates.recording.RecordingManager;
+import net.minecraft.block.BlockState;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+
+/**
+ * Feeds every server-side block change into game-state replays: placing, breaking, explosions,
+ * pistons, fluids, commands and world edits all end up in setBlockState
+ */
+@Mixin(World.class)
+public abstract class WorldMixin {
+    @Inject(method = "setBlockState(Lnet/minecraft/util/math/BlockPos;Lnet/minecraft/block/BlockState;II)Z", at = @At("RETURN"))
+    private void wayacreates$recordBlockChange(BlockPos pos, BlockState state, int flags, int maxUpdateDepth,
+                                               CallbackInfoReturnable<Boolean> cir) {
+        if (!cir.getReturnValueZ() || !((Object) this instanceof ServerWorld world)) return;
+        // Replays are written from the server thread only; off-thread edits (world gen) aren't gameplay
+        RecordingManager recordingManager = WayaCreatesEngine.getRecordingManager();
+        if (recordingManager != null && world.getServer().isOnThread()) {
+            recordingManager.onBlockChanged(world, pos, state);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.wayacreates.mixin.client;
+
+import com.wayacreates.client.StreamCapture;
+import net.minecraft.client.render.GameRenderer;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+/**
+ * Hands every finished frame to the livestream capture, after the world, HUD and screens are drawn
+ */
+@Mixin(GameRenderer.class)
+public abstract class GameRendererMixin {
+    @Inject(method = "render", at = @At("TAIL"))
+    private void wayacreates$captureStreamFrame(float tickDelta, long startTime, boolean tick, CallbackInfo ci) {
+        StreamCapture.onFrameRendered();
+    }
+}
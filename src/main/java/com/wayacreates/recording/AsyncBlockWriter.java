@@ -0,0 +1,288 @@
+package com.wayacreates.recording;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.wayacreates.utils.LatencyHistogram;
+
+/**
+ * Asynchronous Block File Writer
+ * Write-behind output for recording and export files. Bytes are gathered into large, page-aligned
+ * direct buffers; full blocks are written with positional FileChannel writes on a shared I/O pool
+ * while the producer fills the next buffer, so capture and encode threads never wait on the disk
+ * unless every buffer is still in flight.
+ */
+public class AsyncBlockWriter extends OutputStream {
+    private static final Logger LOGGER = LoggerFactory.getLogger("WayaCreates/BlockWriter");
+
+    public static final int ALIGNMENT = 4096;
+
+    private static final AtomicInteger IO_THREAD_COUNT = new AtomicInteger();
+    private static final ExecutorService IO_POOL = Executors.newFixedThreadPool(2, runnable -> {
+        Thread thread = new Thread(runnable, "WayaCreates-IO-" + IO_THREAD_COUNT.getAndIncrement());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * When written data is forced to stable storage
+     */
+    public enum FsyncPolicy {
+        NEVER,       // Leave it to the OS
+        ON_CLOSE,    // One fsync when the file is finished
+        INTERVAL,    // At most every fsyncIntervalMillis, plus on close
+        EVERY_BLOCK  // After every block (slowest, smallest loss window)
+    }
+
+    private final File file;
+    private final FileChannel channel;
+    private final Options options;
+    private final int blockSize;
+    private final BlockingQueue<ByteBuffer> freeBuffers;
+    private ByteBuffer current;
+    private long blockPosition = 0; // File offset of the current buffer's first byte
+    private boolean closed = false;
+    private volatile IOException failure;
+    // One party for the producer plus one per block still being written
+    private final Phaser inFlight = new Phaser(1);
+
+    private final LatencyHistogram writeLatency = new LatencyHistogram();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private final AtomicLong blocksWritten = new AtomicLong();
+    private final AtomicLong lastSyncNanos = new AtomicLong(System.nanoTime());
+    private final AtomicLong stallNanos = new AtomicLong();
+
+    public AsyncBlockWriter(File file) throws IOException {
+        this(file, new Options());
+    }
+
+    public AsyncBlockWriter(File file, Options options) throws IOException {
+        this.file = file;
+        this.options = options;
+        // Round the block up to the alignment so every full block lands on a page boundary
+        this.blockSize = Math.max(ALIGNMENT, (options.blockSize + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT);
+        int bufferCount = Math.max(2, options.bufferCount);
+
+        this.freeBuffers = new ArrayBlockingQueue<>(bufferCount);
+        for (int i = 0; i < bufferCount; i++) {
+            freeBuffers.add(ByteBuffer.allocateDirect(blockSize + ALIGNMENT).alignedSlice(ALIGNMENT));
+        }
+        this.current = freeBuffers.poll();
+        this.channel = FileChannel.open(file.toPath(),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+        current.put((byte) b);
+        if (!current.hasRemaining()) {
+            submitCurrent();
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        while (len > 0) {
+            int chunk = Math.min(len, current.remaining());
+            current.put(b, off, chunk);
+            off += chunk;
+            len -= chunk;
+            if (!current.hasRemaining()) {
+                submitCurrent();
+            }
+        }
+    }
+
+    /**
+     * Hand the partially filled block to the I/O pool. The next block is shortened so that
+     * later full blocks are page-aligned again.
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        if (current.position() > 0) {
+            submitCurrent();
+        }
+    }
+
+    /**
+     * Write out the last block, wait for all in-flight writes and sync according to the policy
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        try {
+            if (failure == null && current.position() > 0) {
+                submitCurrent();
+            }
+        } finally {
+            closed = true;
+            try {
+                awaitInFlight();
+                if (failure == null && options.fsyncPolicy != FsyncPolicy.NEVER) {
+                    channel.force(true);
+                }
+            } finally {
+                channel.close();
+            }
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+        LOGGER.debug("💾 {} closed: {} bytes in {} blocks, write {}", file.getName(),
+            bytesWritten.get(), blocksWritten.get(), writeLatency);
+    }
+
+    private void submitCurrent() throws IOException {
+        ByteBuffer block = current;
+        block.flip();
+        long position = blockPosition;
+        blockPosition += block.remaining();
+        inFlight.register();
+        IO_POOL.execute(() -> writeBlock(block, position));
+
+        long start = System.nanoTime();
+        try {
+            // Back-pressure: only blocks when every buffer is still waiting on the disk
+            current = freeBuffers.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for a free write buffer: " + file.getPath());
+        }
+        stallNanos.addAndGet(System.nanoTime() - start);
+
+        current.clear();
+        int misalignment = (int) (blockPosition % ALIGNMENT);
+        current.limit(blockSize - misalignment);
+        ensureHealthy();
+    }
+
+    private void writeBlock(ByteBuffer block, long position) {
+        long start = System.nanoTime();
+        try {
+            if (failure != null) return;
+            int length = block.remaining();
+            long offset = position;
+            while (block.hasRemaining()) {
+                offset += channel.write(block, offset);
+            }
+
+            if (options.fsyncPolicy == FsyncPolicy.EVERY_BLOCK) {
+                channel.force(false);
+            } else if (options.fsyncPolicy == FsyncPolicy.INTERVAL) {
+                long last = lastSyncNanos.get();
+                long now = System.nanoTime();
+                if (now - last >= TimeUnit.MILLISECONDS.toNanos(options.fsyncIntervalMillis)
+                    && lastSyncNanos.compareAndSet(last, now)) {
+                    channel.force(false);
+                }
+            }
+
+            writeLatency.record(System.nanoTime() - start);
+            bytesWritten.addAndGet(length);
+            blocksWritten.incrementAndGet();
+        } catch (IOException e) {
+            if (failure == null) {
+                failure = e;
+                LOGGER.error("❌ Block write failed: {} @ {}", file.getPath(), position, e);
+            }
+        } finally {
+            block.clear();
+            freeBuffers.add(block);
+            inFlight.arriveAndDeregister();
+        }
+    }
+
+    // The phase advances once the producer and every in-flight block have arrived
+    private void awaitInFlight() throws IOException {
+        try {
+            inFlight.awaitAdvanceInterruptibly(inFlight.arrive(), 30, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            throw new IOException("Timed out waiting for pending writes: " + file.getPath());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for pending writes: " + file.getPath());
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Writer closed: " + file.getPath());
+        }
+        ensureHealthy();
+    }
+
+    private void ensureHealthy() throws IOException {
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    public WriteStats getStats() {
+        return new WriteStats(file.getName(), bytesWritten.get(), blocksWritten.get(),
+            stallNanos.get() / 1_000_000.0, writeLatency.percentileMillis(50), writeLatency.percentileMillis(99),
+            writeLatency.getMaxMillis());
+    }
+
+    // Getters
+    public File getFile() { return file; }
+    public int getBlockSize() { return blockSize; }
+    public long getBytesWritten() { return bytesWritten.get(); }
+    public LatencyHistogram getWriteLatency() { return writeLatency; }
+
+    // Writer Options Class
+    public static class Options {
+        public int blockSize = 1 << 20; // 1 MiB, rounded up to ALIGNMENT
+        public int bufferCount = 2;     // Double buffering
+        public FsyncPolicy fsyncPolicy = FsyncPolicy.ON_CLOSE;
+        public long fsyncIntervalMillis = 5000;
+    }
+
+    // Write Stats Class
+    public static class WriteStats {
+        public final String fileName;
+        public final long bytesWritten;
+        public final long blocksWritten;
+        public final double producerStallMillis;
+        public final double p50WriteMillis;
+        public final double p99WriteMillis;
+        public final double maxWriteMillis;
+
+        public WriteStats(String fileName, long bytesWritten, long blocksWritten, double producerStallMillis,
+                          double p50WriteMillis, double p99WriteMillis, double maxWriteMillis) {
+            this.fileName = fileName;
+            this.bytesWritten = bytesWritten;
+            this.blocksWritten = blocksWritten;
+            this.producerStallMillis = producerStallMillis;
+            this.p50WriteMillis = p50WriteMillis;
+            this.p99WriteMillis = p99WriteMillis;
+            this.maxWriteMillis = maxWriteMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d bytes in %d blocks, write p50=%.2fms p99=%.2fms max=%.2fms, stalled %.1fms",
+                fileName, bytesWritten, blocksWritten, p50WriteMillis, p99WriteMillis, maxWriteMillis, producerStallMillis);
+        }
+    }
+}
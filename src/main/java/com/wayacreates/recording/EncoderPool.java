@@ -0,0 +1,397 @@
+package com.wayacreates.recording;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Shared Encoder Pool
+ * A bounded set of encoder workers shared by every recording session. Each session gets its own
+ * bounded queue; workers pick the next job by weighted fair queuing on measured encode time, so
+ * total CPU stays bounded as sessions are added and a heavy session can't starve light ones.
+ * Jobs of one session never run concurrently, so per-session encoder state stays sequential.
+ */
+public class EncoderPool {
+    private static final Logger LOGGER = LoggerFactory.getLogger("WayaCreates/EncoderPool");
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 8;
+    // How long shutdown waits for closing sessions to flush and close their outputs
+    public static final long DEFAULT_DRAIN_MILLIS = 10_000;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition workAvailable = lock.newCondition();
+    private final Condition sessionClosed = lock.newCondition();
+    private final Map<String, SessionQueue> sessions = new ConcurrentHashMap<>();
+    private final List<Thread> workers = new ArrayList<>();
+    private boolean draining = false; // Guarded by the lock
+    private volatile boolean shutdown = false;
+
+    /**
+     * A unit of encoding work (one frame, one audio block...)
+     */
+    @FunctionalInterface
+    public interface EncodeTask {
+        void encode() throws Exception;
+    }
+
+    public EncoderPool() {
+        this(Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+    }
+
+    public EncoderPool(int workerCount) {
+        for (int i = 0; i < workerCount; i++) {
+            Thread worker = new Thread(this::workerLoop, "WayaCreates-Encoder-" + i);
+            worker.setDaemon(true);
+            worker.setPriority(Thread.NORM_PRIORITY - 1);
+            workers.add(worker);
+            worker.start();
+        }
+        LOGGER.info("⚙️ Encoder pool started with {} workers", workerCount);
+    }
+
+    /**
+     * Register a session with a scheduling weight (higher weight = larger CPU share under contention)
+     * @return false if a session with this id is already registered (it is left untouched) or the
+     *         pool is shutting down
+     */
+    public boolean registerSession(String sessionId, int weight, int queueCapacity) {
+        lock.lock();
+        try {
+            if (draining || shutdown) return false;
+            if (sessions.containsKey(sessionId)) {
+                LOGGER.warn("⚠️ Encoder pool session already registered: {}", sessionId);
+                return false;
+            }
+            // Start new sessions at the current minimum virtual time so they can't burst past everyone
+            SessionQueue queue = new SessionQueue(sessionId, Math.max(1, weight), Math.max(1, queueCapacity), minimumVirtualTime());
+            sessions.put(sessionId, queue);
+        } finally {
+            lock.unlock();
+        }
+        LOGGER.debug("⚙️ Encoder pool session registered: {} (weight {})", sessionId, weight);
+        return true;
+    }
+
+    /**
+     * Queue a job for a session
+     * @return false if the session is unknown, closing, or its queue is full (the job is dropped)
+     */
+    public boolean submit(String sessionId, EncodeTask task) {
+        lock.lock();
+        try {
+            SessionQueue queue = sessions.get(sessionId);
+            if (queue == null || queue.closing || draining || shutdown) {
+                return false;
+            }
+            if (queue.jobs.size() >= queue.capacity) {
+                queue.dropped++;
+                return false;
+            }
+            if (queue.jobs.isEmpty() && !queue.running) {
+                // An idle session doesn't bank credit while it had nothing to encode
+                queue.virtualTime = Math.max(queue.virtualTime, minimumVirtualTime());
+            }
+            queue.jobs.add(new Job(task, System.nanoTime()));
+            workAvailable.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stop accepting jobs for a session and remove it once everything queued has run, followed by
+     * finalTask (e.g. closing the session's output), which is queued even if the queue is full.
+     * Never blocks.
+     * @param finalTask run last, on a pool worker, or null
+     * @return completes with the session's final stats, or null if the session is unknown
+     */
+    public CompletableFuture<SessionStats> closeSession(String sessionId, EncodeTask finalTask) {
+        CompletableFuture<SessionStats> done;
+        SessionStats stats = null;
+        lock.lock();
+        try {
+            SessionQueue queue = sessions.get(sessionId);
+            if (queue == null) return CompletableFuture.completedFuture(null);
+            if (queue.closed != null) return queue.closed;
+            queue.closing = true;
+            queue.closed = done = new CompletableFuture<>();
+            if (finalTask != null) {
+                queue.jobs.add(new Job(finalTask, System.nanoTime()));
+                workAvailable.signal();
+            }
+            if (queue.jobs.isEmpty() && !queue.running) {
+                sessions.remove(sessionId);
+                stats = queue.snapshot();
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (stats != null) {
+            done.complete(stats);
+        }
+        return done;
+    }
+
+    public SessionStats getSessionStats(String sessionId) {
+        lock.lock();
+        try {
+            SessionQueue queue = sessions.get(sessionId);
+            return queue != null ? queue.snapshot() : null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public List<SessionStats> getAllSessionStats() {
+        lock.lock();
+        try {
+            List<SessionStats> stats = new ArrayList<>();
+            for (SessionQueue queue : sessions.values()) {
+                stats.add(queue.snapshot());
+            }
+            return stats;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getWorkerCount() {
+        return workers.size();
+    }
+
+    public void shutdown() {
+        shutdown(DEFAULT_DRAIN_MILLIS);
+    }
+
+    /**
+     * Stop taking jobs, let sessions that are already closing run their queued jobs and final task
+     * (flushing and closing their outputs) for up to drainMillis, then stop the workers. Jobs of
+     * sessions that were never closed are dropped.
+     */
+    public void shutdown(long drainMillis) {
+        List<SessionQueue> abandoned = new ArrayList<>();
+        lock.lock();
+        try {
+            draining = true;
+            for (SessionQueue queue : sessions.values()) {
+                if (queue.closed == null) {
+                    queue.dropped += queue.jobs.size();
+                    queue.jobs.clear();
+                }
+            }
+            long remaining = TimeUnit.MILLISECONDS.toNanos(drainMillis);
+            while (hasClosingSessions() && remaining > 0) {
+                remaining = sessionClosed.awaitNanos(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+
+        lock.lock();
+        try {
+            shutdown = true;
+            workAvailable.signalAll();
+            for (SessionQueue queue : sessions.values()) {
+                if (queue.closed != null) {
+                    queue.dropped += queue.jobs.size();
+                    queue.jobs.clear();
+                    abandoned.add(queue);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (SessionQueue queue : abandoned) {
+            LOGGER.warn("⚠️ Encoder session {} was still closing at shutdown", queue.sessionId);
+            queue.closed.complete(queue.snapshot());
+        }
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+        LOGGER.info("⚙️ Encoder pool shut down");
+    }
+
+    private void workerLoop() {
+        while (!shutdown) {
+            SessionQueue queue;
+            Job job;
+
+            lock.lock();
+            try {
+                while ((queue = pickNextSession()) == null) {
+                    if (shutdown) return;
+                    workAvailable.await();
+                }
+                job = queue.jobs.poll();
+                queue.running = true;
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            long start = System.nanoTime();
+            try {
+                job.task.encode();
+            } catch (Exception e) {
+                LOGGER.error("❌ Encode job failed for session: {}", queue.sessionId, e);
+            } finally {
+                // Even an Error must hand the session back, or its queue never runs again
+                finishJob(queue, job, start);
+            }
+        }
+    }
+
+    private void finishJob(SessionQueue queue, Job job, long start) {
+        long end = System.nanoTime();
+        SessionStats closedStats = null;
+        lock.lock();
+        try {
+            queue.running = false;
+            queue.recordCompletion(end - start, end - job.submittedAt);
+            // Charge the session for the CPU it used, scaled by its weight
+            queue.virtualTime += (end - start) / queue.weight;
+            if (!queue.jobs.isEmpty()) {
+                workAvailable.signal();
+            } else if (queue.closed != null && sessions.remove(queue.sessionId, queue)) {
+                closedStats = queue.snapshot();
+                sessionClosed.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+        // Completed outside the lock: callbacks may submit to the pool again
+        if (closedStats != null) {
+            queue.closed.complete(closedStats);
+        }
+    }
+
+    // Caller holds the lock. While draining, only closing sessions still run.
+    private SessionQueue pickNextSession() {
+        SessionQueue best = null;
+        for (SessionQueue queue : sessions.values()) {
+            if (queue.running || queue.jobs.isEmpty()) continue;
+            if (draining && queue.closed == null) continue;
+            if (best == null || queue.virtualTime < best.virtualTime) {
+                best = queue;
+            }
+        }
+        return best;
+    }
+
+    // Caller holds the lock
+    private boolean hasClosingSessions() {
+        for (SessionQueue queue : sessions.values()) {
+            if (queue.closed != null) return true;
+        }
+        return false;
+    }
+
+    // Caller holds the lock - minimum virtual time among sessions that currently have work
+    private long minimumVirtualTime() {
+        long min = Long.MAX_VALUE;
+        for (SessionQueue queue : sessions.values()) {
+            if (queue.running || !queue.jobs.isEmpty()) {
+                min = Math.min(min, queue.virtualTime);
+            }
+        }
+        return min == Long.MAX_VALUE ? 0 : min;
+    }
+
+    private static class Job {
+        final EncodeTask task;
+        final long submittedAt;
+
+        Job(EncodeTask task, long submittedAt) {
+            this.task = task;
+            this.submittedAt = submittedAt;
+        }
+    }
+
+    // Per-session queue and latency accounting (guarded by the pool lock)
+    private static class SessionQueue {
+        final String sessionId;
+        final int weight;
+        final int capacity;
+        final ArrayDeque<Job> jobs = new ArrayDeque<>();
+        long virtualTime;
+        boolean running = false;
+        boolean closing = false;
+        CompletableFuture<SessionStats> closed; // Set once closeSession is called
+
+        long completed = 0;
+        long dropped = 0;
+        long totalEncodeNanos = 0;
+        long totalLatencyNanos = 0;
+        long maxLatencyNanos = 0;
+        double smoothedLatencyNanos = 0;
+
+        SessionQueue(String sessionId, int weight, int capacity, long virtualTime) {
+            this.sessionId = sessionId;
+            this.weight = weight;
+            this.capacity = capacity;
+            this.virtualTime = virtualTime;
+        }
+
+        void recordCompletion(long encodeNanos, long latencyNanos) {
+            completed++;
+            totalEncodeNanos += encodeNanos;
+            totalLatencyNanos += latencyNanos;
+            maxLatencyNanos = Math.max(maxLatencyNanos, latencyNanos);
+            smoothedLatencyNanos = completed == 1 ? latencyNanos : smoothedLatencyNanos * 0.9 + latencyNanos * 0.1;
+        }
+
+        SessionStats snapshot() {
+            return new SessionStats(sessionId, weight, jobs.size(), completed, dropped,
+                completed == 0 ? 0 : totalEncodeNanos / 1_000_000.0 / completed,
+                completed == 0 ? 0 : totalLatencyNanos / 1_000_000.0 / completed,
+                smoothedLatencyNanos / 1_000_000.0, maxLatencyNanos / 1_000_000.0);
+        }
+    }
+
+    // Session Stats Class
+    public static class SessionStats {
+        public final String sessionId;
+        public final int weight;
+        public final int queuedJobs;
+        public final long completedJobs;
+        public final long droppedJobs;
+        public final double averageEncodeMillis;
+        public final double averageLatencyMillis;
+        public final double recentLatencyMillis;
+        public final double maxLatencyMillis;
+
+        public SessionStats(String sessionId, int weight, int queuedJobs, long completedJobs, long droppedJobs,
+                            double averageEncodeMillis, double averageLatencyMillis,
+                            double recentLatencyMillis, double maxLatencyMillis) {
+            this.sessionId = sessionId;
+            this.weight = weight;
+            this.queuedJobs = queuedJobs;
+            this.completedJobs = completedJobs;
+            this.droppedJobs = droppedJobs;
+            this.averageEncodeMillis = averageEncodeMillis;
+            this.averageLatencyMillis = averageLatencyMillis;
+            this.recentLatencyMillis = recentLatencyMillis;
+            this.maxLatencyMillis = maxLatencyMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s w=%d queued=%d done=%d dropped=%d encode=%.2fms latency avg=%.2fms recent=%.2fms max=%.2fms",
+                sessionId, weight, queuedJobs, completedJobs, droppedJobs, averageEncodeMillis,
+                averageLatencyMillis, recentLatencyMillis, maxLatencyMillis);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.wayacreates.recording;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Replay Interest Grid
+ * Chunk-sized cells mapping each cell to the replay sessions whose capture radius covers it.
+ * A session is only re-registered when its subject crosses into another cell, and then only the
+ * cells entering or leaving its square are touched. Routing a block change or particle to the
+ * interested replays is one map lookup, independent of how many sessions are recording.
+ */
+class InterestGrid {
+    static final int CELL_SHIFT = 4; // 16-block cells, same as chunks
+
+    private final Map<Long, Set<ReplayRecorder.ReplaySession>> cells = new HashMap<>();
+    private final Map<ReplayRecorder.ReplaySession, Area> areas = new HashMap<>();
+    private final Set<ReplayRecorder.ReplaySession> everywhere = new HashSet<>();
+
+    /**
+     * Move a session's area to be centred on a block position. Cheap when the cell didn't change.
+     */
+    synchronized void update(ReplayRecorder.ReplaySession session, double x, double z, double radius) {
+        if (radius <= 0) {
+            // Unbounded capture: interested in every cell of this world
+            removeCells(session);
+            everywhere.add(session);
+            return;
+        }
+        everywhere.remove(session);
+
+        int centerX = (int) Math.floor(x) >> CELL_SHIFT;
+        int centerZ = (int) Math.floor(z) >> CELL_SHIFT;
+        int cellRadius = (int) Math.ceil(radius / (1 << CELL_SHIFT));
+        Area previous = areas.get(session);
+        if (previous != null && previous.centerX == centerX && previous.centerZ == centerZ && previous.radius == cellRadius) {
+            return;
+        }
+
+        Area next = new Area(centerX, centerZ, cellRadius);
+        if (previous != null) {
+            // Leave only the cells that are no longer covered
+            for (int cx = previous.minX(); cx <= previous.maxX(); cx++) {
+                for (int cz = previous.minZ(); cz <= previous.maxZ(); cz++) {
+                    if (!next.contains(cx, cz)) {
+                        removeFromCell(key(cx, cz), session);
+                    }
+                }
+            }
+        }
+        for (int cx = next.minX(); cx <= next.maxX(); cx++) {
+            for (int cz = next.minZ(); cz <= next.maxZ(); cz++) {
+                if (previous == null || !previous.contains(cx, cz)) {
+                    cells.computeIfAbsent(key(cx, cz), k -> new HashSet<>()).add(session);
+                }
+            }
+        }
+        areas.put(session, next);
+    }
+
+    synchronized void remove(ReplayRecorder.ReplaySession session) {
+        everywhere.remove(session);
+        removeCells(session);
+    }
+
+    /**
+     * Sessions interested in the cell containing a block position
+     */
+    synchronized List<ReplayRecorder.ReplaySession> sessionsAt(int blockX, int blockZ) {
+        Set<ReplayRecorder.ReplaySession> local = cells.get(key(blockX >> CELL_SHIFT, blockZ >> CELL_SHIFT));
+        if (local == null && everywhere.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<ReplayRecorder.ReplaySession> result = new ArrayList<>(everywhere);
+        if (local != null) {
+            result.addAll(local);
+        }
+        return result;
+    }
+
+    synchronized boolean isEmpty() {
+        return areas.isEmpty() && everywhere.isEmpty();
+    }
+
+    synchronized int getCellCount() {
+        return cells.size();
+    }
+
+    private void removeCells(ReplayRecorder.ReplaySession session) {
+        Area area = areas.remove(session);
+        if (area == null) return;
+        for (int cx = area.minX(); cx <= area.maxX(); cx++) {
+            for (int cz = area.minZ(); cz <= area.maxZ(); cz++) {
+                removeFromCell(key(cx, cz), session);
+            }
+        }
+    }
+
+    private void removeFromCell(long key, ReplayRecorder.ReplaySession session) {
+        Set<ReplayRecorder.ReplaySession> sessions = cells.get(key);
+        if (sessions != null && sessions.remove(session) && sessions.isEmpty()) {
+            cells.remove(key);
+        }
+    }
+
+    private static long key(int cellX, int cellZ) {
+        return ((long) cellX & 0xFFFFFFFFL) | ((long) cellZ << 32);
+    }
+
+    // Square of cells around a centre cell
+    private static class Area {
+        final int centerX;
+        final int centerZ;
+        final int radius;
+
+        Area(int centerX, int centerZ, int radius) {
+            this.centerX = centerX;
+            this.centerZ = centerZ;
+            this.radius = radius;
+        }
+
+        int minX() { return centerX - radius; }
+        int maxX() { return centerX + radius; }
+        int minZ() { return centerZ - radius; }
+        int maxZ() { return centerZ + radius; }
+
+        boolean contains(int cellX, int cellZ) {
+            return Math.abs(cellX - centerX) <= radius && Math.abs(cellZ - centerZ) <= radius;
+        }
+    }
+}
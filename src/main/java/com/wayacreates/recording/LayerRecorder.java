@@ -0,0 +1,389 @@
+package com.wayacreates.recording;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Per-layer Recorder
+ * Records each render layer (background, characters, effects, overlays) as its own ARGB stream.
+ * Every layer gets its own queue on the shared EncoderPool and a lossless intra-only codec (per-row
+ * left prediction + deflate, alpha kept), so layers encode in parallel within the pool's CPU budget.
+ */
+public class LayerRecorder implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger("WayaCreates/LayerRecorder");
+
+    public static final int MAGIC = 0x57434C59; // "WCLY"
+    public static final int VERSION = 1;
+    public static final String FILE_EXTENSION = ".wclayer";
+
+    // Frames buffered per layer before the capture side starts dropping
+    private static final int DEFAULT_QUEUE_DEPTH = 4;
+
+    private final String sessionId;
+    private final int width;
+    private final int height;
+    private final Map<String, LayerStream> streams = new LinkedHashMap<>();
+    private volatile boolean closed = false;
+    private CompletableFuture<List<LayerStats>> finished;
+
+    public LayerRecorder(String sessionId, List<String> layerNames, int width, int height, File outputDirectory,
+                         EncoderPool pool, int weight, AsyncBlockWriter.Options writerOptions) throws IOException {
+        this(sessionId, layerNames, width, height, outputDirectory, pool, weight, DEFAULT_QUEUE_DEPTH, writerOptions);
+    }
+
+    public LayerRecorder(String sessionId, List<String> layerNames, int width, int height, File outputDirectory,
+                         EncoderPool pool, int weight, int queueDepth, AsyncBlockWriter.Options writerOptions) throws IOException {
+        this.sessionId = sessionId;
+        this.width = width;
+        this.height = height;
+        outputDirectory.mkdirs();
+
+        try {
+            for (String layerName : layerNames) {
+                File file = new File(outputDirectory, sessionId + "_" + layerName + FILE_EXTENSION);
+                streams.put(layerName, new LayerStream(layerName, file, width, height, pool,
+                    sessionId + "/" + layerName, weight, queueDepth, writerOptions));
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+
+        LOGGER.info("🎞️ Layer recording started: {} ({} layers, {}x{})", sessionId, streams.size(), width, height);
+    }
+
+    /**
+     * Submit one ARGB frame for a layer. The pixels are copied, so the caller may reuse its buffer.
+     * @return false if the layer is unknown or its encoder is behind and the frame was dropped
+     */
+    public boolean submitFrame(String layerName, int[] argb) {
+        if (closed) return false;
+        if (argb.length < width * height) {
+            throw new IllegalArgumentException("Frame too small for " + width + "x" + height + " layer: " + argb.length);
+        }
+
+        LayerStream stream = streams.get(layerName);
+        return stream != null && stream.submit(argb);
+    }
+
+    /**
+     * Stop taking frames; queued frames are encoded and every layer file closed on the pool
+     * @return completes with the final per-layer stats once all layer files are closed
+     */
+    public synchronized CompletableFuture<List<LayerStats>> finish() {
+        if (finished != null) return finished;
+        closed = true;
+
+        CompletableFuture<?>[] layers = new CompletableFuture<?>[streams.size()];
+        int i = 0;
+        for (LayerStream stream : streams.values()) {
+            layers[i++] = stream.finish();
+        }
+        finished = CompletableFuture.allOf(layers).thenApply(ignored -> {
+            LOGGER.info("🎞️ Layer recording finished: {}", sessionId);
+            for (LayerStream stream : streams.values()) {
+                LOGGER.info("📊 Layer {}: {} frames, {} dropped, {} bytes, {} ms/frame encode",
+                    stream.name, stream.framesEncoded.get(), stream.framesDropped.get(), stream.bytesWritten.get(),
+                    String.format("%.2f", stream.getAverageEncodeMillis()));
+                LOGGER.info("💾 Layer {} output - {}", stream.name, stream.writer.getStats());
+            }
+            return getStats();
+        });
+        return finished;
+    }
+
+    /**
+     * Same as finish(), without waiting for the files to close
+     */
+    @Override
+    public void close() {
+        finish();
+    }
+
+    public List<LayerStats> getStats() {
+        List<LayerStats> stats = new ArrayList<>();
+        for (LayerStream stream : streams.values()) {
+            stats.add(new LayerStats(stream.name, stream.framesEncoded.get(), stream.framesDropped.get(),
+                stream.bytesWritten.get(), stream.getAverageEncodeMillis(), stream.writer.getStats()));
+        }
+        return stats;
+    }
+
+    // Getters
+    public String getSessionId() { return sessionId; }
+    public int getWidth() { return width; }
+    public int getHeight() { return height; }
+    public List<String> getLayerNames() { return Collections.unmodifiableList(new ArrayList<>(streams.keySet())); }
+    public boolean isClosed() { return closed; }
+
+    /**
+     * Per-row left prediction on each ARGB channel; row starts predict from the pixel above
+     */
+    static void predict(int[] argb, int width, int height, byte[] residual) {
+        int o = 0;
+        for (int y = 0; y < height; y++) {
+            int rowStart = y * width;
+            int prev = y > 0 ? argb[rowStart - width] : 0;
+            for (int x = 0; x < width; x++) {
+                int p = argb[rowStart + x];
+                residual[o++] = (byte) ((p >>> 24) - (prev >>> 24));
+                residual[o++] = (byte) ((p >>> 16) - (prev >>> 16));
+                residual[o++] = (byte) ((p >>> 8) - (prev >>> 8));
+                residual[o++] = (byte) (p - prev);
+                prev = p;
+            }
+        }
+    }
+
+    static void unpredict(byte[] residual, int width, int height, int[] argb) {
+        int o = 0;
+        for (int y = 0; y < height; y++) {
+            int rowStart = y * width;
+            int prev = y > 0 ? argb[rowStart - width] : 0;
+            for (int x = 0; x < width; x++) {
+                int a = ((prev >>> 24) + residual[o++]) & 0xFF;
+                int r = ((prev >>> 16) + residual[o++]) & 0xFF;
+                int g = ((prev >>> 8) + residual[o++]) & 0xFF;
+                int b = (prev + residual[o++]) & 0xFF;
+                prev = (a << 24) | (r << 16) | (g << 8) | b;
+                argb[rowStart + x] = prev;
+            }
+        }
+    }
+
+    // One layer: buffer pool and its own encoder queue on the shared pool. The pool never runs two
+    // jobs of one queue at once, so the deflater and output stream stay sequential.
+    private static class LayerStream {
+        private final String name;
+        private final File file;
+        private final int width;
+        private final int height;
+        private final EncoderPool pool;
+        private final String poolSession;
+        private final BlockingQueue<int[]> freeBuffers;
+        private final AsyncBlockWriter writer;
+        private final DataOutputStream out;
+
+        // Encoder state, only touched by this layer's pool jobs
+        private final byte[] residual;
+        private byte[] compressed;
+        private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        private boolean failed = false;
+
+        private final AtomicLong framesEncoded = new AtomicLong();
+        private final AtomicLong framesDropped = new AtomicLong();
+        private final AtomicLong bytesWritten = new AtomicLong();
+        private final AtomicLong encodeNanos = new AtomicLong();
+
+        LayerStream(String name, File file, int width, int height, EncoderPool pool, String poolSession,
+                    int weight, int queueDepth, AsyncBlockWriter.Options writerOptions) throws IOException {
+            this.name = name;
+            this.file = file;
+            this.width = width;
+            this.height = height;
+            this.pool = pool;
+            this.poolSession = poolSession;
+            this.freeBuffers = new ArrayBlockingQueue<>(queueDepth);
+            for (int i = 0; i < queueDepth; i++) {
+                freeBuffers.add(new int[width * height]);
+            }
+            this.residual = new byte[width * height * 4];
+            this.compressed = new byte[residual.length / 2];
+
+            // Encode jobs only copy into write-behind blocks; disk latency stays on the I/O pool
+            this.writer = new AsyncBlockWriter(file, writerOptions);
+            this.out = new DataOutputStream(new BufferedOutputStream(writer, 64 * 1024));
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeInt(width);
+            out.writeInt(height);
+            out.writeUTF(name);
+
+            if (!pool.registerSession(poolSession, weight, queueDepth)) {
+                out.close();
+                throw new IOException("Encoder pool session unavailable: " + poolSession);
+            }
+        }
+
+        boolean submit(int[] argb) {
+            int[] buffer = freeBuffers.poll();
+            if (buffer == null) {
+                framesDropped.incrementAndGet();
+                return false;
+            }
+            System.arraycopy(argb, 0, buffer, 0, width * height);
+            if (!pool.submit(poolSession, () -> encode(buffer))) {
+                freeBuffers.add(buffer);
+                framesDropped.incrementAndGet();
+                return false;
+            }
+            return true;
+        }
+
+        // Runs after every queued frame; the file is closed by the layer's last pool job
+        CompletableFuture<EncoderPool.SessionStats> finish() {
+            return pool.closeSession(poolSession, this::closeOutput);
+        }
+
+        double getAverageEncodeMillis() {
+            long frames = framesEncoded.get();
+            return frames == 0 ? 0 : encodeNanos.get() / 1_000_000.0 / frames;
+        }
+
+        private void encode(int[] frame) {
+            if (failed) {
+                freeBuffers.add(frame);
+                return;
+            }
+
+            long start = System.nanoTime();
+            predict(frame, width, height, residual);
+            freeBuffers.add(frame);
+
+            // Intra-only: every frame is an independent deflate stream
+            deflater.reset();
+            deflater.setInput(residual);
+            deflater.finish();
+            int length = 0;
+            while (!deflater.finished()) {
+                if (length == compressed.length) {
+                    compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                }
+                length += deflater.deflate(compressed, length, compressed.length - length);
+            }
+
+            try {
+                out.writeInt(length);
+                out.write(compressed, 0, length);
+            } catch (IOException e) {
+                failed = true;
+                LOGGER.error("❌ Layer {} write failed: {}", name, file.getPath(), e);
+                return;
+            }
+            encodeNanos.addAndGet(System.nanoTime() - start);
+            bytesWritten.addAndGet(length + 4);
+            framesEncoded.incrementAndGet();
+        }
+
+        private void closeOutput() {
+            deflater.end();
+            try {
+                out.close();
+            } catch (IOException e) {
+                LOGGER.error("❌ Failed to close layer file: {}", file.getPath(), e);
+            }
+        }
+    }
+
+    // Layer Stats Class
+    public static class LayerStats {
+        public final String layerName;
+        public final long framesEncoded;
+        public final long framesDropped;
+        public final long bytesWritten;
+        public final double averageEncodeMillis;
+        public final AsyncBlockWriter.WriteStats writeStats;
+
+        public LayerStats(String layerName, long framesEncoded, long framesDropped, long bytesWritten,
+                          double averageEncodeMillis, AsyncBlockWriter.WriteStats writeStats) {
+            this.layerName = layerName;
+            this.framesEncoded = framesEncoded;
+            this.framesDropped = framesDropped;
+            this.bytesWritten = bytesWritten;
+            this.averageEncodeMillis = averageEncodeMillis;
+            this.writeStats = writeStats;
+        }
+    }
+
+    // Reader for offline compositing of recorded layers
+    public static class Reader implements AutoCloseable {
+        private final DataInputStream in;
+        private final Inflater inflater = new Inflater();
+        private final int width;
+        private final int height;
+        private final String layerName;
+        private final byte[] residual;
+        private byte[] compressed = new byte[0];
+
+        public Reader(File file) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 20));
+            if (in.readInt() != MAGIC || in.readShort() != VERSION) {
+                close();
+                throw new IOException("Not a WayaCreates layer file: " + file.getPath());
+            }
+            this.width = in.readInt();
+            this.height = in.readInt();
+            this.layerName = in.readUTF();
+            this.residual = new byte[width * height * 4];
+        }
+
+        /**
+         * Decode the next frame into argb
+         * @return false at end of stream
+         */
+        public boolean readFrame(int[] argb) throws IOException {
+            int length;
+            try {
+                length = in.readInt();
+            } catch (EOFException e) {
+                return false;
+            }
+            if (compressed.length < length) {
+                compressed = new byte[length];
+            }
+            in.readFully(compressed, 0, length);
+
+            inflater.reset();
+            inflater.setInput(compressed, 0, length);
+            try {
+                int total = 0;
+                while (total < residual.length) {
+                    int inflated = inflater.inflate(residual, total, residual.length - total);
+                    total += inflated;
+                    if (inflated == 0 && total < residual.length
+                            && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                        // The stream ended, or ran out of input, before a whole frame came out
+                        throw new EOFException("Truncated layer frame: " + total + " of " + residual.length + " bytes");
+                    }
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupt layer frame", e);
+            }
+
+            unpredict(residual, width, height, argb);
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            inflater.end();
+            in.close();
+        }
+
+        public int getWidth() { return width; }
+        public int getHeight() { return height; }
+        public String getLayerName() { return layerName; }
+    }
+}
@@ -1,15 +1,30 @@
 package com.wayacreates.recording;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.wayacreates.utils.LeakDetector;
+import com.wayacreates.utils.ResourceScope;
+import com.wayacreates.video.OverlayCompositor;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import net.minecraft.block.BlockState;
 import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.BlockPos;
 
 /**
  * Recording Manager with Enhanced Features
@@ -22,7 +37,12 @@ public class RecordingManager {
     private PlayerTracker playerTracker;
     private ModIntegrationManager modIntegrationManager;
     private SessionRecorder sessionRecorder;
+    private ReplayRecorder replayRecorder;
+    private EncoderPool encoderPool;
     private final Map<UUID, RecordingSession> activeSessions = new ConcurrentHashMap<>();
+    private final List<ServerWorld> loadedWorlds = new CopyOnWriteArrayList<>();
+    // Stopped sessions whose queued frames and files are still being finalized on the pool
+    private final Set<CompletableFuture<?>> finalizing = ConcurrentHashMap.newKeySet();
     
     // Recording settings
     private RecordingSettings defaultSettings = new RecordingSettings();
@@ -38,7 +58,10 @@ public class RecordingManager {
         // Initialize components
         playerTracker = new PlayerTracker();
         modIntegrationManager = new ModIntegrationManager();
-        sessionRecorder = new SessionRecorder();
+        // One bounded encoder pool shared by every session on the server
+        encoderPool = new EncoderPool();
+        sessionRecorder = new SessionRecorder(encoderPool);
+        replayRecorder = new ReplayRecorder();
         
         // Initialize mod integrations
         modIntegrationManager.initializeIntegrations();
@@ -57,12 +80,43 @@ public class RecordingManager {
         String sessionId = "record_" + System.currentTimeMillis() + "_" + playerId.toString().substring(0, 8);
         RecordingSession session = new RecordingSession(sessionId, playerId, settings);
         
+        // A previous session for this player must be fully torn down before its slot is reused
+        stopRecording(playerId);
+        
         activeSessions.put(playerId, session);
         LOGGER.info("🎥 Started recording session: {} for player: {}", sessionId, playerId);
         
+        // Everything acquired below is owned by the session's resource scope and released in
+        // reverse order on stop: encoder slot first, then layer outputs, then the replay
+        ResourceScope resources = session.getResources();
+        
+        // Game-state replay captures world deltas instead of pixels
+        if (settings.gameStateReplay && replayRecorder != null) {
+            try {
+                session.setReplaySession(replayRecorder.startSession(session));
+                resources.track("replay", () -> replayRecorder.stopSession(session));
+            } catch (IOException e) {
+                LOGGER.error("❌ Failed to start replay for session: {}", sessionId, e);
+            }
+        }
+        
+        // Each render layer goes to its own alpha stream with its own encoder
+        if (settings.recordLayers) {
+            try {
+                LayerRecorder layerRecorder = new LayerRecorder(sessionId, Arrays.asList(settings.layerNames),
+                    settings.resolutionX, settings.resolutionY, new File(settings.outputDirectory),
+                    encoderPool, settings.encoderWeight, settings.outputWriter);
+                session.setLayerRecorder(layerRecorder);
+                resources.track("layer-recorder", () -> trackFinalization(layerRecorder.finish()));
+            } catch (IOException e) {
+                LOGGER.error("❌ Failed to start layer recording for session: {}", sessionId, e);
+            }
+        }
+        
         // Start session recording if recorder exists
         if (sessionRecorder != null) {
             sessionRecorder.startSession(session);
+            resources.track("encoder-session", () -> trackFinalization(sessionRecorder.stopSession(session)));
         }
         
         return session;
@@ -75,15 +129,57 @@ public class RecordingManager {
         RecordingSession session = activeSessions.remove(playerId);
         if (session != null) {
             session.stop();
-            if (sessionRecorder != null) {
-                sessionRecorder.stopSession(session);
-            }
             LOGGER.info("⏹️ Stopped recording session: {}", session.getSessionId());
             return true;
         }
         return false;
     }
     
+    /**
+     * Stop every session and release shared encoders (server stopping)
+     */
+    public void shutdown() {
+        for (UUID playerId : List.copyOf(activeSessions.keySet())) {
+            stopRecording(playerId);
+        }
+        if (replayRecorder != null) {
+            replayRecorder.closeAll();
+        }
+        // Let stopped sessions finish writing before the pool goes away
+        if (!finalizing.isEmpty()) {
+            try {
+                CompletableFuture.allOf(finalizing.toArray(new CompletableFuture<?>[0])).get(30, TimeUnit.SECONDS);
+            } catch (TimeoutException e) {
+                LOGGER.warn("⚠️ {} recordings still finalizing at shutdown", finalizing.size());
+            } catch (ExecutionException e) {
+                LOGGER.error("❌ Recording finalization failed", e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (encoderPool != null) {
+            encoderPool.shutdown();
+        }
+        LOGGER.info("⏹️ Recording Manager shut down ({} resources still open)", LeakDetector.getOpenCount());
+    }
+    
+    private void trackFinalization(CompletableFuture<?> future) {
+        finalizing.add(future);
+        future.whenComplete((result, error) -> {
+            finalizing.remove(future);
+            if (error != null) {
+                LOGGER.error("❌ Recording finalization failed", error);
+            }
+        });
+    }
+    
+    /**
+     * Shared encoder pool, also used by offline renders
+     */
+    public EncoderPool getEncoderPool() {
+        return encoderPool;
+    }
+    
     /**
      * Toggle mod overlay recording
      */
@@ -191,6 +287,23 @@ public class RecordingManager {
         }
     }
     
+    /**
+     * Blend the session's custom overlays into a captured ARGB frame
+     * Overlays are rasterized once and only their bounding rectangles are touched
+     */
+    public void compositeOverlays(UUID playerId, int[] frame, int frameWidth, int frameHeight) {
+        RecordingSession session = activeSessions.get(playerId);
+        if (session == null || !session.getSettings().enableCustomOverlays) {
+            return;
+        }
+        
+        OverlayCompositor compositor = session.getOverlayCompositor();
+        for (CustomOverlay overlay : session.getCustomOverlays()) {
+            compositor.composite(overlay.getName(), overlay.getContent(), overlay.getX(), overlay.getY(),
+                frame, frameWidth, frameHeight);
+        }
+    }
+    
     /**
      * Get recording status
      */
@@ -204,13 +317,99 @@ public class RecordingManager {
                 session.getFrameCount(),
                 session.getFileSize(),
                 session.getEnabledOverlays(),
-                session.getCustomOverlays()
+                session.getCustomOverlays(),
+                encoderPool != null ? encoderPool.getSessionStats(session.getSessionId()) : null
             );
         }
         return null;
     }
     
+    /**
+     * Queue encoding work for a player's session on the shared encoder pool
+     * @return false if the session is unknown or its encoder queue is full
+     */
+    public boolean submitEncodeTask(UUID playerId, EncoderPool.EncodeTask task) {
+        RecordingSession session = activeSessions.get(playerId);
+        if (session == null || encoderPool == null) {
+            return false;
+        }
+        return encoderPool.submit(session.getSessionId(), task);
+    }
+    
+    /**
+     * Per-session encoder latency and queue statistics for every active recording
+     */
+    public List<EncoderPool.SessionStats> getEncoderStats() {
+        return encoderPool != null ? encoderPool.getAllSessionStats() : List.of();
+    }
+    
+    /**
+     * Disk write latency and throughput for every output file of a player's recording
+     */
+    public List<AsyncBlockWriter.WriteStats> getOutputWriteStats(UUID playerId) {
+        RecordingSession session = activeSessions.get(playerId);
+        if (session == null) {
+            return List.of();
+        }
+        
+        List<AsyncBlockWriter.WriteStats> stats = new ArrayList<>();
+        if (session.getReplaySession() != null) {
+            stats.add(session.getReplaySession().getWriteStats());
+        }
+        if (session.getLayerRecorder() != null) {
+            for (LayerRecorder.LayerStats layer : session.getLayerRecorder().getStats()) {
+                stats.add(layer.writeStats);
+            }
+        }
+        return stats;
+    }
+    
+    /**
+     * Submit a captured ARGB frame for one render layer of a player's recording
+     */
+    public boolean submitLayerFrame(UUID playerId, String layerName, int[] argb) {
+        RecordingSession session = activeSessions.get(playerId);
+        if (session == null || session.getLayerRecorder() == null) {
+            return false;
+        }
+        return session.getLayerRecorder().submitFrame(layerName, argb);
+    }
+    
+    /**
+     * Record a block change into every game-state replay in this world
+     */
+    public void onBlockChanged(ServerWorld world, BlockPos pos, BlockState state) {
+        if (replayRecorder != null) {
+            replayRecorder.recordBlockChange(world, pos, state);
+        }
+    }
+    
+    /**
+     * Record a particle spawn into every game-state replay in this world
+     */
+    public void onParticleSpawned(ServerWorld world, String particleId, double x, double y, double z, int count) {
+        if (replayRecorder != null) {
+            replayRecorder.recordParticle(world, particleId, x, y, z, count);
+        }
+    }
+    
+    /**
+     * Record a chat message into every game-state replay
+     */
+    public void onChatMessage(UUID senderId, String message) {
+        if (replayRecorder != null) {
+            replayRecorder.recordChat(senderId, message);
+        }
+    }
+    
     public void tick() {
+        // Capture world deltas for game-state replays
+        if (replayRecorder != null) {
+            for (ServerWorld world : loadedWorlds) {
+                replayRecorder.captureTick(world);
+            }
+        }
+        
         // Update active sessions
         activeSessions.values().forEach(RecordingSession::tick);
         
@@ -228,6 +427,7 @@ public class RecordingManager {
     
     public void onWorldLoad(ServerWorld world) {
         LOGGER.info("🌍 Recording Manager ready for world: {}", world.getRegistryKey().getValue());
+        loadedWorlds.add(world);
         
         // Initialize player tracking for new world if tracker exists
         if (playerTracker != null) {
@@ -242,6 +442,10 @@ public class RecordingManager {
     
     public void onWorldUnload(ServerWorld world) {
         LOGGER.info("🌍 Recording Manager unloaded for world: {}", world.getRegistryKey().getValue());
+        loadedWorlds.remove(world);
+        if (replayRecorder != null) {
+            replayRecorder.onWorldUnload(world);
+        }
         
         // Cleanup player tracking if tracker exists
         if (playerTracker != null) {
@@ -254,6 +458,13 @@ public class RecordingManager {
         }
     }
     
+    // Session lifecycle: RECORDING -> STOPPING (resources being released) -> STOPPED
+    public enum SessionState {
+        RECORDING,
+        STOPPING,
+        STOPPED
+    }
+    
     // Recording Settings Class
     public static class RecordingSettings {
         public int resolutionX = 1920;
@@ -262,6 +473,7 @@ public class RecordingManager {
         public int bitRate = 8000000; // 8 Mbps
         public boolean recordAudio = true;
         public int audioBitRate = 320000; // 320 kbps
+        public int encoderWeight = 1; // Share of the shared encoder pool under contention
         public boolean recordPlayerTags = true;
         public boolean recordParticles = true;
         public boolean recordVoiceChat = false;
@@ -269,14 +481,19 @@ public class RecordingManager {
         public boolean recordBaritone = false;
         public boolean recordModOverlays = true;
         public boolean enableCustomOverlays = true;
+        public boolean gameStateReplay = false; // Record world deltas instead of pixels
+        public double replayInterestRadius = 128.0; // Blocks around the subject captured by replays; 0 = whole world
+        public boolean recordLayers = false; // Separate lossless ARGB stream per layer
+        public String[] layerNames = {"background", "characters", "effects", "overlays"};
         public String outputFormat = "MP4";
         public String outputDirectory = "recordings";
+        public AsyncBlockWriter.Options outputWriter = new AsyncBlockWriter.Options(); // Block size, buffers, fsync policy
         
         @Override
         public String toString() {
-            return String.format("%dx%d@%dfps %s Tags:%s Particles:%s Voice:%s Mocap:%s Baritone:%s", 
+            return String.format("%dx%d@%dfps %s Tags:%s Particles:%s Voice:%s Mocap:%s Baritone:%s Replay:%s", 
                 resolutionX, resolutionY, frameRate, outputFormat, recordPlayerTags, 
-                recordParticles, recordVoiceChat, recordMotionCapture, recordBaritone);
+                recordParticles, recordVoiceChat, recordMotionCapture, recordBaritone, gameStateReplay);
         }
     }
     
@@ -286,11 +503,15 @@ public class RecordingManager {
         private final UUID playerId;
         private final RecordingSettings settings;
         private final long startTime;
-        private boolean isRecording = false;
+        private final ResourceScope resources;
+        private volatile SessionState state = SessionState.RECORDING;
         private int frameCount = 0;
         private long fileSize = 0;
         private final Map<String, Boolean> modOverlays = new ConcurrentHashMap<>();
-        private final List<CustomOverlay> customOverlays = new ArrayList<>();
+        private final List<CustomOverlay> customOverlays = new CopyOnWriteArrayList<>();
+        private final OverlayCompositor overlayCompositor = new OverlayCompositor();
+        private ReplayRecorder.ReplaySession replaySession;
+        private LayerRecorder layerRecorder;
         
         // Recording states
         private boolean playerTagsEnabled = true;
@@ -304,7 +525,7 @@ public class RecordingManager {
             this.playerId = playerId;
             this.settings = settings;
             this.startTime = System.currentTimeMillis();
-            this.isRecording = true;
+            this.resources = new ResourceScope(sessionId);
             
             // Initialize recording states
             this.playerTagsEnabled = settings.recordPlayerTags;
@@ -315,8 +536,15 @@ public class RecordingManager {
         }
         
         public void tick() {
-            if (isRecording) {
+            if (state == SessionState.RECORDING) {
                 frameCount++;
+                
+                // Replays report the real compressed size instead of a bitrate estimate
+                if (replaySession != null) {
+                    fileSize = replaySession.getBytesWritten();
+                    return;
+                }
+                
                 // Estimate file size based on frame count and bit rate
                 // Formula: (bitRate * durationInSeconds) / 8 = fileSizeInBytes
                 long durationInSeconds = frameCount / settings.frameRate;
@@ -331,8 +559,16 @@ public class RecordingManager {
             }
         }
         
+        /**
+         * Stop capturing and release every resource the session owns; safe to call more than once
+         */
         public void stop() {
-            isRecording = false;
+            synchronized (this) {
+                if (state != SessionState.RECORDING) return;
+                state = SessionState.STOPPING;
+            }
+            resources.closeAll();
+            state = SessionState.STOPPED;
         }
         
         // Overlay management
@@ -342,6 +578,7 @@ public class RecordingManager {
         
         public void removeCustomOverlay(String overlayName) {
             customOverlays.removeIf(overlay -> overlay.getName().equals(overlayName));
+            overlayCompositor.invalidate(overlayName);
         }
         
         // Setters for recording states
@@ -351,18 +588,25 @@ public class RecordingManager {
         public void setMotionCaptureEnabled(boolean enabled) { motionCaptureEnabled = enabled; }
         public void setBaritoneEnabled(boolean enabled) { baritoneEnabled = enabled; }
         public void setModOverlayEnabled(String modName, boolean enabled) { modOverlays.put(modName, enabled); }
+        public void setReplaySession(ReplayRecorder.ReplaySession replaySession) { this.replaySession = replaySession; }
+        public void setLayerRecorder(LayerRecorder layerRecorder) { this.layerRecorder = layerRecorder; }
         
         // Getters
         public String getSessionId() { return sessionId; }
         public UUID getPlayerId() { return playerId; }
         public RecordingSettings getSettings() { return settings; }
         public long getStartTime() { return startTime; }
-        public boolean isRecording() { return isRecording; }
+        public boolean isRecording() { return state == SessionState.RECORDING; }
+        public SessionState getState() { return state; }
+        public ResourceScope getResources() { return resources; }
         public int getFrameCount() { return frameCount; }
         public long getFileSize() { return fileSize; }
         public long getRecordingDuration() { return System.currentTimeMillis() - startTime; }
         public Map<String, Boolean> getEnabledOverlays() { return modOverlays; }
         public List<CustomOverlay> getCustomOverlays() { return customOverlays; }
+        public ReplayRecorder.ReplaySession getReplaySession() { return replaySession; }
+        public LayerRecorder getLayerRecorder() { return layerRecorder; }
+        public OverlayCompositor getOverlayCompositor() { return overlayCompositor; }
         
         public boolean isPlayerTagsEnabled() { return playerTagsEnabled; }
         public boolean isParticlesEnabled() { return particlesEnabled; }
@@ -380,9 +624,11 @@ public class RecordingManager {
         public final long fileSize;
         public final Map<String, Boolean> enabledOverlays;
         public final List<CustomOverlay> customOverlays;
+        public final EncoderPool.SessionStats encoderStats;
         
         public RecordingStatus(String sessionId, boolean isRecording, long duration, int frameCount, 
-                              long fileSize, Map<String, Boolean> enabledOverlays, List<CustomOverlay> customOverlays) {
+                              long fileSize, Map<String, Boolean> enabledOverlays, List<CustomOverlay> customOverlays,
+                              EncoderPool.SessionStats encoderStats) {
             this.sessionId = sessionId;
             this.isRecording = isRecording;
             this.duration = duration;
@@ -390,6 +636,7 @@ public class RecordingManager {
             this.fileSize = fileSize;
             this.enabledOverlays = enabledOverlays;
             this.customOverlays = customOverlays;
+            this.encoderStats = encoderStats;
         }
     }
     
@@ -512,6 +759,11 @@ public class RecordingManager {
     
     private static class SessionRecorder {
         private final Map<String, RecordingSession> activeRecordings = new ConcurrentHashMap<>();
+        private final EncoderPool encoderPool;
+        
+        public SessionRecorder(EncoderPool encoderPool) {
+            this.encoderPool = encoderPool;
+        }
         
         public void startSession(RecordingSession session) {
             activeRecordings.put(session.getSessionId(), session);
@@ -523,29 +775,40 @@ public class RecordingManager {
                 settings.resolutionX, settings.resolutionY, settings.frameRate, 
                 settings.outputFormat, settings.recordAudio);
             
+            // Encoding runs on the shared pool instead of a per-session encoder
+            if (!encoderPool.registerSession(session.getSessionId(), settings.encoderWeight, EncoderPool.DEFAULT_QUEUE_CAPACITY)) {
+                LOGGER.error("❌ Encoder pool rejected recording session: {}", session.getSessionId());
+            }
+            
             // Here you would initialize the actual recording pipeline
-            // - Set up video encoder
             // - Set up audio capture if enabled
             // - Initialize file output
             // - Start frame capture
         }
         
-        public void stopSession(RecordingSession session) {
+        /**
+         * Stop taking frames; queued frames keep encoding on the pool without holding up the tick
+         * @return completes once the session's encoder queue has drained and its stats are logged
+         */
+        public CompletableFuture<Void> stopSession(RecordingSession session) {
             activeRecordings.remove(session.getSessionId());
             LOGGER.info("⏹️ Recording session stopped: {}", session.getSessionId());
             
-            // Finalize recording
-            // - Stop video encoder
-            // - Stop audio capture
-            // - Close file output
-            // - Generate final file
-            
             long duration = session.getRecordingDuration();
             int frameCount = session.getFrameCount();
             long fileSize = session.getFileSize();
             
-            LOGGER.info("📊 Recording stats - Duration: {}ms, Frames: {}, Size: {} bytes", 
-                duration, frameCount, fileSize);
+            // Finalize recording
+            // - Stop audio capture
+            // - Close file output
+            // - Generate final file
+            return encoderPool.closeSession(session.getSessionId(), null).thenAccept(encoderStats -> {
+                if (encoderStats != null) {
+                    LOGGER.info("⚙️ Encoder stats - {}", encoderStats);
+                }
+                LOGGER.info("📊 Recording stats - Duration: {}ms, Frames: {}, Size: {} bytes", 
+                    duration, frameCount, fileSize);
+            });
         }
         
         public void tick() {
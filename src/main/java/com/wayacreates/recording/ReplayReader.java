@@ -0,0 +1,140 @@
+package com.wayacreates.recording;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Replay Reader for offline re-rendering
+ * Streams a replay file record by record so any resolution and camera can be rendered from it
+ */
+public class ReplayReader implements AutoCloseable {
+    private final DataInputStream in;
+    private final UUID subjectId;
+    private final long recordedAt;
+    private final int version;
+    private final TransformStreamCodec.Decoder transformDecoder;
+    private final TransformStreamCodec.Transform transform = new TransformStreamCodec.Transform();
+
+    /**
+     * Callback for each record in a replay
+     */
+    public interface ReplayVisitor {
+        default void onTick(int tick) {}
+        default void onEntitySpawn(int entityId, String entityType, UUID uuid) {}
+        default void onEntityTransform(int entityId, double x, double y, double z, float yaw, float pitch) {}
+        default void onEntityRemove(int entityId) {}
+        default void onBlockChange(long packedPos, int stateId) {}
+        default void onParticle(String particleId, float x, float y, float z, int count) {}
+        default void onChat(UUID senderId, String message) {}
+    }
+
+    public ReplayReader(File replayFile) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(
+            new InflaterInputStream(new FileInputStream(replayFile)), 64 * 1024));
+
+        if (in.readInt() != ReplayRecorder.MAGIC) {
+            in.close();
+            throw new IOException("Not a WayaCreates replay file: " + replayFile.getPath());
+        }
+        this.version = in.readShort();
+        if (version != ReplayRecorder.VERSION) {
+            in.close();
+            throw new IOException("Unsupported replay version " + version + " in " + replayFile.getPath());
+        }
+        this.subjectId = new UUID(in.readLong(), in.readLong());
+        this.recordedAt = in.readLong();
+        this.transformDecoder = new TransformStreamCodec(in.readDouble(), in.readDouble()).newDecoder();
+    }
+
+    /**
+     * Read the whole replay, dispatching every record to the visitor
+     * @return number of ticks read
+     */
+    public int readAll(ReplayVisitor visitor) throws IOException {
+        int ticks = 0;
+        while (true) {
+            int type;
+            try {
+                type = in.readUnsignedByte();
+            } catch (EOFException e) {
+                // Recording was cut off (crash) - everything up to here is still usable
+                return ticks;
+            }
+
+            switch (type) {
+                case ReplayRecorder.RECORD_TICK:
+                    visitor.onTick(readVarInt());
+                    ticks++;
+                    break;
+                case ReplayRecorder.RECORD_ENTITY_SPAWN: {
+                    int entityId = readVarInt();
+                    transformDecoder.forget(entityId);
+                    visitor.onEntitySpawn(entityId, readString(), new UUID(in.readLong(), in.readLong()));
+                    break;
+                }
+                case ReplayRecorder.RECORD_ENTITY_TRANSFORM:
+                    transformDecoder.decode(in, transform);
+                    visitor.onEntityTransform(transform.entityId, transform.x, transform.y, transform.z,
+                        transform.yaw, transform.pitch);
+                    break;
+                case ReplayRecorder.RECORD_ENTITY_REMOVE: {
+                    int entityId = readVarInt();
+                    transformDecoder.forget(entityId);
+                    visitor.onEntityRemove(entityId);
+                    break;
+                }
+                case ReplayRecorder.RECORD_BLOCK_CHANGE:
+                    visitor.onBlockChange(in.readLong(), readVarInt());
+                    break;
+                case ReplayRecorder.RECORD_PARTICLE:
+                    visitor.onParticle(readString(), in.readFloat(), in.readFloat(), in.readFloat(), readVarInt());
+                    break;
+                case ReplayRecorder.RECORD_CHAT:
+                    visitor.onChat(new UUID(in.readLong(), in.readLong()), readString());
+                    break;
+                case ReplayRecorder.RECORD_END:
+                    return ticks;
+                default:
+                    throw new IOException("Corrupt replay: unknown record type " + type);
+            }
+        }
+    }
+
+    private int readVarInt() throws IOException {
+        int value = 0;
+        int shift = 0;
+        int b;
+        do {
+            if (shift > 28) {
+                throw new IOException("Corrupt replay: varint too long");
+            }
+            b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private String readString() throws IOException {
+        byte[] bytes = new byte[readVarInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    // Getters
+    public UUID getSubjectId() { return subjectId; }
+    public long getRecordedAt() { return recordedAt; }
+    public int getVersion() { return version; }
+}
@@ -0,0 +1,450 @@
+package com.wayacreates.recording;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import com.wayacreates.recording.RecordingManager.RecordingSession;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.entity.Entity;
+import net.minecraft.registry.Registries;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Box;
+
+/**
+ * Game-state Replay Recorder
+ * Captures compact per-tick world deltas (entity transforms, block changes, particles, chat)
+ * into a compressed binary replay file that can be re-rendered offline at any resolution and camera
+ */
+public class ReplayRecorder {
+    private static final Logger LOGGER = LoggerFactory.getLogger("WayaCreates/Replay");
+
+    // Replay file format
+    public static final int MAGIC = 0x57435250; // "WCRP"
+    public static final int VERSION = 2;
+    public static final String FILE_EXTENSION = ".wcreplay";
+
+    // Record types
+    public static final int RECORD_TICK = 0x01;
+    public static final int RECORD_ENTITY_SPAWN = 0x02;
+    public static final int RECORD_ENTITY_TRANSFORM = 0x03;
+    public static final int RECORD_ENTITY_REMOVE = 0x04;
+    public static final int RECORD_BLOCK_CHANGE = 0x05;
+    public static final int RECORD_PARTICLE = 0x06;
+    public static final int RECORD_CHAT = 0x07;
+    public static final int RECORD_END = 0xFF;
+
+    // Entities that drift just past the capture radius stay tracked until this much further out
+    private static final double INTEREST_EXIT_MARGIN = 8.0;
+
+    private final Map<String, ReplaySession> activeSessions = new ConcurrentHashMap<>();
+    private final Map<ServerWorld, InterestGrid> interestGrids = new ConcurrentHashMap<>();
+    private final TransformStreamCodec transformCodec;
+    
+    public ReplayRecorder() {
+        this(new TransformStreamCodec());
+    }
+    
+    public ReplayRecorder(TransformStreamCodec transformCodec) {
+        this.transformCodec = transformCodec;
+    }
+
+    /**
+     * Start a replay for a recording session
+     */
+    public ReplaySession startSession(RecordingSession session) throws IOException {
+        File directory = new File(session.getSettings().outputDirectory);
+        directory.mkdirs();
+        File outputFile = new File(directory, session.getSessionId() + FILE_EXTENSION);
+
+        ReplaySession replay = new ReplaySession(session.getSessionId(), session.getPlayerId(), outputFile, transformCodec,
+            session.getSettings().outputWriter, session.getSettings().replayInterestRadius);
+        activeSessions.put(session.getSessionId(), replay);
+        LOGGER.info("🎞️ Replay recording started: {} -> {}", session.getSessionId(), outputFile.getPath());
+        return replay;
+    }
+
+    /**
+     * Stop a replay and finalize its file
+     */
+    public void stopSession(RecordingSession session) {
+        ReplaySession replay = activeSessions.remove(session.getSessionId());
+        if (replay != null) {
+            leaveInterestGrid(replay);
+            replay.close();
+            LOGGER.info("🎞️ Replay recording finished: {} ({} ticks, {} bytes)",
+                replay.getSessionId(), replay.getTickCount(), replay.getBytesWritten());
+            LOGGER.info("💾 Replay output - {}", replay.getWriteStats());
+        }
+    }
+
+    /**
+     * Capture one server tick for every replay whose subject is in this world
+     */
+    public void captureTick(ServerWorld world) {
+        if (activeSessions.isEmpty()) return;
+
+        for (ReplaySession replay : activeSessions.values()) {
+            Entity subject = world.getPlayerByUuid(replay.getSubjectId());
+            if (subject == null) {
+                continue;
+            }
+
+            // Keep the session registered in the cells around its subject (no-op unless it changed cell)
+            InterestGrid grid = interestGrids.computeIfAbsent(world, w -> new InterestGrid());
+            if (replay.interestGrid != grid) {
+                leaveInterestGrid(replay);
+                replay.interestGrid = grid;
+            }
+            grid.update(replay, subject.getX(), subject.getZ(), replay.getInterestRadius());
+
+            try {
+                replay.captureTick(world, subject);
+            } catch (IOException e) {
+                LOGGER.error("❌ Replay write failed for session: {}", replay.getSessionId(), e);
+                activeSessions.remove(replay.getSessionId());
+                leaveInterestGrid(replay);
+                replay.close();
+            }
+        }
+    }
+
+    private void leaveInterestGrid(ReplaySession replay) {
+        if (replay.interestGrid != null) {
+            replay.interestGrid.remove(replay);
+            replay.interestGrid = null;
+        }
+    }
+
+    /**
+     * Drop the interest grid of an unloaded world
+     */
+    public void onWorldUnload(ServerWorld world) {
+        interestGrids.remove(world);
+    }
+
+    /**
+     * Queue a block change for every replay in this world
+     */
+    public void recordBlockChange(ServerWorld world, BlockPos pos, BlockState state) {
+        InterestGrid grid = interestGrids.get(world);
+        if (grid == null) return;
+
+        List<ReplaySession> interested = grid.sessionsAt(pos.getX(), pos.getZ());
+        if (interested.isEmpty()) return;
+
+        BlockChangeEvent event = new BlockChangeEvent(pos.asLong(), Block.getRawIdFromState(state));
+        for (ReplaySession replay : interested) {
+            replay.queueEvent(world, event);
+        }
+    }
+
+    /**
+     * Queue a particle spawn for every replay in this world
+     */
+    public void recordParticle(ServerWorld world, String particleId, double x, double y, double z, int count) {
+        InterestGrid grid = interestGrids.get(world);
+        if (grid == null) return;
+
+        List<ReplaySession> interested = grid.sessionsAt((int) Math.floor(x), (int) Math.floor(z));
+        if (interested.isEmpty()) return;
+
+        ParticleEvent event = new ParticleEvent(particleId, (float) x, (float) y, (float) z, count);
+        for (ReplaySession replay : interested) {
+            replay.queueEvent(world, event);
+        }
+    }
+
+    /**
+     * Queue a chat message for every replay
+     */
+    public void recordChat(UUID senderId, String message) {
+        if (activeSessions.isEmpty()) return;
+
+        for (ReplaySession replay : activeSessions.values()) {
+            replay.queueEvent(null, new ChatEvent(senderId, message));
+        }
+    }
+
+    public ReplaySession getSession(String sessionId) {
+        return activeSessions.get(sessionId);
+    }
+
+    public int getActiveSessionCount() {
+        return activeSessions.size();
+    }
+
+    /**
+     * Stop all replays (server shutdown / world unload)
+     */
+    public void closeAll() {
+        for (ReplaySession replay : activeSessions.values()) {
+            replay.close();
+        }
+        activeSessions.clear();
+        interestGrids.clear();
+    }
+
+    static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    // Replay Session Class
+    public static class ReplaySession {
+        private final String sessionId;
+        private final UUID subjectId;
+        private final File outputFile;
+        private final AsyncBlockWriter writer;
+        private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        private final DataOutputStream out;
+        private final Queue<ReplayEvent> pendingEvents = new ConcurrentLinkedQueue<>();
+
+        // Quantized delta state per entity id; unchanged entities are skipped by the encoder
+        private final TransformStreamCodec.Encoder transformEncoder;
+        private final Set<Integer> trackedEntities = new HashSet<>();
+        private final Set<Integer> seenThisTick = new HashSet<>();
+        private final double interestRadius;
+        private InterestGrid interestGrid; // Owned by the server thread
+        private ServerWorld world;
+        private int tickCount = 0;
+        private boolean closed = false;
+
+        public ReplaySession(String sessionId, UUID subjectId, File outputFile, TransformStreamCodec codec,
+                             AsyncBlockWriter.Options writerOptions, double interestRadius) throws IOException {
+            this.sessionId = sessionId;
+            this.interestRadius = interestRadius;
+            this.subjectId = subjectId;
+            this.outputFile = outputFile;
+            this.transformEncoder = codec.newEncoder();
+            // Compressed output goes to a write-behind block writer so the server thread never waits on disk
+            this.writer = new AsyncBlockWriter(outputFile, writerOptions);
+            this.out = new DataOutputStream(new BufferedOutputStream(
+                new DeflaterOutputStream(writer, deflater, 64 * 1024), 64 * 1024));
+
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeLong(subjectId.getMostSignificantBits());
+            out.writeLong(subjectId.getLeastSignificantBits());
+            out.writeLong(System.currentTimeMillis());
+            out.writeDouble(codec.getPositionPrecision());
+            out.writeDouble(codec.getRotationPrecision());
+        }
+
+        void queueEvent(ServerWorld eventWorld, ReplayEvent event) {
+            if (closed) return;
+            // World-bound events only matter for the world the subject is being recorded in
+            if (eventWorld != null && world != null && eventWorld != world) return;
+            pendingEvents.add(event);
+        }
+
+        void captureTick(ServerWorld currentWorld, Entity subject) throws IOException {
+            if (closed) return;
+
+            if (world != currentWorld) {
+                // Subject changed dimension - every entity is new from the replay's point of view
+                writeRemovals(trackedEntities);
+                trackedEntities.clear();
+                transformEncoder.reset();
+                world = currentWorld;
+            }
+
+            out.writeByte(RECORD_TICK);
+            writeVarInt(out, tickCount);
+
+            seenThisTick.clear();
+            if (interestRadius <= 0) {
+                for (Entity entity : currentWorld.iterateEntities()) {
+                    writeEntity(entity);
+                }
+            } else {
+                captureNearby(currentWorld, subject);
+            }
+
+            // Entities we tracked last tick but didn't see now were removed or left the capture radius
+            Iterator<Integer> iterator = trackedEntities.iterator();
+            while (iterator.hasNext()) {
+                int entityId = iterator.next();
+                if (!seenThisTick.contains(entityId)) {
+                    out.writeByte(RECORD_ENTITY_REMOVE);
+                    writeVarInt(out, entityId);
+                    transformEncoder.forget(entityId);
+                    iterator.remove();
+                }
+            }
+
+            ReplayEvent event;
+            while ((event = pendingEvents.poll()) != null) {
+                event.write(out);
+            }
+
+            tickCount++;
+        }
+
+        /**
+         * Only entities around the subject. The box query walks the world's entity sections, which the
+         * game keeps up to date as entities move, so cost follows local activity, not world population.
+         */
+        private void captureNearby(ServerWorld currentWorld, Entity subject) throws IOException {
+            double exitRadius = interestRadius + INTEREST_EXIT_MARGIN;
+            double enterSquared = interestRadius * interestRadius;
+            double exitSquared = exitRadius * exitRadius;
+            Box box = new Box(subject.getX() - exitRadius, subject.getY() - exitRadius, subject.getZ() - exitRadius,
+                subject.getX() + exitRadius, subject.getY() + exitRadius, subject.getZ() + exitRadius);
+
+            for (Entity entity : currentWorld.getOtherEntities(null, box, candidate -> true)) {
+                double distanceSquared = entity.squaredDistanceTo(subject);
+                // Hysteresis: enter inside the radius, leave only past the margin
+                if (distanceSquared <= enterSquared
+                    || (distanceSquared <= exitSquared && trackedEntities.contains(entity.getId()))) {
+                    writeEntity(entity);
+                }
+            }
+        }
+
+        private void writeEntity(Entity entity) throws IOException {
+            int entityId = entity.getId();
+            seenThisTick.add(entityId);
+
+            if (trackedEntities.add(entityId)) {
+                out.writeByte(RECORD_ENTITY_SPAWN);
+                writeVarInt(out, entityId);
+                writeString(out, Registries.ENTITY_TYPE.getId(entity.getType()).toString());
+                UUID uuid = entity.getUuid();
+                out.writeLong(uuid.getMostSignificantBits());
+                out.writeLong(uuid.getLeastSignificantBits());
+            }
+
+            int mask = transformEncoder.update(entityId, entity.getX(), entity.getY(), entity.getZ(),
+                entity.getYaw(), entity.getPitch());
+            if (mask != 0) {
+                out.writeByte(RECORD_ENTITY_TRANSFORM);
+                transformEncoder.writeDelta(entityId, mask, out);
+            }
+        }
+
+        private void writeRemovals(Set<Integer> entityIds) throws IOException {
+            for (int entityId : entityIds) {
+                out.writeByte(RECORD_ENTITY_REMOVE);
+                writeVarInt(out, entityId);
+            }
+        }
+
+        public void close() {
+            if (closed) return;
+            closed = true;
+            try {
+                out.writeByte(RECORD_END);
+                out.close();
+            } catch (IOException e) {
+                LOGGER.error("❌ Failed to finalize replay: {}", outputFile.getPath(), e);
+            } finally {
+                // A caller-supplied Deflater is not released by DeflaterOutputStream.close()
+                deflater.end();
+            }
+        }
+
+        // Getters
+        public String getSessionId() { return sessionId; }
+        public UUID getSubjectId() { return subjectId; }
+        public File getOutputFile() { return outputFile; }
+        public int getTickCount() { return tickCount; }
+        public int getTrackedEntityCount() { return trackedEntities.size(); }
+        public double getInterestRadius() { return interestRadius; }
+        public long getBytesWritten() { return writer.getBytesWritten(); }
+        public AsyncBlockWriter.WriteStats getWriteStats() { return writer.getStats(); }
+        public boolean isClosed() { return closed; }
+    }
+
+    // Replay event classes
+    interface ReplayEvent {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private static class BlockChangeEvent implements ReplayEvent {
+        private final long packedPos;
+        private final int stateId;
+
+        BlockChangeEvent(long packedPos, int stateId) {
+            this.packedPos = packedPos;
+            this.stateId = stateId;
+        }
+
+        @Override
+        public void write(DataOutputStream out) throws IOException {
+            out.writeByte(RECORD_BLOCK_CHANGE);
+            out.writeLong(packedPos);
+            writeVarInt(out, stateId);
+        }
+    }
+
+    private static class ParticleEvent implements ReplayEvent {
+        private final String particleId;
+        private final float x, y, z;
+        private final int count;
+
+        ParticleEvent(String particleId, float x, float y, float z, int count) {
+            this.particleId = particleId;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.count = count;
+        }
+
+        @Override
+        public void write(DataOutputStream out) throws IOException {
+            out.writeByte(RECORD_PARTICLE);
+            writeString(out, particleId);
+            out.writeFloat(x);
+            out.writeFloat(y);
+            out.writeFloat(z);
+            writeVarInt(out, count);
+        }
+    }
+
+    private static class ChatEvent implements ReplayEvent {
+        private final UUID senderId;
+        private final String message;
+
+        ChatEvent(UUID senderId, String message) {
+            this.senderId = senderId;
+            this.message = message;
+        }
+
+        @Override
+        public void write(DataOutputStream out) throws IOException {
+            out.writeByte(RECORD_CHAT);
+            out.writeLong(senderId.getMostSignificantBits());
+            out.writeLong(senderId.getLeastSignificantBits());
+            writeString(out, message);
+        }
+    }
+}
@@ -0,0 +1,420 @@
+package com.wayacreates.recording;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Transform Stream Codec for entity motion
+ * Quantizes positions and rotations to a configurable precision and delta-encodes them
+ * against the previous tick with zigzag varints. Entities that didn't move produce no output.
+ *
+ * Error bound: quantization is applied to absolute values and deltas are lossless, so every
+ * decoded position is within {@link #getPositionErrorBound()} blocks of the recorded value and
+ * every rotation within {@link #getRotationErrorBound()} degrees (yaw compared modulo 360),
+ * no matter how many ticks have been streamed.
+ */
+public class TransformStreamCodec {
+    // Change mask bits
+    public static final int CHANGED_X = 1;
+    public static final int CHANGED_Y = 1 << 1;
+    public static final int CHANGED_Z = 1 << 2;
+    public static final int CHANGED_YAW = 1 << 3;
+    public static final int CHANGED_PITCH = 1 << 4;
+
+    // Defaults: 1/256 block (~4mm) and ~0.088 degree
+    public static final double DEFAULT_POSITION_PRECISION = 1.0 / 256.0;
+    public static final double DEFAULT_ROTATION_PRECISION = 360.0 / 4096.0;
+
+    private final double positionStep;
+    private final double rotationStep;
+    private final long yawSteps;
+
+    public TransformStreamCodec() {
+        this(DEFAULT_POSITION_PRECISION, DEFAULT_ROTATION_PRECISION);
+    }
+
+    /**
+     * @param positionPrecision quantization step for positions, in blocks
+     * @param rotationPrecision quantization step for yaw/pitch, in degrees
+     */
+    public TransformStreamCodec(double positionPrecision, double rotationPrecision) {
+        if (!(positionPrecision > 0) || !(rotationPrecision > 0) || rotationPrecision > 180) {
+            throw new IllegalArgumentException("Precision must be positive (rotation at most 180 degrees)");
+        }
+        this.positionStep = positionPrecision;
+        this.yawSteps = Math.round(360.0 / rotationPrecision);
+        // Snap the rotation step so a full turn is a whole number of steps
+        this.rotationStep = 360.0 / yawSteps;
+    }
+
+    public Encoder newEncoder() {
+        return new Encoder();
+    }
+
+    public Decoder newDecoder() {
+        return new Decoder();
+    }
+
+    /**
+     * Maximum absolute position error after a decode, in blocks
+     */
+    public double getPositionErrorBound() {
+        return positionStep / 2.0;
+    }
+
+    /**
+     * Maximum absolute rotation error after a decode, in degrees
+     */
+    public double getRotationErrorBound() {
+        return rotationStep / 2.0;
+    }
+
+    public double getPositionPrecision() { return positionStep; }
+    public double getRotationPrecision() { return rotationStep; }
+
+    private long quantizePosition(double value) {
+        return Math.round(value / positionStep);
+    }
+
+    private long quantizeYaw(float yaw) {
+        // Yaw accumulates past +-360 in Minecraft; store it wrapped
+        return Math.floorMod(Math.round(yaw / rotationStep), yawSteps);
+    }
+
+    private long quantizePitch(float pitch) {
+        return Math.round(pitch / rotationStep);
+    }
+
+    private long wrapYawDelta(long delta) {
+        // Shortest way around the circle keeps small turns across 0/360 small
+        long half = yawSteps / 2;
+        delta = Math.floorMod(delta + half, yawSteps) - half;
+        return delta;
+    }
+
+    // Encoder - one per output stream
+    public class Encoder {
+        private final Map<Integer, long[]> previous = new HashMap<>();
+        private final long[] pendingDelta = new long[5];
+
+        /**
+         * Quantize an entity's transform against its previous tick
+         * @return change mask, 0 when the entity didn't move (nothing needs to be written)
+         */
+        public int update(int entityId, double x, double y, double z, float yaw, float pitch) {
+            long[] state = previous.get(entityId);
+            boolean isNew = state == null;
+            if (isNew) {
+                state = new long[5];
+                previous.put(entityId, state);
+            }
+
+            long qx = quantizePosition(x);
+            long qy = quantizePosition(y);
+            long qz = quantizePosition(z);
+            long qYaw = quantizeYaw(yaw);
+            long qPitch = quantizePitch(pitch);
+
+            pendingDelta[0] = qx - state[0];
+            pendingDelta[1] = qy - state[1];
+            pendingDelta[2] = qz - state[2];
+            pendingDelta[3] = wrapYawDelta(qYaw - state[3]);
+            pendingDelta[4] = qPitch - state[4];
+
+            int mask = 0;
+            for (int i = 0; i < 5; i++) {
+                if (pendingDelta[i] != 0) {
+                    mask |= 1 << i;
+                }
+            }
+            // A new entity always emits a record, even at the origin
+            if (isNew && mask == 0) {
+                mask = CHANGED_X;
+            }
+
+            state[0] = qx;
+            state[1] = qy;
+            state[2] = qz;
+            state[3] = qYaw;
+            state[4] = qPitch;
+            return mask;
+        }
+
+        /**
+         * Write the delta computed by the last {@link #update} call
+         */
+        public void writeDelta(int entityId, int mask, DataOutput out) throws IOException {
+            writeVarInt(out, entityId);
+            out.writeByte(mask);
+            for (int i = 0; i < 5; i++) {
+                if ((mask & (1 << i)) != 0) {
+                    writeVarLong(out, zigzag(pendingDelta[i]));
+                }
+            }
+        }
+
+        /**
+         * Quantize and write in one step
+         * @return true if anything was written
+         */
+        public boolean encode(int entityId, double x, double y, double z, float yaw, float pitch, DataOutput out) throws IOException {
+            int mask = update(entityId, x, y, z, yaw, pitch);
+            if (mask == 0) return false;
+            writeDelta(entityId, mask, out);
+            return true;
+        }
+
+        public void forget(int entityId) {
+            previous.remove(entityId);
+        }
+
+        public void reset() {
+            previous.clear();
+        }
+
+        public int getTrackedEntityCount() {
+            return previous.size();
+        }
+    }
+
+    // Decoder - mirrors an Encoder's state
+    public class Decoder {
+        private final Map<Integer, long[]> previous = new HashMap<>();
+
+        /**
+         * Read one entity delta and write the reconstructed transform into target
+         */
+        public void decode(DataInput in, Transform target) throws IOException {
+            int entityId = readVarInt(in);
+            int mask = in.readUnsignedByte();
+
+            long[] state = previous.computeIfAbsent(entityId, id -> new long[5]);
+            for (int i = 0; i < 5; i++) {
+                if ((mask & (1 << i)) != 0) {
+                    state[i] += unzigzag(readVarLong(in));
+                }
+            }
+            state[3] = Math.floorMod(state[3], yawSteps);
+
+            target.entityId = entityId;
+            target.x = state[0] * positionStep;
+            target.y = state[1] * positionStep;
+            target.z = state[2] * positionStep;
+            target.yaw = (float) (state[3] * rotationStep);
+            target.pitch = (float) (state[4] * rotationStep);
+        }
+
+        public void forget(int entityId) {
+            previous.remove(entityId);
+        }
+
+        public void reset() {
+            previous.clear();
+        }
+    }
+
+    // Decoded transform (reused by callers to avoid garbage)
+    public static class Transform {
+        public int entityId;
+        public double x, y, z;
+        public float yaw, pitch;
+    }
+
+    // Varint helpers
+    public static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    public static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    public static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    public static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+        int shift = 0;
+        int b;
+        do {
+            if (shift > 28) throw new IOException("Varint too long");
+            b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    public static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        int shift = 0;
+        int b;
+        do {
+            if (shift > 63) throw new IOException("Varlong too long");
+            b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    /**
+     * Encode/decode benchmark over a synthetic random-walk crowd
+     * Also verifies the error bound on every decoded sample
+     */
+    public static BenchmarkResult benchmark(TransformStreamCodec codec, int entityCount, int ticks, double movingFraction) throws IOException {
+        Random random = new Random(42);
+        double[][] pos = new double[entityCount][3];
+        float[][] rot = new float[entityCount][2];
+        for (int e = 0; e < entityCount; e++) {
+            pos[e][0] = random.nextDouble() * 2000 - 1000;
+            pos[e][1] = 64 + random.nextDouble() * 20;
+            pos[e][2] = random.nextDouble() * 2000 - 1000;
+            rot[e][0] = random.nextFloat() * 360 - 180;
+            rot[e][1] = random.nextFloat() * 60 - 30;
+        }
+
+        // Pre-generate the motion so the timing only covers the codec
+        double[][][] framesPos = new double[ticks][entityCount][];
+        float[][][] framesRot = new float[ticks][entityCount][];
+        for (int t = 0; t < ticks; t++) {
+            for (int e = 0; e < entityCount; e++) {
+                if (random.nextDouble() < movingFraction) {
+                    pos[e][0] += random.nextGaussian() * 0.2;
+                    pos[e][1] += random.nextGaussian() * 0.05;
+                    pos[e][2] += random.nextGaussian() * 0.2;
+                    rot[e][0] += (float) (random.nextGaussian() * 8);
+                    rot[e][1] = (float) Math.max(-90, Math.min(90, rot[e][1] + random.nextGaussian() * 2));
+                }
+                framesPos[t][e] = pos[e].clone();
+                framesRot[t][e] = rot[e].clone();
+            }
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(entityCount * ticks * 4);
+        DataOutputStream out = new DataOutputStream(bytes);
+        Encoder encoder = codec.newEncoder();
+        int[] writtenPerTick = new int[ticks];
+
+        long encodeStart = System.nanoTime();
+        for (int t = 0; t < ticks; t++) {
+            int written = 0;
+            for (int e = 0; e < entityCount; e++) {
+                double[] p = framesPos[t][e];
+                float[] r = framesRot[t][e];
+                if (encoder.encode(e, p[0], p[1], p[2], r[0], r[1], out)) {
+                    written++;
+                }
+            }
+            writtenPerTick[t] = written;
+        }
+        long encodeNanos = System.nanoTime() - encodeStart;
+        out.flush();
+
+        byte[] encoded = bytes.toByteArray();
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(encoded));
+        Decoder decoder = codec.newDecoder();
+        Transform transform = new Transform();
+        double[][] decodedPos = new double[entityCount][3];
+        float[][] decodedRot = new float[entityCount][2];
+        double maxPositionError = 0;
+        double maxRotationError = 0;
+
+        long decodeNanos = 0;
+        for (int t = 0; t < ticks; t++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < writtenPerTick[t]; i++) {
+                decoder.decode(in, transform);
+                decodedPos[transform.entityId][0] = transform.x;
+                decodedPos[transform.entityId][1] = transform.y;
+                decodedPos[transform.entityId][2] = transform.z;
+                decodedRot[transform.entityId][0] = transform.yaw;
+                decodedRot[transform.entityId][1] = transform.pitch;
+            }
+            decodeNanos += System.nanoTime() - start;
+
+            for (int e = 0; e < entityCount; e++) {
+                for (int axis = 0; axis < 3; axis++) {
+                    maxPositionError = Math.max(maxPositionError, Math.abs(decodedPos[e][axis] - framesPos[t][e][axis]));
+                }
+                double yawError = Math.abs(decodedRot[e][0] - framesRot[t][e][0]) % 360.0;
+                maxRotationError = Math.max(maxRotationError, Math.min(yawError, 360.0 - yawError));
+                maxRotationError = Math.max(maxRotationError, Math.abs(decodedRot[e][1] - framesRot[t][e][1]));
+            }
+        }
+
+        long samples = (long) entityCount * ticks;
+        return new BenchmarkResult(entityCount, ticks, encoded.length,
+            samples * 5L * Double.BYTES, encodeNanos / (double) samples, decodeNanos / (double) samples,
+            maxPositionError, maxRotationError, codec.getPositionErrorBound(), codec.getRotationErrorBound());
+    }
+
+    // Benchmark Result Class
+    public static class BenchmarkResult {
+        public final int entityCount;
+        public final int ticks;
+        public final long encodedBytes;
+        public final long rawBytes;
+        public final double encodeNanosPerSample;
+        public final double decodeNanosPerSample;
+        public final double maxPositionError;
+        public final double maxRotationError;
+        public final double positionErrorBound;
+        public final double rotationErrorBound;
+
+        public BenchmarkResult(int entityCount, int ticks, long encodedBytes, long rawBytes,
+                               double encodeNanosPerSample, double decodeNanosPerSample,
+                               double maxPositionError, double maxRotationError,
+                               double positionErrorBound, double rotationErrorBound) {
+            this.entityCount = entityCount;
+            this.ticks = ticks;
+            this.encodedBytes = encodedBytes;
+            this.rawBytes = rawBytes;
+            this.encodeNanosPerSample = encodeNanosPerSample;
+            this.decodeNanosPerSample = decodeNanosPerSample;
+            this.maxPositionError = maxPositionError;
+            this.maxRotationError = maxRotationError;
+            this.positionErrorBound = positionErrorBound;
+            this.rotationErrorBound = rotationErrorBound;
+        }
+
+        public boolean isWithinErrorBound() {
+            // Tiny slack for float rounding of the decoded yaw/pitch
+            return maxPositionError <= positionErrorBound + 1e-9 && maxRotationError <= rotationErrorBound + 1e-4;
+        }
+
+        public double getBytesPerSecondAt20Hz() {
+            return encodedBytes / (double) ticks * 20.0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d entities x %d ticks: %d bytes (%.1f%% of raw, %.1f KB/s @20Hz), " +
+                    "encode %.0f ns/sample, decode %.0f ns/sample, max error %.5f blocks / %.4f deg (bound %.5f / %.4f) %s",
+                entityCount, ticks, encodedBytes, 100.0 * encodedBytes / rawBytes, getBytesPerSecondAt20Hz() / 1024.0,
+                encodeNanosPerSample, decodeNanosPerSample, maxPositionError, maxRotationError,
+                positionErrorBound, rotationErrorBound, isWithinErrorBound() ? "OK" : "EXCEEDED");
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.wayacreates.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram
+ * Power-of-two microsecond buckets, so recording is a couple of atomic adds and percentiles
+ * are accurate to within a factor of two - plenty for spotting stalls.
+ */
+public class LatencyHistogram {
+    private static final int BUCKETS = 32; // 1 us .. ~35 minutes
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public void record(long nanos) {
+        long micros = Math.max(1, nanos / 1000);
+        int bucket = Math.min(BUCKETS - 1, 63 - Long.numberOfLeadingZeros(micros));
+        buckets.incrementAndGet(bucket);
+        count.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * Upper bound of the bucket containing the given percentile (0-100), in milliseconds
+     */
+    public double percentileMillis(double percentile) {
+        long total = count.get();
+        if (total == 0) return 0;
+
+        long target = (long) Math.ceil(total * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets.get(i);
+            if (seen >= Math.max(1, target)) {
+                return Math.min((2L << i) / 1000.0, getMaxMillis());
+            }
+        }
+        return getMaxMillis();
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.set(i, 0);
+        }
+        count.set(0);
+        totalNanos.set(0);
+        maxNanos.set(0);
+    }
+
+    // Getters
+    public long getCount() { return count.get(); }
+    public double getMaxMillis() { return maxNanos.get() / 1_000_000.0; }
+    public double getAverageMillis() {
+        long total = count.get();
+        return total == 0 ? 0 : totalNanos.get() / 1_000_000.0 / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("n=%d avg=%.2fms p50=%.2fms p99=%.2fms max=%.2fms",
+            getCount(), getAverageMillis(), percentileMillis(50), percentileMillis(99), getMaxMillis());
+    }
+}
@@ -0,0 +1,166 @@
+package com.wayacreates.utils;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.ref.Cleaner;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Resource Leak Detector
+ * Keeps a registry of every tracked session resource that is still open. Resources that become
+ * unreachable without being closed are reported when the GC finds them; in debug mode each report
+ * carries the stack trace of the code that acquired the resource.
+ */
+public final class LeakDetector {
+    private static final Logger LOGGER = LoggerFactory.getLogger("WayaCreates/LeakDetector");
+    private static final boolean DEBUG_MODE = Boolean.parseBoolean(System.getProperty("wayacreates.debug", "false"));
+
+    private static final Cleaner CLEANER = Cleaner.create();
+    private static final Map<Long, ResourceState> OPEN = new ConcurrentHashMap<>();
+    private static final AtomicLong NEXT_ID = new AtomicLong();
+    private static final AtomicLong LEAKED = new AtomicLong();
+
+    private LeakDetector() {}
+
+    /**
+     * Start tracking a resource; the returned handle must be closed to release it
+     */
+    public static Tracked track(String owner, String name, AutoCloseable resource) {
+        long id = NEXT_ID.incrementAndGet();
+        // Capturing a stack trace is expensive, so allocation sites are only kept in debug mode
+        Throwable site = DEBUG_MODE ? new Throwable("Acquired here") : null;
+        ResourceState state = new ResourceState(id, owner, name, System.currentTimeMillis(), site);
+        OPEN.put(id, state);
+        return new Tracked(resource, state, CLEANER.register(resource, state));
+    }
+
+    /**
+     * Every tracked resource that is still open, oldest first
+     */
+    public static List<OpenResource> getOpenResources() {
+        long now = System.currentTimeMillis();
+        List<OpenResource> open = new ArrayList<>();
+        for (ResourceState state : OPEN.values()) {
+            open.add(new OpenResource(state.owner, state.name, now - state.acquiredAt));
+        }
+        open.sort(Comparator.comparingLong((OpenResource resource) -> resource.ageMillis).reversed());
+        return open;
+    }
+
+    /**
+     * Log every resource still open - after a full shutdown this should be empty
+     */
+    public static int reportOpen(String context) {
+        List<OpenResource> open = getOpenResources();
+        if (open.isEmpty()) {
+            LOGGER.info("✅ No open session resources ({})", context);
+        } else {
+            LOGGER.warn("⚠️ {} session resources still open ({}):", open.size(), context);
+            for (OpenResource resource : open) {
+                LOGGER.warn("  - {}", resource);
+            }
+        }
+        return open.size();
+    }
+
+    public static int getOpenCount() { return OPEN.size(); }
+    public static long getLeakedCount() { return LEAKED.get(); }
+
+    // Bookkeeping shared by the handle and the cleaner; must not reference the resource itself
+    private static class ResourceState implements Runnable {
+        final long id;
+        final String owner;
+        final String name;
+        final long acquiredAt;
+        final Throwable site;
+        final AtomicBoolean closed = new AtomicBoolean();
+
+        ResourceState(long id, String owner, String name, long acquiredAt, Throwable site) {
+            this.id = id;
+            this.owner = owner;
+            this.name = name;
+            this.acquiredAt = acquiredAt;
+            this.site = site;
+        }
+
+        // Runs on the cleaner thread once the resource is unreachable, or when the handle closes
+        @Override
+        public void run() {
+            if (closed.compareAndSet(false, true)) {
+                OPEN.remove(id);
+                LEAKED.incrementAndGet();
+                if (site != null) {
+                    LOGGER.error("💧 Leaked {} of {} - garbage collected without being closed", name, owner, site);
+                } else {
+                    LOGGER.error("💧 Leaked {} of {} - garbage collected without being closed (run with -Dwayacreates.debug=true for the acquisition site)", name, owner);
+                }
+            }
+        }
+    }
+
+    // Tracked Resource Handle
+    public static class Tracked implements AutoCloseable {
+        private final AutoCloseable resource;
+        private final ResourceState state;
+        private final Cleaner.Cleanable cleanable;
+
+        private Tracked(AutoCloseable resource, ResourceState state, Cleaner.Cleanable cleanable) {
+            this.resource = resource;
+            this.state = state;
+            this.cleanable = cleanable;
+        }
+
+        /**
+         * Close the resource once; later calls do nothing
+         * @throws IOException if the resource fails to close (other checked failures are wrapped)
+         */
+        @Override
+        public void close() throws IOException {
+            if (!state.closed.compareAndSet(false, true)) return;
+            OPEN.remove(state.id);
+            // Already marked closed, so the cleaner action is a no-op now
+            cleanable.clean();
+            try {
+                resource.close();
+            } catch (IOException | RuntimeException e) {
+                throw e;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted closing " + state.name);
+            } catch (Exception e) {
+                throw new IOException("Failed to close " + state.name, e);
+            }
+        }
+
+        public AutoCloseable getResource() { return resource; }
+        public String getName() { return state.name; }
+        public boolean isClosed() { return state.closed.get(); }
+    }
+
+    // Open Resource Class
+    public static class OpenResource {
+        public final String owner;
+        public final String name;
+        public final long ageMillis;
+
+        public OpenResource(String owner, String name, long ageMillis) {
+            this.owner = owner;
+            this.name = name;
+            this.ageMillis = ageMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s / %s (open %ds)", owner, name, ageMillis / 1000);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.wayacreates.utils;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Session Resource Scope
+ * Owns everything a session acquires (encoder slots, output writers, grabbers, worker threads,
+ * native frame buffers) and releases it exactly once, in reverse acquisition order. A failure
+ * closing one resource is logged and does not stop the rest from being released.
+ */
+public class ResourceScope implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger("WayaCreates/Resources");
+
+    private final String owner;
+    private final Deque<LeakDetector.Tracked> resources = new ArrayDeque<>();
+    private boolean closed = false;
+
+    public ResourceScope(String owner) {
+        this.owner = owner;
+    }
+
+    /**
+     * Take ownership of a resource. If the scope is already closed the resource is closed immediately.
+     */
+    public <T extends AutoCloseable> T track(String name, T resource) {
+        LeakDetector.Tracked tracked = LeakDetector.track(owner, name, resource);
+        synchronized (this) {
+            if (!closed) {
+                resources.push(tracked);
+                return resource;
+            }
+        }
+
+        closeQuietly(tracked);
+        throw new IllegalStateException("Resource scope already closed: " + owner);
+    }
+
+    /**
+     * Close one resource ahead of the rest of the scope
+     */
+    public void release(AutoCloseable resource) {
+        LeakDetector.Tracked found = null;
+        synchronized (this) {
+            Iterator<LeakDetector.Tracked> iterator = resources.iterator();
+            while (iterator.hasNext()) {
+                LeakDetector.Tracked tracked = iterator.next();
+                if (tracked.getResource() == resource) {
+                    iterator.remove();
+                    found = tracked;
+                    break;
+                }
+            }
+        }
+        if (found != null) {
+            closeQuietly(found);
+        }
+    }
+
+    /**
+     * Release every resource, newest first
+     * @return number of resources that failed to close
+     */
+    public int closeAll() {
+        List<LeakDetector.Tracked> toClose;
+        synchronized (this) {
+            if (closed) return 0;
+            closed = true;
+            toClose = new ArrayList<>(resources);
+            resources.clear();
+        }
+
+        int failures = 0;
+        for (LeakDetector.Tracked tracked : toClose) {
+            if (!closeQuietly(tracked)) {
+                failures++;
+            }
+        }
+        if (failures > 0) {
+            LOGGER.warn("⚠️ {} of {} resources failed to close for {}", failures, toClose.size(), owner);
+        } else {
+            LOGGER.debug("🧹 Released {} resources for {}", toClose.size(), owner);
+        }
+        return failures;
+    }
+
+    @Override
+    public void close() {
+        closeAll();
+    }
+
+    private boolean closeQuietly(LeakDetector.Tracked tracked) {
+        try {
+            tracked.close();
+            return true;
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("❌ Failed to release {} for {}", tracked.getName(), owner, e);
+            return false;
+        }
+    }
+
+    // Getters
+    public String getOwner() { return owner; }
+    public synchronized int getOpenCount() { return resources.size(); }
+    public synchronized boolean isClosed() { return closed; }
+}
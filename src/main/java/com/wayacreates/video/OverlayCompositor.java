@@ -0,0 +1,213 @@
+package com.wayacreates.video;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Overlay Compositor with cached rasterization
+ * Each overlay is rasterized once into a premultiplied-alpha bitmap and only re-rasterized
+ * when its content or style changes. Compositing blends just the overlay's bounding
+ * rectangle, so cost scales with overlay area instead of frame area times overlay count.
+ */
+public class OverlayCompositor {
+    private static final int PADDING = 4;
+
+    private final Map<String, RasterizedOverlay> cache = new ConcurrentHashMap<>();
+    private final AtomicLong rasterizeCount = new AtomicLong();
+    private final AtomicLong blendedPixels = new AtomicLong();
+    private OverlayStyle defaultStyle = new OverlayStyle();
+
+    /**
+     * Get the cached bitmap for an overlay, rasterizing only if its content or style changed
+     */
+    public RasterizedOverlay getOrRasterize(String key, String content, OverlayStyle style) {
+        OverlayStyle effectiveStyle = style != null ? style : defaultStyle;
+        RasterizedOverlay cached = cache.get(key);
+        if (cached != null && cached.matches(content, effectiveStyle)) {
+            return cached;
+        }
+
+        RasterizedOverlay rasterized = rasterizeText(content, effectiveStyle);
+        cache.put(key, rasterized);
+        rasterizeCount.incrementAndGet();
+        return rasterized;
+    }
+
+    /**
+     * Blend one overlay into an ARGB frame at (x, y)
+     */
+    public void composite(String key, String content, int x, int y, int[] frame, int frameWidth, int frameHeight) {
+        RasterizedOverlay overlay = getOrRasterize(key, content, null);
+        blend(overlay, x, y, frame, frameWidth, frameHeight);
+    }
+
+    /**
+     * Premultiplied source-over blend of the overlay's bounding rectangle only
+     */
+    public void blend(RasterizedOverlay overlay, int x, int y, int[] frame, int frameWidth, int frameHeight) {
+        int x0 = Math.max(0, x);
+        int y0 = Math.max(0, y);
+        int x1 = Math.min(frameWidth, x + overlay.width);
+        int y1 = Math.min(frameHeight, y + overlay.height);
+        if (x0 >= x1 || y0 >= y1) return;
+
+        int[] src = overlay.pixels;
+        for (int fy = y0; fy < y1; fy++) {
+            int srcRow = (fy - y) * overlay.width - x;
+            int dstRow = fy * frameWidth;
+            for (int fx = x0; fx < x1; fx++) {
+                int s = src[srcRow + fx];
+                int sa = s >>> 24;
+                if (sa == 0) continue;
+                if (sa == 255) {
+                    frame[dstRow + fx] = s;
+                    continue;
+                }
+                frame[dstRow + fx] = blendPremultiplied(s, frame[dstRow + fx], sa);
+            }
+        }
+        blendedPixels.addAndGet((long) (x1 - x0) * (y1 - y0));
+    }
+
+    /**
+     * out = src + dst * (1 - srcAlpha), per channel, for a premultiplied source
+     */
+    public static int blendPremultiplied(int src, int dst, int srcAlpha) {
+        int inv = 255 - srcAlpha;
+        // Two channels per multiply; each 16-bit lane holds at most 255 * 255
+        int redBlue = div255Lanes((dst & 0xFF00FF) * inv);
+        int alphaGreen = div255Lanes(((dst >>> 8) & 0xFF00FF) * inv);
+        return src + (redBlue | (alphaGreen << 8));
+    }
+
+    // Exact rounded x / 255 in both 16-bit lanes, for lane values in [0, 255 * 255]
+    private static int div255Lanes(int x) {
+        x += 0x00800080;
+        return ((x + ((x >>> 8) & 0x00FF00FF)) >>> 8) & 0x00FF00FF;
+    }
+
+    /**
+     * Drop cached bitmaps for overlays that no longer exist
+     */
+    public void retainOnly(Set<String> keys) {
+        cache.keySet().retainAll(keys);
+    }
+
+    public void invalidate(String key) {
+        cache.remove(key);
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+
+    private RasterizedOverlay rasterizeText(String content, OverlayStyle style) {
+        String text = content != null ? content : "";
+        Font font = new Font(style.fontName, style.bold ? Font.BOLD : Font.PLAIN, style.fontSize);
+
+        // Measure with a throwaway context, then draw into an exactly sized bitmap
+        BufferedImage probe = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D probeGraphics = probe.createGraphics();
+        FontMetrics metrics = probeGraphics.getFontMetrics(font);
+        String[] lines = text.split("\n", -1);
+        int textWidth = 1;
+        for (String line : lines) {
+            textWidth = Math.max(textWidth, metrics.stringWidth(line));
+        }
+        int lineHeight = metrics.getHeight();
+        probeGraphics.dispose();
+
+        int width = textWidth + PADDING * 2;
+        int height = lineHeight * lines.length + PADDING * 2;
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        if (style.backgroundArgb >>> 24 != 0) {
+            graphics.setColor(new Color(style.backgroundArgb, true));
+            graphics.fillRect(0, 0, width, height);
+        }
+        graphics.setFont(font);
+        graphics.setColor(new Color(style.textArgb, true));
+        for (int i = 0; i < lines.length; i++) {
+            graphics.drawString(lines[i], PADDING, PADDING + metrics.getAscent() + i * lineHeight);
+        }
+        graphics.dispose();
+
+        // TYPE_INT_ARGB_PRE stores premultiplied pixels directly
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        return new RasterizedOverlay(content, style.copy(), width, height, pixels);
+    }
+
+    // Getters
+    public long getRasterizeCount() { return rasterizeCount.get(); }
+    public long getBlendedPixels() { return blendedPixels.get(); }
+    public int getCachedOverlayCount() { return cache.size(); }
+    public OverlayStyle getDefaultStyle() { return defaultStyle; }
+    public void setDefaultStyle(OverlayStyle style) { this.defaultStyle = style; }
+
+    // Overlay Style Class
+    public static class OverlayStyle {
+        public String fontName = Font.SANS_SERIF;
+        public int fontSize = 24;
+        public boolean bold = true;
+        public int textArgb = 0xFFFFFFFF;
+        public int backgroundArgb = 0x80000000;
+
+        public OverlayStyle copy() {
+            OverlayStyle copy = new OverlayStyle();
+            copy.fontName = fontName;
+            copy.fontSize = fontSize;
+            copy.bold = bold;
+            copy.textArgb = textArgb;
+            copy.backgroundArgb = backgroundArgb;
+            return copy;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof OverlayStyle)) return false;
+            OverlayStyle other = (OverlayStyle) o;
+            return fontSize == other.fontSize && bold == other.bold && textArgb == other.textArgb
+                && backgroundArgb == other.backgroundArgb && fontName.equals(other.fontName);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(fontName, fontSize, bold, textArgb, backgroundArgb);
+        }
+    }
+
+    // Rasterized Overlay Class - premultiplied ARGB bitmap
+    public static class RasterizedOverlay {
+        private final String content;
+        private final OverlayStyle style;
+        public final int width;
+        public final int height;
+        public final int[] pixels;
+
+        public RasterizedOverlay(String content, OverlayStyle style, int width, int height, int[] pixels) {
+            this.content = content;
+            this.style = style;
+            this.width = width;
+            this.height = height;
+            this.pixels = pixels;
+        }
+
+        boolean matches(String otherContent, OverlayStyle otherStyle) {
+            return Objects.equals(content, otherContent) && style.equals(otherStyle);
+        }
+
+        public String getContent() { return content; }
+    }
+}
@@ -0,0 +1,385 @@
+package com.wayacreates.video;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Overlay Layer
+ * Flattens every overlay of a stream into one cached premultiplied layer the size of the frame.
+ * Placing an overlay that hasn't changed is free; a change marks the old and new bounds dirty and
+ * only those rectangles are cleared and re-blended from the overlays under them, in z-order.
+ * Each layer row keeps its runs of opaque and translucent pixels, so a frame is one pass that
+ * copies opaque runs, blends translucent runs and never looks at transparent pixels - every covered
+ * pixel once, however many overlays are stacked on it.
+ *
+ * Used from the capture thread only.
+ */
+public class OverlayLayer {
+    private static final int MAX_DIRTY_RECTS = 16;
+
+    // Insertion order is z-order: later overlays draw on top
+    private final Map<String, Placement> placements = new LinkedHashMap<>();
+    private final List<int[]> dirty = new ArrayList<>();
+    private int width;
+    private int height;
+    private int[] pixels = new int[0];
+    // Per row: start, end pairs; negative start marks an opaque run
+    private int[][] rowRuns = new int[0][];
+    private int[] rowRunCounts = new int[0];
+    private long generation = 0;
+
+    private final AtomicLong redrawnPixels = new AtomicLong();
+    private final AtomicLong frames = new AtomicLong();
+
+    /**
+     * Start a frame's placements; overlays not placed again before {@link #composite} are removed
+     */
+    public void beginFrame() {
+        generation++;
+    }
+
+    /**
+     * Put an overlay bitmap at (x, y). Nothing is redrawn unless the bitmap or position changed.
+     */
+    public void place(String key, OverlayCompositor.RasterizedOverlay bitmap, int x, int y) {
+        Placement placement = placements.get(key);
+        if (placement == null) {
+            placement = new Placement(bitmap, x, y);
+            placements.put(key, placement);
+            markDirty(x, y, bitmap.width, bitmap.height);
+        } else if (placement.bitmap != bitmap || placement.x != x || placement.y != y) {
+            markDirty(placement.x, placement.y, placement.bitmap.width, placement.bitmap.height);
+            markDirty(x, y, bitmap.width, bitmap.height);
+            placement.bitmap = bitmap;
+            placement.x = x;
+            placement.y = y;
+        }
+        placement.generation = generation;
+    }
+
+    public void remove(String key) {
+        Placement placement = placements.remove(key);
+        if (placement != null) {
+            markDirty(placement.x, placement.y, placement.bitmap.width, placement.bitmap.height);
+        }
+    }
+
+    /**
+     * Redraw dirty regions of the layer, then blend the layer into an ARGB frame
+     */
+    public void composite(int[] frame, int frameWidth, int frameHeight) {
+        if (frameWidth != width || frameHeight != height) {
+            resize(frameWidth, frameHeight);
+        }
+        Iterator<Placement> iterator = placements.values().iterator();
+        while (iterator.hasNext()) {
+            Placement placement = iterator.next();
+            if (placement.generation != generation) {
+                iterator.remove();
+                markDirty(placement.x, placement.y, placement.bitmap.width, placement.bitmap.height);
+            }
+        }
+        for (int i = 0; i < dirty.size(); i++) {
+            redraw(dirty.get(i));
+        }
+        dirty.clear();
+
+        blendInto(frame);
+        frames.incrementAndGet();
+    }
+
+    private void resize(int newWidth, int newHeight) {
+        width = newWidth;
+        height = newHeight;
+        pixels = new int[width * height];
+        rowRuns = new int[height][8];
+        rowRunCounts = new int[height];
+        dirty.clear();
+        dirty.add(new int[] {0, 0, width, height});
+    }
+
+    // Rectangles are x0, y0, x1, y1; overlapping ones are merged and a long list collapses to its bounds
+    private void markDirty(int x, int y, int rectWidth, int rectHeight) {
+        int[] rect = {x, y, x + rectWidth, y + rectHeight};
+        for (int i = dirty.size() - 1; i >= 0; i--) {
+            int[] other = dirty.get(i);
+            if (rect[0] <= other[2] && other[0] <= rect[2] && rect[1] <= other[3] && other[1] <= rect[3]) {
+                rect[0] = Math.min(rect[0], other[0]);
+                rect[1] = Math.min(rect[1], other[1]);
+                rect[2] = Math.max(rect[2], other[2]);
+                rect[3] = Math.max(rect[3], other[3]);
+                dirty.remove(i);
+            }
+        }
+        if (dirty.size() >= MAX_DIRTY_RECTS) {
+            for (int[] other : dirty) {
+                rect[0] = Math.min(rect[0], other[0]);
+                rect[1] = Math.min(rect[1], other[1]);
+                rect[2] = Math.max(rect[2], other[2]);
+                rect[3] = Math.max(rect[3], other[3]);
+            }
+            dirty.clear();
+        }
+        dirty.add(rect);
+    }
+
+    private void redraw(int[] rect) {
+        int x0 = Math.max(0, rect[0]);
+        int y0 = Math.max(0, rect[1]);
+        int x1 = Math.min(width, rect[2]);
+        int y1 = Math.min(height, rect[3]);
+        if (x0 >= x1 || y0 >= y1) return;
+
+        for (int y = y0; y < y1; y++) {
+            Arrays.fill(pixels, y * width + x0, y * width + x1, 0);
+        }
+        for (Placement placement : placements.values()) {
+            drawClipped(placement, x0, y0, x1, y1);
+        }
+        for (int y = y0; y < y1; y++) {
+            buildRuns(y);
+        }
+        redrawnPixels.addAndGet((long) (x1 - x0) * (y1 - y0));
+    }
+
+    // Premultiplied source-over of one overlay into the layer, clipped to a rectangle
+    private void drawClipped(Placement placement, int clipX0, int clipY0, int clipX1, int clipY1) {
+        OverlayCompositor.RasterizedOverlay bitmap = placement.bitmap;
+        int x0 = Math.max(clipX0, placement.x);
+        int y0 = Math.max(clipY0, placement.y);
+        int x1 = Math.min(clipX1, placement.x + bitmap.width);
+        int y1 = Math.min(clipY1, placement.y + bitmap.height);
+        if (x0 >= x1 || y0 >= y1) return;
+
+        int[] src = bitmap.pixels;
+        for (int y = y0; y < y1; y++) {
+            int srcRow = (y - placement.y) * bitmap.width - placement.x;
+            int dstRow = y * width;
+            for (int x = x0; x < x1; x++) {
+                int s = src[srcRow + x];
+                int sa = s >>> 24;
+                if (sa == 0) continue;
+                pixels[dstRow + x] = sa == 255 ? s : OverlayCompositor.blendPremultiplied(s, pixels[dstRow + x], sa);
+            }
+        }
+    }
+
+    // Split a whole row into opaque and translucent runs; transparent pixels are left out
+    private void buildRuns(int y) {
+        int[] runs = rowRuns[y];
+        int count = 0;
+        int row = y * width;
+        int x = 0;
+        while (x < width) {
+            int alpha = pixels[row + x] >>> 24;
+            if (alpha == 0) {
+                x++;
+                continue;
+            }
+            boolean opaque = alpha == 255;
+            int start = x;
+            while (x < width) {
+                int next = pixels[row + x] >>> 24;
+                if (next == 0 || (next == 255) != opaque) break;
+                x++;
+            }
+            if (count + 2 > runs.length) {
+                runs = Arrays.copyOf(runs, runs.length * 2);
+                rowRuns[y] = runs;
+            }
+            runs[count++] = opaque ? -start - 1 : start;
+            runs[count++] = x;
+        }
+        rowRunCounts[y] = count;
+    }
+
+    private void blendInto(int[] frame) {
+        for (int y = 0; y < height; y++) {
+            int count = rowRunCounts[y];
+            if (count == 0) continue;
+            int[] runs = rowRuns[y];
+            int row = y * width;
+            for (int i = 0; i < count; i += 2) {
+                int start = runs[i];
+                int end = runs[i + 1];
+                if (start < 0) {
+                    start = -start - 1;
+                    System.arraycopy(pixels, row + start, frame, row + start, end - start);
+                    continue;
+                }
+                for (int index = row + start; index < row + end; index++) {
+                    int s = pixels[index];
+                    frame[index] = OverlayCompositor.blendPremultiplied(s, frame[index], s >>> 24);
+                }
+            }
+        }
+    }
+
+    // Getters
+    public int getOverlayCount() { return placements.size(); }
+    public long getRedrawnPixels() { return redrawnPixels.get(); }
+    public long getFrameCount() { return frames.get(); }
+
+    /**
+     * Per-frame cost of blending each overlay separately versus the cached layer, with the layer
+     * measured both static and with one overlay changing every frame (a ticking clock or counter).
+     * Times exclude restoring the captured frame. Also checks both paths produce the same image.
+     */
+    public static BenchmarkResult benchmark(int overlayCount, int frameWidth, int frameHeight, int frameCount) {
+        Random random = new Random(42);
+        List<OverlayCompositor.RasterizedOverlay> bitmaps = new ArrayList<>();
+        int[] xs = new int[overlayCount];
+        int[] ys = new int[overlayCount];
+        String[] keys = new String[overlayCount];
+        for (int i = 0; i < overlayCount; i++) {
+            // A mix of small badges, text boxes and a few large panels (webcam frame, chat)
+            int w = i % 8 == 0 ? 360 + random.nextInt(200) : 80 + random.nextInt(240);
+            int h = i % 8 == 0 ? 240 + random.nextInt(200) : 30 + random.nextInt(90);
+            bitmaps.add(syntheticOverlay(random, w, h));
+            xs[i] = random.nextInt(Math.max(1, frameWidth - w / 2));
+            ys[i] = random.nextInt(Math.max(1, frameHeight - h / 2));
+            keys[i] = "overlay" + i;
+        }
+        OverlayCompositor.RasterizedOverlay[] ticking = {syntheticOverlay(random, 160, 40), syntheticOverlay(random, 160, 40)};
+
+        int[] base = new int[frameWidth * frameHeight];
+        for (int i = 0; i < base.length; i++) {
+            base[i] = 0xFF000000 | random.nextInt(0x1000000);
+        }
+        int[] frame = new int[base.length];
+        int[] reference = new int[base.length];
+
+        // Every pass restores the captured frame first; time that alone so it can be taken out
+        long start = System.nanoTime();
+        for (int f = 0; f < frameCount; f++) {
+            System.arraycopy(base, 0, frame, 0, base.length);
+        }
+        double copyMillis = (System.nanoTime() - start) / 1_000_000.0 / frameCount;
+
+        // Per-overlay blending, the way the compositor is driven without a layer
+        OverlayCompositor compositor = new OverlayCompositor();
+        start = System.nanoTime();
+        for (int f = 0; f < frameCount; f++) {
+            System.arraycopy(base, 0, frame, 0, base.length);
+            for (int i = 0; i < overlayCount; i++) {
+                compositor.blend(bitmaps.get(i), xs[i], ys[i], frame, frameWidth, frameHeight);
+            }
+        }
+        double perOverlayMillis = (System.nanoTime() - start) / 1_000_000.0 / frameCount - copyMillis;
+        System.arraycopy(frame, 0, reference, 0, frame.length);
+
+        // Cached layer, nothing changing
+        OverlayLayer layer = new OverlayLayer();
+        start = System.nanoTime();
+        for (int f = 0; f < frameCount; f++) {
+            System.arraycopy(base, 0, frame, 0, base.length);
+            layer.beginFrame();
+            for (int i = 0; i < overlayCount; i++) {
+                layer.place(keys[i], bitmaps.get(i), xs[i], ys[i]);
+            }
+            layer.composite(frame, frameWidth, frameHeight);
+        }
+        double staticLayerMillis = (System.nanoTime() - start) / 1_000_000.0 / frameCount - copyMillis;
+        int maxError = maxChannelDifference(frame, reference);
+
+        // Cached layer with one overlay changing every frame
+        start = System.nanoTime();
+        for (int f = 0; f < frameCount; f++) {
+            System.arraycopy(base, 0, frame, 0, base.length);
+            layer.beginFrame();
+            for (int i = 0; i < overlayCount; i++) {
+                layer.place(keys[i], bitmaps.get(i), xs[i], ys[i]);
+            }
+            layer.place("clock", ticking[f & 1], frameWidth - 200, 20);
+            layer.composite(frame, frameWidth, frameHeight);
+        }
+        double changingLayerMillis = (System.nanoTime() - start) / 1_000_000.0 / frameCount - copyMillis;
+
+        return new BenchmarkResult(overlayCount, frameWidth, frameHeight, frameCount, perOverlayMillis,
+            staticLayerMillis, changingLayerMillis, maxError);
+    }
+
+    private static OverlayCompositor.RasterizedOverlay syntheticOverlay(Random random, int w, int h) {
+        int[] bitmap = new int[w * h];
+        int alpha = random.nextBoolean() ? 255 : 96 + random.nextInt(128);
+        int color = random.nextInt(0x1000000);
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                // Opaque border around a translucent fill, like a framed panel
+                boolean border = x < 3 || y < 3 || x >= w - 3 || y >= h - 3;
+                int a = border ? 255 : alpha;
+                int r = ((color >>> 16) & 0xFF) * a / 255;
+                int g = ((color >>> 8) & 0xFF) * a / 255;
+                int b = (color & 0xFF) * a / 255;
+                bitmap[y * w + x] = (a << 24) | (r << 16) | (g << 8) | b;
+            }
+        }
+        return new OverlayCompositor.RasterizedOverlay(null, new OverlayCompositor.OverlayStyle(), w, h, bitmap);
+    }
+
+    private static int maxChannelDifference(int[] a, int[] b) {
+        int max = 0;
+        for (int i = 0; i < a.length; i++) {
+            for (int shift = 0; shift < 32; shift += 8) {
+                max = Math.max(max, Math.abs(((a[i] >>> shift) & 0xFF) - ((b[i] >>> shift) & 0xFF)));
+            }
+        }
+        return max;
+    }
+
+    private static class Placement {
+        OverlayCompositor.RasterizedOverlay bitmap;
+        int x;
+        int y;
+        long generation;
+
+        Placement(OverlayCompositor.RasterizedOverlay bitmap, int x, int y) {
+            this.bitmap = bitmap;
+            this.x = x;
+            this.y = y;
+        }
+    }
+
+    // Benchmark Result Class
+    public static class BenchmarkResult {
+        public final int overlayCount;
+        public final int frameWidth;
+        public final int frameHeight;
+        public final int frames;
+        public final double perOverlayMillis;
+        public final double staticLayerMillis;
+        public final double changingLayerMillis;
+        public final int maxChannelError;
+
+        public BenchmarkResult(int overlayCount, int frameWidth, int frameHeight, int frames, double perOverlayMillis,
+                               double staticLayerMillis, double changingLayerMillis, int maxChannelError) {
+            this.overlayCount = overlayCount;
+            this.frameWidth = frameWidth;
+            this.frameHeight = frameHeight;
+            this.frames = frames;
+            this.perOverlayMillis = perOverlayMillis;
+            this.staticLayerMillis = staticLayerMillis;
+            this.changingLayerMillis = changingLayerMillis;
+            this.maxChannelError = maxChannelError;
+        }
+
+        // Stacking order differs in rounding only
+        public boolean isMatching() {
+            return maxChannelError <= 2;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%d overlays on %dx%d x %d frames: per-overlay %.2f ms/frame, layer %.2f ms/frame static, " +
+                    "%.2f ms/frame with one changing, max difference %d %s", overlayCount, frameWidth, frameHeight, frames,
+                perOverlayMillis, staticLayerMillis, changingLayerMillis, maxChannelError, isMatching() ? "OK" : "MISMATCH");
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.wayacreates.video;
 
 import com.wayacreates.WayaCreatesEngine;
+import com.wayacreates.utils.ResourceScope;
 import org.bytedeco.ffmpeg.global.avcodec;
 import org.bytedeco.ffmpeg.global.avutil;
 import org.bytedeco.javacv.FFmpegFrameGrabber;
@@ -35,7 +36,8 @@ public class VideoProcessor {
     public CompletableFuture<String> processVideo(String inputFile, String outputFile, ProcessingCallback callback) {
         this.callback = callback;
         return CompletableFuture.supplyAsync(() -> {
-            try {
+            // Native grabber/recorder/converter memory is released even when processing fails
+            try (ResourceScope resources = new ResourceScope("process:" + new File(inputFile).getName())) {
                 isProcessing = true;
                 callback.onProgress(0);
                 
@@ -43,13 +45,13 @@ public class VideoProcessor {
                 avutil.av_log_set_level(avutil.AV_LOG_ERROR);
                 
                 // Setup input grabber
-                FFmpegFrameGrabber grabber = new FFmpegFrameGrabber(inputFile);
+                FFmpegFrameGrabber grabber = resources.track("grabber", new FFmpegFrameGrabber(inputFile));
                 grabber.start();
                 
                 // Setup output recorder
-                FFmpegFrameRecorder recorder = new FFmpegFrameRecorder(outputFile, 
+                FFmpegFrameRecorder recorder = resources.track("recorder", new FFmpegFrameRecorder(outputFile, 
                     grabber.getImageWidth(), grabber.getImageHeight(), 
-                    grabber.getAudioChannels());
+                    grabber.getAudioChannels()));
                 
                 recorder.setVideoCodec(avcodec.AV_CODEC_ID_H264);
                 recorder.setFormat("mp4");
@@ -65,7 +67,7 @@ public class VideoProcessor {
                 Frame frame;
                 int frameCount = 0;
                 int totalFrames = (int) (grabber.getLengthInVideoFrames());
-                Java2DFrameConverter converter = new Java2DFrameConverter();
+                Java2DFrameConverter converter = resources.track("converter", new Java2DFrameConverter());
                 
                 while ((frame = grabber.grab()) != null) {
                     // Apply video processing effects here
@@ -150,8 +152,7 @@ public class VideoProcessor {
      * Get video information
      */
     public VideoInfo getVideoInfo(String filePath) {
-        try {
-            FFmpegFrameGrabber grabber = new FFmpegFrameGrabber(filePath);
+        try (FFmpegFrameGrabber grabber = new FFmpegFrameGrabber(filePath)) {
             grabber.start();
             
             VideoInfo info = new VideoInfo();